@@ -2,8 +2,10 @@ package com.proyectospringboot.proyectosaas;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 @org.springframework.scheduling.annotation.EnableScheduling
 public class ProyectoSaasApplication {
 
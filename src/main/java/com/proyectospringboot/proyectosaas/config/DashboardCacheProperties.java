@@ -0,0 +1,16 @@
+package com.proyectospringboot.proyectosaas.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/* DashboardCacheProperties:
+ * Caché en memoria del panel del cliente (prefijo "dashboard.cache.").
+ * - tamanoMaximo: paneles guardados como mucho; al pasarse Caffeine descarta los menos usados.
+ * - ttlSegundos: vida máxima de un panel aunque no llegue ningún evento (red de seguridad
+ *   para cambios hechos fuera de la aplicación, p.ej. a mano en la BD). */
+
+@ConfigurationProperties(prefix = "dashboard.cache")
+public record DashboardCacheProperties(
+        @DefaultValue("10000") int tamanoMaximo,
+        @DefaultValue("300") int ttlSegundos) {
+}
@@ -7,6 +7,7 @@ import com.proyectospringboot.proyectosaas.domain.enums.RolUsuario;
 import com.proyectospringboot.proyectosaas.repository.PlanRepository;
 import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
 import com.proyectospringboot.proyectosaas.repository.UsuarioRepository;
+import com.proyectospringboot.proyectosaas.service.PlanCatalog;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -32,23 +33,15 @@ public class DataInitializer {
         @Bean
         CommandLineRunner initData(
                         PlanRepository planRepository,
+                        PlanCatalog planCatalog,
                         UsuarioRepository usuarioRepository,
                         SuscripcionRepository suscripcionRepository,
                         PasswordEncoder passwordEncoder,
-                        TransactionTemplate tx,
-                        org.springframework.jdbc.core.JdbcTemplate jdbcTemplate) {
+                        TransactionTemplate tx) {
 
                 return args -> {
-                        // PARCHE DE MIGRACIÓN: Asegurar que la columna existe antes de cualquier
-                        // consulta
-                        try {
-                                jdbcTemplate.execute(
-                                                "ALTER TABLE usuarios ADD COLUMN IF NOT EXISTS pago_automatico BOOLEAN NOT NULL DEFAULT FALSE");
-                                System.out.println(
-                                                ">>> MIGRACIÓN: Columna 'pago_automatico' verificada correctamente.");
-                        } catch (Exception e) {
-                                System.out.println(">>> MIGRACIÓN: Aviso (probablemente ya existe): " + e.getMessage());
-                        }
+                        // El esquema (tablas, columnas e índices) lo gestiona Flyway:
+                        // ver src/main/resources/db/migration. Aquí solo van datos.
 
                         tx.execute(status -> {
 
@@ -62,15 +55,12 @@ public class DataInitializer {
                                         planRepository.save(new Plan("ENTERPRISE", BigDecimal.valueOf(49.99)));
                                 }
 
-                                Plan basic = planRepository.findAll().stream()
-                                                .filter(p -> "BASIC".equalsIgnoreCase(p.getNombre()))
-                                                .findFirst()
-                                                .orElseThrow();
+                                // Una sola lectura del catálogo (ya incluye los recién creados)
+                                Plan basic = planRepository.getReferenceById(
+                                                planCatalog.porNombre("BASIC").orElseThrow().id());
 
-                                Plan premium = planRepository.findAll().stream()
-                                                .filter(p -> "PREMIUM".equalsIgnoreCase(p.getNombre()))
-                                                .findFirst()
-                                                .orElseThrow();
+                                Plan premium = planRepository.getReferenceById(
+                                                planCatalog.porNombre("PREMIUM").orElseThrow().id());
 
                                 // Hashear password usando el PasswordEncoder configurado
                                 String hashedPassword = passwordEncoder.encode(PASSWORD_DEFAULT);
@@ -98,7 +88,7 @@ public class DataInitializer {
                                                                 .save(new Suscripcion(usuario, basic)));
 
                                 // Cambio de plan para generar alguna revisión en auditoría
-                                if (!"PREMIUM".equalsIgnoreCase(suscripcion.getPlan().getNombre())) {
+                                if (!premium.getId().equals(suscripcion.getPlan().getId())) {
                                         suscripcion.setPlan(premium);
                                         suscripcionRepository.save(suscripcion);
                                 }
@@ -0,0 +1,29 @@
+package com.proyectospringboot.proyectosaas.config;
+
+import com.proyectospringboot.proyectosaas.domain.entity.Plan;
+import com.proyectospringboot.proyectosaas.service.PlanCatalog;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+
+/* EscuchaPlanes:
+ * Listener JPA de Plan: al guardar o borrar un plan avisa a PlanCatalog para que descarte
+ * su instantánea. Hibernate crea su propia instancia a través de Spring, así que recibe el
+ * catálogo (el singleton) por constructor. Está en config y no en el servicio para que la
+ * entidad no dependa de la capa de servicios. */
+
+public class EscuchaPlanes {
+
+    private final PlanCatalog planCatalog;
+
+    public EscuchaPlanes(PlanCatalog planCatalog) {
+        this.planCatalog = planCatalog;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void alEscribir(Plan plan) {
+        planCatalog.alEscribirPlan();
+    }
+}
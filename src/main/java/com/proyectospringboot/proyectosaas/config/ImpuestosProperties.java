@@ -0,0 +1,29 @@
+package com.proyectospringboot.proyectosaas.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/* ImpuestosProperties:
+ * Tipos de impuesto por país (prefijo "impuestos." en application.properties).
+ * - tipos: código ISO -> tipo (impuestos.tipos.ES=0.21)
+ * - alias: otros nombres del país -> código ISO (impuestos.alias.SPAIN=ES)
+ * Los alias se comparan sin tildes ni mayúsculas, así que "ESPANA" vale para "España".
+ * Si no se configura nada, se queda como hasta ahora: solo España al 21%. */
+
+@ConfigurationProperties(prefix = "impuestos")
+public record ImpuestosProperties(
+        Map<String, BigDecimal> tipos,
+        Map<String, String> alias) {
+
+    public ImpuestosProperties {
+        if (tipos == null || tipos.isEmpty()) {
+            tipos = Map.of("ES", new BigDecimal("0.21"));
+            alias = Map.of("ESPANA", "ES", "SPAIN", "ES");
+        }
+        if (alias == null) {
+            alias = Map.of();
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.proyectospringboot.proyectosaas.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/* PlanCatalogProperties:
+ * Catálogo de planes en memoria (prefijo "planes.catalogo.", ver PlanCatalog).
+ * - ttlSegundos: vida máxima de la instantánea aunque no se guarde ningún plan desde la
+ *   aplicación (red de seguridad para cambios hechos fuera, p.ej. a mano en la BD o desde
+ *   otra réplica). Con 0 se lee de la BD en cada consulta. */
+
+@ConfigurationProperties(prefix = "planes.catalogo")
+public record PlanCatalogProperties(
+        @DefaultValue("300") int ttlSegundos) {
+}
@@ -0,0 +1,19 @@
+package com.proyectospringboot.proyectosaas.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/* RenovacionContinuaProperties:
+ * Configuración de la renovación continua (prefijo "renovacion.continua.").
+ * Va aparte de RenovacionProperties porque es un modo opcional que convive con el cron:
+ * - horizonteMinutos: cuánto por delante de "ahora" se cargan vencimientos en memoria.
+ * - capacidad: máximo de vencimientos en la cola (el resto se carga según se vacía).
+ * - intervaloSegundos: cada cuánto se revisa la cola y se renueva lo que ya ha vencido. */
+
+@ConfigurationProperties(prefix = "renovacion.continua")
+public record RenovacionContinuaProperties(
+        @DefaultValue("false") boolean habilitado,
+        @DefaultValue("60") int horizonteMinutos,
+        @DefaultValue("10000") int capacidad,
+        @DefaultValue("30") int intervaloSegundos) {
+}
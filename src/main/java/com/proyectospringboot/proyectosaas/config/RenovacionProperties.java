@@ -0,0 +1,22 @@
+package com.proyectospringboot.proyectosaas.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/* RenovacionProperties:
+ * Configuración del proceso de renovación (prefijo "renovacion." en application.properties).
+ * La agrupamos aquí para no arrastrar un @Value por cada opción en el servicio. */
+
+@ConfigurationProperties(prefix = "renovacion")
+public record RenovacionProperties(
+        @DefaultValue("500") int tamanoLote,
+        @DefaultValue Paralelo paralelo,
+        @DefaultValue("true") boolean repartoEntreNodos,
+        @DefaultValue("15") int leaseMinutos,
+        String nodo) {
+
+    public record Paralelo(
+            @DefaultValue("false") boolean habilitado,
+            @DefaultValue("4") int hilos) {
+    }
+}
@@ -1,30 +1,44 @@
 package com.proyectospringboot.proyectosaas.config;
 
-import com.proyectospringboot.proyectosaas.domain.entity.Suscripcion;
-import com.proyectospringboot.proyectosaas.domain.enums.EstadoSuscripcion;
-import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
-import com.proyectospringboot.proyectosaas.service.FacturaService;
+import com.proyectospringboot.proyectosaas.service.EjecucionRenovacionService;
+import com.proyectospringboot.proyectosaas.service.RenovacionContinuaService;
+import com.proyectospringboot.proyectosaas.service.RetencionAuditoriaService;
+import com.proyectospringboot.proyectosaas.service.RetencionAuditoriaService.ResultadoRetencion;
+import com.proyectospringboot.proyectosaas.service.RenovacionService.ResultadoRenovacion;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
-import java.util.List;
+import java.time.YearMonth;
+import java.util.concurrent.TimeUnit;
 
 /*
  * Scheduler para tareas automáticas nocturnas.
  * Se encarga de:
- * 1. Renovar y cobrar suscripciones con "pago automático" activado.
+ * 1. Renovar y cobrar suscripciones con "pago automático" activado
+ *    (por lotes, ver RenovacionService).
  * 2. Cancelar suscripciones que llevan días impagadas (sin pago automático).
+ * Cada pasada queda apuntada en el diario de ejecuciones (ver EjecucionRenovacionService):
+ * si una se corta a medias, se retoma desde donde iba al arrancar, en la comprobación
+ * periódica (cada renovacion.lease-minutos) o, como muy tarde, en la pasada siguiente.
+ * Con renovacion.continua.habilitado=true además se renueva a lo largo del día según
+ * van venciendo (ver RenovacionContinuaService) y la pasada nocturna queda como barrido.
+ * Aparte, cada noche se mantienen las particiones mensuales de la auditoría: se crean las de los
+ * meses siguientes y se archivan las que pasan de la retención (ver RetencionAuditoriaService).
  */
 @Component
 public class RenovacionScheduler {
 
-    private final SuscripcionRepository suscripcionRepository;
-    private final FacturaService facturaService;
+    private final EjecucionRenovacionService ejecucionRenovacionService;
+    private final RenovacionContinuaService renovacionContinuaService;
+    private final RetencionAuditoriaService retencionAuditoriaService;
 
-    public RenovacionScheduler(SuscripcionRepository suscripcionRepository, FacturaService facturaService) {
-        this.suscripcionRepository = suscripcionRepository;
-        this.facturaService = facturaService;
+    public RenovacionScheduler(EjecucionRenovacionService ejecucionRenovacionService,
+            RenovacionContinuaService renovacionContinuaService,
+            RetencionAuditoriaService retencionAuditoriaService) {
+        this.ejecucionRenovacionService = ejecucionRenovacionService;
+        this.renovacionContinuaService = renovacionContinuaService;
+        this.retencionAuditoriaService = retencionAuditoriaService;
     }
 
     // Se ejecuta todos los días a las 2:00 AM
@@ -32,27 +46,48 @@ public class RenovacionScheduler {
     public void procesarSuscripciones() {
         System.out.println("Inicio del proceso nocturno de suscripciones...");
 
-        // 1. Renovación Automática (Domiciliación)
-        List<Suscripcion> paraRenovar = suscripcionRepository.buscarVencidas(EstadoSuscripcion.ACTIVA,
-                LocalDateTime.now());
-        int renovadas = 0;
-
-        for (Suscripcion s : paraRenovar) {
-            if (s.getUsuario().isPagoAutomatico()) {
-                try {
-                    facturaService.renovarYPagarAuto(s);
-                    renovadas++;
-                    System.out.println("Renovada automáticamente: " + s.getUsuario().getEmail());
-                } catch (Exception e) {
-                    System.err.println("Error al renovar auto " + s.getUsuario().getEmail() + ": " + e.getMessage());
-                }
-            }
+        EjecucionRenovacionService.ProgresoEjecucion resultado = ejecucionRenovacionService.ejecutar();
+
+        System.out.println("Proceso finalizado. Renovadas auto: " + resultado.renovadas()
+                + ". Fallidas: " + resultado.fallidas()
+                + ". Canceladas por impago: " + resultado.canceladas());
+    }
+
+    // Ejecuciones a medias de una réplica caída (sin latido durante lease-minutos); la de este
+    // mismo nodo ya se retoma al arrancar
+    @Scheduled(fixedDelayString = "${renovacion.lease-minutos:15}",
+            initialDelayString = "${renovacion.lease-minutos:15}", timeUnit = TimeUnit.MINUTES)
+    public void reanudarEjecuciones() {
+        int retomadas = ejecucionRenovacionService.reanudarAMedias();
+
+        if (retomadas > 0) {
+            System.out.println("Retomadas " + retomadas + " ejecuciones de renovación a medias.");
+        }
+    }
+
+    // Renovación continua: revisa la cola de vencimientos cada pocos segundos
+    @Scheduled(fixedDelayString = "${renovacion.continua.intervalo-segundos:30}", timeUnit = TimeUnit.SECONDS)
+    public void renovarSegunVencen() {
+        if (!renovacionContinuaService.isHabilitado()) {
+            return;
+        }
+
+        ResultadoRenovacion resultado = renovacionContinuaService.procesarVencidas(LocalDateTime.now());
+
+        if (resultado.renovadas() + resultado.fallidas() > 0) {
+            System.out.println("Renovación continua: " + resultado.renovadas() + " renovadas, "
+                    + resultado.fallidas() + " fallidas.");
         }
+    }
 
-        // 2. Cancelación por impago (si no tiene pago auto y pasaron 3 días)
-        int canceladas = facturaService.cancelarExpiradas();
+    // Particiones de la auditoría: a las 3:30 AM, con la renovación ya terminada
+    @Scheduled(cron = "0 30 3 * * *")
+    public void mantenerParticionesAuditoria() {
+        ResultadoRetencion resultado = retencionAuditoriaService.mantener(YearMonth.now());
 
-        System.out
-                .println("Proceso finalizado. Renovadas auto: " + renovadas + ". Canceladas por impago: " + canceladas);
+        if (!resultado.mesesArchivados().isEmpty()) {
+            System.out.println("Auditoría archivada: " + resultado.mesesArchivados()
+                    + " en " + resultado.directorio());
+        }
     }
 }
@@ -0,0 +1,17 @@
+package com.proyectospringboot.proyectosaas.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/* RetencionAuditoriaProperties:
+ * Particiones mensuales de la auditoría (prefijo "auditoria.retencion.", ver RetencionAuditoriaService).
+ * - meses: meses que se quedan en la BD además del actual; los anteriores se exportan y se quitan.
+ * - mesesPorAdelantado: particiones que se dejan creadas para los meses siguientes.
+ * - directorio: carpeta local donde se dejan los csv comprimidos de los meses archivados. */
+
+@ConfigurationProperties(prefix = "auditoria.retencion")
+public record RetencionAuditoriaProperties(
+        @DefaultValue("12") int meses,
+        @DefaultValue("2") int mesesPorAdelantado,
+        @DefaultValue("archivo-auditoria") String directorio) {
+}
@@ -0,0 +1,75 @@
+package com.proyectospringboot.proyectosaas.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.boot.hibernate.autoconfigure.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/* SegundoNivelCacheConfig:
+ * Caché de segundo nivel de Hibernate con JCache, todo en memoria (Caffeine, sin servidor aparte).
+ * Las regiones se crean aquí, acotadas, y Hibernate las recibe ya hechas; con
+ * missing_cache_strategy=fail una región que se nos olvide rompe el arranque en vez de
+ * crearse sin límite.
+ * - planes: Plan, lectura/escritura no estricta (se invalida al confirmar; casi nunca cambia).
+ * - usuarios: Usuario, lectura/escritura (Hibernate la actualiza al confirmar).
+ * - consultas.usuarios: resultados de las búsquedas por email (UsuarioRepository).
+ * - Las dos de Hibernate para la caché de consultas: la de resultados por defecto y la de
+ *   marcas de tiempo por tabla, que es la que invalida las consultas y no debe perder entradas.
+ * Aciertos y fallos por región: /actuator/prometheus (hibernate.second.level.cache.requests). */
+
+@Configuration
+public class SegundoNivelCacheConfig {
+
+    public static final String REGION_PLANES = "planes";
+    public static final String REGION_USUARIOS = "usuarios";
+    public static final String REGION_CONSULTAS_USUARIOS = "consultas.usuarios";
+
+    private static final long TAMANO_PLANES = 100;
+    private static final long TAMANO_CONSULTAS_DEFECTO = 1_000;
+
+    // Un CacheManager por contexto (URI propia): los tests levantan varios en la misma JVM
+    @Bean(destroyMethod = "close")
+    CacheManager cacheManagerSegundoNivel(SegundoNivelCacheProperties propiedades) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("proyecto-saas-" + UUID.randomUUID()), getClass().getClassLoader());
+
+        cacheManager.createCache(REGION_PLANES, region(TAMANO_PLANES,
+                Duration.ofSeconds(propiedades.planesTtlSegundos())));
+        cacheManager.createCache(REGION_USUARIOS, region(propiedades.usuariosTamanoMaximo(),
+                Duration.ofSeconds(propiedades.usuariosTtlSegundos())));
+        cacheManager.createCache(REGION_CONSULTAS_USUARIOS, region(propiedades.consultasTamanoMaximo(),
+                Duration.ofSeconds(propiedades.consultasTtlSegundos())));
+        cacheManager.createCache(RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME,
+                region(TAMANO_CONSULTAS_DEFECTO, null));
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+                new CaffeineConfiguration<>().setStoreByValue(false));
+
+        return cacheManager;
+    }
+
+    @Bean
+    HibernatePropertiesCustomizer cacheSegundoNivel(CacheManager cacheManagerSegundoNivel) {
+        return propiedades -> propiedades.put(ConfigSettings.CACHE_MANAGER, cacheManagerSegundoNivel);
+    }
+
+    // Por referencia: Hibernate guarda entradas ya desmontadas e inmutables, no hace falta copiarlas
+    private static CaffeineConfiguration<Object, Object> region(long tamanoMaximo, Duration ttl) {
+        CaffeineConfiguration<Object, Object> configuracion = new CaffeineConfiguration<>();
+        configuracion.setStoreByValue(false);
+        configuracion.setMaximumSize(OptionalLong.of(tamanoMaximo));
+        if (ttl != null) {
+            configuracion.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        }
+        return configuracion;
+    }
+}
@@ -0,0 +1,22 @@
+package com.proyectospringboot.proyectosaas.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/* SegundoNivelCacheProperties:
+ * Regiones de la caché de segundo nivel de Hibernate (prefijo "cache.segundo-nivel.").
+ * - usuariosTamanoMaximo / usuariosTtlSegundos: región "usuarios" (entidad Usuario).
+ * - consultasTamanoMaximo / consultasTtlSegundos: resultados de las consultas cacheables
+ *   de usuarios (por email). Solo guardan ids; la entidad sale de la región "usuarios".
+ * - planesTtlSegundos: región "planes" (entidad Plan). Su tamaño es fijo: son tres filas.
+ * El TTL no hace falta para la coherencia (Hibernate actualiza e invalida al confirmar): es
+ * la red de seguridad para cambios hechos fuera de la aplicación, como en el panel. */
+
+@ConfigurationProperties(prefix = "cache.segundo-nivel")
+public record SegundoNivelCacheProperties(
+        @DefaultValue("10000") int usuariosTamanoMaximo,
+        @DefaultValue("3600") int usuariosTtlSegundos,
+        @DefaultValue("10000") int consultasTamanoMaximo,
+        @DefaultValue("3600") int consultasTtlSegundos,
+        @DefaultValue("3600") int planesTtlSegundos) {
+}
@@ -0,0 +1,144 @@
+package com.proyectospringboot.proyectosaas.domain.entity;
+
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoEjecucion;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/* Entidad EjecucionRenovacion
+ *
+ * Diario del proceso nocturno de renovación: una fila por ejecución.
+ * Guarda la marca de agua (último id de suscripción procesado) y los contadores.
+ * Si la JVM muere a mitad, la siguiente pasada retoma la ejecución desde la marca
+ * de agua y con la misma fecha de corte, en vez de volver a recorrerlo todo.
+ *
+ * No se audita con Envers: se actualiza en cada lote y solo es información operativa. */
+
+@Entity
+@Table(name = "ejecuciones_renovacion")
+public class EjecucionRenovacion {
+
+    // =========================================================
+    // CAMPOS
+    // =========================================================
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Réplica que lleva la ejecución (cambia si otro nodo la adopta)
+    @Column(nullable = false, length = 100)
+    private String nodo;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private EstadoEjecucion estado;
+
+    // Se renuevan las vencidas antes de esta fecha; al reanudar se reutiliza
+    @Column(nullable = false)
+    private LocalDateTime fechaCorte;
+
+    @Column(nullable = false)
+    private LocalDateTime inicio;
+
+    private LocalDateTime fin;
+
+    // Latido: se toca en cada lote. Si deja de moverse, el nodo ha muerto
+    @Column(nullable = false)
+    private LocalDateTime ultimaActualizacion;
+
+    // Marca de agua: todo lo que tenga id <= este valor ya está procesado
+    @Column(nullable = false)
+    private long ultimoIdProcesado;
+
+    @Column(nullable = false)
+    private int renovadas;
+
+    @Column(nullable = false)
+    private int fallidas;
+
+    @Column(nullable = false)
+    private int canceladas;
+
+    @Column(nullable = false)
+    private int reanudaciones;
+
+    // =========================================================
+    // CONSTRUCTORES
+    // =========================================================
+
+    protected EjecucionRenovacion() {
+        // Constructor requerido por JPA
+    }
+
+    public EjecucionRenovacion(String nodo, LocalDateTime fechaCorte) {
+        this.nodo = nodo;
+        this.estado = EstadoEjecucion.EN_CURSO;
+        this.fechaCorte = fechaCorte;
+        this.inicio = fechaCorte;
+        this.ultimaActualizacion = fechaCorte;
+        this.ultimoIdProcesado = 0L;
+    }
+
+    // =========================================================
+    // LÓGICA DE NEGOCIO
+    // =========================================================
+
+    public void completar(int canceladas, LocalDateTime ahora) {
+        this.canceladas = canceladas;
+        this.estado = EstadoEjecucion.COMPLETADA;
+        this.fin = ahora;
+        this.ultimaActualizacion = ahora;
+    }
+
+    // =========================================================
+    // GETTERS
+    // =========================================================
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getNodo() {
+        return nodo;
+    }
+
+    public EstadoEjecucion getEstado() {
+        return estado;
+    }
+
+    public LocalDateTime getFechaCorte() {
+        return fechaCorte;
+    }
+
+    public LocalDateTime getInicio() {
+        return inicio;
+    }
+
+    public LocalDateTime getFin() {
+        return fin;
+    }
+
+    public LocalDateTime getUltimaActualizacion() {
+        return ultimaActualizacion;
+    }
+
+    public long getUltimoIdProcesado() {
+        return ultimoIdProcesado;
+    }
+
+    public int getRenovadas() {
+        return renovadas;
+    }
+
+    public int getFallidas() {
+        return fallidas;
+    }
+
+    public int getCanceladas() {
+        return canceladas;
+    }
+
+    public int getReanudaciones() {
+        return reanudaciones;
+    }
+}
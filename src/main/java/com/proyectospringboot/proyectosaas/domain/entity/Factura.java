@@ -1,5 +1,7 @@
 package com.proyectospringboot.proyectosaas.domain.entity;
 
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoPagoFactura;
+import com.proyectospringboot.proyectosaas.domain.valor.Dinero;
 import jakarta.persistence.*;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -8,7 +10,9 @@ import java.time.LocalDateTime;
  *
  * Representa una factura generada a partir de una suscripción.
  * Importante: guarda un snapshot económico en el momento de creación:
- * importe base, impuesto aplicado y total final. */
+ * importe base, impuesto aplicado y total final.
+ * El estado de pago (y cuándo se pagó) se guarda aquí al registrar el Pago, para que
+ * "¿tiene algo pendiente?" sea una consulta sobre facturas sin tocar la tabla de pagos. */
 
 @Entity
 @Table(name = "facturas")
@@ -18,7 +22,9 @@ public class Factura {
     // IDENTIFICADOR
     // =========================================================
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Secuencia con asignación en bloques de 50: con IDENTITY Hibernate no puede agrupar INSERTs
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "facturas_seq")
+    @SequenceGenerator(name = "facturas_seq", sequenceName = "facturas_seq", allocationSize = 50)
     private Long id;
 
     // =========================================================
@@ -49,6 +55,17 @@ public class Factura {
     @Column(length = 100)
     private String concepto;
 
+    // =========================================================
+    // ESTADO DE PAGO (lo mantiene Pago al guardarse)
+    // =========================================================
+    // null solo en facturas antiguas que aún no ha recorrido RellenoEstadoPagoService
+    @Enumerated(EnumType.STRING)
+    @Column(name = "estado_pago", length = 20)
+    private EstadoPagoFactura estadoPago = EstadoPagoFactura.PENDIENTE;
+
+    @Column(name = "pagada_en")
+    private LocalDateTime pagadaEn;
+
     // =========================================================
     // CONSTRUCTORES
     // =========================================================
@@ -71,6 +88,34 @@ public class Factura {
         this.concepto = concepto;
     }
 
+    // La facturación calcula en céntimos (Dinero); aquí se pasa a BigDecimal para guardar
+    public Factura(Suscripcion suscripcion,
+                   LocalDateTime fecha,
+                   Dinero importe,
+                   Dinero impuesto,
+                   Dinero total,
+                   String concepto) {
+
+        this(suscripcion, fecha, importe.aBigDecimal(), impuesto.aBigDecimal(), total.aBigDecimal(), concepto);
+    }
+
+    // =========================================================
+    // PAGO
+    // =========================================================
+
+    // Lo llama Pago al persistirse, así que va en la misma transacción que el INSERT del pago.
+    // Si ya estaba pagada no cambia nada (y Hibernate no genera UPDATE).
+    public void marcarPagada(LocalDateTime fecha) {
+        if (estadoPago != EstadoPagoFactura.PAGADA) {
+            this.estadoPago = EstadoPagoFactura.PAGADA;
+            this.pagadaEn = fecha;
+        }
+    }
+
+    public boolean estaPagada() {
+        return estadoPago == EstadoPagoFactura.PAGADA;
+    }
+
     // =========================================================
     // GETTERS
     // =========================================================
@@ -101,4 +146,12 @@ public class Factura {
     public String getConcepto() {
         return concepto;
     }
+
+    public EstadoPagoFactura getEstadoPago() {
+        return estadoPago;
+    }
+
+    public LocalDateTime getPagadaEn() {
+        return pagadaEn;
+    }
 }
@@ -0,0 +1,94 @@
+package com.proyectospringboot.proyectosaas.domain.entity;
+
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoEjecucion;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/* Entidad MigracionDatos
+ *
+ * Diario de una migración de datos en segundo plano: una fila por migración, por nombre.
+ * La fila la crea la migración de Flyway que la introduce (EN_CURSO, sin nodo).
+ * Guarda la marca de agua (último id procesado) y cuántas filas se han actualizado;
+ * cuando termina queda COMPLETADA y ya no se vuelve a lanzar.
+ *
+ * No se audita con Envers: se actualiza en cada lote y solo es información operativa.
+ * Los cambios de progreso son UPDATE directos (ver MigracionDatosRepository). */
+
+@Entity
+@Table(name = "migraciones_datos")
+public class MigracionDatos {
+
+    // =========================================================
+    // CAMPOS
+    // =========================================================
+
+    @Id
+    @Column(length = 100)
+    private String nombre;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private EstadoEjecucion estado;
+
+    // Réplica que la lleva (null hasta que alguna la arranca)
+    @Column(length = 100)
+    private String nodo;
+
+    private LocalDateTime inicio;
+
+    private LocalDateTime fin;
+
+    // Latido: se toca en cada lote. Si deja de moverse, el nodo ha muerto
+    private LocalDateTime ultimaActualizacion;
+
+    // Marca de agua: todo lo que tenga id <= este valor ya está procesado
+    @Column(nullable = false)
+    private long ultimoIdProcesado;
+
+    @Column(nullable = false)
+    private long actualizadas;
+
+    // =========================================================
+    // CONSTRUCTORES
+    // =========================================================
+
+    protected MigracionDatos() {
+        // Constructor requerido por JPA
+    }
+
+    // =========================================================
+    // GETTERS
+    // =========================================================
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public EstadoEjecucion getEstado() {
+        return estado;
+    }
+
+    public String getNodo() {
+        return nodo;
+    }
+
+    public LocalDateTime getInicio() {
+        return inicio;
+    }
+
+    public LocalDateTime getFin() {
+        return fin;
+    }
+
+    public LocalDateTime getUltimaActualizacion() {
+        return ultimaActualizacion;
+    }
+
+    public long getUltimoIdProcesado() {
+        return ultimoIdProcesado;
+    }
+
+    public long getActualizadas() {
+        return actualizadas;
+    }
+}
@@ -8,11 +8,15 @@ import java.time.LocalDateTime;
  *
  * Representa el pago asociado a una factura.
  * Se usa herencia JPA (JOINED) para permitir
- * distintos tipos: tarjeta, PayPal, transferencia, etc. */
+ * distintos tipos: tarjeta, PayPal, transferencia, etc.
+ * Al guardarse marca su factura como pagada (ver marcarFacturaPagada).
+ * La columna tipo (discriminador) dice qué clase de pago es sin tener que cruzar
+ * con las tablas de cada tipo. */
 
 @Entity
 @Table(name = "pagos")
 @Inheritance(strategy = InheritanceType.JOINED)
+@DiscriminatorColumn(name = "tipo", length = 20)
 public abstract class Pago {
 
     // =========================================================
@@ -20,7 +24,9 @@ public abstract class Pago {
     // =========================================================
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Una sola secuencia para todos los tipos de pago (las tablas hijas comparten el id)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "pagos_seq")
+    @SequenceGenerator(name = "pagos_seq", sequenceName = "pagos_seq", allocationSize = 50)
     private Long id;
 
     // =========================================================
@@ -55,6 +61,17 @@ public abstract class Pago {
         this.fecha = fecha;
     }
 
+    // =========================================================
+    // ESTADO DE LA FACTURA
+    // =========================================================
+
+    // Se ejecuta en el persist, dentro de la transacción del pago: el UPDATE de la factura
+    // sale en el mismo flush que el INSERT del pago, por cualquier camino que se guarde.
+    @PrePersist
+    void marcarFacturaPagada() {
+        factura.marcarPagada(fecha);
+    }
+
     // =========================================================
     // GETTERS
     // =========================================================
@@ -1,6 +1,7 @@
 package com.proyectospringboot.proyectosaas.domain.entity;
 
 import jakarta.persistence.Column;
+import jakarta.persistence.DiscriminatorValue;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Table;
 
@@ -14,6 +15,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "pagos_paypal")
+@DiscriminatorValue("PAYPAL")
 public class PagoPaypal extends Pago {
 
     // =========================================================
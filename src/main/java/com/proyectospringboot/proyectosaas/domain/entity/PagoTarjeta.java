@@ -1,6 +1,7 @@
 package com.proyectospringboot.proyectosaas.domain.entity;
 
 import jakarta.persistence.Column;
+import jakarta.persistence.DiscriminatorValue;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Table;
 
@@ -17,6 +18,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "pagos_tarjeta")
+@DiscriminatorValue("TARJETA")
 public class PagoTarjeta extends Pago {
 
     // =========================================================
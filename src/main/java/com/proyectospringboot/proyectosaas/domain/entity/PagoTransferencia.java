@@ -1,6 +1,7 @@
 package com.proyectospringboot.proyectosaas.domain.entity;
 
 import jakarta.persistence.Column;
+import jakarta.persistence.DiscriminatorValue;
 import jakarta.persistence.Entity;
 import jakarta.persistence.Table;
 
@@ -18,6 +19,7 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "pagos_transferencia")
+@DiscriminatorValue("TRANSFERENCIA")
 public class PagoTransferencia extends Pago {
 
     // =========================================================
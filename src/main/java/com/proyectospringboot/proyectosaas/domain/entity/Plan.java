@@ -1,6 +1,10 @@
 package com.proyectospringboot.proyectosaas.domain.entity;
 
+import com.proyectospringboot.proyectosaas.domain.valor.Dinero;
+import com.proyectospringboot.proyectosaas.config.EscuchaPlanes;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.math.BigDecimal;
 
 /*
@@ -9,9 +13,16 @@ import java.math.BigDecimal;
  * (Basic, Premium, Enterprise).
  *
  * Es una entidad estable que define precio y nombre.
+ * Se lee desde PlanCatalog (en memoria), que se entera de los cambios como listener JPA.
+ * Lo que carga Hibernate por su cuenta (el plan de cada suscripción) sale de la caché de
+ * segundo nivel. Casi nunca cambia, pero se puede editar por JPA: NONSTRICT_READ_WRITE
+ * invalida la entrada al confirmar (READ_ONLY rechaza cualquier UPDATE) y la región tiene TTL
+ * por si el cambio se hace fuera de la aplicación.
  */
 
 @Entity
+@EntityListeners(EscuchaPlanes.class)
+@Cache(usage = CacheConcurrencyStrategy.NONSTRICT_READ_WRITE, region = "planes")
 @Table(name = "planes")
 public class Plan {
 
@@ -29,6 +40,10 @@ public class Plan {
     @Column(nullable = false)
     private BigDecimal precioMensual;
 
+    // Mismo precio en céntimos para facturar; se calcula la primera vez que se pide
+    @Transient
+    private Dinero precioMensualDinero;
+
     // =========================================================
     // CONSTRUCTORES
     // =========================================================
@@ -64,5 +79,13 @@ public class Plan {
 
     public void setPrecioMensual(BigDecimal precioMensual) {
         this.precioMensual = precioMensual;
+        this.precioMensualDinero = null;
+    }
+
+    public Dinero getPrecioMensualDinero() {
+        if (precioMensualDinero == null) {
+            precioMensualDinero = Dinero.de(precioMensual);
+        }
+        return precioMensualDinero;
     }
 }
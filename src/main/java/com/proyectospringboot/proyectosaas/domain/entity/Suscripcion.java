@@ -11,9 +11,13 @@ import static org.hibernate.envers.RelationTargetAuditMode.NOT_AUDITED;
 /* Entidad Suscripcion
  *
  * Relaciona un Usuario con un Plan.
- * Guarda estado, fechas y permite auditar cambios con Envers. */
+ * Guarda estado, fechas y permite auditar cambios con Envers.
+ * Cada revisión lleva además una marca por campo (columnas *_mod de suscripciones_aud) que
+ * dice qué cambió; las relaciones la piden aparte porque no son auditadas.
+ * fechaModificacion es la columna por la que se particiona suscripciones_aud (V8): va en cada
+ * revisión sin marca propia, y el historial filtra por ella para leer solo los meses del rango. */
 
-@Audited
+@Audited(withModifiedFlag = true)
 @Entity
 @Table(name = "suscripciones")
 public class Suscripcion {
@@ -23,17 +27,18 @@ public class Suscripcion {
     // =========================================================
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "suscripciones_seq")
+    @SequenceGenerator(name = "suscripciones_seq", sequenceName = "suscripciones_seq", allocationSize = 50)
     private Long id;
 
     @OneToOne(optional = false)
     @JoinColumn(name = "usuario_id", nullable = false, unique = true)
-    @Audited(targetAuditMode = NOT_AUDITED)
+    @Audited(targetAuditMode = NOT_AUDITED, withModifiedFlag = true)
     private Usuario usuario;
 
     @ManyToOne(optional = false)
     @JoinColumn(name = "plan_id", nullable = false)
-    @Audited(targetAuditMode = NOT_AUDITED)
+    @Audited(targetAuditMode = NOT_AUDITED, withModifiedFlag = true)
     private Plan plan;
 
     @Enumerated(EnumType.STRING)
@@ -49,6 +54,10 @@ public class Suscripcion {
     @Column(name = "fecha_cancelacion")
     private LocalDateTime fechaCancelacion;
 
+    @Column(name = "fecha_modificacion", nullable = false)
+    @Audited(withModifiedFlag = false)
+    private LocalDateTime fechaModificacion;
+
     // =========================================================
     // CONSTRUCTORES
     // =========================================================
@@ -65,6 +74,18 @@ public class Suscripcion {
         this.fechaFinCiclo = this.fechaInicio.plusDays(30); // Simplificación mensual
     }
 
+    // =========================================================
+    // FECHA DE MODIFICACIÓN
+    // =========================================================
+
+    // En el flush, por cualquier camino que se guarde: la revisión de Envers la recoge
+    // y cae en la partición del mes en curso.
+    @PrePersist
+    @PreUpdate
+    void marcarModificacion() {
+        this.fechaModificacion = LocalDateTime.now();
+    }
+
     // =========================================================
     // GETTERS
     // =========================================================
@@ -97,6 +118,10 @@ public class Suscripcion {
         return fechaCancelacion;
     }
 
+    public LocalDateTime getFechaModificacion() {
+        return fechaModificacion;
+    }
+
     // =========================================================
     // MODIFICADORES DE ESTADO
     // =========================================================
@@ -2,14 +2,19 @@ package com.proyectospringboot.proyectosaas.domain.entity;
 
 import com.proyectospringboot.proyectosaas.domain.enums.RolUsuario;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import java.time.LocalDateTime;
 
 /* Usuario:
  * Representa a un usuario registrado en la plataforma.
- * Contiene datos básicos y se relaciona con Perfil y Suscripción. */
+ * Contiene datos básicos y se relaciona con Perfil y Suscripción.
+ * Va en la caché de segundo nivel (lectura/escritura): se lee en casi todas las peticiones
+ * y se escribe poco (registro, método de pago, pago automático). */
 
 @Entity
 @Table(name = "usuarios")
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "usuarios")
 public class Usuario {
 
     // =========================================================
@@ -42,8 +47,9 @@ public class Usuario {
     @Column(name = "fecha_alta", nullable = false)
     private LocalDateTime fechaAlta;
 
-    @OneToOne(mappedBy = "usuario")
-    private Perfil perfil;
+    // El perfil no se mapea desde aquí: un @OneToOne(mappedBy) no puede ser perezoso y hacía
+    // una consulta a perfiles en cada carga de Usuario, también al sacarlo de la caché.
+    // Quien lo necesite lo busca por usuario (PerfilRepository o JOIN Perfil ... ON).
 
     // =========================================================
     // CONSTRUCTORES
@@ -81,10 +87,6 @@ public class Usuario {
         return fechaAlta;
     }
 
-    public Perfil getPerfil() {
-        return perfil;
-    }
-
     public String getPassword() {
         return password;
     }
@@ -0,0 +1,14 @@
+package com.proyectospringboot.proyectosaas.domain.enums;
+
+/* EstadoEjecucion:
+ * Estado de una ejecución del proceso nocturno de renovación
+ * (y de las migraciones de datos en segundo plano, ver MigracionDatos).
+ * Una ejecución que se queda EN_CURSO (JVM caída, parada a mitad...)
+ * se reanuda en la siguiente pasada desde su último id procesado. */
+
+public enum EstadoEjecucion {
+
+    EN_CURSO,
+    COMPLETADA
+
+}
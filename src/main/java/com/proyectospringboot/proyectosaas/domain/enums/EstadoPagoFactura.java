@@ -0,0 +1,12 @@
+package com.proyectospringboot.proyectosaas.domain.enums;
+
+/* EstadoPagoFactura:
+ * Si una factura está cobrada o no. Se guarda en la propia factura al registrar el
+ * Pago, así que para saberlo no hace falta mirar la tabla de pagos. */
+
+public enum EstadoPagoFactura {
+
+    PENDIENTE,
+    PAGADA
+
+}
@@ -0,0 +1,9 @@
+package com.proyectospringboot.proyectosaas.domain.event;
+
+/* FacturacionModificadaEvent:
+ * Se publica cuando cambia lo que un usuario ve de su facturación: se le genera una
+ * factura, se registra un pago o se le cancela la suscripción por impago.
+ * Lo que afecta a la renovación (plan, pago automático) va en SuscripcionModificadaEvent. */
+
+public record FacturacionModificadaEvent(Long usuarioId) {
+}
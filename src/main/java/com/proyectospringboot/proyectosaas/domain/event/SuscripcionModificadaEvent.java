@@ -0,0 +1,10 @@
+package com.proyectospringboot.proyectosaas.domain.event;
+
+/* SuscripcionModificadaEvent:
+ * Se publica cuando cambia algo de la suscripción de un usuario que afecta a cuándo
+ * (o si) hay que renovarla: alta, cambio de plan o activar/desactivar el pago automático.
+ * Va por usuario porque cada usuario tiene una única suscripción y el pago automático
+ * se guarda en Usuario. */
+
+public record SuscripcionModificadaEvent(Long usuarioId) {
+}
@@ -0,0 +1,104 @@
+package com.proyectospringboot.proyectosaas.domain.valor;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/* Dinero:
+ * Importe en céntimos (long) para los cálculos de facturación.
+ * Antes cada factura creaba varios BigDecimal intermedios (base * tipo, setScale,
+ * factor de prorrateo...). Con céntimos todo es aritmética de long y solo se pasa a
+ * BigDecimal al guardar (constructor de Factura que recibe Dinero).
+ *
+ * El redondeo es el mismo que setScale(2, RoundingMode.HALF_UP): el .5 se aleja del cero.
+ * - Tipos de impuesto en millonésimas (0.21 -> 210_000).
+ * - Factor de prorrateo en diezmilésimas, como el divide(..., 4, HALF_UP) de antes.
+ * Así el resultado es exactamente el mismo que con BigDecimal (ver DineroTest).
+ *
+ * Ojo: es un record, así que cada mas/menos/porTipo/porFactor crea un Dinero nuevo (16 bytes,
+ * sin más objetos dentro). Lo que se quitó fueron los BigDecimal con su BigInteger y su escala,
+ * no todas las reservas. En la renovación (FacturaService.renovarYPagarAuto) son dos por factura
+ * (impuesto y total; la base la guarda el Plan), frente a la propia Factura, su Pago y los tres
+ * BigDecimal que se guardan. Como no pasan del constructor de Factura, el JIT puede quitarlas
+ * (escape analysis), pero no está garantizado. Si algún día pesaran, esa cuenta se puede hacer
+ * con los long de centimos() y envolver solo al final. */
+
+public record Dinero(long centimos) implements Comparable<Dinero> {
+
+    public static final Dinero CERO = new Dinero(0);
+
+    public static final long MILLONESIMAS = 1_000_000L;
+    public static final long DIEZMILESIMAS = 10_000L;
+
+    // =========================================================
+    // CONVERSIÓN (frontera con JPA)
+    // =========================================================
+
+    // Los importes guardados tienen 2 decimales; si llega uno con más es un error de datos
+    public static Dinero de(BigDecimal importe) {
+        try {
+            return new Dinero(importe.setScale(2, RoundingMode.UNNECESSARY).unscaledValue().longValueExact());
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Importe no representable en céntimos: " + importe, e);
+        }
+    }
+
+    public static Dinero deCentimos(long centimos) {
+        return new Dinero(centimos);
+    }
+
+    public BigDecimal aBigDecimal() {
+        return BigDecimal.valueOf(centimos, 2);
+    }
+
+    // =========================================================
+    // OPERACIONES
+    // =========================================================
+
+    public Dinero mas(Dinero otro) {
+        return new Dinero(Math.addExact(centimos, otro.centimos));
+    }
+
+    public Dinero menos(Dinero otro) {
+        return new Dinero(Math.subtractExact(centimos, otro.centimos));
+    }
+
+    // importe * tipo, con el tipo en millonésimas (impuestos)
+    public Dinero porTipo(long tipoMillonesimas) {
+        return new Dinero(dividirRedondeando(Math.multiplyExact(centimos, tipoMillonesimas), MILLONESIMAS));
+    }
+
+    // importe * factor, con el factor en diezmilésimas (prorrateo)
+    public Dinero porFactor(long factorDiezmilesimas) {
+        return new Dinero(dividirRedondeando(Math.multiplyExact(centimos, factorDiezmilesimas), DIEZMILESIMAS));
+    }
+
+    // numerador / denominador redondeado a 4 decimales, en diezmilésimas
+    public static long factor(long numerador, long denominador) {
+        return dividirRedondeando(Math.multiplyExact(numerador, DIEZMILESIMAS), denominador);
+    }
+
+    public boolean esPositivo() {
+        return centimos > 0;
+    }
+
+    @Override
+    public int compareTo(Dinero otro) {
+        return Long.compare(centimos, otro.centimos);
+    }
+
+    @Override
+    public String toString() {
+        return aBigDecimal().toPlainString();
+    }
+
+    // División entera con HALF_UP (denominador > 0)
+    static long dividirRedondeando(long numerador, long denominador) {
+        long cociente = numerador / denominador;
+        long resto = numerador % denominador;
+
+        if (Math.abs(resto) * 2 >= denominador) {
+            cociente += Long.signum(numerador);
+        }
+        return cociente;
+    }
+}
@@ -0,0 +1,72 @@
+package com.proyectospringboot.proyectosaas.repository;
+
+import com.proyectospringboot.proyectosaas.domain.entity.EjecucionRenovacion;
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoEjecucion;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/* EjecucionRenovacionRepository:
+ * Diario de ejecuciones del proceso nocturno de renovación.
+ * Las actualizaciones de progreso son UPDATE directos: se lanzan en cada lote
+ * y no queremos cargar la entidad para cambiar cuatro números. */
+
+public interface EjecucionRenovacionRepository extends JpaRepository<EjecucionRenovacion, Long> {
+
+    // =========================
+    // REANUDACIÓN
+    // =========================
+
+    // Ejecuciones a medias que podemos retomar: las de este nodo, o las de un nodo
+    // que lleva tiempo sin dar señales de vida (latido anterior a inactivaDesde).
+    @Query("SELECT e FROM EjecucionRenovacion e WHERE e.estado = :estado " +
+            "AND (e.nodo = :nodo OR e.ultimaActualizacion < :inactivaDesde) ORDER BY e.id")
+    List<EjecucionRenovacion> buscarReanudables(@Param("estado") EstadoEjecucion estado,
+                                                @Param("nodo") String nodo,
+                                                @Param("inactivaDesde") LocalDateTime inactivaDesde,
+                                                Limit limite);
+
+    // Nos quedamos con la ejecución solo si nadie la ha tocado desde que la leímos.
+    // Si dos nodos intentan adoptar la misma, solo a uno le devuelve 1.
+    @Modifying
+    @Query("UPDATE EjecucionRenovacion e SET e.nodo = :nodo, e.ultimaActualizacion = :ahora, " +
+            "e.reanudaciones = e.reanudaciones + 1 " +
+            "WHERE e.id = :id AND e.estado = :estado AND e.ultimaActualizacion = :vista")
+    int adoptar(@Param("id") Long id,
+                @Param("estado") EstadoEjecucion estado,
+                @Param("vista") LocalDateTime vista,
+                @Param("nodo") String nodo,
+                @Param("ahora") LocalDateTime ahora);
+
+    // =========================
+    // PROGRESO
+    // =========================
+
+    @Modifying
+    @Query("UPDATE EjecucionRenovacion e SET e.ultimoIdProcesado = :ultimoId, e.renovadas = :renovadas, " +
+            "e.fallidas = :fallidas, e.ultimaActualizacion = :ahora WHERE e.id = :id")
+    int registrarProgreso(@Param("id") Long id,
+                          @Param("ultimoId") long ultimoId,
+                          @Param("renovadas") int renovadas,
+                          @Param("fallidas") int fallidas,
+                          @Param("ahora") LocalDateTime ahora);
+
+    // Solo el latido, para las fases que no mueven la marca de agua (cancelación por impago)
+    @Modifying
+    @Query("UPDATE EjecucionRenovacion e SET e.ultimaActualizacion = :ahora WHERE e.id = :id")
+    int registrarLatido(@Param("id") Long id, @Param("ahora") LocalDateTime ahora);
+
+    // =========================
+    // CONSULTAS DEL PANEL
+    // =========================
+
+    List<EjecucionRenovacion> findByEstadoOrderByIdAsc(EstadoEjecucion estado);
+
+    Optional<EjecucionRenovacion> findFirstByEstadoOrderByIdDesc(EstadoEjecucion estado);
+}
@@ -0,0 +1,77 @@
+package com.proyectospringboot.proyectosaas.repository;
+
+import com.proyectospringboot.proyectosaas.domain.entity.Factura;
+import com.proyectospringboot.proyectosaas.domain.entity.Suscripcion;
+import com.proyectospringboot.proyectosaas.domain.entity.Usuario;
+import jakarta.persistence.criteria.Join;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/* FacturaEspecificaciones:
+ * Condiciones de los listados de facturas (/facturas y /mis-facturas) como Specifications.
+ *
+ * Antes cada filtro opcional iba en el JPQL como f.fecha >= COALESCE(:fechaInicio, f.fecha):
+ * el planificador no sabe de antemano qué filtros vienen y acaba recorriendo todas las
+ * facturas del cliente. Aquí solo se añade la condición de los filtros que llegan, así que
+ * la consulta queda como rangos simples sobre (suscripcion_id, fecha) o (suscripcion_id, total),
+ * que son los índices de facturas (migración V2__indices_rendimiento.sql). */
+
+public final class FacturaEspecificaciones {
+
+    private FacturaEspecificaciones() {
+    }
+
+    // Filtros del buscador; los que lleguen a null no generan condición
+    public static Specification<Factura> conFiltros(String email,
+            LocalDateTime fechaInicio,
+            LocalDateTime fechaFin,
+            BigDecimal totalMin,
+            BigDecimal totalMax) {
+
+        List<Specification<Factura>> condiciones = new ArrayList<>();
+        condiciones.add(deEmail(email));
+
+        if (fechaInicio != null) {
+            condiciones.add((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("fecha"), fechaInicio));
+        }
+        if (fechaFin != null) {
+            condiciones.add((root, query, cb) -> cb.lessThanOrEqualTo(root.get("fecha"), fechaFin));
+        }
+        if (totalMin != null) {
+            condiciones.add((root, query, cb) -> cb.greaterThanOrEqualTo(root.get("total"), totalMin));
+        }
+        if (totalMax != null) {
+            condiciones.add((root, query, cb) -> cb.lessThanOrEqualTo(root.get("total"), totalMax));
+        }
+
+        return Specification.allOf(condiciones);
+    }
+
+    public static Specification<Factura> deEmail(String email) {
+        return (root, query, cb) -> {
+            Join<Factura, Suscripcion> suscripcion = root.join("suscripcion");
+            Join<Suscripcion, Usuario> usuario = suscripcion.join("usuario");
+            return cb.equal(usuario.get("email"), email);
+        };
+    }
+
+    // Sin las de 0€, que solo sirven de apoyo para pruebas de pago
+    public static Specification<Factura> conImporte() {
+        return (root, query, cb) -> cb.greaterThan(root.get("total"), BigDecimal.ZERO);
+    }
+
+    // Keyset descendente: estrictamente detrás de (fecha, id).
+    // La condición fecha <= cursor sobra lógicamente, pero es la que deja al índice
+    // acotar el rango (el OR de la segunda no lo aprovecha).
+    public static Specification<Factura> despuesDe(LocalDateTime fecha, Long id) {
+        return (root, query, cb) -> cb.and(
+                cb.lessThanOrEqualTo(root.get("fecha"), fecha),
+                cb.or(
+                        cb.lessThan(root.get("fecha"), fecha),
+                        cb.and(cb.equal(root.get("fecha"), fecha), cb.lessThan(root.get("id"), id))));
+    }
+}
@@ -1,8 +1,17 @@
 package com.proyectospringboot.proyectosaas.repository;
 
 import com.proyectospringboot.proyectosaas.domain.entity.Factura;
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoPagoFactura;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import java.math.BigDecimal;
@@ -13,7 +22,9 @@ import java.util.List;
  * Consultas de facturas para el Dashboard.
  * Usamos JPQL corto para evitar nombres kilométricos en los métodos. */
 
-public interface FacturaRepository extends JpaRepository<Factura, Long> {
+public interface FacturaRepository extends JpaRepository<Factura, Long>, JpaSpecificationExecutor<Factura> {
+
+        Sort ORDEN_LISTADO = Sort.by(Sort.Direction.DESC, "fecha", "id");
 
         // Devuelve las facturas de una suscripción ya ordenadas (la última será la primera de la lista).
         @Query("SELECT f FROM Factura f WHERE f.suscripcion.id = :suscripcionId ORDER BY f.fecha DESC")
@@ -22,18 +33,92 @@ public interface FacturaRepository extends JpaRepository<Factura, Long> {
         @Query("SELECT f FROM Factura f WHERE f.suscripcion.usuario.email = :email ORDER BY f.fecha DESC")
         List<Factura> buscarPorEmail(@Param("email") String email);
 
-        @Query("SELECT f FROM Factura f JOIN f.suscripcion s JOIN s.usuario u " +
-                "WHERE u.email = :email " +
-                "AND f.fecha >= COALESCE(:fechaInicio, f.fecha) " +
-                "AND f.fecha <= COALESCE(:fechaFin, f.fecha) " +
-                "AND f.total >= COALESCE(:totalMin, f.total) " +
-                "AND f.total <= COALESCE(:totalMax, f.total) " +
-                "ORDER BY f.fecha DESC")
-        List<Factura> buscarConFiltros(
-                @Param("email") String email,
-                @Param("fechaInicio") LocalDateTime fechaInicio,
-                @Param("fechaFin") LocalDateTime fechaFin,
-                @Param("totalMin") BigDecimal totalMin,
-                @Param("totalMax") BigDecimal totalMax
-        );
+        // Listados paginados por keyset sobre (fecha, id), de la más reciente a la más antigua.
+        // Las condiciones (cliente, filtros y cursor) se montan en FacturaEspecificaciones con
+        // solo los filtros que lleguen; aquí se fija el orden y el tamaño de la página.
+        default List<Factura> buscarPagina(Specification<Factura> condiciones, int limite) {
+                return findBy(condiciones, consulta -> consulta.sortBy(ORDEN_LISTADO).limit(limite).all());
+        }
+
+        // =========================
+        // ESTADO DE PAGO
+        // =========================
+
+        // Pendientes de un cliente, la más reciente primero. El estado va escrito en la consulta
+        // (no como parámetro) para que PostgreSQL pueda usar el índice parcial idx_facturas_pendientes.
+        // Las anteriores a la V3 que RellenoEstadoPagoService aún no ha calculado (estado a null)
+        // se deciden mirando si tienen pago; cuando termina el relleno esa rama no encuentra nada.
+        @Query("SELECT f FROM Factura f WHERE f.suscripcion.usuario.email = :email " +
+                        "AND (f.estadoPago = com.proyectospringboot.proyectosaas.domain.enums.EstadoPagoFactura.PENDIENTE " +
+                        "OR (f.estadoPago IS NULL AND NOT EXISTS (SELECT p FROM Pago p WHERE p.factura = f))) " +
+                        "ORDER BY f.fecha DESC, f.id DESC")
+        List<Factura> buscarPendientes(@Param("email") String email, Limit limite);
+
+        @Query("SELECT CASE WHEN COUNT(f) > 0 THEN true ELSE false END FROM Factura f " +
+                        "WHERE f.suscripcion.usuario.email = :email")
+        boolean tieneFacturas(@Param("email") String email);
+
+        // Facturas de un concepto emitidas desde una fecha (p.ej. la renovación de esta pasada)
+        @Query("SELECT CASE WHEN COUNT(f) > 0 THEN true ELSE false END FROM Factura f " +
+                        "WHERE f.suscripcion.id = :suscripcionId AND f.concepto = :concepto AND f.fecha >= :desde")
+        boolean existeDesde(@Param("suscripcionId") Long suscripcionId,
+                        @Param("concepto") String concepto,
+                        @Param("desde") LocalDateTime desde);
+
+        // Con el estado sin calcular (anterior a la V3), lo decide el pago
+        @Query("SELECT COALESCE(f.estadoPago, CASE WHEN EXISTS (SELECT p FROM Pago p WHERE p.factura = f) " +
+                        "THEN com.proyectospringboot.proyectosaas.domain.enums.EstadoPagoFactura.PAGADA " +
+                        "ELSE com.proyectospringboot.proyectosaas.domain.enums.EstadoPagoFactura.PENDIENTE END) " +
+                        "FROM Factura f WHERE f.id = :id")
+        EstadoPagoFactura buscarEstadoPago(@Param("id") Long id);
+
+        // Relleno del estado en facturas anteriores a la V3: calcula un lote de las que aún
+        // están a null mirando si tienen pago (índice único de pagos.factura_id).
+        @Modifying
+        @Query(value = "UPDATE facturas f SET " +
+                        "estado_pago = CASE WHEN EXISTS (SELECT 1 FROM pagos p WHERE p.factura_id = f.id) " +
+                        "THEN 'PAGADA' ELSE 'PENDIENTE' END, " +
+                        "pagada_en = (SELECT p.fecha FROM pagos p WHERE p.factura_id = f.id) " +
+                        "WHERE f.id IN (SELECT s.id FROM facturas s WHERE s.estado_pago IS NULL " +
+                        "ORDER BY s.id LIMIT :lote)", nativeQuery = true)
+        int rellenarEstadoPago(@Param("lote") int lote);
+
+        // =========================
+        // MIGRACIÓN DE IMPUESTOS (facturas antiguas con impuesto = 0)
+        // =========================
+
+        // Último id del siguiente lote de facturas sin impuesto por encima de la marca de agua
+        // (índice parcial idx_facturas_sin_impuesto); null si ya no queda ninguna.
+        @Query(value = "SELECT MAX(t.id) FROM (SELECT f.id FROM facturas f WHERE f.impuesto = 0 " +
+                        "AND f.id > :desde ORDER BY f.id LIMIT :lote) t", nativeQuery = true)
+        Long buscarFinLoteSinImpuesto(@Param("desde") long desde, @Param("lote") int lote);
+
+        // Clientes (y su país, tal cual se registró) con facturas sin impuesto en el lote
+        @Query("SELECT DISTINCT u.id, u.pais FROM Factura f JOIN f.suscripcion s JOIN s.usuario u " +
+                        "WHERE f.impuesto = 0 AND f.id > :desde AND f.id <= :hasta")
+        List<ClienteSinImpuesto> buscarClientesSinImpuesto(@Param("desde") long desde, @Param("hasta") long hasta);
+
+        record ClienteSinImpuesto(Long usuarioId, String pais) {
+        }
+
+        // Aplica el tipo de un país a las facturas sin impuesto del lote, en una sola sentencia.
+        // ROUND de PostgreSQL redondea la mitad hacia arriba, como TaxRateResolver (HALF_UP).
+        // Las que con el tipo siguen dando 0 (importes de céntimos) se dejan como están.
+        // native.spaces: así Hibernate sabe que solo toca facturas y no vacía toda la caché
+        // de segundo nivel en cada lote.
+        @Modifying
+        @Query(value = "UPDATE facturas f SET impuesto = ROUND(f.importe * :tipo, 2), " +
+                        "total = f.importe + ROUND(f.importe * :tipo, 2) " +
+                        "FROM suscripciones s JOIN usuarios u ON u.id = s.usuario_id " +
+                        "WHERE s.id = f.suscripcion_id AND u.pais = :pais " +
+                        "AND f.impuesto = 0 AND f.id > :desde AND f.id <= :hasta " +
+                        "AND ROUND(f.importe * :tipo, 2) > 0", nativeQuery = true)
+        @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "facturas"))
+        int aplicarImpuesto(@Param("pais") String pais,
+                            @Param("tipo") BigDecimal tipo,
+                            @Param("desde") long desde,
+                            @Param("hasta") long hasta);
+
+        @Query(value = "SELECT COUNT(*) FROM facturas f WHERE f.impuesto = 0 AND f.id > :desde", nativeQuery = true)
+        long contarSinImpuestoDesde(@Param("desde") long desde);
 }
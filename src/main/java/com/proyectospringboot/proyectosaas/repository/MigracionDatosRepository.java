@@ -0,0 +1,52 @@
+package com.proyectospringboot.proyectosaas.repository;
+
+import com.proyectospringboot.proyectosaas.domain.entity.MigracionDatos;
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoEjecucion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+
+/* MigracionDatosRepository:
+ * Diario de las migraciones de datos en segundo plano.
+ * Como en EjecucionRenovacionRepository, todo son UPDATE directos: el que devuelva 1
+ * es el que lleva la migración, así que dos réplicas nunca la corren a la vez. */
+
+public interface MigracionDatosRepository extends JpaRepository<MigracionDatos, String> {
+
+    // Nos quedamos con la migración si sigue EN_CURSO y no la lleva nadie, ya es nuestra,
+    // o su nodo lleva tiempo sin dar señales de vida (latido anterior a inactivaDesde).
+    // La primera vez que se reclama se apunta también el inicio.
+    @Modifying
+    @Query("UPDATE MigracionDatos m SET m.nodo = :nodo, m.ultimaActualizacion = :ahora, " +
+            "m.inicio = COALESCE(m.inicio, :ahora) " +
+            "WHERE m.nombre = :nombre AND m.estado = :estado " +
+            "AND (m.nodo IS NULL OR m.nodo = :nodo OR m.ultimaActualizacion < :inactivaDesde)")
+    int reclamar(@Param("nombre") String nombre,
+                 @Param("estado") EstadoEjecucion estado,
+                 @Param("nodo") String nodo,
+                 @Param("ahora") LocalDateTime ahora,
+                 @Param("inactivaDesde") LocalDateTime inactivaDesde);
+
+    // Va en la misma transacción que el lote: si otro nodo la ha adoptado devuelve 0
+    // y el lote se deshace entero.
+    @Modifying
+    @Query("UPDATE MigracionDatos m SET m.ultimoIdProcesado = :ultimoId, " +
+            "m.actualizadas = m.actualizadas + :actualizadas, m.ultimaActualizacion = :ahora " +
+            "WHERE m.nombre = :nombre AND m.nodo = :nodo")
+    int registrarProgreso(@Param("nombre") String nombre,
+                          @Param("nodo") String nodo,
+                          @Param("ultimoId") long ultimoId,
+                          @Param("actualizadas") long actualizadas,
+                          @Param("ahora") LocalDateTime ahora);
+
+    @Modifying
+    @Query("UPDATE MigracionDatos m SET m.estado = :estado, m.fin = :ahora, m.ultimaActualizacion = :ahora " +
+            "WHERE m.nombre = :nombre AND m.nodo = :nodo")
+    int completar(@Param("nombre") String nombre,
+                  @Param("nodo") String nodo,
+                  @Param("estado") EstadoEjecucion estado,
+                  @Param("ahora") LocalDateTime ahora);
+}
@@ -2,10 +2,14 @@ package com.proyectospringboot.proyectosaas.repository;
 
 import com.proyectospringboot.proyectosaas.domain.entity.Suscripcion;
 import com.proyectospringboot.proyectosaas.domain.enums.EstadoSuscripcion;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -26,6 +30,35 @@ public interface SuscripcionRepository extends JpaRepository<Suscripcion, Long>
     @Query("SELECT s FROM Suscripcion s WHERE s.usuario.email = :email")
     Optional<Suscripcion> buscarPorEmail(@Param("email") String email);
 
+    // =========================
+    // PANEL DEL CLIENTE (/dashboard)
+    // =========================
+
+    // Lo que pinta el panel de la suscripción, el plan, el usuario y su perfil en una sola
+    // consulta y sin cargar entidades (el perfil es opcional, de ahí el LEFT JOIN).
+    @Query("SELECT s.id, s.estado, s.fechaFinCiclo, p.id, p.nombre, " +
+            "u.email, pf.nombre, pf.apellidos, u.metodoPagoPreferido, u.pagoAutomatico " +
+            "FROM Suscripcion s JOIN s.plan p JOIN s.usuario u LEFT JOIN Perfil pf ON pf.usuario = u " +
+            "WHERE u.email = :email")
+    Optional<ResumenPanel> buscarResumenPanel(@Param("email") String email);
+
+    record ResumenPanel(Long suscripcionId,
+                        EstadoSuscripcion estado,
+                        LocalDateTime fechaFinCiclo,
+                        Long planId,
+                        String planNombre,
+                        String email,
+                        String nombre,
+                        String apellidos,
+                        String metodoPagoPreferido,
+                        boolean pagoAutomatico) {
+
+        // Nombre y apellidos si tiene perfil; si no, el email
+        public String nombreMostrado() {
+            return nombre != null ? nombre + " " + apellidos : email;
+        }
+    }
+
     // =========================
     // RENOVACIONES
     // =========================
@@ -33,4 +66,142 @@ public interface SuscripcionRepository extends JpaRepository<Suscripcion, Long>
     @Query("SELECT s FROM Suscripcion s WHERE s.estado = :estado AND s.fechaFinCiclo < :ahora")
     List<Suscripcion> buscarVencidas(@Param("estado") EstadoSuscripcion estado,
                                      @Param("ahora") LocalDateTime ahora);
+
+    // Recorrido por keyset (id > ultimoId) para la renovación por lotes.
+    // Solo devolvemos ids, así no cargamos entidades que todavía no vamos a procesar.
+    @Query("SELECT s.id FROM Suscripcion s WHERE s.estado = :estado AND s.fechaFinCiclo < :ahora " +
+            "AND s.usuario.pagoAutomatico = true AND s.id > :ultimoId ORDER BY s.id")
+    List<Long> buscarIdsVencidasConPagoAuto(@Param("estado") EstadoSuscripcion estado,
+                                            @Param("ahora") LocalDateTime ahora,
+                                            @Param("ultimoId") Long ultimoId,
+                                            Limit limite);
+
+    // Cuántas quedan por delante de la marca de agua (para ver el progreso de la ejecución en curso)
+    @Query("SELECT COUNT(s) FROM Suscripcion s WHERE s.estado = :estado AND s.fechaFinCiclo < :ahora " +
+            "AND s.usuario.pagoAutomatico = true AND s.id > :ultimoId")
+    long contarVencidasConPagoAuto(@Param("estado") EstadoSuscripcion estado,
+                                   @Param("ahora") LocalDateTime ahora,
+                                   @Param("ultimoId") Long ultimoId);
+
+    // Vuelve a comprobar que siguen vencidas (la cola de la renovación continua puede ir por detrás de la BD)
+    @Query("SELECT s.id FROM Suscripcion s WHERE s.id IN :ids AND s.estado = :estado AND s.fechaFinCiclo < :ahora " +
+            "AND s.usuario.pagoAutomatico = true ORDER BY s.id")
+    List<Long> filtrarVencidasConPagoAuto(@Param("ids") List<Long> ids,
+                                          @Param("estado") EstadoSuscripcion estado,
+                                          @Param("ahora") LocalDateTime ahora);
+
+    // Carga un lote completo con usuario y plan en una sola consulta (sin N+1).
+    @Query("SELECT s FROM Suscripcion s JOIN FETCH s.usuario JOIN FETCH s.plan WHERE s.id IN :ids ORDER BY s.id")
+    List<Suscripcion> buscarPorIdsConUsuarioYPlan(@Param("ids") List<Long> ids);
+
+    // =========================
+    // RENOVACIÓN CONTINUA
+    // =========================
+
+    // Próximos vencimientos hasta "hasta", por keyset sobre (fechaFinCiclo, id).
+    // Solo id y fecha: es lo único que guarda la cola en memoria.
+    @Query("SELECT s.id, s.fechaFinCiclo FROM Suscripcion s WHERE s.estado = :estado " +
+            "AND s.usuario.pagoAutomatico = true AND s.fechaFinCiclo < :hasta " +
+            "AND (s.fechaFinCiclo > :desdeFecha OR (s.fechaFinCiclo = :desdeFecha AND s.id > :desdeId)) " +
+            "ORDER BY s.fechaFinCiclo, s.id")
+    List<Vencimiento> buscarProximosVencimientos(@Param("estado") EstadoSuscripcion estado,
+                                                 @Param("desdeFecha") LocalDateTime desdeFecha,
+                                                 @Param("desdeId") Long desdeId,
+                                                 @Param("hasta") LocalDateTime hasta,
+                                                 Limit limite);
+
+    // Vencimiento actual de la suscripción de un usuario, si es renovable (activa y con pago automático)
+    @Query("SELECT s.id, s.fechaFinCiclo FROM Suscripcion s WHERE s.usuario.id = :usuarioId " +
+            "AND s.estado = :estado AND s.usuario.pagoAutomatico = true")
+    Optional<Vencimiento> buscarVencimientoRenovable(@Param("usuarioId") Long usuarioId,
+                                                     @Param("estado") EstadoSuscripcion estado);
+
+    @Query("SELECT s.id FROM Suscripcion s WHERE s.usuario.id = :usuarioId")
+    Optional<Long> buscarIdPorUsuarioId(@Param("usuarioId") Long usuarioId);
+
+    record Vencimiento(Long id, LocalDateTime fechaFinCiclo) {
+    }
+
+    // =========================
+    // PREVISIÓN (sin cargar entidades)
+    // =========================
+
+    // Vencimientos con pago automático agrupados por día, precio del plan y país
+    // (el país decide el impuesto). Solo agregados: nada de entidades en memoria.
+    @Query("SELECT cast(s.fechaFinCiclo as LocalDate), p.precioMensual, u.pais, COUNT(s) " +
+            "FROM Suscripcion s JOIN s.plan p JOIN s.usuario u " +
+            "WHERE s.estado = :estado AND u.pagoAutomatico = true AND s.fechaFinCiclo < :hasta " +
+            "GROUP BY cast(s.fechaFinCiclo as LocalDate), p.precioMensual, u.pais")
+    List<VencimientosAgrupados> agruparVencimientos(@Param("estado") EstadoSuscripcion estado,
+                                                    @Param("hasta") LocalDateTime hasta);
+
+    record VencimientosAgrupados(LocalDate dia, BigDecimal precio, String pais, Long cuantas) {
+    }
+
+    // =========================
+    // CANCELACIÓN POR IMPAGO
+    // =========================
+
+    // Vencidas antes del límite que además tienen alguna factura sin pago (keyset por id).
+    // Sustituye al bucle que hacía un COUNT por suscripción para saber si había deuda.
+    // La deuda se mira en el estado de la factura (índice parcial idx_facturas_pendientes).
+    // Una factura anterior a la V3 aún sin calcular (estado a null) es deuda si no tiene pago:
+    // así no se libra de la cancelación mientras RellenoEstadoPagoService no ha pasado por ella.
+    @Query("SELECT s FROM Suscripcion s JOIN FETCH s.usuario JOIN FETCH s.plan " +
+            "WHERE s.estado = :estado AND s.fechaFinCiclo < :limite AND s.id > :ultimoId " +
+            "AND EXISTS (SELECT f FROM Factura f WHERE f.suscripcion = s " +
+            "AND (f.estadoPago = com.proyectospringboot.proyectosaas.domain.enums.EstadoPagoFactura.PENDIENTE " +
+            "OR (f.estadoPago IS NULL AND NOT EXISTS (SELECT p FROM Pago p WHERE p.factura = f)))) " +
+            "ORDER BY s.id")
+    List<Suscripcion> buscarImpagadasParaCancelar(@Param("estado") EstadoSuscripcion estado,
+                                                  @Param("limite") LocalDateTime limite,
+                                                  @Param("ultimoId") Long ultimoId,
+                                                  Limit tamanoLote);
+
+    // =========================
+    // REPARTO ENTRE NODOS (lease)
+    // =========================
+
+    // Igual que buscarIdsVencidasConPagoAuto, pero bloqueando las filas y saltando las que
+    // otro nodo ya tiene bloqueadas o con lease vigente. Va en SQL nativo por el SKIP LOCKED.
+    @Query(value = "SELECT s.id FROM suscripciones s " +
+            "WHERE s.estado = 'ACTIVA' AND s.fecha_fin_ciclo < :ahora AND s.id > :ultimoId " +
+            "AND (s.renovacion_lease_hasta IS NULL OR s.renovacion_lease_hasta < :instante) " +
+            "AND s.usuario_id IN (SELECT u.id FROM usuarios u WHERE u.pago_automatico = true) " +
+            "ORDER BY s.id LIMIT :limite FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> bloquearVencidasLibres(@Param("ahora") LocalDateTime ahora,
+                                      @Param("ultimoId") Long ultimoId,
+                                      @Param("instante") LocalDateTime instante,
+                                      @Param("limite") int limite);
+
+    // Como bloquearVencidasLibres, pero solo entre los ids que ya sacó la renovación continua
+    @Query(value = "SELECT s.id FROM suscripciones s " +
+            "WHERE s.id IN (:ids) AND s.estado = 'ACTIVA' AND s.fecha_fin_ciclo < :ahora " +
+            "AND (s.renovacion_lease_hasta IS NULL OR s.renovacion_lease_hasta < :instante) " +
+            "AND s.usuario_id IN (SELECT u.id FROM usuarios u WHERE u.pago_automatico = true) " +
+            "ORDER BY s.id FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> bloquearVencidasLibresPorIds(@Param("ids") List<Long> ids,
+                                            @Param("ahora") LocalDateTime ahora,
+                                            @Param("instante") LocalDateTime instante);
+
+    @Modifying
+    @Query(value = "UPDATE suscripciones SET renovacion_nodo = :nodo, renovacion_lease_hasta = :hasta " +
+            "WHERE id IN (:ids)", nativeQuery = true)
+    int asignarLease(@Param("ids") List<Long> ids,
+                     @Param("nodo") String nodo,
+                     @Param("hasta") LocalDateTime hasta);
+
+    // Lo que un nodo dejó con el lease ya caducado (al adoptar su ejecución). Los vigentes no se
+    // tocan: con el mismo nombre puede haber una pasada viva (p.ej. la continua de este nodo)
+    @Modifying
+    @Query(value = "UPDATE suscripciones SET renovacion_nodo = NULL, renovacion_lease_hasta = NULL " +
+            "WHERE renovacion_nodo = :nodo AND renovacion_lease_hasta < :instante", nativeQuery = true)
+    int liberarLeasesCaducados(@Param("nodo") String nodo, @Param("instante") LocalDateTime instante);
+
+    // Al acabar una pasada soltamos solo lo que reclamó ella (p.ej. las fallidas): en el mismo
+    // nodo puede haber otra pasada en marcha (la continua y la nocturna) con sus propios leases
+    @Modifying
+    @Query(value = "UPDATE suscripciones SET renovacion_nodo = NULL, renovacion_lease_hasta = NULL " +
+            "WHERE renovacion_nodo = :nodo AND id IN (:ids)", nativeQuery = true)
+    int liberarLeases(@Param("nodo") String nodo, @Param("ids") List<Long> ids);
 }
@@ -1,17 +1,36 @@
 package com.proyectospringboot.proyectosaas.repository;
 
+import com.proyectospringboot.proyectosaas.config.SegundoNivelCacheConfig;
 import com.proyectospringboot.proyectosaas.domain.entity.Usuario;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.util.Optional;
 
 /* UsuarioRepository:
  * Acceso a los usuarios del sistema.
- * Solo añadimos la búsqueda por email porque lo usamos en login / registro. */
+ * Solo añadimos la búsqueda por email porque lo usamos en login / registro.
+ * Las búsquedas por email van en la caché de consultas de Hibernate (región
+ * consultas.usuarios): guarda el id y el usuario sale de la caché de segundo nivel.
+ * Cualquier escritura en usuarios las invalida al confirmar. */
 
 public interface UsuarioRepository extends JpaRepository<Usuario, Long> {
 
     @org.springframework.data.jpa.repository.Query("SELECT u FROM Usuario u WHERE u.email = :email")
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = SegundoNivelCacheConfig.REGION_CONSULTAS_USUARIOS)
+    })
     Optional<Usuario> buscarPorEmail(@org.springframework.data.repository.query.Param("email") String email);
 
+    // Solo el id (la caché del panel va por id de usuario y el email no cambia)
+    @org.springframework.data.jpa.repository.Query("SELECT u.id FROM Usuario u WHERE u.email = :email")
+    @QueryHints({
+            @QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = AvailableHints.HINT_CACHE_REGION, value = SegundoNivelCacheConfig.REGION_CONSULTAS_USUARIOS)
+    })
+    Optional<Long> buscarIdPorEmail(@org.springframework.data.repository.query.Param("email") String email);
+
 }
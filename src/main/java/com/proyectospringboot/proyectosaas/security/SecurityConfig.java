@@ -2,8 +2,11 @@ package com.proyectospringboot.proyectosaas.security;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
@@ -12,7 +15,10 @@ import org.springframework.security.web.SecurityFilterChain;
  * Configuración de Spring Security.
  * - Define qué rutas son públicas y cuáles requieren autenticación.
  * - Configura el login y logout.
- * - Asigna roles a rutas específicas (USER, ADMIN). */
+ * - Asigna roles a rutas específicas (USER, ADMIN).
+ * - /actuator/** va en una cadena aparte con HTTP Basic y sin sesión: el scraper de Prometheus
+ *   no puede hacer login por formulario, así que entra con un usuario ADMIN (basic_auth).
+ *   Solo /actuator/health queda abierto. */
 
 @Configuration
 @EnableWebSecurity
@@ -24,6 +30,23 @@ public class SecurityConfig {
         this.successHandler = successHandler;
     }
 
+    // Monitorización: va antes que la cadena general
+    @Bean
+    @Order(1)
+    public SecurityFilterChain actuatorFilterChain(HttpSecurity http) throws Exception {
+        http
+                .securityMatcher("/actuator/**")
+                .authorizeHttpRequests(auth -> auth
+                        .requestMatchers("/actuator/health").permitAll()
+                        // Métricas (incluidas las de facturación): solo ADMIN
+                        .anyRequest().hasRole("ADMIN"))
+                .httpBasic(Customizer.withDefaults())
+                .sessionManagement(sesion -> sesion.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
+                .csrf(csrf -> csrf.disable());
+
+        return http.build();
+    }
+
     @Bean
     public SecurityFilterChain securityFilterChain(HttpSecurity http) throws Exception {
         http
@@ -1,91 +1,247 @@
 package com.proyectospringboot.proyectosaas.service;
 
 import com.proyectospringboot.proyectosaas.domain.entity.Suscripcion;
-import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import com.proyectospringboot.proyectosaas.repository.UsuarioRepository;
 import jakarta.persistence.EntityManager;
-import org.hibernate.envers.AuditReader;
+import jakarta.persistence.criteria.JoinType;
 import org.hibernate.envers.AuditReaderFactory;
+import org.hibernate.envers.RevisionType;
+import org.hibernate.envers.query.AuditEntity;
+import org.hibernate.envers.query.AuditQuery;
+import org.hibernate.envers.query.criteria.AuditCriterion;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.Function;
 
 /* AuditoriaService
  *
  * Semana 2 - usamos Envers para poder ver el historial de cambios.
- * Aquí montamos un listado “tipo timeline” con las revisiones de Suscripción. */
+ * Aquí montamos un listado “tipo timeline” con las revisiones de Suscripción:
+ * - Una sola consulta de Envers sobre suscripciones_aud, unida a revinfo (fecha de la revisión)
+ *   y a usuarios (email). Solo se piden las columnas del resumen (plan_id, estado,
+ *   fecha_fin_ciclo) y sus marcas de modificado; el nombre del plan sale de PlanCatalog.
+ * - El resumen cuenta solo lo que cambió en esa revisión (marcas *_mod de la V7), sin
+ *   reconstruir la revisión ni compararla con la anterior. Las revisiones anteriores a las
+ *   marcas se resumen con plan y estado, como siempre.
+ * - Va por páginas: keyset descendente sobre (fecha_modificacion, rev, id), así que cada
+ *   página lee su tamaño y poco más aunque la tabla crezca. La fecha va delante porque el
+ *   número de revisión no sigue el orden del tiempo con varias réplicas: revinfo_seq reparte
+ *   bloques de 50 números a cada nodo. rev e id solo deshacen empates.
+ *   Es la fecha de la propia fila de suscripciones_aud (se pone en el flush, justo antes que la
+ *   de la revisión que se muestra), no la de revinfo: así el orden lo dan los índices de la V10
+ *   sin unir revinfo antes de cortar la página.
+ * - suscripciones_aud y revinfo van particionadas por mes (V8): con filtro de fechas solo se
+ *   abren los meses del rango, y sin él, los que quedan en línea tras la retención.
+ * - Los filtros (fechas, email, plan) van dentro de la misma consulta. El email y el plan se
+ *   traducen antes a id (consulta cacheada y PlanCatalog) para filtrar por usuario_id / plan_id
+ *   (índices de la migración V10__indices_auditoria_por_fecha.sql, ya en el orden de la página). */
 
 @Service
 public class AuditoriaService {
 
+        public static final int TAMANO_PAGINA_DEFECTO = 50;
+        public static final int MAX_TAMANO_PAGINA = 200;
+
+        private static final DateTimeFormatter FORMATO_FECHA = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+
         private final EntityManager entityManager;
-        private final SuscripcionRepository suscripcionRepository;
+        private final UsuarioRepository usuarioRepository;
+        private final PlanCatalog planCatalog;
 
         public AuditoriaService(EntityManager entityManager,
-                                SuscripcionRepository suscripcionRepository) {
+                                UsuarioRepository usuarioRepository,
+                                PlanCatalog planCatalog) {
                 this.entityManager = entityManager;
-                this.suscripcionRepository = suscripcionRepository;
+                this.usuarioRepository = usuarioRepository;
+                this.planCatalog = planCatalog;
         }
 
         // =========================================================
         // HISTORIAL DE CAMBIOS (Envers)
         // =========================================================
 
+        // El cursor es la última revisión de la página anterior; null = primera página.
         @Transactional(readOnly = true)
-        public List<RevisionDTO> obtenerHistorialCambios() {
+        public PaginaRevisiones buscarPagina(FiltroAuditoria filtro, String cursor, int tamano) {
 
-                AuditReader auditReader = AuditReaderFactory.get(entityManager);
-                List<RevisionDTO> revisiones = new ArrayList<>();
+                CursorRevision desde = CursorRevision.leer(cursor);
+                int limite = acotarTamano(tamano);
 
-                // Recorremos suscripciones y sacamos sus revisiones.
-                List<Suscripcion> suscripciones = suscripcionRepository.findAll();
+                // selectEntitiesOnly = true: Envers solo permite unir relaciones así;
+                // las columnas de la revisión se siguen pudiendo proyectar.
+                AuditQuery consulta = AuditReaderFactory.get(entityManager).createQuery()
+                        .forRevisionsOfEntity(Suscripcion.class, true, true)
+                        .addProjection(AuditEntity.revisionNumber())
+                        .addProjection(AuditEntity.id())
+                        .addProjection(AuditEntity.revisionProperty("timestamp"))
+                        .addProjection(AuditEntity.revisionType())
+                        .addProjection(AuditEntity.property("plan_id"))
+                        .addProjection(AuditEntity.property("estado"))
+                        .addProjection(AuditEntity.property("fechaFinCiclo"))
+                        .addProjection(AuditEntity.property("plan_MOD"))
+                        .addProjection(AuditEntity.property("estado_MOD"))
+                        .addProjection(AuditEntity.property("fechaFinCiclo_MOD"))
+                        .addProjection(AuditEntity.property("fechaModificacion"));
 
-                for (Suscripcion suscripcion : suscripciones) {
+                if (!aplicarFiltros(consulta, filtro)) {
+                        return new PaginaRevisiones(List.of(), null);
+                }
 
-                        List<Number> revisionNumbers =
-                                auditReader.getRevisions(Suscripcion.class, suscripcion.getId());
+                if (desde != null) {
+                        // Estrictamente detrás de (fecha, rev, id). fecha <= cursor sobra lógicamente,
+                        // pero es la que deja al índice acotar el rango (el OR no lo aprovecha).
+                        consulta.add(AuditEntity.property("fechaModificacion").le(desde.fechaModificacion()))
+                                .add(AuditEntity.or(
+                                        AuditEntity.property("fechaModificacion").lt(desde.fechaModificacion()),
+                                        AuditEntity.and(
+                                                AuditEntity.property("fechaModificacion").eq(desde.fechaModificacion()),
+                                                AuditEntity.or(
+                                                        AuditEntity.revisionNumber().lt(desde.rev()),
+                                                        AuditEntity.and(
+                                                                AuditEntity.revisionNumber().eq(desde.rev()),
+                                                                idMenorQue(desde.id()))))));
+                }
 
-                        for (Number revNumber : revisionNumbers) {
+                consulta.traverseRelation("usuario", JoinType.LEFT, "u")
+                        .addProjection(AuditEntity.property("u", "email"))
+                        .up()
+                        // Más reciente primero
+                        .addOrder(AuditEntity.property("fechaModificacion").desc())
+                        .addOrder(AuditEntity.revisionNumber().desc())
+                        .addOrder(AuditEntity.id().desc())
+                        .setMaxResults(limite + 1);
 
-                                Suscripcion suscripcionEnRevision =
-                                        auditReader.find(Suscripcion.class, suscripcion.getId(), revNumber);
+                @SuppressWarnings("unchecked")
+                List<Object[]> filas = consulta.getResultList();
 
-                                LocalDateTime fechaRevision = LocalDateTime.ofInstant(
-                                        Instant.ofEpochMilli(auditReader.getRevisionDate(revNumber).getTime()),
-                                        ZoneId.systemDefault()
-                                );
+                return PaginaRevisiones.de(filas, limite, this::aRevision);
+        }
 
-                                String emailUsuario = (suscripcionEnRevision.getUsuario() != null)
-                                        ? suscripcionEnRevision.getUsuario().getEmail()
-                                        : "N/A";
+        // Añade a la consulta los filtros que lleguen; false si ya se sabe que no hay nada
+        // (email sin usuario), y así ni se consulta la auditoría
+        private boolean aplicarFiltros(AuditQuery consulta, FiltroAuditoria filtro) {
 
-                                String nombrePlan = (suscripcionEnRevision.getPlan() != null)
-                                        ? suscripcionEnRevision.getPlan().getNombre()
-                                        : "Plan desconocido";
+                if (filtro == null) {
+                        return true;
+                }
 
-                                String resumenCambio = "Plan: " + nombrePlan
-                                        + ", Estado: " + suscripcionEnRevision.getEstado();
+                // Además de la fecha de la revisión, la columna de partición de suscripciones_aud
+                // (V8): así solo se leen las particiones de esos meses. fechaModificacion se pone en
+                // el flush, un poco antes que la marca de la revisión; el margen de un día lo cubre.
+                if (filtro.desde() != null) {
+                        consulta.add(AuditEntity.revisionProperty("timestamp").ge(milisegundos(filtro.desde())));
+                        consulta.add(AuditEntity.property("fechaModificacion").ge(filtro.desde().minusDays(1)));
+                }
+                if (filtro.hasta() != null) {
+                        consulta.add(AuditEntity.revisionProperty("timestamp").le(milisegundos(filtro.hasta())));
+                        consulta.add(AuditEntity.property("fechaModificacion").le(filtro.hasta()));
+                }
 
-                                revisiones.add(new RevisionDTO(
-                                        fechaRevision,
-                                        "Suscripcion",
-                                        suscripcion.getId(),
-                                        emailUsuario,
-                                        resumenCambio
-                                ));
+                if (filtro.email() != null && !filtro.email().isBlank()) {
+                        Optional<Long> usuarioId = usuarioRepository.buscarIdPorEmail(filtro.email().trim());
+                        if (usuarioId.isEmpty()) {
+                                return false;
                         }
+                        consulta.add(AuditEntity.relatedId("usuario").eq(usuarioId.get()));
                 }
 
-                // Más reciente primero.
-                revisiones.sort((r1, r2) -> r2.fechaRevision().compareTo(r1.fechaRevision()));
+                if (filtro.plan() != null && !filtro.plan().isBlank()) {
+                        Long planId = planCatalog.porNombre(filtro.plan())
+                                .orElseThrow(() -> new IllegalArgumentException("Plan no válido: " + filtro.plan()))
+                                .id();
+                        consulta.add(AuditEntity.relatedId("plan").eq(planId));
+                }
+
+                return true;
+        }
 
-                return revisiones;
+        // AuditEntity.id() es de tipo crudo (AuditId sin parámetro)
+        @SuppressWarnings("unchecked")
+        private static AuditCriterion idMenorQue(Long id) {
+                return AuditEntity.id().lt(id);
         }
 
+        static int acotarTamano(int tamano) {
+                if (tamano <= 0) {
+                        return TAMANO_PAGINA_DEFECTO;
+                }
+                return Math.min(tamano, MAX_TAMANO_PAGINA);
+        }
+
+        private static long milisegundos(LocalDateTime fecha) {
+                return fecha.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        }
+
+        private RevisionDTO aRevision(Object[] fila) {
+
+                Long idSuscripcion = (Long) fila[1];
+                Number marcaTiempo = (Number) fila[2];
+                RevisionType tipo = (RevisionType) fila[3];
+                Long planId = (Long) fila[4];
+                String emailUsuario = (String) fila[11];
+
+                String nombrePlan = planId == null ? null : planCatalog.porId(planId)
+                        .map(PlanCatalog.PlanDisponible::nombre)
+                        .orElse(null);
+
+                LocalDateTime fechaRevision = LocalDateTime.ofInstant(
+                        Instant.ofEpochMilli(marcaTiempo.longValue()),
+                        ZoneId.systemDefault()
+                );
+
+                return new RevisionDTO(
+                        fechaRevision,
+                        "Suscripcion",
+                        idSuscripcion,
+                        emailUsuario != null ? emailUsuario : "N/A",
+                        resumir(tipo, nombrePlan, fila[5], (LocalDateTime) fila[6],
+                                (Boolean) fila[7], (Boolean) fila[8], (Boolean) fila[9])
+                );
+        }
+
+        // Alta: plan y estado de partida. Modificación: solo lo que tenga la marca de cambiado.
+        // Sin marcas (revisiones de antes de la V7): plan y estado, como se hacía siempre.
+        static String resumir(RevisionType tipo, String nombrePlan, Object estado, LocalDateTime finCiclo,
+                              Boolean planCambiado, Boolean estadoCambiado, Boolean finCicloCambiado) {
+
+                String plan = "Plan: " + (nombrePlan != null ? nombrePlan : "Plan desconocido");
+
+                if (tipo == RevisionType.DEL) {
+                        return "Baja";
+                }
+                if (planCambiado == null || estadoCambiado == null || finCicloCambiado == null) {
+                        return plan + ", Estado: " + estado;
+                }
+                if (tipo == RevisionType.ADD) {
+                        return "Alta. " + plan + ", Estado: " + estado;
+                }
+
+                List<String> cambios = new ArrayList<>();
+                if (planCambiado) {
+                        cambios.add(plan);
+                }
+                if (estadoCambiado) {
+                        cambios.add("Estado: " + estado);
+                }
+                if (finCicloCambiado) {
+                        cambios.add("Fin de ciclo: " + (finCiclo != null ? finCiclo.format(FORMATO_FECHA) : "-"));
+                }
+
+                return cambios.isEmpty() ? "Sin cambios de plan, estado ni ciclo" : String.join(", ", cambios);
+        }
+
+        // =========================================================
+        // MODELO
+        // =========================================================
+
         public record RevisionDTO(
                 LocalDateTime fechaRevision,
                 String entidad,
@@ -93,4 +249,57 @@ public class AuditoriaService {
                 String emailUsuario,
                 String resumenCambio) {
         }
+
+        // Filtros del panel; los que lleguen a null (o en blanco) no generan condición.
+        // El plan va por nombre (BASIC, PREMIUM...) y el email tiene que ser exacto.
+        public record FiltroAuditoria(LocalDateTime desde, LocalDateTime hasta, String email, String plan) {
+        }
+
+        public record PaginaRevisiones(List<RevisionDTO> revisiones, String siguienteCursor) {
+
+                static PaginaRevisiones de(List<Object[]> filas, int limite,
+                                           Function<Object[], RevisionDTO> aRevision) {
+                        List<Object[]> pagina = filas.size() <= limite ? filas : filas.subList(0, limite);
+                        List<RevisionDTO> revisiones = pagina.stream()
+                                .map(aRevision)
+                                .toList();
+
+                        if (filas.size() <= limite) {
+                                return new PaginaRevisiones(revisiones, null);
+                        }
+
+                        Object[] ultima = pagina.get(limite - 1);
+                        return new PaginaRevisiones(revisiones, new CursorRevision((LocalDateTime) ultima[10],
+                                ((Number) ultima[0]).intValue(), (Long) ultima[1]).texto());
+                }
+
+                public boolean hayMas() {
+                        return siguienteCursor != null;
+                }
+        }
+
+        // fechaModificacion en ISO (2026-01-01T00:00:00.123456), que no lleva "_"
+        record CursorRevision(LocalDateTime fechaModificacion, int rev, Long id) {
+
+                String texto() {
+                        return fechaModificacion + "_" + rev + "_" + id;
+                }
+
+                static CursorRevision leer(String texto) {
+                        if (texto == null || texto.isBlank()) {
+                                return null;
+                        }
+
+                        String[] partes = texto.split("_");
+                        try {
+                                if (partes.length != 3) {
+                                        throw new IllegalArgumentException();
+                                }
+                                return new CursorRevision(LocalDateTime.parse(partes[0]), Integer.parseInt(partes[1]),
+                                        Long.valueOf(partes[2]));
+                        } catch (RuntimeException e) {
+                                throw new IllegalArgumentException("Cursor de auditoría no válido: " + texto);
+                        }
+                }
+        }
 }
@@ -0,0 +1,64 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/* ColaVencimientos
+ *
+ * Cola en memoria de la renovación continua: pares (fechaFinCiclo, id de suscripción)
+ * ordenados por fecha. Guarda además id -> fecha para poder mover o quitar una
+ * suscripción cuando cambia, sin recorrer la cola.
+ * La usan el hilo del scheduler y los hilos web (eventos), de ahí el synchronized. */
+
+final class ColaVencimientos {
+
+    private static final Comparator<Entrada> ORDEN = Comparator
+            .comparing(Entrada::fecha)
+            .thenComparing(Entrada::id);
+
+    private final TreeSet<Entrada> cola = new TreeSet<>(ORDEN);
+    private final Map<Long, LocalDateTime> fechas = new HashMap<>();
+
+    // Añade o mueve la suscripción a su nueva fecha de vencimiento
+    synchronized void programar(Long id, LocalDateTime fecha) {
+        quitar(id);
+        cola.add(new Entrada(fecha, id));
+        fechas.put(id, fecha);
+    }
+
+    synchronized void quitar(Long id) {
+        LocalDateTime anterior = fechas.remove(id);
+        if (anterior != null) {
+            cola.remove(new Entrada(anterior, id));
+        }
+    }
+
+    // Saca (hasta "maximo") las que vencen antes de "ahora", en orden de vencimiento
+    synchronized List<Long> extraerVencidas(LocalDateTime ahora, int maximo) {
+        List<Long> ids = new ArrayList<>();
+
+        while (ids.size() < maximo && !cola.isEmpty() && cola.first().fecha().isBefore(ahora)) {
+            Entrada entrada = cola.pollFirst();
+            fechas.remove(entrada.id());
+            ids.add(entrada.id());
+        }
+
+        return ids;
+    }
+
+    synchronized int tamano() {
+        return cola.size();
+    }
+
+    synchronized LocalDateTime proximoVencimiento() {
+        return cola.isEmpty() ? null : cola.first().fecha();
+    }
+
+    private record Entrada(LocalDateTime fecha, Long id) {
+    }
+}
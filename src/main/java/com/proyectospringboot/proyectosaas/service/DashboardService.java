@@ -0,0 +1,154 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.proyectospringboot.proyectosaas.config.DashboardCacheProperties;
+import com.proyectospringboot.proyectosaas.domain.entity.Factura;
+import com.proyectospringboot.proyectosaas.domain.event.FacturacionModificadaEvent;
+import com.proyectospringboot.proyectosaas.domain.event.SuscripcionModificadaEvent;
+import com.proyectospringboot.proyectosaas.repository.FacturaEspecificaciones;
+import com.proyectospringboot.proyectosaas.repository.FacturaRepository;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository.ResumenPanel;
+import com.proyectospringboot.proyectosaas.repository.UsuarioRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/* DashboardService
+ *
+ * Modelo de lectura del panel del cliente (/dashboard). Antes el controlador cargaba la
+ * suscripción como entidad, todas las facturas para quedarse con la primera, contaba
+ * pagos y luego buscaba el método de pago con una consulta por factura: el número de
+ * consultas crecía con el historial. Ahora son siempre tres, tenga las facturas que tenga:
+ * 1. Resumen (suscripción + plan + usuario + perfil) como proyección.
+ * 2. Última factura con importe: primera página de tamaño 1 del listado por (fecha, id).
+ *    El estado de pago viene en la propia factura.
+ * 3. Método del último pago (FacturaService.obtenerUltimoMetodoPago).
+ * El catálogo de planes para el cambio de plan no va en el panel: lo pone el controlador
+ * desde PlanCatalog (en memoria), así un cambio de plan del catálogo no espera al TTL.
+ *
+ * Y el panel se guarda en una caché en memoria por usuario (Caffeine), así que refrescar
+ * la página no cuesta ninguna consulta:
+ * - Acotada por tamaño (descarta los menos usados) y con TTL como red de seguridad.
+ * - Se invalida al confirmarse cualquier cambio que el panel enseña: SuscripcionModificadaEvent
+ *   (alta, plan, pago automático) y FacturacionModificadaEvent (facturas, pagos, cancelación).
+ * - Caffeine bloquea la clave mientras se carga: si llega una invalidación a mitad de carga,
+ *   espera y borra el panel recién cargado, que ya podía estar viejo.
+ * - Aciertos y fallos en /actuator/prometheus (cache.gets con cache="panel.cliente"). */
+
+@Service
+public class DashboardService {
+
+    private final SuscripcionRepository suscripcionRepository;
+    private final FacturaRepository facturaRepository;
+    private final UsuarioRepository usuarioRepository;
+    private final FacturaService facturaService;
+    private final TransactionTemplate lectura;
+
+    // El email de un usuario no cambia, así que esta no hace falta invalidarla
+    private final Cache<String, Long> usuarioPorEmail;
+    private final Cache<Long, PanelCliente> paneles;
+
+    public DashboardService(SuscripcionRepository suscripcionRepository,
+            FacturaRepository facturaRepository,
+            UsuarioRepository usuarioRepository,
+            FacturaService facturaService,
+            PlatformTransactionManager transacciones,
+            DashboardCacheProperties propiedades,
+            MetricasFacturacion metricas) {
+        this.suscripcionRepository = suscripcionRepository;
+        this.facturaRepository = facturaRepository;
+        this.usuarioRepository = usuarioRepository;
+        this.facturaService = facturaService;
+        this.lectura = new TransactionTemplate(transacciones);
+        this.lectura.setReadOnly(true);
+
+        this.usuarioPorEmail = Caffeine.newBuilder()
+                .maximumSize(propiedades.tamanoMaximo())
+                .build();
+        this.paneles = Caffeine.newBuilder()
+                .maximumSize(propiedades.tamanoMaximo())
+                .expireAfterWrite(Duration.ofSeconds(propiedades.ttlSegundos()))
+                .recordStats()
+                .build();
+        metricas.registrarCache("panel.cliente", paneles);
+    }
+
+    // =========================================================
+    // LECTURA
+    // =========================================================
+
+    // Vacío si el email no tiene suscripción (eso no se guarda en caché)
+    public Optional<PanelCliente> cargar(String email) {
+        Long usuarioId = usuarioPorEmail.get(email, e -> usuarioRepository.buscarIdPorEmail(e).orElse(null));
+        if (usuarioId == null) {
+            return Optional.empty();
+        }
+
+        return Optional.ofNullable(paneles.get(usuarioId, id -> leer(email).orElse(null)));
+    }
+
+    // Sin caché: las tres consultas, en una transacción de solo lectura
+    Optional<PanelCliente> leer(String email) {
+        return lectura.execute(status -> {
+            Optional<ResumenPanel> resumen = suscripcionRepository.buscarResumenPanel(email);
+            if (resumen.isEmpty()) {
+                return Optional.<PanelCliente>empty();
+            }
+
+            // Las de 0€ son solo de apoyo para pruebas de pago, como en el resto de listados
+            List<Factura> ultima = facturaRepository.buscarPagina(
+                    FacturaEspecificaciones.deEmail(email).and(FacturaEspecificaciones.conImporte()), 1);
+
+            return Optional.of(new PanelCliente(
+                    resumen.get(),
+                    ultima.isEmpty() ? null : ResumenFactura.de(ultima.get(0)),
+                    facturaService.obtenerUltimoMetodoPago(email)));
+        });
+    }
+
+    // =========================================================
+    // INVALIDACIÓN (después del commit, como la renovación continua)
+    // =========================================================
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarSuscripcion(SuscripcionModificadaEvent evento) {
+        paneles.invalidate(evento.usuarioId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarFacturacion(FacturacionModificadaEvent evento) {
+        paneles.invalidate(evento.usuarioId());
+    }
+
+    // =========================================================
+    // MODELO
+    // =========================================================
+
+    // ultimaFactura es null si el cliente aún no tiene facturas.
+    // Va a la caché y lo leen varias peticiones a la vez: solo datos, sin entidades de factura.
+    public record PanelCliente(ResumenPanel cliente,
+                               ResumenFactura ultimaFactura,
+                               String ultimoMetodoPago) {
+
+        // Sin facturas no hay deuda
+        public boolean ultimaFacturaPagada() {
+            return ultimaFactura == null || ultimaFactura.pagada();
+        }
+    }
+
+    public record ResumenFactura(LocalDateTime fecha, BigDecimal total, boolean pagada) {
+
+        static ResumenFactura de(Factura factura) {
+            return new ResumenFactura(factura.getFecha(), factura.getTotal(), factura.estaPagada());
+        }
+    }
+}
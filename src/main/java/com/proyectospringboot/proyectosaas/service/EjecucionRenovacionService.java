@@ -0,0 +1,255 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.config.RenovacionProperties;
+import com.proyectospringboot.proyectosaas.domain.entity.EjecucionRenovacion;
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoEjecucion;
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoSuscripcion;
+import com.proyectospringboot.proyectosaas.repository.EjecucionRenovacionRepository;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import com.proyectospringboot.proyectosaas.service.RenovacionService.ResultadoRenovacion;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/* EjecucionRenovacionService
+ *
+ * Proceso nocturno con diario persistente (tabla ejecuciones_renovacion).
+ * Cada ejecución guarda su fecha de corte, la marca de agua (último id de suscripción
+ * procesado) y los contadores de renovadas, fallidas y canceladas.
+ * - La marca de agua se apunta en la misma transacción que el lote: o se confirman
+ *   los dos o ninguno, así que un lote ya cobrado no se vuelve a procesar.
+ *   (Cuando el lote va suscripción a suscripción, en paralelo o al aislar un error,
+ *   cada una comprueba antes si ya tiene su factura de esta pasada.)
+ * - Si la JVM muere a mitad, la ejecución se queda EN_CURSO y se retoma desde la marca de
+ *   agua con la misma fecha de corte, sin esperar a la noche siguiente:
+ *   - al arrancar, en segundo plano: las de este nodo (mismo renovacion.nodo) y las de
+ *     réplicas que ya no dan señales de vida (sin latido durante lease-minutos);
+ *   - cada lease-minutos desde RenovacionScheduler, para las de una réplica que no vuelve;
+ *   - y al empezar la pasada nocturna.
+ * - Después de terminar las que estaban a medias, la pasada nocturna abre la suya con el
+ *   corte de ahora: lo que ha vencido desde el corte antiguo no espera otro día.
+ * - En un mismo nodo no corren dos a la vez: la reanudación se aparta si hay otra en marcha. */
+
+@Service
+public class EjecucionRenovacionService {
+
+    private final EjecucionRenovacionRepository ejecucionRepository;
+    private final SuscripcionRepository suscripcionRepository;
+    private final RenovacionService renovacionService;
+    private final FacturaService facturaService;
+    private final TransactionTemplate tx;
+    private final int minutosSinLatido;
+    private final boolean repartoEntreNodos;
+    private final MetricasFacturacion metricas;
+
+    // La pasada nocturna y la reanudación (al arrancar o periódica) no se pisan en este nodo
+    private final ReentrantLock enMarcha = new ReentrantLock();
+
+    public EjecucionRenovacionService(EjecucionRenovacionRepository ejecucionRepository,
+            SuscripcionRepository suscripcionRepository,
+            RenovacionService renovacionService,
+            FacturaService facturaService,
+            TransactionTemplate tx,
+            RenovacionProperties propiedades,
+            MetricasFacturacion metricas) {
+        this.ejecucionRepository = ejecucionRepository;
+        this.suscripcionRepository = suscripcionRepository;
+        this.renovacionService = renovacionService;
+        this.facturaService = facturaService;
+        this.tx = tx;
+        this.minutosSinLatido = propiedades.leaseMinutos();
+        this.repartoEntreNodos = propiedades.repartoEntreNodos();
+        this.metricas = metricas;
+    }
+
+    // =========================================================
+    // PROCESO NOCTURNO
+    // =========================================================
+
+    public ProgresoEjecucion ejecutar() {
+        enMarcha.lock();
+        try {
+            LocalDateTime ahora = LocalDateTime.now();
+
+            // Primero las que se quedaron a medias, cada una con su fecha de corte
+            completarAMedias(ahora);
+
+            return completar(ejecucionRepository.save(new EjecucionRenovacion(renovacionService.getNodo(), ahora)));
+        } finally {
+            enMarcha.unlock();
+        }
+    }
+
+    // =========================================================
+    // REANUDACIÓN (sin abrir ejecución nueva)
+    // =========================================================
+
+    // En su propio hilo: el arranque no espera a que se termine la ejecución retomada
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        Thread hilo = new Thread(() -> {
+            try {
+                int retomadas = reanudarAMedias();
+                if (retomadas > 0) {
+                    System.out.println(">>> Retomadas " + retomadas + " ejecuciones de renovación a medias.");
+                }
+            } catch (RuntimeException e) {
+                // Sigue EN_CURSO con su marca de agua; la retoma la siguiente comprobación
+                System.err.println("Error al retomar la renovación a medias: " + e.getMessage());
+            }
+        }, "reanudacion-renovacion");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    // Termina las ejecuciones a medias que puede adoptar este nodo y devuelve cuántas.
+    // Si ya hay una pasada en marcha en este nodo no hace nada: esa las recoge al empezar.
+    public int reanudarAMedias() {
+        if (!enMarcha.tryLock()) {
+            return 0;
+        }
+        try {
+            return completarAMedias(LocalDateTime.now());
+        } finally {
+            enMarcha.unlock();
+        }
+    }
+
+    private int completarAMedias(LocalDateTime ahora) {
+        int completadas = 0;
+        for (EjecucionRenovacion aMedias = adoptarAMedias(ahora); aMedias != null; aMedias = adoptarAMedias(ahora)) {
+            completar(aMedias);
+            completadas++;
+        }
+        return completadas;
+    }
+
+    private ProgresoEjecucion completar(EjecucionRenovacion ejecucion) {
+        Long id = ejecucion.getId();
+        int renovadasPrevias = ejecucion.getRenovadas();
+        int fallidasPrevias = ejecucion.getFallidas();
+
+        if (ejecucion.getReanudaciones() > 0) {
+            System.out.println("Reanudando la ejecución de renovación " + id + " desde la suscripción "
+                    + ejecucion.getUltimoIdProcesado() + " (corte " + ejecucion.getFechaCorte() + ")");
+        }
+
+        // 1. Renovación automática, apuntando la marca de agua con cada lote
+        // (RenovacionService nos llama dentro de la transacción del lote)
+        Timer.Sample fase = metricas.iniciar();
+        ResultadoRenovacion resultado = renovacionService.renovarVencidas(
+                ejecucion.getFechaCorte(),
+                ejecucion.getUltimoIdProcesado(),
+                (ultimoId, acumulado) -> ejecucionRepository.registrarProgreso(id, ultimoId,
+                        renovadasPrevias + acumulado.renovadas(),
+                        fallidasPrevias + acumulado.fallidas(),
+                        LocalDateTime.now()));
+        metricas.fase(fase, "renovacion");
+
+        // 2. Cancelación por impago (ya es idempotente, si se corta se repite entera).
+        // Sin marca de agua que mover, cada lote apunta solo el latido
+        fase = metricas.iniciar();
+        int canceladas = facturaService.cancelarExpiradas(
+                () -> ejecucionRepository.registrarLatido(id, LocalDateTime.now()));
+        metricas.fase(fase, "cancelacion");
+
+        EjecucionRenovacion completada = tx.execute(status -> {
+            EjecucionRenovacion e = ejecucionRepository.findById(id).orElseThrow();
+            e.completar(canceladas, LocalDateTime.now());
+            return e;
+        });
+        metricas.ejecucionCompletada(Instant.now());
+
+        System.out.println("Ejecución de renovación " + id + " completada: " + resultado.renovadas()
+                + " renovadas y " + resultado.fallidas() + " fallidas en esta pasada.");
+
+        return aProgreso(completada, 0L);
+    }
+
+    // Adopta una ejecución a medias (de este nodo o de uno caído); null si no queda ninguna
+    private EjecucionRenovacion adoptarAMedias(LocalDateTime ahora) {
+        String nodo = renovacionService.getNodo();
+
+        Long adoptada = tx.execute(status -> {
+            List<EjecucionRenovacion> candidatas = ejecucionRepository.buscarReanudables(
+                    EstadoEjecucion.EN_CURSO, nodo, ahora.minusMinutes(minutosSinLatido), Limit.of(5));
+
+            for (EjecucionRenovacion candidata : candidatas) {
+                int filas = ejecucionRepository.adoptar(candidata.getId(), EstadoEjecucion.EN_CURSO,
+                        candidata.getUltimaActualizacion(), nodo, ahora);
+
+                if (filas == 1) {
+                    // Solo los leases ya caducados: los vigentes de ese nombre pueden ser de una
+                    // pasada que sigue viva (la continua de este mismo nodo). Los de una réplica
+                    // sin latido durante lease-minutos ya han caducado todos.
+                    if (repartoEntreNodos) {
+                        suscripcionRepository.liberarLeasesCaducados(candidata.getNodo(), LocalDateTime.now());
+                    }
+                    return candidata.getId();
+                }
+            }
+            return null;
+        });
+
+        // Releemos fuera de la transacción: la entidad de antes no ve el UPDATE de adoptar
+        return adoptada != null ? ejecucionRepository.findById(adoptada).orElseThrow() : null;
+    }
+
+    // =========================================================
+    // PANEL DE ADMINISTRACIÓN
+    // =========================================================
+
+    public EstadoRenovacionDTO consultarEstado() {
+        List<ProgresoEjecucion> enCurso = ejecucionRepository.findByEstadoOrderByIdAsc(EstadoEjecucion.EN_CURSO)
+                .stream()
+                .map(e -> aProgreso(e, suscripcionRepository.contarVencidasConPagoAuto(
+                        EstadoSuscripcion.ACTIVA, e.getFechaCorte(), e.getUltimoIdProcesado())))
+                .toList();
+
+        ProgresoEjecucion ultimaCompletada = ejecucionRepository
+                .findFirstByEstadoOrderByIdDesc(EstadoEjecucion.COMPLETADA)
+                .map(e -> aProgreso(e, 0L))
+                .orElse(null);
+
+        return new EstadoRenovacionDTO(enCurso, ultimaCompletada);
+    }
+
+    private ProgresoEjecucion aProgreso(EjecucionRenovacion e, long pendientes) {
+        return new ProgresoEjecucion(e.getId(), e.getNodo(), e.getEstado(), e.getFechaCorte(), e.getInicio(),
+                e.getFin(), e.getUltimaActualizacion(), e.getUltimoIdProcesado(), e.getRenovadas(),
+                e.getFallidas(), e.getCanceladas(), e.getReanudaciones(), pendientes);
+    }
+
+    // =========================================================
+    // DTOs
+    // =========================================================
+
+    // pendientes: vencidas con id por encima de la marca de agua (con reparto entre
+    // nodos incluye también las que se estén llevando otras réplicas)
+    public record ProgresoEjecucion(
+            Long id,
+            String nodo,
+            EstadoEjecucion estado,
+            LocalDateTime fechaCorte,
+            LocalDateTime inicio,
+            LocalDateTime fin,
+            LocalDateTime ultimaActualizacion,
+            long ultimoIdProcesado,
+            int renovadas,
+            int fallidas,
+            int canceladas,
+            int reanudaciones,
+            long pendientes) {
+    }
+
+    public record EstadoRenovacionDTO(List<ProgresoEjecucion> enCurso, ProgresoEjecucion ultimaCompletada) {
+    }
+}
@@ -4,15 +4,23 @@ import com.proyectospringboot.proyectosaas.domain.entity.Factura;
 import com.proyectospringboot.proyectosaas.domain.entity.Plan;
 import com.proyectospringboot.proyectosaas.domain.entity.Suscripcion;
 import com.proyectospringboot.proyectosaas.domain.entity.Usuario;
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoPagoFactura;
 import com.proyectospringboot.proyectosaas.domain.enums.EstadoSuscripcion;
+import com.proyectospringboot.proyectosaas.domain.event.FacturacionModificadaEvent;
+import com.proyectospringboot.proyectosaas.domain.valor.Dinero;
+import com.proyectospringboot.proyectosaas.repository.FacturaEspecificaciones;
 import com.proyectospringboot.proyectosaas.repository.FacturaRepository;
 import com.proyectospringboot.proyectosaas.repository.PlanRepository;
 import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -20,17 +28,33 @@ import java.util.List;
 public class FacturaService {
 
     private static final String CONCEPTO_RENOVACION = "Renovación Mensual";
+    private static final int TAMANO_LOTE_CANCELACION = 500;
+
+    public static final int TAMANO_PAGINA_DEFECTO = 20;
+    public static final int MAX_TAMANO_PAGINA = 100;
 
     private final FacturaRepository facturaRepository;
     private final SuscripcionRepository suscripcionRepository;
     private final jakarta.persistence.EntityManager entityManager;
+    private final TransactionTemplate tx;
+    private final MetricasFacturacion metricas;
+    private final TaxRateResolver impuestos;
+    private final ApplicationEventPublisher eventos;
 
     public FacturaService(FacturaRepository facturaRepository,
             SuscripcionRepository suscripcionRepository,
-            jakarta.persistence.EntityManager entityManager) {
+            jakarta.persistence.EntityManager entityManager,
+            TransactionTemplate tx,
+            MetricasFacturacion metricas,
+            TaxRateResolver impuestos,
+            ApplicationEventPublisher eventos) {
         this.facturaRepository = facturaRepository;
         this.suscripcionRepository = suscripcionRepository;
         this.entityManager = entityManager;
+        this.tx = tx;
+        this.metricas = metricas;
+        this.impuestos = impuestos;
+        this.eventos = eventos;
     }
 
     // =========================================================
@@ -45,12 +69,40 @@ public class FacturaService {
                 .toList();
     }
 
-    public List<Factura> buscarFacturasConFiltros(String email,
+    // Listados paginados (/facturas y /mis-facturas): keyset sobre (fecha, id) con tamaño acotado.
+    // El cursor es la última factura de la página anterior; null = primera página.
+    public PaginaFacturas buscarPaginaPorEmail(String email, String cursor, int tamano) {
+        return buscarPagina(FacturaEspecificaciones.deEmail(email).and(FacturaEspecificaciones.conImporte()),
+                cursor, tamano);
+    }
+
+    public PaginaFacturas buscarPaginaConFiltros(String email,
             LocalDateTime fechaInicio,
             LocalDateTime fechaFin,
             BigDecimal totalMin,
-            BigDecimal totalMax) {
-        return facturaRepository.buscarConFiltros(email, fechaInicio, fechaFin, totalMin, totalMax);
+            BigDecimal totalMax,
+            String cursor,
+            int tamano) {
+        return buscarPagina(FacturaEspecificaciones.conFiltros(email, fechaInicio, fechaFin, totalMin, totalMax),
+                cursor, tamano);
+    }
+
+    private PaginaFacturas buscarPagina(Specification<Factura> condiciones, String cursor, int tamano) {
+        CursorFactura desde = CursorFactura.leer(cursor);
+        int limite = acotarTamano(tamano);
+
+        if (desde != null) {
+            condiciones = condiciones.and(FacturaEspecificaciones.despuesDe(desde.fecha(), desde.id()));
+        }
+
+        return PaginaFacturas.de(facturaRepository.buscarPagina(condiciones, limite + 1), limite);
+    }
+
+    static int acotarTamano(int tamano) {
+        if (tamano <= 0) {
+            return TAMANO_PAGINA_DEFECTO;
+        }
+        return Math.min(tamano, MAX_TAMANO_PAGINA);
     }
 
     // =========================================================
@@ -76,9 +128,9 @@ public class FacturaService {
                     "Aún no toca renovar. Próxima renovación: " + suscripcion.getFechaFinCiclo());
         }
 
-        BigDecimal importeBase = suscripcion.getPlan().getPrecioMensual();
-        BigDecimal impuesto = calcularImpuesto(suscripcion, importeBase);
-        BigDecimal total = importeBase.add(impuesto);
+        Dinero importeBase = suscripcion.getPlan().getPrecioMensualDinero();
+        Dinero impuesto = calcularImpuesto(suscripcion, importeBase);
+        Dinero total = importeBase.mas(impuesto);
 
         Factura nuevaFactura = new Factura(
                 suscripcion,
@@ -91,6 +143,7 @@ public class FacturaService {
 
         suscripcion.setFechaFinCiclo(suscripcion.getFechaFinCiclo().plusDays(30));
         suscripcionRepository.save(suscripcion);
+        eventos.publishEvent(new FacturacionModificadaEvent(suscripcion.getUsuario().getId()));
 
         return new RenovacionResultado(true, "Renovación generada. Queda pendiente de pago.");
     }
@@ -103,9 +156,9 @@ public class FacturaService {
         int contador = 0;
 
         for (Suscripcion suscripcion : suscripcionesVencidas) {
-            BigDecimal importeBase = suscripcion.getPlan().getPrecioMensual();
-            BigDecimal impuesto = calcularImpuesto(suscripcion, importeBase);
-            BigDecimal total = importeBase.add(impuesto);
+            Dinero importeBase = suscripcion.getPlan().getPrecioMensualDinero();
+            Dinero impuesto = calcularImpuesto(suscripcion, importeBase);
+            Dinero total = importeBase.mas(impuesto);
 
             Factura nuevaFactura = new Factura(
                     suscripcion,
@@ -118,6 +171,7 @@ public class FacturaService {
 
             suscripcion.setFechaFinCiclo(suscripcion.getFechaFinCiclo().plusDays(30));
             suscripcionRepository.save(suscripcion);
+            eventos.publishEvent(new FacturacionModificadaEvent(suscripcion.getUsuario().getId()));
 
             contador++;
         }
@@ -125,41 +179,6 @@ public class FacturaService {
         return contador;
     }
 
-    // =========================================================
-    // UTILIDAD (por si hiciera falta)
-    // =========================================================
-
-    @Transactional
-    public int migrarFacturasAntiguas() {
-        // Si alguna factura se creó antes de aplicar impuestos, aquí se corrige.
-        // Al ir implementando todo progresivamente tuvimos problemas con ello.
-        List<Factura> facturasConCero = facturaRepository.findAll().stream()
-                .filter(f -> f.getImpuesto().compareTo(BigDecimal.ZERO) == 0)
-                .toList();
-
-        int contador = 0;
-
-        for (Factura factura : facturasConCero) {
-            BigDecimal importeBase = factura.getImporte();
-            BigDecimal impuesto = calcularImpuesto(factura.getSuscripcion(), importeBase);
-
-            if (impuesto.compareTo(BigDecimal.ZERO) > 0) {
-                BigDecimal nuevoTotal = importeBase.add(impuesto);
-
-                entityManager.createQuery(
-                        "UPDATE Factura f SET f.impuesto = :imp, f.total = :tot WHERE f.id = :id")
-                        .setParameter("imp", impuesto)
-                        .setParameter("tot", nuevoTotal)
-                        .setParameter("id", factura.getId())
-                        .executeUpdate();
-
-                contador++;
-            }
-        }
-
-        return contador;
-    }
-
     // =========================================================
     // IMPUESTOS (Semana 2)
     // =========================================================
@@ -168,35 +187,67 @@ public class FacturaService {
         return calcularImpuesto(suscripcion.getUsuario().getPais(), importeBase);
     }
 
+    // La tabla de tipos por país vive en TaxRateResolver (configurable en impuestos.*)
     public BigDecimal calcularImpuesto(String pais, BigDecimal importeBase) {
-        if (pais != null && (pais.equalsIgnoreCase("ES")
-                || pais.equalsIgnoreCase("España")
-                || pais.equalsIgnoreCase("Spain"))) {
-            return importeBase.multiply(BigDecimal.valueOf(0.21))
-                    .setScale(2, RoundingMode.HALF_UP);
-        }
+        return impuestos.calcular(pais, importeBase);
+    }
 
-        return BigDecimal.ZERO;
+    // Versiones en céntimos que usa la facturación: mismo redondeo, sin BigDecimal por factura
+    public Dinero calcularImpuesto(Suscripcion suscripcion, Dinero importeBase) {
+        return calcularImpuesto(suscripcion.getUsuario().getPais(), importeBase);
+    }
+
+    public Dinero calcularImpuesto(String pais, Dinero importeBase) {
+        return impuestos.calcular(pais, importeBase);
     }
 
     // =========================================================
     // VERIFICAR FACTURA PENDIENTE
     // =========================================================
 
+    // El estado de pago va en la factura: basta con buscar una pendiente (índice parcial)
     public boolean tieneFacturaPendiente(String email) {
-        try {
-            String hql = "SELECT COUNT(f) FROM Factura f " +
-                    "WHERE f.suscripcion.usuario.email = :email " +
-                    "AND NOT EXISTS (SELECT p FROM Pago p WHERE p.factura = f)";
+        return !facturaRepository.buscarPendientes(email, Limit.of(1)).isEmpty();
+    }
+
+    // Si ya se le ha emitido una renovación desde "desde" (el corte de una pasada, así una
+    // pasada que se repite no le cobra dos veces el mismo ciclo)
+    public boolean renovadaDesde(Long suscripcionId, LocalDateTime desde) {
+        return facturaRepository.existeDesde(suscripcionId, CONCEPTO_RENOVACION, desde);
+    }
+
+    // Factura a la que va un pago: la pendiente más reciente. Si no hay ninguna se crea una
+    // de apoyo para poder guardar el pago de prueba: 1€ si el cliente aún no tiene facturas,
+    // 0€ si ya las tiene todas pagadas.
+    private Factura facturaParaPago(String email) {
+        List<Factura> pendientes = facturaRepository.buscarPendientes(email, Limit.of(1));
+        if (!pendientes.isEmpty()) {
+            return pendientes.get(0);
+        }
 
-            Long count = entityManager.createQuery(hql, Long.class)
-                    .setParameter("email", email)
-                    .getSingleResult();
+        var suscripcion = suscripcionRepository.buscarPorEmail(email)
+                .orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado"));
 
-            return count > 0;
-        } catch (Exception e) {
-            return false;
+        Factura deApoyo;
+        if (facturaRepository.tieneFacturas(email)) {
+            deApoyo = new Factura(
+                    suscripcion,
+                    LocalDateTime.now(),
+                    BigDecimal.ZERO,
+                    BigDecimal.ZERO,
+                    BigDecimal.ZERO,
+                    "Factura de Prueba (0€)");
+        } else {
+            deApoyo = new Factura(
+                    suscripcion,
+                    LocalDateTime.now(),
+                    BigDecimal.ONE,
+                    BigDecimal.ZERO,
+                    BigDecimal.ONE,
+                    "Factura de Prueba");
         }
+        facturaRepository.save(deApoyo);
+        return deApoyo;
     }
 
     // =========================================================
@@ -209,6 +260,22 @@ public class FacturaService {
             String emailPaypal,
             String iban, String referencia) {
 
+        Timer.Sample muestra = metricas.iniciar();
+        boolean ok = false;
+
+        try {
+            registrarPago(email, tipoPago, ultimos4, titular, emailPaypal, iban, referencia);
+            ok = true;
+        } finally {
+            metricas.pagoRegistrado(muestra, tipoPago, ok);
+        }
+    }
+
+    private void registrarPago(String email, String tipoPago,
+            String ultimos4, String titular,
+            String emailPaypal,
+            String iban, String referencia) {
+
         // Validar datos según el tipo de pago
         switch (tipoPago.toLowerCase()) {
             case "tarjeta":
@@ -238,60 +305,8 @@ public class FacturaService {
                 throw new IllegalArgumentException("Tipo de pago no soportado: " + tipoPago);
         }
 
-        // Buscar o crear factura
-        List<Factura> facturas = facturaRepository.buscarPorEmail(email);
-        Factura facturaObjetivo;
-
-        if (facturas.isEmpty()) {
-            var suscripcion = suscripcionRepository.buscarPorEmail(email)
-                    .orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado"));
-
-            facturaObjetivo = new Factura(
-                    suscripcion,
-                    LocalDateTime.now(),
-                    BigDecimal.ONE,
-                    BigDecimal.ZERO,
-                    BigDecimal.ONE,
-                    "Factura de Prueba");
-            facturaRepository.save(facturaObjetivo);
-
-        } else {
-            Factura facturaPendiente = null;
-
-            try {
-                String hql = "SELECT f FROM Factura f " +
-                        "WHERE f.suscripcion.usuario.email = :email " +
-                        "AND NOT EXISTS (SELECT p FROM Pago p WHERE p.factura = f) " +
-                        "ORDER BY f.fecha DESC";
-
-                List<Factura> pendientes = entityManager.createQuery(hql, Factura.class)
-                        .setParameter("email", email)
-                        .setMaxResults(1)
-                        .getResultList();
-
-                if (!pendientes.isEmpty()) {
-                    facturaPendiente = pendientes.get(0);
-                }
-            } catch (Exception e) {
-                // Si algo falla, continuamos
-            }
-
-            if (facturaPendiente != null) {
-                facturaObjetivo = facturaPendiente;
-            } else {
-                var suscripcion = suscripcionRepository.buscarPorEmail(email)
-                        .orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado"));
-
-                facturaObjetivo = new Factura(
-                        suscripcion,
-                        LocalDateTime.now(),
-                        BigDecimal.ZERO,
-                        BigDecimal.ZERO,
-                        BigDecimal.ZERO,
-                        "Factura de Prueba (0€)");
-                facturaRepository.save(facturaObjetivo);
-            }
-        }
+        // Factura a la que va el pago (la pendiente más reciente o una de apoyo)
+        Factura facturaObjetivo = facturaParaPago(email);
 
         // Crear el pago específico con los datos proporcionados
         com.proyectospringboot.proyectosaas.domain.entity.Pago nuevoPago = null;
@@ -325,6 +340,7 @@ public class FacturaService {
         Usuario usuario = suscripcion.getUsuario();
         usuario.setMetodoPagoPreferido(tipoPago);
         entityManager.merge(usuario);
+        eventos.publishEvent(new FacturacionModificadaEvent(usuario.getId()));
     }
 
     // =========================================================
@@ -336,61 +352,7 @@ public class FacturaService {
     public void registrarPagoPrueba(String email, String tipoPago) {
         // Solo para pruebas: creamos un Pago (Tarjeta/PayPal/Transferencia) y lo
         // asociamos a una factura.
-        List<Factura> facturas = facturaRepository.buscarPorEmail(email);
-
-        Factura facturaObjetivo;
-
-        if (facturas.isEmpty()) {
-            var suscripcion = suscripcionRepository.buscarPorEmail(email)
-                    .orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado"));
-
-            facturaObjetivo = new Factura(
-                    suscripcion,
-                    LocalDateTime.now(),
-                    BigDecimal.ONE,
-                    BigDecimal.ZERO,
-                    BigDecimal.ONE,
-                    "Factura de Prueba");
-            facturaRepository.save(facturaObjetivo);
-
-        } else {
-            Factura facturaPendiente = null;
-
-            try {
-                String hql = "SELECT f FROM Factura f " +
-                        "WHERE f.suscripcion.usuario.email = :email " +
-                        "AND NOT EXISTS (SELECT p FROM Pago p WHERE p.factura = f) " +
-                        "ORDER BY f.fecha DESC";
-
-                List<Factura> pendientes = entityManager.createQuery(hql, Factura.class)
-                        .setParameter("email", email)
-                        .setMaxResults(1)
-                        .getResultList();
-
-                if (!pendientes.isEmpty()) {
-                    facturaPendiente = pendientes.get(0);
-                }
-            } catch (Exception e) {
-                // Si algo falla aquí, no queremos romper el flujo del panel.
-            }
-
-            if (facturaPendiente != null) {
-                facturaObjetivo = facturaPendiente;
-            } else {
-                var suscripcion = suscripcionRepository.buscarPorEmail(email)
-                        .orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado"));
-
-                // Factura 0€ solo para poder guardar un pago de prueba.
-                facturaObjetivo = new Factura(
-                        suscripcion,
-                        LocalDateTime.now(),
-                        BigDecimal.ZERO,
-                        BigDecimal.ZERO,
-                        BigDecimal.ZERO,
-                        "Factura de Prueba (0€)");
-                facturaRepository.save(facturaObjetivo);
-            }
-        }
+        Factura facturaObjetivo = facturaParaPago(email);
 
         com.proyectospringboot.proyectosaas.domain.entity.Pago nuevoPago = null;
         LocalDateTime ahora = LocalDateTime.now();
@@ -419,67 +381,105 @@ public class FacturaService {
         }
 
         entityManager.persist(nuevoPago);
+        eventos.publishEvent(new FacturacionModificadaEvent(
+                facturaObjetivo.getSuscripcion().getUsuario().getId()));
     }
 
     public boolean estaPagada(Long facturaId) {
-        try {
-            Long count = entityManager.createQuery(
-                    "SELECT count(p) FROM Pago p WHERE p.factura.id = :id", Long.class)
-                    .setParameter("id", facturaId)
-                    .getSingleResult();
-            return count > 0;
-        } catch (Exception e) {
-            return false;
-        }
+        return facturaRepository.buscarEstadoPago(facturaId) == EstadoPagoFactura.PAGADA;
     }
 
+    // Método del pago de la factura más reciente que esté pagada, en una sola consulta
+    // (antes era una consulta por factura hasta dar con una con pago).
+    // TYPE(p) sale de la columna tipo de pagos (discriminador): ni se cruza con las tablas
+    // de cada tipo de pago ni se carga el pago entero.
+    // Devuelve como mucho un elemento: la clase de entidad del pago (PagoTarjeta, PagoPaypal...)
     public String obtenerUltimoMetodoPago(String email) {
-        List<Factura> facturas = facturaRepository.buscarPorEmail(email);
+        List<?> tipos = entityManager.createQuery(
+                "SELECT TYPE(p) FROM Pago p JOIN p.factura f " +
+                        "WHERE f.suscripcion.usuario.email = :email " +
+                        "ORDER BY f.fecha DESC, f.id DESC")
+                .setParameter("email", email)
+                .setMaxResults(1)
+                .getResultList();
 
-        for (Factura factura : facturas) {
-            try {
-                String hql = "SELECT p FROM Pago p WHERE p.factura.id = :facturaId";
-                List<com.proyectospringboot.proyectosaas.domain.entity.Pago> pagos = entityManager
-                        .createQuery(hql, com.proyectospringboot.proyectosaas.domain.entity.Pago.class)
-                        .setParameter("facturaId", factura.getId())
-                        .setMaxResults(1)
-                        .getResultList();
-
-                if (!pagos.isEmpty()) {
-                    var pago = pagos.get(0);
-                    if (pago instanceof com.proyectospringboot.proyectosaas.domain.entity.PagoTarjeta) {
-                        return "Tarjeta";
-                    } else if (pago instanceof com.proyectospringboot.proyectosaas.domain.entity.PagoPaypal) {
-                        return "PayPal";
-                    } else if (pago instanceof com.proyectospringboot.proyectosaas.domain.entity.PagoTransferencia) {
-                        return "Transferencia";
-                    }
-                }
-            } catch (Exception e) {
-                // Seguimos buscando en otras facturas.
-            }
-        }
+        return tipos.isEmpty() ? "Tarjeta" : nombreMetodoPago((Class<?>) tipos.get(0));
+    }
 
+    // Nombre que usa la vista (y metodoPagoPreferido) para cada tipo de pago
+    static String nombreMetodoPago(Class<?> tipo) {
+        if (tipo == com.proyectospringboot.proyectosaas.domain.entity.PagoPaypal.class) {
+            return "PayPal";
+        } else if (tipo == com.proyectospringboot.proyectosaas.domain.entity.PagoTransferencia.class) {
+            return "Transferencia";
+        }
         return "Tarjeta";
     }
 
     public record RenovacionResultado(boolean exito, String mensaje) {
     }
 
+    // Una página del listado. Se pide una fila de más para saber si hay otra página
+    // sin hacer un COUNT; si la hay, siguienteCursor apunta a la última que se muestra.
+    public record PaginaFacturas(List<Factura> facturas, String siguienteCursor) {
+
+        static PaginaFacturas de(List<Factura> filas, int limite) {
+            if (filas.size() <= limite) {
+                return new PaginaFacturas(filas, null);
+            }
+
+            List<Factura> pagina = filas.subList(0, limite);
+            Factura ultima = pagina.get(limite - 1);
+            return new PaginaFacturas(pagina, new CursorFactura(ultima.getFecha(), ultima.getId()).texto());
+        }
+
+        public boolean hayMas() {
+            return siguienteCursor != null;
+        }
+    }
+
+    // Posición (fecha, id) de una factura, en texto para poder ir en la URL: "fecha_id"
+    record CursorFactura(LocalDateTime fecha, Long id) {
+
+        String texto() {
+            return fecha + "_" + id;
+        }
+
+        static CursorFactura leer(String texto) {
+            if (texto == null || texto.isBlank()) {
+                return null;
+            }
+
+            int separador = texto.lastIndexOf('_');
+            try {
+                return new CursorFactura(LocalDateTime.parse(texto.substring(0, separador)),
+                        Long.valueOf(texto.substring(separador + 1)));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Cursor de facturas no válido: " + texto);
+            }
+        }
+    }
+
     // =========================================================
     // RENOVACIÓN + PAGO AUTOMÁTICO (para el scheduler)
     // =========================================================
 
     @Transactional
     public void renovarYPagarAuto(Suscripcion suscripcion) {
+        Timer.Sample muestra = metricas.iniciar();
         String email = suscripcion.getUsuario().getEmail();
 
-        BigDecimal base = suscripcion.getPlan().getPrecioMensual();
-        BigDecimal impuesto = calcularImpuesto(suscripcion, base);
-        BigDecimal total = base.add(impuesto);
+        Dinero base = suscripcion.getPlan().getPrecioMensualDinero();
+        Dinero impuesto = calcularImpuesto(suscripcion, base);
+        Dinero total = base.mas(impuesto);
 
-        Factura factura = new Factura(suscripcion, LocalDateTime.now(), base, impuesto, total, CONCEPTO_RENOVACION);
+        // Se cobra en esta misma transacción: la factura se inserta ya pagada y el
+        // marcado que hace el Pago al guardarse no genera un UPDATE aparte
+        LocalDateTime ahora = LocalDateTime.now();
+        Factura factura = new Factura(suscripcion, ahora, base, impuesto, total, CONCEPTO_RENOVACION);
+        factura.marcarPagada(ahora);
         facturaRepository.save(factura);
+        BigDecimal importePago = factura.getTotal();
 
         suscripcion.setFechaFinCiclo(suscripcion.getFechaFinCiclo().plusDays(30));
         suscripcionRepository.save(suscripcion);
@@ -491,36 +491,63 @@ public class FacturaService {
 
         com.proyectospringboot.proyectosaas.domain.entity.Pago pago = switch (metodo.toLowerCase()) {
             case "paypal" -> new com.proyectospringboot.proyectosaas.domain.entity.PagoPaypal(
-                    factura, total, LocalDateTime.now(), email);
+                    factura, importePago, ahora, email);
             case "transferencia" -> new com.proyectospringboot.proyectosaas.domain.entity.PagoTransferencia(
-                    factura, total, LocalDateTime.now(), "ES00AUTO", "REF-AUTO-" + System.currentTimeMillis());
+                    factura, importePago, ahora, "ES00AUTO", "REF-AUTO-" + System.currentTimeMillis());
             default -> new com.proyectospringboot.proyectosaas.domain.entity.PagoTarjeta(
-                    factura, total, LocalDateTime.now(), "AUTO", "Pago Automático");
+                    factura, importePago, ahora, "AUTO", "Pago Automático");
         };
 
         entityManager.persist(pago);
+        eventos.publishEvent(new FacturacionModificadaEvent(suscripcion.getUsuario().getId()));
+
+        metricas.pagoAutomatico(muestra, suscripcion.getPlan().getNombre(), metodo);
     }
 
-    // Cancela suscripciones que llevan más de 3 días vencidas sin pagar
-    @Transactional
+    // Cancela suscripciones que llevan más de 3 días vencidas sin pagar.
+    // Va por lotes (keyset por id) y cada lote en su transacción: una consulta trae
+    // solo las que tienen deuda, y al confirmar Hibernate agrupa los UPDATE y Envers
+    // los INSERT de auditoría (una revisión por lote).
     public int cancelarExpiradas() {
-        LocalDateTime limite = LocalDateTime.now().minusDays(3); // 3 días de margen
+        return cancelarExpiradas(null);
+    }
 
-        List<Suscripcion> candidatas = suscripcionRepository
-                .buscarVencidas(EstadoSuscripcion.ACTIVA, limite);
+    // Igual, avisando dentro de cada transacción de lote (el proceso nocturno apunta ahí su
+    // latido, para que una cancelación larga no parezca una ejecución muerta)
+    public int cancelarExpiradas(Runnable alConfirmarLote) {
+        Timer.Sample muestra = metricas.iniciar();
+        LocalDateTime limite = LocalDateTime.now().minusDays(3); // 3 días de margen
 
         int canceladas = 0;
+        long ultimoId = 0L;
+
+        while (true) {
+            long desde = ultimoId;
+
+            List<Long> lote = tx.execute(status -> {
+                List<Suscripcion> impagadas = suscripcionRepository.buscarImpagadasParaCancelar(
+                        EstadoSuscripcion.ACTIVA, limite, desde, Limit.of(TAMANO_LOTE_CANCELACION));
+
+                // Entidades gestionadas: el dirty checking genera el UPDATE al confirmar
+                impagadas.forEach(Suscripcion::cancelar);
+                impagadas.forEach(s -> eventos.publishEvent(
+                        new FacturacionModificadaEvent(s.getUsuario().getId())));
 
-        for (Suscripcion s : candidatas) {
-            // Solo cancelamos si tiene factura pendiente de pago (no ha pagado)
-            boolean tienePendiente = tieneFacturaPendiente(s.getUsuario().getEmail());
-            if (tienePendiente) {
-                s.cancelar();
-                suscripcionRepository.save(s);
-                canceladas++;
+                if (alConfirmarLote != null) {
+                    alConfirmarLote.run();
+                }
+                return impagadas.stream().map(Suscripcion::getId).toList();
+            });
+
+            if (lote == null || lote.isEmpty()) {
+                break;
             }
+
+            canceladas += lote.size();
+            ultimoId = lote.get(lote.size() - 1);
         }
 
+        metricas.cancelacion(muestra, canceladas);
         return canceladas;
     }
 }
@@ -0,0 +1,138 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* MetricasFacturacion
+ *
+ * Métricas (Micrometer) del circuito de facturación, publicadas en /actuator/prometheus:
+ * - facturacion.renovacion.fase        duración de cada fase del proceso nocturno (fase)
+ * - facturacion.renovacion.lote        duración de cada lote de renovación
+ * - facturacion.renovacion.fallidas    suscripciones que no se pudieron renovar
+ * - facturacion.renovacion.ultima      instante (epoch s) de la última ejecución completada
+ * - facturacion.pago.auto              renovación + cobro automático (plan, metodo)
+ * - facturacion.cancelacion            duración de la cancelación por impago
+ * - facturacion.cancelaciones          suscripciones canceladas por impago
+ * - facturacion.pago.registrar         pago manual desde el panel (metodo, resultado)
+ * - facturacion.plan.cambio            cambio de plan (plan destino, resultado)
+ * - cache.gets / cache.evictions ...   cachés en memoria (cache, result=hit|miss), ver registrarCache
+ *
+ * Las etiquetas son de pocos valores (3 planes, 3 métodos): el método de pago llega
+ * del formulario, así que lo normalizamos para que no se cuele cualquier texto. */
+
+@Component
+public class MetricasFacturacion {
+
+    private static final Set<String> METODOS = Set.of("tarjeta", "paypal", "transferencia");
+
+    private final MeterRegistry registry;
+    private final Counter fallidas;
+    private final Counter canceladas;
+    private final Timer cancelacion;
+    private final Timer lote;
+    private final AtomicLong ultimaEjecucion = new AtomicLong();
+
+    public MetricasFacturacion(MeterRegistry registry) {
+        this.registry = registry;
+        this.fallidas = Counter.builder("facturacion.renovacion.fallidas")
+                .description("Suscripciones que fallaron al renovar")
+                .register(registry);
+        this.canceladas = Counter.builder("facturacion.cancelaciones")
+                .description("Suscripciones canceladas por impago")
+                .register(registry);
+        this.cancelacion = Timer.builder("facturacion.cancelacion")
+                .description("Duración de la cancelación por impago")
+                .register(registry);
+        this.lote = Timer.builder("facturacion.renovacion.lote")
+                .description("Duración de cada lote de renovación")
+                .register(registry);
+        Gauge.builder("facturacion.renovacion.ultima", ultimaEjecucion, AtomicLong::get)
+                .description("Instante (epoch s) de la última ejecución nocturna completada")
+                .register(registry);
+    }
+
+    public Timer.Sample iniciar() {
+        return Timer.start(registry);
+    }
+
+    // =========================================================
+    // RENOVACIÓN
+    // =========================================================
+
+    public void fase(Timer.Sample muestra, String fase) {
+        muestra.stop(Timer.builder("facturacion.renovacion.fase")
+                .description("Duración de cada fase del proceso nocturno")
+                .tag("fase", fase)
+                .register(registry));
+    }
+
+    public void lote(Timer.Sample muestra) {
+        muestra.stop(lote);
+    }
+
+    public void renovacionesFallidas(int cuantas) {
+        if (cuantas > 0) {
+            fallidas.increment(cuantas);
+        }
+    }
+
+    public void ejecucionCompletada(Instant instante) {
+        ultimaEjecucion.set(instante.getEpochSecond());
+    }
+
+    public void pagoAutomatico(Timer.Sample muestra, String plan, String metodo) {
+        muestra.stop(Timer.builder("facturacion.pago.auto")
+                .description("Renovación y cobro automático de una suscripción")
+                .tag("plan", plan)
+                .tag("metodo", metodo(metodo))
+                .register(registry));
+    }
+
+    // =========================================================
+    // CANCELACIÓN / PAGOS / PLANES
+    // =========================================================
+
+    public void cancelacion(Timer.Sample muestra, int cuantas) {
+        muestra.stop(cancelacion);
+        canceladas.increment(cuantas);
+    }
+
+    public void pagoRegistrado(Timer.Sample muestra, String metodo, boolean ok) {
+        muestra.stop(Timer.builder("facturacion.pago.registrar")
+                .description("Registro de un pago desde el panel")
+                .tag("metodo", metodo(metodo))
+                .tag("resultado", ok ? "ok" : "error")
+                .register(registry));
+    }
+
+    public void cambioPlan(Timer.Sample muestra, String plan, boolean ok) {
+        muestra.stop(Timer.builder("facturacion.plan.cambio")
+                .description("Cambio de plan de una suscripción")
+                .tag("plan", plan != null ? plan : "desconocido")
+                .tag("resultado", ok ? "ok" : "error")
+                .register(registry));
+    }
+
+    // =========================================================
+    // CACHÉS
+    // =========================================================
+
+    // Aciertos, fallos, descartes y tamaño de una caché de Caffeine (hay que crearla con recordStats)
+    public void registrarCache(String nombre, Cache<?, ?> cache) {
+        CaffeineCacheMetrics.monitor(registry, cache, nombre);
+    }
+
+    private static String metodo(String metodo) {
+        String normalizado = metodo == null ? "tarjeta" : metodo.toLowerCase();
+        return METODOS.contains(normalizado) ? normalizado : "otro";
+    }
+}
@@ -0,0 +1,189 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.domain.entity.MigracionDatos;
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoEjecucion;
+import com.proyectospringboot.proyectosaas.domain.event.FacturacionModificadaEvent;
+import com.proyectospringboot.proyectosaas.repository.FacturaRepository;
+import com.proyectospringboot.proyectosaas.repository.FacturaRepository.ClienteSinImpuesto;
+import com.proyectospringboot.proyectosaas.repository.MigracionDatosRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/* MigracionImpuestosService
+ *
+ * Corrige las facturas que se crearon antes de aplicar impuestos (impuesto = 0).
+ * Antes lo hacía FacturaService.migrarFacturasAntiguas() en cada visita a /admin/auditoria:
+ * leía todas las facturas, filtraba en Java y lanzaba un UPDATE por fila.
+ * - Va en segundo plano al arrancar y por lotes de facturas con impuesto = 0 (por id, índice
+ *   parcial de la V6). Cada lote es un UPDATE por país con el tipo de TaxRateResolver.
+ * - Cada lote y su marca de agua van en la misma transacción (tabla migraciones_datos):
+ *   si se corta, se retoma desde el último lote confirmado.
+ * - Solo la corre un nodo (el que la reclama) y, una vez COMPLETADA, no se vuelve a lanzar:
+ *   al arrancar es una sola lectura por clave primaria.
+ * - El progreso se consulta en /admin/migraciones/facturas-impuestos. */
+
+@Service
+public class MigracionImpuestosService {
+
+    public static final String NOMBRE = "facturas-impuestos";
+
+    static final int TAMANO_LOTE = 1000;
+
+    // Sin latido durante este tiempo, otro nodo puede adoptar la migración
+    static final int MINUTOS_SIN_LATIDO = 10;
+
+    private final FacturaRepository facturaRepository;
+    private final MigracionDatosRepository migracionRepository;
+    private final TaxRateResolver impuestos;
+    private final RenovacionService renovacionService;
+    private final TransactionTemplate tx;
+    private final ApplicationEventPublisher eventos;
+
+    public MigracionImpuestosService(FacturaRepository facturaRepository,
+            MigracionDatosRepository migracionRepository,
+            TaxRateResolver impuestos,
+            RenovacionService renovacionService,
+            TransactionTemplate tx,
+            ApplicationEventPublisher eventos) {
+        this.facturaRepository = facturaRepository;
+        this.migracionRepository = migracionRepository;
+        this.impuestos = impuestos;
+        this.renovacionService = renovacionService;
+        this.tx = tx;
+        this.eventos = eventos;
+    }
+
+    // En su propio hilo: el arranque no espera a la migración
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        Thread hilo = new Thread(() -> {
+            try {
+                ProgresoMigracion progreso = migrar();
+                if (progreso != null && progreso.actualizadas() > 0 && progreso.estado() == EstadoEjecucion.COMPLETADA) {
+                    System.out.println(">>> Impuestos aplicados a " + progreso.actualizadas() + " facturas antiguas.");
+                }
+            } catch (RuntimeException e) {
+                // Queda EN_CURSO con su marca de agua; se retoma en el siguiente arranque
+                System.err.println("Error en la migración de impuestos de facturas antiguas: " + e.getMessage());
+            }
+        }, "migracion-impuestos");
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    // =========================================================
+    // MIGRACIÓN
+    // =========================================================
+
+    // Devuelve el estado en que queda (null si la migración no existe en esta BD)
+    public ProgresoMigracion migrar() {
+        String nodo = renovacionService.getNodo();
+        LocalDateTime ahora = LocalDateTime.now();
+
+        Integer reclamada = tx.execute(status -> migracionRepository.reclamar(NOMBRE, EstadoEjecucion.EN_CURSO,
+                nodo, ahora, ahora.minusMinutes(MINUTOS_SIN_LATIDO)));
+
+        // Ya completada, la lleva otro nodo o no existe
+        if (reclamada == null || reclamada == 0) {
+            return consultarEstado().orElse(null);
+        }
+
+        long ultimoId = migracionRepository.findById(NOMBRE).orElseThrow().getUltimoIdProcesado();
+
+        while (true) {
+            Long finLote = facturaRepository.buscarFinLoteSinImpuesto(ultimoId, TAMANO_LOTE);
+            if (finLote == null) {
+                break;
+            }
+
+            long desde = ultimoId;
+            Boolean seguimosSiendoDuenos = tx.execute(status -> {
+                int actualizadas = aplicarLote(desde, finLote);
+
+                if (migracionRepository.registrarProgreso(NOMBRE, nodo, finLote, actualizadas,
+                        LocalDateTime.now()) == 0) {
+                    status.setRollbackOnly();
+                    return false;
+                }
+                return true;
+            });
+
+            // Otro nodo la adoptó (nos dio por muertos): que siga él
+            if (!Boolean.TRUE.equals(seguimosSiendoDuenos)) {
+                return consultarEstado().orElse(null);
+            }
+            ultimoId = finLote;
+        }
+
+        tx.execute(status -> migracionRepository.completar(NOMBRE, nodo, EstadoEjecucion.COMPLETADA,
+                LocalDateTime.now()));
+        return consultarEstado().orElse(null);
+    }
+
+    // Un UPDATE por país presente en el lote (normalmente uno o dos).
+    // Los países sin impuesto se saltan: sus facturas ya están bien a 0.
+    private int aplicarLote(long desde, long hasta) {
+        Map<String, List<Long>> clientesPorPais = facturaRepository.buscarClientesSinImpuesto(desde, hasta).stream()
+                .filter(c -> c.pais() != null)
+                .collect(Collectors.groupingBy(ClienteSinImpuesto::pais, LinkedHashMap::new,
+                        Collectors.mapping(ClienteSinImpuesto::usuarioId, Collectors.toList())));
+
+        int actualizadas = 0;
+
+        for (Map.Entry<String, List<Long>> pais : clientesPorPais.entrySet()) {
+            BigDecimal tipo = impuestos.tipo(pais.getKey());
+            if (tipo.signum() == 0) {
+                continue;
+            }
+
+            actualizadas += facturaRepository.aplicarImpuesto(pais.getKey(), tipo, desde, hasta);
+
+            // Se entregan al confirmar el lote (caché del panel de cada cliente)
+            pais.getValue().forEach(usuarioId -> eventos.publishEvent(new FacturacionModificadaEvent(usuarioId)));
+        }
+
+        return actualizadas;
+    }
+
+    // =========================================================
+    // PANEL DE ADMINISTRACIÓN
+    // =========================================================
+
+    public Optional<ProgresoMigracion> consultarEstado() {
+        return migracionRepository.findById(NOMBRE).map(this::aProgreso);
+    }
+
+    private ProgresoMigracion aProgreso(MigracionDatos m) {
+        long pendientes = m.getEstado() == EstadoEjecucion.COMPLETADA
+                ? 0L
+                : facturaRepository.contarSinImpuestoDesde(m.getUltimoIdProcesado());
+
+        return new ProgresoMigracion(m.getNombre(), m.getEstado(), m.getNodo(), m.getInicio(), m.getFin(),
+                m.getUltimaActualizacion(), m.getUltimoIdProcesado(), m.getActualizadas(), pendientes);
+    }
+
+    // pendientes: facturas con impuesto = 0 por encima de la marca de agua (incluye las
+    // de países sin impuesto, que se revisan pero se quedan igual)
+    public record ProgresoMigracion(
+            String nombre,
+            EstadoEjecucion estado,
+            String nodo,
+            LocalDateTime inicio,
+            LocalDateTime fin,
+            LocalDateTime ultimaActualizacion,
+            long ultimoIdProcesado,
+            long actualizadas,
+            long pendientes) {
+    }
+}
@@ -0,0 +1,155 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.config.PlanCatalogProperties;
+import com.proyectospringboot.proyectosaas.domain.entity.Plan;
+import com.proyectospringboot.proyectosaas.domain.valor.Dinero;
+import com.proyectospringboot.proyectosaas.repository.PlanRepository;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* PlanCatalog
+ *
+ * Catálogo de planes en memoria. Son tres filas que casi nunca cambian y antes se leían
+ * en cada GET /registro, en cada GET /dashboard y en cada alta o cambio de plan:
+ * - Se guarda una instantánea inmutable (lista ordenada por id + índices por id y por nombre)
+ *   que se carga con una sola consulta la primera vez que se pide.
+ * - Plan lleva como listener JPA EscuchaPlanes: al guardar o borrar un plan se descarta, y otra
+ *   vez al terminar la transacción, para que nadie se quede con lo de antes del commit.
+ *   La siguiente lectura la vuelve a cargar.
+ * - Lo que no pasa por JPA en esta réplica (otra réplica, un UPDATE a mano) no avisa: por eso
+ *   la instantánea caduca a los planes.catalogo.ttl-segundos y se vuelve a cargar igual.
+ * - Entrega PlanDisponible (datos, no entidades), así que se comparte entre peticiones.
+ *   Quien tenga que enlazar un plan a una suscripción usa planRepository.getReferenceById,
+ *   que no consulta. */
+
+@Service
+public class PlanCatalog {
+
+    private final PlanRepository planRepository;
+    private final long ttlNanos;
+
+    // Cada invalidación sube la versión: una carga que empezó antes no se queda como actual
+    private final AtomicLong version = new AtomicLong();
+    private volatile Instantanea actual;
+
+    // @Lazy: EscuchaPlanes lo necesita mientras se crea el EntityManagerFactory,
+    // antes de que exista el repositorio
+    public PlanCatalog(@Lazy PlanRepository planRepository, PlanCatalogProperties propiedades) {
+        this.planRepository = planRepository;
+        this.ttlNanos = Duration.ofSeconds(propiedades.ttlSegundos()).toNanos();
+    }
+
+    // =========================================================
+    // CONSULTAS
+    // =========================================================
+
+    // Todos los planes, por id (el orden en que se crearon: BASIC, PREMIUM, ENTERPRISE)
+    public List<PlanDisponible> planes() {
+        return instantanea().planes();
+    }
+
+    public Optional<PlanDisponible> porId(Long id) {
+        return Optional.ofNullable(instantanea().porId().get(id));
+    }
+
+    // Sin distinguir mayúsculas
+    public Optional<PlanDisponible> porNombre(String nombre) {
+        return Optional.ofNullable(instantanea().porNombre().get(clave(nombre)));
+    }
+
+    // =========================================================
+    // INVALIDACIÓN
+    // =========================================================
+
+    // Lo llama EscuchaPlanes al guardar o borrar un plan
+    public void alEscribirPlan() {
+        invalidar();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidar();
+                }
+            });
+        }
+    }
+
+    public void invalidar() {
+        version.incrementAndGet();
+        actual = null;
+    }
+
+    // =========================================================
+    // CARGA
+    // =========================================================
+
+    private Instantanea instantanea() {
+        Instantanea instantanea = actual;
+        if (instantanea != null && System.nanoTime() - instantanea.cargada() < ttlNanos) {
+            return instantanea;
+        }
+
+        long leida = version.get();
+        instantanea = Instantanea.de(planRepository.findAll(), System.nanoTime());
+
+        synchronized (this) {
+            if (version.get() == leida) {
+                actual = instantanea;
+            }
+        }
+        return instantanea;
+    }
+
+    private static String clave(String nombre) {
+        return nombre == null ? "" : nombre.trim().toUpperCase(Locale.ROOT);
+    }
+
+    // cargada: System.nanoTime() de cuando se leyó, para la caducidad
+    private record Instantanea(List<PlanDisponible> planes,
+                               Map<Long, PlanDisponible> porId,
+                               Map<String, PlanDisponible> porNombre,
+                               long cargada) {
+
+        static Instantanea de(List<Plan> entidades, long cargada) {
+            List<PlanDisponible> planes = entidades.stream()
+                    .map(PlanDisponible::de)
+                    .sorted(Comparator.comparing(PlanDisponible::id))
+                    .toList();
+
+            Map<Long, PlanDisponible> porId = new HashMap<>();
+            Map<String, PlanDisponible> porNombre = new HashMap<>();
+            for (PlanDisponible plan : planes) {
+                porId.put(plan.id(), plan);
+                porNombre.put(clave(plan.nombre()), plan);
+            }
+
+            return new Instantanea(planes, Map.copyOf(porId), Map.copyOf(porNombre), cargada);
+        }
+    }
+
+    // =========================================================
+    // MODELO
+    // =========================================================
+
+    // Lo que se pinta (id, nombre, precioMensual) y el precio en céntimos para facturar
+    public record PlanDisponible(Long id, String nombre, BigDecimal precioMensual, Dinero precioMensualDinero) {
+
+        static PlanDisponible de(Plan plan) {
+            return new PlanDisponible(plan.getId(), plan.getNombre(), plan.getPrecioMensual(),
+                    plan.getPrecioMensualDinero());
+        }
+    }
+}
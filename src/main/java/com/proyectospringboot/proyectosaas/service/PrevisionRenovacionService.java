@@ -0,0 +1,146 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.domain.entity.EjecucionRenovacion;
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoEjecucion;
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoSuscripcion;
+import com.proyectospringboot.proyectosaas.repository.EjecucionRenovacionRepository;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository.VencimientosAgrupados;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/* PrevisionRenovacionService
+ *
+ * Simulacro (dry-run) de la renovación automática: cuántas facturas se generarán
+ * cada uno de los próximos N días, con su base, impuesto y total. No escribe nada.
+ * - Una sola consulta agregada (día, precio del plan, país, nº de suscripciones).
+ * - El impuesto sale de FacturaService.calcularImpuesto por factura, igual que al renovar.
+ * - Si N pasa de 30 días, una suscripción vuelve a vencer 30 días después y se cuenta otra vez.
+ * - Lo que ya está vencido lo recoge la pasada de hoy. La renovación cobra un ciclo por pasada y
+ *   corre el vencimiento 30 días desde el que tenía, así que si lleva varios ciclos vencida se
+ *   cobra uno en cada pasada nocturna (hoy, mañana...) hasta ponerse al día, y luego sigue en
+ *   sus días de siempre (el primer vencimiento + 30, + 60...).
+ * La duración estimada sale del ritmo de la última ejecución completada del diario. */
+
+@Service
+public class PrevisionRenovacionService {
+
+    public static final int MAX_DIAS = 90;
+    private static final int DIAS_CICLO = 30;
+
+    private final SuscripcionRepository suscripcionRepository;
+    private final EjecucionRenovacionRepository ejecucionRepository;
+    private final FacturaService facturaService;
+
+    public PrevisionRenovacionService(SuscripcionRepository suscripcionRepository,
+            EjecucionRenovacionRepository ejecucionRepository,
+            FacturaService facturaService) {
+        this.suscripcionRepository = suscripcionRepository;
+        this.ejecucionRepository = ejecucionRepository;
+        this.facturaService = facturaService;
+    }
+
+    @Transactional(readOnly = true)
+    public PrevisionDTO prever(int dias, LocalDate hoy) {
+        if (dias < 1 || dias > MAX_DIAS) {
+            throw new IllegalArgumentException("Los días de previsión deben estar entre 1 y " + MAX_DIAS);
+        }
+
+        LocalDate fin = hoy.plusDays(dias);
+        List<VencimientosAgrupados> grupos = suscripcionRepository.agruparVencimientos(
+                EstadoSuscripcion.ACTIVA, fin.atStartOfDay());
+
+        Map<LocalDate, Acumulado> porDia = new TreeMap<>();
+
+        for (VencimientosAgrupados g : grupos) {
+            // Impuesto por factura (redondeado como al facturar) y luego por el nº de facturas
+            BigDecimal impuesto = facturaService.calcularImpuesto(g.pais(), g.precio());
+
+            // Cada ciclo se cobra el día que vence o, si ya iba tarde, en la pasada siguiente
+            // a la que cobró el anterior (una por noche)
+            LocalDate siguientePasada = hoy;
+            for (LocalDate vence = g.dia(); ; vence = vence.plusDays(DIAS_CICLO)) {
+                LocalDate cobro = vence.isBefore(siguientePasada) ? siguientePasada : vence;
+                if (!cobro.isBefore(fin)) {
+                    break;
+                }
+                porDia.computeIfAbsent(cobro, d -> new Acumulado()).sumar(g.cuantas(), g.precio(), impuesto);
+                siguientePasada = cobro.plusDays(1);
+            }
+        }
+
+        List<PrevisionDia> detalle = porDia.entrySet().stream()
+                .map(e -> e.getValue().aDia(e.getKey()))
+                .toList();
+
+        long facturas = detalle.stream().mapToLong(PrevisionDia::facturas).sum();
+        BigDecimal base = detalle.stream().map(PrevisionDia::base).reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal impuesto = detalle.stream().map(PrevisionDia::impuesto).reduce(BigDecimal.ZERO, BigDecimal::add);
+
+        Double ritmo = segundosPorSuscripcion();
+        Double segundosEstimados = ritmo == null ? null : ritmo * facturas;
+
+        return new PrevisionDTO(hoy, dias, facturas, base, impuesto, base.add(impuesto),
+                segundosEstimados, detalle);
+    }
+
+    // Ritmo de la última ejecución completada (incluye la cancelación: es una cota por arriba)
+    private Double segundosPorSuscripcion() {
+        return ejecucionRepository.findFirstByEstadoOrderByIdDesc(EstadoEjecucion.COMPLETADA)
+                .filter(e -> e.getFin() != null && e.getRenovadas() + e.getFallidas() > 0)
+                .map(this::ritmo)
+                .orElse(null);
+    }
+
+    private double ritmo(EjecucionRenovacion e) {
+        double segundos = Duration.between(e.getInicio(), e.getFin()).toMillis() / 1000.0;
+        return segundos / (e.getRenovadas() + e.getFallidas());
+    }
+
+    private static final class Acumulado {
+
+        private long facturas;
+        private BigDecimal base = BigDecimal.ZERO;
+        private BigDecimal impuesto = BigDecimal.ZERO;
+
+        void sumar(long cuantas, BigDecimal precio, BigDecimal impuestoPorFactura) {
+            BigDecimal n = BigDecimal.valueOf(cuantas);
+            facturas += cuantas;
+            base = base.add(precio.multiply(n));
+            impuesto = impuesto.add(impuestoPorFactura.multiply(n));
+        }
+
+        PrevisionDia aDia(LocalDate dia) {
+            return new PrevisionDia(dia, facturas, base, impuesto, base.add(impuesto));
+        }
+    }
+
+    // =========================================================
+    // DTOs
+    // =========================================================
+
+    public record PrevisionDia(LocalDate dia, long facturas, BigDecimal base, BigDecimal impuesto,
+            BigDecimal total) {
+    }
+
+    // segundosEstimados: lo que tardaría renovar todo lo previsto al ritmo de la
+    // última ejecución; null si aún no hay ninguna ejecución completada
+    public record PrevisionDTO(
+            LocalDate desde,
+            int dias,
+            long facturas,
+            BigDecimal base,
+            BigDecimal impuesto,
+            BigDecimal total,
+            Double segundosEstimados,
+            List<PrevisionDia> porDia) {
+    }
+}
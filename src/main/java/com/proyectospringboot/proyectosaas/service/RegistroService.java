@@ -2,15 +2,18 @@ package com.proyectospringboot.proyectosaas.service;
 
 import com.proyectospringboot.proyectosaas.domain.entity.Factura;
 import com.proyectospringboot.proyectosaas.domain.entity.Perfil;
-import com.proyectospringboot.proyectosaas.domain.entity.Plan;
 import com.proyectospringboot.proyectosaas.domain.entity.Suscripcion;
 import com.proyectospringboot.proyectosaas.domain.entity.Usuario;
 import com.proyectospringboot.proyectosaas.domain.enums.RolUsuario;
+import com.proyectospringboot.proyectosaas.domain.event.SuscripcionModificadaEvent;
+import com.proyectospringboot.proyectosaas.domain.valor.Dinero;
 import com.proyectospringboot.proyectosaas.repository.FacturaRepository;
 import com.proyectospringboot.proyectosaas.repository.PerfilRepository;
 import com.proyectospringboot.proyectosaas.repository.PlanRepository;
 import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
 import com.proyectospringboot.proyectosaas.repository.UsuarioRepository;
+import com.proyectospringboot.proyectosaas.service.PlanCatalog.PlanDisponible;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -35,25 +38,31 @@ public class RegistroService {
         private final PerfilRepository perfilRepository;
         private final SuscripcionRepository suscripcionRepository;
         private final PlanRepository planRepository;
+        private final PlanCatalog planCatalog;
         private final FacturaRepository facturaRepository;
         private final FacturaService facturaService;
         private final PasswordEncoder passwordEncoder;
+        private final ApplicationEventPublisher eventos;
 
         public RegistroService(UsuarioRepository usuarioRepository,
                         PerfilRepository perfilRepository,
                         SuscripcionRepository suscripcionRepository,
                         PlanRepository planRepository,
+                        PlanCatalog planCatalog,
                         FacturaRepository facturaRepository,
                         FacturaService facturaService,
-                        PasswordEncoder passwordEncoder) {
+                        PasswordEncoder passwordEncoder,
+                        ApplicationEventPublisher eventos) {
 
                 this.usuarioRepository = usuarioRepository;
                 this.perfilRepository = perfilRepository;
                 this.suscripcionRepository = suscripcionRepository;
                 this.planRepository = planRepository;
+                this.planCatalog = planCatalog;
                 this.facturaRepository = facturaRepository;
                 this.facturaService = facturaService;
                 this.passwordEncoder = passwordEncoder;
+                this.eventos = eventos;
         }
 
         // =========================================================
@@ -84,16 +93,17 @@ public class RegistroService {
                 Perfil perfil = new Perfil(usuario, nombre, apellidos, telefono);
                 perfilRepository.save(perfil);
 
-                Plan plan = planRepository.findById(planId)
+                // El plan sale del catálogo en memoria; la suscripción solo necesita su referencia
+                PlanDisponible plan = planCatalog.porId(planId)
                                 .orElseThrow(() -> new IllegalArgumentException("Plan no existe: " + planId));
 
-                Suscripcion suscripcion = new Suscripcion(usuario, plan);
+                Suscripcion suscripcion = new Suscripcion(usuario, planRepository.getReferenceById(plan.id()));
                 suscripcion = suscripcionRepository.save(suscripcion);
 
                 // Primera factura (snapshot económico de alta)
-                BigDecimal importeBase = plan.getPrecioMensual();
-                BigDecimal impuesto = facturaService.calcularImpuesto(pais, importeBase);
-                BigDecimal total = importeBase.add(impuesto);
+                Dinero importeBase = plan.precioMensualDinero();
+                Dinero impuesto = facturaService.calcularImpuesto(pais, importeBase);
+                Dinero total = importeBase.mas(impuesto);
 
                 Factura factura = new Factura(
                                 suscripcion,
@@ -105,6 +115,9 @@ public class RegistroService {
 
                 facturaRepository.save(factura);
 
+                // Nueva suscripción: la renovación continua la programa al confirmar
+                eventos.publishEvent(new SuscripcionModificadaEvent(usuario.getId()));
+
                 return usuario;
         }
 
@@ -0,0 +1,54 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.repository.FacturaRepository;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/* RellenoEstadoPagoService
+ *
+ * Calcula el estado de pago de las facturas que ya existían antes de la migración V3
+ * (las que tienen estado_pago a null): PAGADA con la fecha del pago si lo tienen,
+ * PENDIENTE si no.
+ * - Va por lotes, cada uno en su transacción, para no bloquear la tabla entera.
+ * - Solo toca filas a null, así que se puede relanzar sin riesgo: si un pago entra a la
+ *   vez, o lo ve el lote o lo marca el propio Pago al guardarse.
+ * - Se lanza al arrancar; cuando ya no queda nada es una sola consulta sobre un índice
+ *   parcial vacío. */
+
+@Service
+public class RellenoEstadoPagoService {
+
+    static final int TAMANO_LOTE = 1000;
+
+    private final FacturaRepository facturaRepository;
+    private final TransactionTemplate tx;
+
+    public RellenoEstadoPagoService(FacturaRepository facturaRepository, TransactionTemplate tx) {
+        this.facturaRepository = facturaRepository;
+        this.tx = tx;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        int total = rellenar();
+        if (total > 0) {
+            System.out.println(">>> Estado de pago calculado en " + total + " facturas antiguas.");
+        }
+    }
+
+    public int rellenar() {
+        int total = 0;
+
+        while (true) {
+            Integer lote = tx.execute(status -> facturaRepository.rellenarEstadoPago(TAMANO_LOTE));
+            int actualizadas = lote == null ? 0 : lote;
+            total += actualizadas;
+
+            if (actualizadas < TAMANO_LOTE) {
+                return total;
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.config.RenovacionContinuaProperties;
+import com.proyectospringboot.proyectosaas.config.RenovacionProperties;
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoSuscripcion;
+import com.proyectospringboot.proyectosaas.domain.event.SuscripcionModificadaEvent;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository.Vencimiento;
+import com.proyectospringboot.proyectosaas.service.RenovacionService.ResultadoRenovacion;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/* RenovacionContinuaService
+ *
+ * Renovación continua (renovacion.continua.habilitado=true): en vez de acumular toda
+ * la carga en el cron de las 2:00, cada suscripción se renueva poco después de vencer.
+ * - Los próximos vencimientos (hasta horizonteMinutos por delante) se cargan en una
+ *   cola en memoria, por keyset sobre (fechaFinCiclo, id) y sin pasar de "capacidad".
+ * - Cada intervaloSegundos se saca de la cola lo que ya ha vencido y se renueva en
+ *   lotes pequeños con RenovacionService.renovarIds (que lo vuelve a comprobar en BD).
+ * - Alta, cambio de plan y pago automático publican SuscripcionModificadaEvent; al
+ *   confirmarse la transacción movemos o quitamos esa suscripción de la cola.
+ * El cron nocturno sigue como barrido de seguridad: renueva lo que la cola se haya
+ * saltado (nodo caído, capacidad llena, fallos...). */
+
+@Service
+public class RenovacionContinuaService {
+
+    // Cursor inicial: así la primera carga también recoge las que ya estaban vencidas
+    private static final LocalDateTime INICIO = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    private final SuscripcionRepository suscripcionRepository;
+    private final RenovacionService renovacionService;
+    private final boolean habilitado;
+    private final int horizonteMinutos;
+    private final int capacidad;
+    private final int tamanoLote;
+
+    private final ColaVencimientos cola = new ColaVencimientos();
+
+    // Protege el cursor: todo lo que está en BD por detrás de él ya se ha pasado a la cola
+    private final Object cerrojo = new Object();
+    private LocalDateTime cursorFecha = INICIO;
+    private long cursorId = 0L;
+
+    public RenovacionContinuaService(SuscripcionRepository suscripcionRepository,
+            RenovacionService renovacionService,
+            RenovacionContinuaProperties propiedades,
+            RenovacionProperties propiedadesRenovacion) {
+        this.suscripcionRepository = suscripcionRepository;
+        this.renovacionService = renovacionService;
+        this.habilitado = propiedades.habilitado();
+        this.horizonteMinutos = propiedades.horizonteMinutos();
+        this.capacidad = Math.max(1, propiedades.capacidad());
+        this.tamanoLote = Math.max(1, propiedadesRenovacion.tamanoLote());
+    }
+
+    public boolean isHabilitado() {
+        return habilitado;
+    }
+
+    // =========================================================
+    // TICK DEL SCHEDULER
+    // =========================================================
+
+    public ResultadoRenovacion procesarVencidas(LocalDateTime ahora) {
+        if (!habilitado) {
+            return new ResultadoRenovacion(0, 0);
+        }
+
+        rellenar(ahora);
+
+        int renovadas = 0;
+        int fallidas = 0;
+
+        while (true) {
+            List<Long> ids = cola.extraerVencidas(ahora, tamanoLote);
+
+            if (ids.isEmpty()) {
+                break;
+            }
+
+            // Si alguna falla, se queda fuera de la cola y la recoge el cron nocturno
+            ResultadoRenovacion lote = renovacionService.renovarIds(ids, ahora);
+            renovadas += lote.renovadas();
+            fallidas += lote.fallidas();
+        }
+
+        return new ResultadoRenovacion(renovadas, fallidas);
+    }
+
+    // Carga vencimientos hasta ahora + horizonte, pero sin pasar de la capacidad.
+    // Cada página se consulta y se aplica con el cerrojo cogido, para que un evento
+    // no se cuele entre la consulta y el avance del cursor.
+    private void rellenar(LocalDateTime ahora) {
+        LocalDateTime hasta = ahora.plusMinutes(horizonteMinutos);
+
+        while (true) {
+            synchronized (cerrojo) {
+                int hueco = Math.min(tamanoLote, capacidad - cola.tamano());
+                if (hueco <= 0) {
+                    return;
+                }
+
+                List<Vencimiento> pagina = suscripcionRepository.buscarProximosVencimientos(
+                        EstadoSuscripcion.ACTIVA, cursorFecha, cursorId, hasta, Limit.of(hueco));
+
+                for (Vencimiento v : pagina) {
+                    cola.programar(v.id(), v.fechaFinCiclo());
+                }
+
+                if (!pagina.isEmpty()) {
+                    Vencimiento ultimo = pagina.get(pagina.size() - 1);
+                    cursorFecha = ultimo.fechaFinCiclo();
+                    cursorId = ultimo.id();
+                }
+
+                if (pagina.size() < hueco) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // =========================================================
+    // CAMBIOS EN SUSCRIPCIONES
+    // =========================================================
+
+    // Después del commit (o enseguida si no había transacción, p.ej. desde un controlador)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void alModificarSuscripcion(SuscripcionModificadaEvent evento) {
+        if (!habilitado) {
+            return;
+        }
+
+        Optional<Vencimiento> renovable = suscripcionRepository.buscarVencimientoRenovable(
+                evento.usuarioId(), EstadoSuscripcion.ACTIVA);
+        Long id = renovable.map(Vencimiento::id)
+                .orElseGet(() -> suscripcionRepository.buscarIdPorUsuarioId(evento.usuarioId()).orElse(null));
+
+        if (id == null) {
+            return;
+        }
+
+        synchronized (cerrojo) {
+            // Si el vencimiento cae por delante del cursor, ya lo traerá la carga normal
+            if (renovable.isPresent() && !porDelanteDelCursor(renovable.get())) {
+                cola.programar(id, renovable.get().fechaFinCiclo());
+            } else {
+                cola.quitar(id);
+            }
+        }
+    }
+
+    private boolean porDelanteDelCursor(Vencimiento v) {
+        int comparacion = v.fechaFinCiclo().compareTo(cursorFecha);
+        return comparacion > 0 || (comparacion == 0 && v.id() > cursorId);
+    }
+
+    // =========================================================
+    // ESTADO (para el panel)
+    // =========================================================
+
+    public EstadoCola consultarEstado() {
+        synchronized (cerrojo) {
+            return new EstadoCola(habilitado, cola.tamano(), capacidad, cola.proximoVencimiento(), cursorFecha);
+        }
+    }
+
+    // cargadoHasta: los vencimientos anteriores a esta fecha ya están en la cola
+    public record EstadoCola(boolean habilitado, int enCola, int capacidad,
+            LocalDateTime proximoVencimiento, LocalDateTime cargadoHasta) {
+    }
+}
@@ -0,0 +1,406 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.config.RenovacionProperties;
+import com.proyectospringboot.proyectosaas.domain.entity.Suscripcion;
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoSuscripcion;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import io.micrometer.core.instrument.Timer;
+import jakarta.persistence.EntityManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/* RenovacionService
+ *
+ * Motor de la renovación automática (domiciliación) del proceso nocturno.
+ * En vez de cargar todas las suscripciones vencidas en una lista, las recorremos
+ * por id (keyset) en lotes de tamaño fijo:
+ * - Cada lote se confirma en su propia transacción.
+ * - Al acabar el lote vaciamos el contexto de persistencia, así la memoria
+ *   se mantiene estable aunque venzan cientos de miles de suscripciones la misma noche.
+ * Si un lote falla, lo repetimos suscripción a suscripción para que el error
+ * de una no impida renovar las demás (igual que el try/catch de antes).
+ *
+ * Modo paralelo (renovacion.paralelo.habilitado=true): cada lote se reparte en
+ * particiones entre un pool acotado de hilos. Ahí cada suscripción va en su propia
+ * transacción y al final se informa del rendimiento de cada trabajador.
+ *
+ * Reparto entre nodos (renovacion.reparto-entre-nodos, activado por defecto): si hay varias
+ * réplicas, cada lote se reclama con SELECT ... FOR UPDATE SKIP LOCKED y se marca con un lease
+ * (nodo + caducidad). Así cada réplica se lleva lotes distintos y ninguna factura se
+ * duplica. Si un nodo muere, sus suscripciones vuelven a estar libres al caducar el lease.
+ *
+ * renovarIds() es la entrada de la renovación continua (ver RenovacionContinuaService):
+ * recibe ids concretos ya vencidos y los renueva como un lote más. */
+
+@Service
+public class RenovacionService {
+
+    private final SuscripcionRepository suscripcionRepository;
+    private final FacturaService facturaService;
+    private final TransactionTemplate tx;
+    private final EntityManager entityManager;
+    private final int tamanoLote;
+    private final boolean paralelo;
+    private final int hilos;
+    private final boolean repartoEntreNodos;
+    private final int minutosLease;
+    private final String nodo;
+    private final MetricasFacturacion metricas;
+
+    public RenovacionService(SuscripcionRepository suscripcionRepository,
+            FacturaService facturaService,
+            TransactionTemplate tx,
+            EntityManager entityManager,
+            RenovacionProperties propiedades,
+            MetricasFacturacion metricas) {
+        this.suscripcionRepository = suscripcionRepository;
+        this.facturaService = facturaService;
+        this.tx = tx;
+        this.entityManager = entityManager;
+        this.tamanoLote = propiedades.tamanoLote();
+        this.paralelo = propiedades.paralelo().habilitado();
+        this.hilos = Math.max(1, propiedades.paralelo().hilos());
+        this.repartoEntreNodos = propiedades.repartoEntreNodos();
+        this.minutosLease = propiedades.leaseMinutos();
+        // Si no se configura, usamos "pid@host", que ya es único por réplica
+        String nodo = propiedades.nodo();
+        this.nodo = (nodo == null || nodo.isBlank()) ? ManagementFactory.getRuntimeMXBean().getName() : nodo;
+        this.metricas = metricas;
+    }
+
+    // Identificador de esta réplica (también se usa en el diario de ejecuciones)
+    public String getNodo() {
+        return nodo;
+    }
+
+    // =========================================================
+    // RENOVACIÓN POR LOTES (keyset)
+    // =========================================================
+
+    public ResultadoRenovacion renovarVencidas(LocalDateTime ahora) {
+        return renovarVencidas(ahora, 0L, null);
+    }
+
+    // Igual, pero empezando después de desdeId (reanudación) y avisando de cada lote con el
+    // último id procesado y los contadores acumulados de esta llamada. El aviso va dentro de
+    // una transacción: la del propio lote cuando se renueva entero, así lo que apunte (la marca
+    // de agua) se confirma con el lote o con nada. En paralelo o al repetir un lote una a una va
+    // en una transacción aparte; ahí cada suscripción se comprueba antes de cobrarla (renovarUna).
+    public ResultadoRenovacion renovarVencidas(LocalDateTime ahora,
+            long desdeId,
+            BiConsumer<Long, ResultadoRenovacion> alConfirmarLote) {
+        long ultimoId = desdeId;
+        int renovadas = 0;
+        int fallidas = 0;
+
+        // Solo creamos el pool si está activado el modo paralelo
+        ExecutorService pool = paralelo ? crearPool() : null;
+        Map<String, RendimientoTrabajador> rendimiento = new ConcurrentHashMap<>();
+
+        // Con reparto entre nodos, lo que ha reclamado esta pasada (se suelta al final)
+        List<Long> reclamadas = new ArrayList<>();
+
+        try {
+            while (true) {
+                List<Long> ids = siguienteLote(ultimoId, ahora);
+
+                if (ids.isEmpty()) {
+                    break;
+                }
+                if (repartoEntreNodos) {
+                    reclamadas.addAll(ids);
+                }
+
+                // El siguiente lote empieza justo después del último id visto
+                long ultimoDelLote = ids.get(ids.size() - 1);
+                int renovadasPrevias = renovadas;
+                int fallidasPrevias = fallidas;
+                Consumer<ResultadoRenovacion> apuntar = alConfirmarLote == null
+                        ? null
+                        : r -> alConfirmarLote.accept(ultimoDelLote, new ResultadoRenovacion(
+                                renovadasPrevias + r.renovadas(), fallidasPrevias + r.fallidas()));
+
+                Timer.Sample muestra = metricas.iniciar();
+                ResultadoRenovacion lote;
+                if (pool != null) {
+                    lote = procesarLoteEnParalelo(pool, ids, ahora, rendimiento);
+                    apuntarAparte(apuntar, lote);
+                } else {
+                    lote = procesarLote(ids, ahora, apuntar);
+                }
+                metricas.lote(muestra);
+                renovadas += lote.renovadas();
+                fallidas += lote.fallidas();
+                ultimoId = ultimoDelLote;
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+                rendimiento.values().forEach(r -> System.out.println(r.resumen()));
+            }
+            liberar(reclamadas);
+        }
+
+        return new ResultadoRenovacion(renovadas, fallidas);
+    }
+
+    // =========================================================
+    // RENOVACIÓN DE IDS CONCRETOS (renovación continua)
+    // =========================================================
+
+    // Renueva las suscripciones indicadas que sigan vencidas a "ahora". Los ids vienen de
+    // la cola en memoria, así que antes se vuelven a comprobar contra la BD (y con reparto
+    // entre nodos se reclaman con lease, igual que en la pasada nocturna).
+    public ResultadoRenovacion renovarIds(List<Long> ids, LocalDateTime ahora) {
+        if (ids.isEmpty()) {
+            return new ResultadoRenovacion(0, 0);
+        }
+
+        List<Long> vigentes = reclamar(ids, ahora);
+        try {
+            return vigentes.isEmpty() ? new ResultadoRenovacion(0, 0) : procesarLote(vigentes, ahora, null);
+        } finally {
+            if (repartoEntreNodos) {
+                liberar(vigentes);
+            }
+        }
+    }
+
+    private List<Long> reclamar(List<Long> ids, LocalDateTime ahora) {
+        if (!repartoEntreNodos) {
+            return suscripcionRepository.filtrarVencidasConPagoAuto(ids, EstadoSuscripcion.ACTIVA, ahora);
+        }
+
+        List<Long> reclamadas = tx.execute(status -> {
+            LocalDateTime instante = LocalDateTime.now();
+            List<Long> libres = suscripcionRepository.bloquearVencidasLibresPorIds(ids, ahora, instante);
+
+            if (!libres.isEmpty()) {
+                suscripcionRepository.asignarLease(libres, nodo, instante.plusMinutes(minutosLease));
+            }
+            return libres;
+        });
+
+        return reclamadas != null ? reclamadas : List.of();
+    }
+
+    // Suelta los leases de estas suscripciones (solo si siguen siendo de este nodo), por lotes
+    // para no mandar un IN enorme al acabar una pasada larga
+    private void liberar(List<Long> reclamadas) {
+        for (int i = 0; i < reclamadas.size(); i += tamanoLote) {
+            List<Long> lote = reclamadas.subList(i, Math.min(i + tamanoLote, reclamadas.size()));
+            tx.execute(status -> suscripcionRepository.liberarLeases(nodo, lote));
+        }
+    }
+
+    private List<Long> siguienteLote(long ultimoId, LocalDateTime ahora) {
+        if (!repartoEntreNodos) {
+            return suscripcionRepository.buscarIdsVencidasConPagoAuto(
+                    EstadoSuscripcion.ACTIVA, ahora, ultimoId, Limit.of(tamanoLote));
+        }
+
+        // Reclamamos el lote en una transacción corta: los bloqueos solo duran lo que
+        // tarda en apuntarse el lease, luego es el lease el que aparta a los demás nodos.
+        List<Long> ids = tx.execute(status -> {
+            LocalDateTime instante = LocalDateTime.now();
+            List<Long> libres = suscripcionRepository.bloquearVencidasLibres(ahora, ultimoId, instante, tamanoLote);
+
+            if (!libres.isEmpty()) {
+                suscripcionRepository.asignarLease(libres, nodo, instante.plusMinutes(minutosLease));
+            }
+            return libres;
+        });
+
+        return ids != null ? ids : List.of();
+    }
+
+    // apuntar (puede ser null) va dentro de la transacción del lote
+    private ResultadoRenovacion procesarLote(List<Long> ids, LocalDateTime ahora,
+            Consumer<ResultadoRenovacion> apuntar) {
+        try {
+            ResultadoRenovacion resultado = tx.execute(status -> {
+                List<Suscripcion> lote = suscripcionRepository.buscarPorIdsConUsuarioYPlan(ids);
+
+                for (Suscripcion s : lote) {
+                    facturaService.renovarYPagarAuto(s);
+                }
+
+                // Mandamos los INSERT/UPDATE del lote y soltamos las entidades gestionadas
+                entityManager.flush();
+                entityManager.clear();
+
+                ResultadoRenovacion r = new ResultadoRenovacion(lote.size(), 0);
+                if (apuntar != null) {
+                    apuntar.accept(r);
+                }
+                return r;
+            });
+
+            return resultado != null ? resultado : new ResultadoRenovacion(0, 0);
+
+        } catch (RuntimeException e) {
+            System.err.println("Error en el lote de renovación (ids " + ids.get(0) + " a "
+                    + ids.get(ids.size() - 1) + "): " + e.getMessage() + ". Se reintenta una a una.");
+            ResultadoRenovacion resultado = procesarUnaAUna(ids, ahora);
+            apuntarAparte(apuntar, resultado);
+            return resultado;
+        }
+    }
+
+    // Cuando el lote no ha ido en una sola transacción (paralelo o una a una)
+    private void apuntarAparte(Consumer<ResultadoRenovacion> apuntar, ResultadoRenovacion resultado) {
+        if (apuntar != null) {
+            tx.execute(status -> {
+                apuntar.accept(resultado);
+                return null;
+            });
+        }
+    }
+
+    // Plan B: una transacción por suscripción para aislar la que falla
+    private ResultadoRenovacion procesarUnaAUna(List<Long> ids, LocalDateTime ahora) {
+        int renovadas = 0;
+        int fallidas = 0;
+
+        for (Long id : ids) {
+            try {
+                if (renovarUna(id, ahora)) {
+                    renovadas++;
+                }
+            } catch (RuntimeException e) {
+                fallidas++;
+                metricas.renovacionesFallidas(1);
+                System.err.println("Error al renovar auto (suscripción " + id + "): " + e.getMessage());
+            }
+        }
+
+        return new ResultadoRenovacion(renovadas, fallidas);
+    }
+
+    // Renueva una suscripción en su propia transacción. Devuelve false si ya no tocaba.
+    // Aquí la marca de agua no va con la renovación: si la pasada se corta y se repite el lote,
+    // la que ya tenga su factura desde el corte no se vuelve a cobrar (con más de 30 días de
+    // retraso seguiría vencida tras renovarla).
+    private boolean renovarUna(Long id, LocalDateTime ahora) {
+        Boolean renovada = tx.execute(status -> {
+            Suscripcion s = suscripcionRepository.findById(id).orElse(null);
+
+            // Puede que ya no toque (p.ej. renovada a mano mientras tanto)
+            if (s == null || s.getEstado() != EstadoSuscripcion.ACTIVA
+                    || !s.getFechaFinCiclo().isBefore(ahora)
+                    || facturaService.renovadaDesde(id, ahora)) {
+                return false;
+            }
+
+            facturaService.renovarYPagarAuto(s);
+            return true;
+        });
+
+        return Boolean.TRUE.equals(renovada);
+    }
+
+    // =========================================================
+    // MODO PARALELO
+    // =========================================================
+
+    private ExecutorService crearPool() {
+        AtomicInteger contador = new AtomicInteger();
+        return Executors.newFixedThreadPool(hilos, r -> {
+            Thread hilo = new Thread(r, "renovacion-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+
+    private ResultadoRenovacion procesarLoteEnParalelo(ExecutorService pool,
+            List<Long> ids,
+            LocalDateTime ahora,
+            Map<String, RendimientoTrabajador> rendimiento) {
+
+        // Repartimos el lote en tantas particiones como hilos
+        List<Callable<ResultadoRenovacion>> tareas = new ArrayList<>();
+        int tamanoParticion = (ids.size() + hilos - 1) / hilos;
+
+        for (int desde = 0; desde < ids.size(); desde += tamanoParticion) {
+            List<Long> particion = ids.subList(desde, Math.min(desde + tamanoParticion, ids.size()));
+            tareas.add(() -> procesarParticion(particion, ahora, rendimiento));
+        }
+
+        int renovadas = 0;
+        int fallidas = 0;
+
+        try {
+            // Esperamos a que acabe todo el lote antes de pedir el siguiente
+            for (Future<ResultadoRenovacion> futuro : pool.invokeAll(tareas)) {
+                ResultadoRenovacion r = futuro.get();
+                renovadas += r.renovadas();
+                fallidas += r.fallidas();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Renovación en paralelo interrumpida", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Error inesperado en un trabajador de renovación", e.getCause());
+        }
+
+        return new ResultadoRenovacion(renovadas, fallidas);
+    }
+
+    private ResultadoRenovacion procesarParticion(List<Long> ids,
+            LocalDateTime ahora,
+            Map<String, RendimientoTrabajador> rendimiento) {
+
+        long inicio = System.nanoTime();
+        ResultadoRenovacion resultado = procesarUnaAUna(ids, ahora);
+
+        rendimiento.computeIfAbsent(Thread.currentThread().getName(), RendimientoTrabajador::new)
+                .sumar(resultado, System.nanoTime() - inicio);
+
+        return resultado;
+    }
+
+    public record ResultadoRenovacion(int renovadas, int fallidas) {
+    }
+
+    // Contadores por hilo. Cada instancia solo la actualiza su propio hilo.
+    static final class RendimientoTrabajador {
+
+        private final String nombre;
+        private int renovadas;
+        private int fallidas;
+        private long nanos;
+
+        RendimientoTrabajador(String nombre) {
+            this.nombre = nombre;
+        }
+
+        void sumar(ResultadoRenovacion resultado, long nanosParticion) {
+            renovadas += resultado.renovadas();
+            fallidas += resultado.fallidas();
+            nanos += nanosParticion;
+        }
+
+        String resumen() {
+            double segundos = nanos / 1_000_000_000.0;
+            double porSegundo = segundos > 0 ? (renovadas + fallidas) / segundos : 0;
+            return String.format("Trabajador %s: %d renovadas, %d fallidas en %.1f s (%.1f suscripciones/s)",
+                    nombre, renovadas, fallidas, segundos, porSegundo);
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.config.RetencionAuditoriaProperties;
+import org.postgresql.PGConnection;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/* RetencionAuditoriaService
+ *
+ * Mantiene las particiones mensuales de suscripciones_aud y revinfo (V8__particiones_auditoria.sql):
+ * - Deja creadas las del mes en curso y las de los siguientes (auditoria.retencion.meses-por-adelantado).
+ *   Si faltase alguna, las revisiones irían a la partición por defecto, que no se archiva; al crear
+ *   después ese mes, la función de la V9 le pasa esas filas. Cada mes se crea en su transacción:
+ *   si uno falla se avisa y los demás se crean igual.
+ * - Los meses que pasan de la retención (auditoria.retencion.meses) se exportan con COPY a un csv
+ *   comprimido por tabla en auditoria.retencion.directorio y después se separan y se borran.
+ *   Así las tablas en línea no pasan de unos pocos meses y el historial solo recorre esos.
+ * - Cada mes va en su transacción con un bloqueo consultivo de PostgreSQL: si dos réplicas lo
+ *   intentan a la vez, una se lo salta. Si algo falla a medias la partición sigue en su sitio y se
+ *   vuelve a exportar en la siguiente pasada (el fichero se sobrescribe).
+ * La pasada diaria la lanza RenovacionScheduler; al arrancar solo se crean las particiones. */
+
+@Service
+public class RetencionAuditoriaService {
+
+    static final List<String> TABLAS = List.of("suscripciones_aud", "revinfo");
+
+    // Clave del bloqueo consultivo (pg_advisory_xact_lock) que reparte el trabajo entre réplicas
+    static final long CLAVE_BLOQUEO = 8_250_001L;
+
+    private static final Pattern PARTICION = Pattern.compile("(?:suscripciones_aud|revinfo)_(\\d{4})_(\\d{2})");
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final RetencionAuditoriaProperties propiedades;
+
+    public RetencionAuditoriaService(JdbcTemplate jdbc,
+            TransactionTemplate tx,
+            RetencionAuditoriaProperties propiedades) {
+        this.jdbc = jdbc;
+        this.tx = tx;
+        this.propiedades = propiedades;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void alArrancar() {
+        // Si falla algún mes, mientras tanto sus revisiones caen en la partición por defecto
+        crearParticiones(YearMonth.now());
+    }
+
+    // =========================================================
+    // PASADA DIARIA
+    // =========================================================
+
+    public ResultadoRetencion mantener(YearMonth mesActual) {
+
+        crearParticiones(mesActual);
+
+        YearMonth primeroEnLinea = mesActual.minusMonths(propiedades.meses());
+        List<YearMonth> archivados = new ArrayList<>();
+
+        for (YearMonth mes : mesesEnLinea()) {
+            if (!mes.isBefore(primeroEnLinea)) {
+                break;
+            }
+            // Lo está haciendo otra réplica
+            if (!archivar(mes)) {
+                break;
+            }
+            archivados.add(mes);
+        }
+
+        return new ResultadoRetencion(archivados, Paths.get(propiedades.directorio()).toAbsolutePath());
+    }
+
+    // Devuelve los meses que no se han podido crear (ya avisados por el log de errores)
+    List<YearMonth> crearParticiones(YearMonth mesActual) {
+        List<YearMonth> fallidos = new ArrayList<>();
+
+        for (int i = 0; i <= propiedades.mesesPorAdelantado(); i++) {
+            YearMonth mes = mesActual.plusMonths(i);
+            try {
+                tx.execute(status -> {
+                    jdbc.queryForList("SELECT pg_advisory_xact_lock(?)", CLAVE_BLOQUEO);
+                    return jdbc.queryForList("SELECT auditoria_crear_particion(?)", mes.atDay(1));
+                });
+            } catch (RuntimeException e) {
+                System.err.println("ERROR: no se pudo crear la partición de auditoría de " + mes
+                        + " (sus revisiones siguen en la partición por defecto): " + e.getMessage());
+                fallidos.add(mes);
+            }
+        }
+        return fallidos;
+    }
+
+    // Meses con partición en alguna de las dos tablas, del más antiguo al más reciente
+    List<YearMonth> mesesEnLinea() {
+        List<String> particiones = jdbc.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "WHERE i.inhparent IN ('suscripciones_aud'::regclass, 'revinfo'::regclass)",
+                String.class);
+
+        TreeSet<YearMonth> meses = new TreeSet<>();
+        for (String particion : particiones) {
+            Matcher m = PARTICION.matcher(particion);
+            if (m.matches()) {
+                meses.add(YearMonth.of(Integer.parseInt(m.group(1)), Integer.parseInt(m.group(2))));
+            }
+        }
+        return new ArrayList<>(meses);
+    }
+
+    // =========================================================
+    // ARCHIVO DE UN MES
+    // =========================================================
+
+    // Exporta las dos particiones del mes y las quita, todo en la misma transacción.
+    // Devuelve false si otra réplica tiene el bloqueo.
+    boolean archivar(YearMonth mes) {
+        Boolean archivado = tx.execute(status -> {
+            if (!Boolean.TRUE.equals(jdbc.queryForObject("SELECT pg_try_advisory_xact_lock(?)",
+                    Boolean.class, CLAVE_BLOQUEO))) {
+                return false;
+            }
+
+            for (String tabla : TABLAS) {
+                String particion = nombreParticion(tabla, mes);
+                if (jdbc.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, particion)) {
+                    exportar(particion);
+                }
+            }
+
+            jdbc.queryForList("SELECT auditoria_quitar_particion(?)", mes.atDay(1));
+            return true;
+        });
+        return Boolean.TRUE.equals(archivado);
+    }
+
+    // COPY ... TO STDOUT a <directorio>/<particion>.csv.gz. Se escribe en un .tmp y se renombra
+    // al acabar, así que un fichero con el nombre final siempre está completo.
+    private void exportar(String particion) {
+        Path directorio = Paths.get(propiedades.directorio());
+        Path destino = directorio.resolve(particion + ".csv.gz");
+        Path temporal = directorio.resolve(particion + ".csv.gz.tmp");
+
+        try {
+            Files.createDirectories(directorio);
+            try (OutputStream salida = new GZIPOutputStream(Files.newOutputStream(temporal))) {
+                jdbc.execute((ConnectionCallback<Long>) con -> copiar(con.unwrap(PGConnection.class),
+                        "COPY " + particion + " TO STDOUT WITH (FORMAT csv, HEADER)", salida));
+            }
+            Files.move(temporal, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se pudo exportar " + particion + " a " + destino, e);
+        }
+    }
+
+    private static long copiar(PGConnection conexion, String sql, OutputStream salida) throws SQLException {
+        try {
+            return conexion.getCopyAPI().copyOut(sql, salida);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String nombreParticion(String tabla, YearMonth mes) {
+        return String.format("%s_%04d_%02d", tabla, mes.getYear(), mes.getMonthValue());
+    }
+
+    // directorio: dónde han quedado los ficheros de los meses archivados
+    public record ResultadoRetencion(List<YearMonth> mesesArchivados, Path directorio) {
+    }
+}
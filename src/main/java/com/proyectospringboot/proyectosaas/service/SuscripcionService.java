@@ -4,14 +4,17 @@ import com.proyectospringboot.proyectosaas.domain.entity.Factura;
 import com.proyectospringboot.proyectosaas.domain.entity.Plan;
 import com.proyectospringboot.proyectosaas.domain.entity.Suscripcion;
 import com.proyectospringboot.proyectosaas.domain.enums.EstadoSuscripcion;
+import com.proyectospringboot.proyectosaas.domain.event.SuscripcionModificadaEvent;
+import com.proyectospringboot.proyectosaas.domain.valor.Dinero;
 import com.proyectospringboot.proyectosaas.repository.FacturaRepository;
 import com.proyectospringboot.proyectosaas.repository.PlanRepository;
 import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import com.proyectospringboot.proyectosaas.service.PlanCatalog.PlanDisponible;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.Objects;
@@ -21,17 +24,26 @@ public class SuscripcionService {
 
     private final SuscripcionRepository suscripcionRepository;
     private final PlanRepository planRepository;
+    private final PlanCatalog planCatalog;
     private final FacturaRepository facturaRepository;
     private final FacturaService facturaService;
+    private final ApplicationEventPublisher eventos;
+    private final MetricasFacturacion metricas;
 
     public SuscripcionService(SuscripcionRepository suscripcionRepository,
             PlanRepository planRepository,
+            PlanCatalog planCatalog,
             FacturaRepository facturaRepository,
-            FacturaService facturaService) {
+            FacturaService facturaService,
+            ApplicationEventPublisher eventos,
+            MetricasFacturacion metricas) {
         this.suscripcionRepository = suscripcionRepository;
         this.planRepository = planRepository;
+        this.planCatalog = planCatalog;
         this.facturaRepository = facturaRepository;
         this.facturaService = facturaService;
+        this.eventos = eventos;
+        this.metricas = metricas;
     }
 
     /*
@@ -42,6 +54,18 @@ public class SuscripcionService {
 
     @Transactional
     public void cambiarPlan(Long usuarioId, Long nuevoPlanId) {
+        Timer.Sample muestra = metricas.iniciar();
+        String planDestino = null;
+
+        try {
+            planDestino = aplicarCambioPlan(usuarioId, nuevoPlanId);
+        } finally {
+            metricas.cambioPlan(muestra, planDestino, planDestino != null);
+        }
+    }
+
+    // Devuelve el nombre del plan nuevo (para las métricas)
+    private String aplicarCambioPlan(Long usuarioId, Long nuevoPlanId) {
         // 1. Obtener Suscripción (Activa o no, la traemos por usuario)
         Suscripcion suscripcion = suscripcionRepository.buscarPorUsuarioId(usuarioId)
                 .orElseThrow(() -> new IllegalArgumentException("El usuario no tiene suscripción."));
@@ -50,28 +74,33 @@ public class SuscripcionService {
             throw new IllegalArgumentException("La suscripción no está activa.");
         }
 
-        // 2. Obtener Nuevo Plan
-        Plan nuevoPlan = planRepository.findById(nuevoPlanId)
+        // 2. Obtener Nuevo Plan (del catálogo en memoria, sin consulta)
+        PlanDisponible nuevoPlan = planCatalog.porId(nuevoPlanId)
                 .orElseThrow(() -> new IllegalArgumentException("El plan destino no existe."));
 
         Plan planActual = suscripcion.getPlan();
 
         // 3. Validar que no sea el mismo plan
         if (Objects.equals(planActual.getId(), nuevoPlanId)) {
-            throw new IllegalArgumentException("El usuario ya tiene el plan " + nuevoPlan.getNombre());
+            throw new IllegalArgumentException("El usuario ya tiene el plan " + nuevoPlan.nombre());
         }
 
         // 4. Calcular Prorrateo e Impuestos si corresponde
         gestionProrrateo(suscripcion, planActual, nuevoPlan);
 
         // 5. Actualizar Plan (Esto dispara la auditoría de Envers automáticamente)
-        suscripcion.setPlan(nuevoPlan);
+        suscripcion.setPlan(planRepository.getReferenceById(nuevoPlan.id()));
         suscripcionRepository.save(suscripcion);
+
+        // 6. Avisar a la renovación continua (se aplica al confirmar la transacción)
+        eventos.publishEvent(new SuscripcionModificadaEvent(usuarioId));
+
+        return nuevoPlan.nombre();
     }
 
-    private void gestionProrrateo(Suscripcion suscripcion, Plan planActual, Plan nuevoPlan) {
-        BigDecimal precioActual = planActual.getPrecioMensual();
-        BigDecimal precioNuevo = nuevoPlan.getPrecioMensual();
+    private void gestionProrrateo(Suscripcion suscripcion, Plan planActual, PlanDisponible nuevoPlan) {
+        Dinero precioActual = planActual.getPrecioMensualDinero();
+        Dinero precioNuevo = nuevoPlan.precioMensualDinero();
 
         // Solo cobramos si es un Upgrade
         if (precioNuevo.compareTo(precioActual) > 0) {
@@ -82,19 +111,17 @@ public class SuscripcionService {
 
             // Si quedan días, calculamos la diferencia
             if (diasRestantes > 0) {
-                BigDecimal diferenciaPrecio = precioNuevo.subtract(precioActual);
+                Dinero diferenciaPrecio = precioNuevo.menos(precioActual);
 
-                // Fórmula: diferencia * (diasRestantes / 30)
-                BigDecimal factorTiempo = BigDecimal.valueOf(diasRestantes)
-                        .divide(BigDecimal.valueOf(30), 4, RoundingMode.HALF_UP);
+                // Fórmula: diferencia * (diasRestantes / 30), factor redondeado a 4 decimales
+                long factorTiempo = Dinero.factor(diasRestantes, 30);
 
-                BigDecimal importeProrrateado = diferenciaPrecio.multiply(factorTiempo)
-                        .setScale(2, RoundingMode.HALF_UP);
+                Dinero importeProrrateado = diferenciaPrecio.porFactor(factorTiempo);
 
-                if (importeProrrateado.compareTo(BigDecimal.ZERO) > 0) {
-                    BigDecimal impuesto = facturaService.calcularImpuesto(suscripcion.getUsuario().getPais(),
+                if (importeProrrateado.esPositivo()) {
+                    Dinero impuesto = facturaService.calcularImpuesto(suscripcion.getUsuario().getPais(),
                             importeProrrateado);
-                    BigDecimal total = importeProrrateado.add(impuesto);
+                    Dinero total = importeProrrateado.mas(impuesto);
 
                     Factura factura = new Factura(
                             suscripcion,
@@ -102,7 +129,7 @@ public class SuscripcionService {
                             importeProrrateado,
                             impuesto,
                             total,
-                            "Cambio de plan a " + nuevoPlan.getNombre() + " (Prorrateo " + diasRestantes + " días)");
+                            "Cambio de plan a " + nuevoPlan.nombre() + " (Prorrateo " + diasRestantes + " días)");
 
                     facturaRepository.save(factura);
                 }
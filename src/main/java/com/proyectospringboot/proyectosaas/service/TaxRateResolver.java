@@ -0,0 +1,120 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.config.ImpuestosProperties;
+import com.proyectospringboot.proyectosaas.domain.valor.Dinero;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/* TaxRateResolver
+ *
+ * Resuelve el tipo de impuesto de un país a partir de una tabla inmutable que se
+ * monta una sola vez al arrancar (ver ImpuestosProperties):
+ * - Las claves se normalizan (sin espacios, sin tildes, en mayúsculas), así que
+ *   "ES", "es", "España" y "Spain" caen en la misma entrada.
+ * - Los tipos son BigDecimal ya construidos: no se crea ninguno por factura.
+ *   Cada uno lleva además su valor en millonésimas para calcular con Dinero (céntimos)
+ *   sin crear ningún objeto intermedio; por eso un tipo con más de 6 decimales se
+ *   rechaza al arrancar.
+ * - El país llega como texto libre del registro; lo ya resuelto se guarda tal cual
+ *   en una caché acotada para no normalizar el mismo texto en cada renovación.
+ * Un país que no está en la tabla no lleva impuesto (como antes). */
+
+@Component
+public class TaxRateResolver {
+
+    private static final Pattern TILDES = Pattern.compile("\\p{M}+");
+    private static final int MAX_CACHE = 1_024;
+
+    // Marca "sin impuesto" dentro de la caché (ConcurrentHashMap no admite null)
+    private static final Tipo SIN_IMPUESTO = new Tipo(BigDecimal.ZERO, 0L);
+
+    private final Map<String, Tipo> tabla;
+    private final Map<String, Tipo> cache = new ConcurrentHashMap<>();
+
+    public TaxRateResolver(ImpuestosProperties propiedades) {
+        Map<String, Tipo> tipos = new HashMap<>();
+
+        propiedades.tipos().forEach((pais, tipo) -> tipos.put(normalizar(pais), Tipo.de(pais, tipo)));
+
+        propiedades.alias().forEach((alias, iso) -> {
+            Tipo tipo = tipos.get(normalizar(iso));
+            if (tipo == null) {
+                throw new IllegalStateException("El alias de impuestos " + alias
+                        + " apunta a un país sin tipo configurado: " + iso);
+            }
+            tipos.put(normalizar(alias), tipo);
+        });
+
+        this.tabla = Map.copyOf(tipos);
+    }
+
+    // Tipo a aplicar (0 si el país no tiene impuesto configurado)
+    public BigDecimal tipo(String pais) {
+        return resolver(pais).decimal();
+    }
+
+    // El mismo tipo en millonésimas (0.21 -> 210000), para Dinero.porTipo
+    public long tipoMillonesimas(String pais) {
+        return resolver(pais).millonesimas();
+    }
+
+    private Tipo resolver(String pais) {
+        if (pais == null) {
+            return SIN_IMPUESTO;
+        }
+
+        Tipo tipo = cache.get(pais);
+        if (tipo != null) {
+            return tipo;
+        }
+
+        tipo = tabla.getOrDefault(normalizar(pais), SIN_IMPUESTO);
+        if (cache.size() < MAX_CACHE) {
+            cache.put(pais, tipo);
+        }
+        return tipo;
+    }
+
+    // Mismo redondeo de siempre: a céntimos, HALF_UP
+    public BigDecimal calcular(String pais, BigDecimal importeBase) {
+        BigDecimal tipo = tipo(pais);
+
+        if (tipo.signum() == 0) {
+            return BigDecimal.ZERO;
+        }
+
+        return importeBase.multiply(tipo).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    // Versión en céntimos para la facturación: mismo resultado, sin BigDecimal
+    public Dinero calcular(String pais, Dinero importeBase) {
+        return importeBase.porTipo(tipoMillonesimas(pais));
+    }
+
+    static String normalizar(String pais) {
+        String sinTildes = TILDES.matcher(Normalizer.normalize(pais.trim(), Normalizer.Form.NFD)).replaceAll("");
+        return sinTildes.toUpperCase(Locale.ROOT);
+    }
+
+    // Tipo configurado y su equivalente exacto en millonésimas
+    private record Tipo(BigDecimal decimal, long millonesimas) {
+
+        static Tipo de(String pais, BigDecimal tipo) {
+            try {
+                long millonesimas = tipo.movePointRight(6).setScale(0, RoundingMode.UNNECESSARY).longValueExact();
+                return new Tipo(tipo, millonesimas);
+            } catch (ArithmeticException e) {
+                throw new IllegalStateException("El tipo de impuestos de " + pais
+                        + " tiene más de 6 decimales: " + tipo, e);
+            }
+        }
+    }
+}
@@ -1,29 +1,39 @@
 package com.proyectospringboot.proyectosaas.web.controller;
 
 import com.proyectospringboot.proyectosaas.service.AuditoriaService;
-import com.proyectospringboot.proyectosaas.service.FacturaService;
+import com.proyectospringboot.proyectosaas.service.AuditoriaService.FiltroAuditoria;
+import com.proyectospringboot.proyectosaas.service.AuditoriaService.PaginaRevisiones;
+import com.proyectospringboot.proyectosaas.service.PlanCatalog;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseBody;
+import org.springframework.web.server.ResponseStatusException;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /* AuditoriaController:
  * Panel de administración protegido por Spring Security (solo ROLE_ADMIN).
  * Permite:
- *  - Visualizar historial de cambios (Envers).
- *  - Ejecutar migración de facturas antiguas si fuese necesario. */
+ *  - Visualizar historial de cambios (Envers), por páginas y con filtros
+ *    (fechas, email y plan). También en JSON en /admin/auditoria/revisiones.
+ * La corrección de impuestos de facturas antiguas ya no se lanza desde aquí: es un proceso
+ * aparte en segundo plano (ver MigracionImpuestosService y /admin/migraciones). */
 
 @Controller
 public class AuditoriaController {
 
     private final AuditoriaService auditoriaService;
-    private final FacturaService facturaService;
+    private final PlanCatalog planCatalog;
 
     public AuditoriaController(AuditoriaService auditoriaService,
-            FacturaService facturaService) {
+            PlanCatalog planCatalog) {
         this.auditoriaService = auditoriaService;
-        this.facturaService = facturaService;
+        this.planCatalog = planCatalog;
     }
 
     // =========================================================
@@ -31,28 +41,30 @@ public class AuditoriaController {
     // =========================================================
 
     @GetMapping("/admin/auditoria")
-    public String mostrarAuditoria(Model model) {
+    public String mostrarAuditoria(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm") LocalDateTime desde,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm") LocalDateTime hasta,
+            @RequestParam(required = false) String email,
+            @RequestParam(required = false) String plan,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + AuditoriaService.TAMANO_PAGINA_DEFECTO) int tamano,
+            Model model) {
+
+        model.addAttribute("desde", desde);
+        model.addAttribute("hasta", hasta);
+        model.addAttribute("email", email != null ? email : "");
+        model.addAttribute("plan", plan != null ? plan : "");
+        model.addAttribute("planes", planCatalog.planes());
+        model.addAttribute("esPrimeraPagina", cursor == null || cursor.isBlank());
+        model.addAttribute("tamano", tamano);
 
         try {
 
-            // Migración puntual de facturas antiguas
-            try {
-                int facturasActualizadas = facturaService.migrarFacturasAntiguas();
+            PaginaRevisiones pagina = auditoriaService.buscarPagina(
+                    new FiltroAuditoria(desde, hasta, email, plan), cursor, tamano);
 
-                if (facturasActualizadas > 0) {
-                    model.addAttribute("mensaje",
-                            "Se actualizaron " + facturasActualizadas + " facturas antiguas con impuestos.");
-                }
-
-            } catch (Exception e) {
-                // No bloqueamos el panel si falla
-                model.addAttribute("error",
-                        "Error al migrar facturas antiguas: " + e.getMessage());
-            }
-
-            List<AuditoriaService.RevisionDTO> revisiones = auditoriaService.obtenerHistorialCambios();
-
-            model.addAttribute("revisiones", revisiones);
+            model.addAttribute("revisiones", pagina.revisiones());
+            model.addAttribute("siguienteCursor", pagina.siguienteCursor());
 
         } catch (Exception e) {
 
@@ -64,4 +76,21 @@ public class AuditoriaController {
 
         return "auditoria";
     }
+
+    // Lo mismo en JSON, para consultarlo desde fuera (curl, scripts...)
+    @GetMapping("/admin/auditoria/revisiones")
+    @ResponseBody
+    public PaginaRevisiones revisiones(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime desde,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime hasta,
+            @RequestParam(required = false) String email,
+            @RequestParam(required = false) String plan,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + AuditoriaService.TAMANO_PAGINA_DEFECTO) int tamano) {
+        try {
+            return auditoriaService.buscarPagina(new FiltroAuditoria(desde, hasta, email, plan), cursor, tamano);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
 }
@@ -1,13 +1,14 @@
 package com.proyectospringboot.proyectosaas.web.controller;
 
-import com.proyectospringboot.proyectosaas.domain.entity.Factura;
-import com.proyectospringboot.proyectosaas.domain.entity.Plan;
-import com.proyectospringboot.proyectosaas.domain.entity.Suscripcion;
+import com.proyectospringboot.proyectosaas.domain.event.SuscripcionModificadaEvent;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository.ResumenPanel;
+import com.proyectospringboot.proyectosaas.repository.UsuarioRepository;
+import com.proyectospringboot.proyectosaas.service.DashboardService;
+import com.proyectospringboot.proyectosaas.service.DashboardService.PanelCliente;
 import com.proyectospringboot.proyectosaas.service.FacturaService;
+import com.proyectospringboot.proyectosaas.service.PlanCatalog;
 import com.proyectospringboot.proyectosaas.service.SuscripcionService;
-import com.proyectospringboot.proyectosaas.repository.PlanRepository;
-import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
-import com.proyectospringboot.proyectosaas.repository.UsuarioRepository;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
@@ -15,28 +16,29 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import java.util.List;
-
 @Controller
 @RequestMapping("/dashboard")
 public class DashboardController {
 
-    private final SuscripcionRepository suscripcionRepository;
+    private final DashboardService dashboardService;
+    private final PlanCatalog planCatalog;
     private final FacturaService facturaService;
-    private final PlanRepository planRepository;
     private final SuscripcionService suscripcionService;
     private final UsuarioRepository usuarioRepository;
+    private final ApplicationEventPublisher eventos;
 
-    public DashboardController(SuscripcionRepository suscripcionRepository,
+    public DashboardController(DashboardService dashboardService,
+            PlanCatalog planCatalog,
             FacturaService facturaService,
-            PlanRepository planRepository,
             SuscripcionService suscripcionService,
-            UsuarioRepository usuarioRepository) {
-        this.suscripcionRepository = suscripcionRepository;
+            UsuarioRepository usuarioRepository,
+            ApplicationEventPublisher eventos) {
+        this.dashboardService = dashboardService;
+        this.planCatalog = planCatalog;
         this.facturaService = facturaService;
-        this.planRepository = planRepository;
         this.suscripcionService = suscripcionService;
         this.usuarioRepository = usuarioRepository;
+        this.eventos = eventos;
     }
 
     @GetMapping
@@ -45,41 +47,33 @@ public class DashboardController {
         // Obtener email del usuario autenticado
         String email = userDetails.getUsername();
 
-        // Buscar suscripción (y usuario)
-        var suscripcionOpt = suscripcionRepository.buscarPorEmail(email);
-        if (suscripcionOpt.isEmpty()) {
+        // Todo lo que pinta el panel, con un número fijo de consultas (ver DashboardService)
+        var panelOpt = dashboardService.cargar(email);
+        if (panelOpt.isEmpty()) {
             return "redirect:/?error=Usuario no encontrado";
         }
 
-        Suscripcion suscripcion = suscripcionOpt.get();
-        model.addAttribute("suscripcion", suscripcion);
-        model.addAttribute("usuario", suscripcion.getUsuario());
+        PanelCliente panel = panelOpt.get();
+        ResumenPanel cliente = panel.cliente();
+        model.addAttribute("cliente", cliente);
         model.addAttribute("email", email);
 
-        // Buscar última factura para mostrar
-        List<Factura> facturas = facturaService.buscarFacturasPorEmail(email);
-        if (!facturas.isEmpty()) {
-            Factura ultima = facturas.get(0);
-            model.addAttribute("ultimaFactura", ultima);
-            model.addAttribute("ultimaFacturaPagada", facturaService.estaPagada(ultima.getId()));
-        } else {
-            model.addAttribute("ultimaFacturaPagada", true); // Si no hay facturas, no hay deuda
-        }
+        // Última factura para mostrar (si no hay facturas, no hay deuda)
+        model.addAttribute("ultimaFactura", panel.ultimaFactura());
+        model.addAttribute("ultimaFacturaPagada", panel.ultimaFacturaPagada());
 
         // Determinar método de pago "preferido" (en base al último usado)
-        String metodoPago = facturaService.obtenerUltimoMetodoPago(email);
-        model.addAttribute("metodoPago", metodoPago);
+        model.addAttribute("metodoPago", panel.ultimoMetodoPago());
 
         // Método de pago preferido del usuario (guardado en BD)
-        String metodoPagoPreferido = suscripcion.getUsuario().getMetodoPagoPreferido();
+        String metodoPagoPreferido = cliente.metodoPagoPreferido();
         model.addAttribute("metodoPagoPreferido", metodoPagoPreferido != null ? metodoPagoPreferido : "Tarjeta");
 
         // Estado de Pago Automático
-        model.addAttribute("pagoAutomatico", suscripcion.getUsuario().isPagoAutomatico());
+        model.addAttribute("pagoAutomatico", cliente.pagoAutomatico());
 
-        // Cargar todos los planes disponibles para cambio de plan
-        List<Plan> planes = planRepository.findAll();
-        model.addAttribute("planes", planes);
+        // Planes disponibles para cambio de plan (catálogo en memoria)
+        model.addAttribute("planes", planCatalog.planes());
 
         return "dashboard";
     }
@@ -96,6 +90,7 @@ public class DashboardController {
 
             usuario.setPagoAutomatico(activo);
             usuarioRepository.save(usuario);
+            eventos.publishEvent(new SuscripcionModificadaEvent(usuario.getId()));
 
             String estado = activo ? "activado" : "desactivado";
             redirectAttributes.addFlashAttribute("mensaje", "Pago automático " + estado + " correctamente.");
@@ -2,7 +2,9 @@ package com.proyectospringboot.proyectosaas.web.controller;
 
 import com.proyectospringboot.proyectosaas.domain.entity.Factura;
 import com.proyectospringboot.proyectosaas.service.FacturaService;
+import com.proyectospringboot.proyectosaas.service.FacturaService.PaginaFacturas;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Controller;
@@ -10,6 +12,7 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.math.BigDecimal;
@@ -32,6 +35,8 @@ public class FacturaController {
             @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd'T'HH:mm") LocalDateTime fechaFin,
             @RequestParam(required = false) BigDecimal totalMin,
             @RequestParam(required = false) BigDecimal totalMax,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + FacturaService.TAMANO_PAGINA_DEFECTO) int tamano,
             Model model) {
 
         model.addAttribute("email", email != null ? email : "");
@@ -41,17 +46,23 @@ public class FacturaController {
         model.addAttribute("totalMax", totalMax);
 
         if (email != null && !email.isBlank()) {
-            List<Factura> facturas;
-
-            // Si hay filtros, usar búsqueda con filtros
-            if (fechaInicio != null || fechaFin != null || totalMin != null || totalMax != null) {
-                facturas = facturaService.buscarFacturasConFiltros(email, fechaInicio, fechaFin, totalMin, totalMax);
-            } else {
-                // Sin filtros, usar búsqueda simple
-                facturas = facturaService.buscarFacturasPorEmail(email);
+            PaginaFacturas pagina;
+
+            try {
+                // Si hay filtros, usar búsqueda con filtros
+                if (fechaInicio != null || fechaFin != null || totalMin != null || totalMax != null) {
+                    pagina = facturaService.buscarPaginaConFiltros(email, fechaInicio, fechaFin, totalMin, totalMax,
+                            cursor, tamano);
+                } else {
+                    // Sin filtros, usar búsqueda simple
+                    pagina = facturaService.buscarPaginaPorEmail(email, cursor, tamano);
+                }
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
             }
 
-            model.addAttribute("facturas", facturas);
+            List<Factura> facturas = pagina.facturas();
+            anadirPaginacion(model, pagina, cursor, tamano);
 
             // Validar si usuario existe (si no hay facturas, quizás usuario tampoco)
             if (facturas.isEmpty()) {
@@ -104,15 +115,22 @@ public class FacturaController {
             @RequestParam(required = false) LocalDateTime fechaFin,
             @RequestParam(required = false) BigDecimal totalMin,
             @RequestParam(required = false) BigDecimal totalMax,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "" + FacturaService.TAMANO_PAGINA_DEFECTO) int tamano,
             Model model) {
 
         String email = userDetails.getUsername();
 
-        // Buscar facturas del usuario autenticado con filtros opcionales
-        List<Factura> facturas = facturaService.buscarFacturasConFiltros(email, fechaInicio, fechaFin, totalMin,
-                totalMax);
+        // Buscar facturas del usuario autenticado con filtros opcionales (una página cada vez)
+        PaginaFacturas pagina;
+        try {
+            pagina = facturaService.buscarPaginaConFiltros(email, fechaInicio, fechaFin, totalMin, totalMax,
+                    cursor, tamano);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
 
-        model.addAttribute("facturas", facturas);
+        anadirPaginacion(model, pagina, cursor, tamano);
         model.addAttribute("email", email);
         model.addAttribute("fechaInicio", fechaInicio);
         model.addAttribute("fechaFin", fechaFin);
@@ -122,4 +140,10 @@ public class FacturaController {
         return "mis-facturas";
     }
 
+    private void anadirPaginacion(Model model, PaginaFacturas pagina, String cursor, int tamano) {
+        model.addAttribute("facturas", pagina.facturas());
+        model.addAttribute("siguienteCursor", pagina.siguienteCursor());
+        model.addAttribute("esPrimeraPagina", cursor == null || cursor.isBlank());
+        model.addAttribute("tamano", tamano);
+    }
 }
@@ -0,0 +1,30 @@
+package com.proyectospringboot.proyectosaas.web.controller;
+
+import com.proyectospringboot.proyectosaas.service.MigracionImpuestosService;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/* MigracionAdminController:
+ * Progreso de las migraciones de datos en segundo plano (solo ROLE_ADMIN, va bajo /admin/**).
+ * Devuelve JSON para poder consultarlo mientras corre (curl, monitorización...):
+ *  - Corrección de impuestos de facturas antiguas: estado, marca de agua, facturas
+ *    actualizadas y las que quedan por revisar. */
+
+@RestController
+public class MigracionAdminController {
+
+    private final MigracionImpuestosService migracionImpuestosService;
+
+    public MigracionAdminController(MigracionImpuestosService migracionImpuestosService) {
+        this.migracionImpuestosService = migracionImpuestosService;
+    }
+
+    @GetMapping("/admin/migraciones/facturas-impuestos")
+    public MigracionImpuestosService.ProgresoMigracion migracionImpuestos() {
+        return migracionImpuestosService.consultarEstado()
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND,
+                        "La migración de impuestos no está registrada en esta base de datos"));
+    }
+}
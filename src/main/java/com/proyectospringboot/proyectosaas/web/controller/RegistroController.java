@@ -1,8 +1,8 @@
 package com.proyectospringboot.proyectosaas.web.controller;
 
-import com.proyectospringboot.proyectosaas.domain.entity.Plan;
+import com.proyectospringboot.proyectosaas.service.PlanCatalog;
+import com.proyectospringboot.proyectosaas.service.PlanCatalog.PlanDisponible;
 import com.proyectospringboot.proyectosaas.service.RegistroService;
-import com.proyectospringboot.proyectosaas.repository.PlanRepository;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
@@ -11,19 +11,19 @@ import java.util.List;
 
 /* RegistroController:
  * Gestiona el alta de nuevos usuarios en la plataforma.
- * - Muestra los planes disponibles.
+ * - Muestra los planes disponibles (del catálogo en memoria, sin ir a la BD).
  * - Procesa el formulario de registro.
  * - Delegamos la lógica real en RegistroService. */
 
 @Controller
 public class RegistroController {
 
-    private final PlanRepository planRepository;
+    private final PlanCatalog planCatalog;
     private final RegistroService registroService;
 
-    public RegistroController(PlanRepository planRepository,
+    public RegistroController(PlanCatalog planCatalog,
             RegistroService registroService) {
-        this.planRepository = planRepository;
+        this.planCatalog = planCatalog;
         this.registroService = registroService;
     }
 
@@ -34,7 +34,7 @@ public class RegistroController {
     @GetMapping("/registro")
     public String mostrarFormulario(Model model) {
 
-        List<Plan> planes = planRepository.findAll();
+        List<PlanDisponible> planes = planCatalog.planes();
         model.addAttribute("planes", planes);
 
         return "register";
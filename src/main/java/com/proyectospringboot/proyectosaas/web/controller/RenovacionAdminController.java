@@ -0,0 +1,55 @@
+package com.proyectospringboot.proyectosaas.web.controller;
+
+import com.proyectospringboot.proyectosaas.service.EjecucionRenovacionService;
+import com.proyectospringboot.proyectosaas.service.PrevisionRenovacionService;
+import com.proyectospringboot.proyectosaas.service.RenovacionContinuaService;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDate;
+
+/* RenovacionAdminController:
+ * Progreso del proceso nocturno de renovación (solo ROLE_ADMIN, va bajo /admin/**).
+ * Devuelve JSON para poder consultarlo mientras corre (curl, monitorización...):
+ *  - Ejecuciones en curso con su marca de agua, contadores y lo que queda pendiente.
+ *  - La última ejecución completada.
+ *  - El estado de la cola de la renovación continua.
+ *  - La previsión de facturas de los próximos días (simulacro, no escribe nada). */
+
+@RestController
+public class RenovacionAdminController {
+
+    private final EjecucionRenovacionService ejecucionRenovacionService;
+    private final RenovacionContinuaService renovacionContinuaService;
+    private final PrevisionRenovacionService previsionRenovacionService;
+
+    public RenovacionAdminController(EjecucionRenovacionService ejecucionRenovacionService,
+            RenovacionContinuaService renovacionContinuaService,
+            PrevisionRenovacionService previsionRenovacionService) {
+        this.ejecucionRenovacionService = ejecucionRenovacionService;
+        this.renovacionContinuaService = renovacionContinuaService;
+        this.previsionRenovacionService = previsionRenovacionService;
+    }
+
+    @GetMapping("/admin/renovacion")
+    public EjecucionRenovacionService.EstadoRenovacionDTO estadoRenovacion() {
+        return ejecucionRenovacionService.consultarEstado();
+    }
+
+    @GetMapping("/admin/renovacion/continua")
+    public RenovacionContinuaService.EstadoCola estadoRenovacionContinua() {
+        return renovacionContinuaService.consultarEstado();
+    }
+
+    @GetMapping("/admin/renovacion/prevision")
+    public PrevisionRenovacionService.PrevisionDTO prevision(@RequestParam(defaultValue = "30") int dias) {
+        try {
+            return previsionRenovacionService.prever(dias, LocalDate.now());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,28 @@
+-- V10: índices del historial de cambios en el orden de la página
+--
+-- El historial (/admin/auditoria) va por keyset descendente sobre la fecha de la revisión y ya no
+-- sobre (rev, id): con varias réplicas el número de revisión no sigue el orden del tiempo.
+-- Los índices de la V5 (usuario_id, rev, id) y (plan_id, rev, id) ya no daban las filas en ese
+-- orden y cada página tenía que unir revinfo y ordenar todas las que pasaban el filtro.
+-- La fecha que se usa es fecha_modificacion de suscripciones_aud (la columna de partición de la
+-- V8), así el orden sale de la propia tabla:
+-- - Con filtro de cliente o de plan, estos índices dan las filas ya ordenadas y la consulta se
+--   para al llenar la página.
+-- - Sin filtro, el de fecha_modificacion; como también es la clave de partición, se recorren
+--   los meses del más reciente hacia atrás y solo se abren los que hagan falta.
+-- Se crean en cada partición, también en las que cree después auditoria_crear_particion.
+
+drop index if exists idx_suscripciones_aud_usuario_rev;
+drop index if exists idx_suscripciones_aud_plan_rev;
+
+-- Historial de un cliente (filtro por email, traducido a usuario_id)
+create index idx_suscripciones_aud_usuario_fecha
+    on suscripciones_aud (usuario_id, fecha_modificacion, rev, id);
+
+-- Historial de un plan
+create index idx_suscripciones_aud_plan_fecha
+    on suscripciones_aud (plan_id, fecha_modificacion, rev, id);
+
+-- Historial sin filtro de cliente ni de plan
+create index idx_suscripciones_aud_fecha
+    on suscripciones_aud (fecha_modificacion, rev, id);
@@ -0,0 +1,193 @@
+-- V1: esquema inicial
+--
+-- Es el esquema que generaba Hibernate con ddl-auto=update más los parches que hacía
+-- DataInitializer al arrancar (pago_automatico y las columnas del lease de renovación).
+-- Los nombres de las restricciones son los que ponía Hibernate, para que una BD nueva
+-- y una ya existente queden iguales.
+--
+-- Una BD que ya existía entra en Flyway con baseline en la versión 0 y también pasa por aquí,
+-- así que todo va con "if not exists": en una BD creada por Hibernate solo añade lo que le falte
+-- (columnas del lease, pago_automatico, secuencias, ejecuciones_renovacion), sea cual sea la
+-- versión de la aplicación con la que se creó.
+
+-- =========================================================
+-- SECUENCIAS (asignación en bloques de 50, ver allocationSize en las entidades)
+-- =========================================================
+
+create sequence if not exists facturas_seq start with 1 increment by 50;
+create sequence if not exists pagos_seq start with 1 increment by 50;
+create sequence if not exists suscripciones_seq start with 1 increment by 50;
+create sequence if not exists revinfo_seq start with 1 increment by 50;
+
+-- =========================================================
+-- CATÁLOGO Y USUARIOS
+-- =========================================================
+
+create table if not exists planes (
+    id bigint generated by default as identity,
+    nombre varchar(255) not null,
+    precio_mensual numeric(38,2) not null,
+    primary key (id),
+    constraint ukeaicdluby6m1uctjkdxcfnwhu unique (nombre)
+);
+
+create table if not exists usuarios (
+    id bigint generated by default as identity,
+    email varchar(255) not null,
+    pais varchar(255) not null,
+    password varchar(255) not null,
+    metodo_pago_preferido varchar(50),
+    pago_automatico boolean default false not null,
+    rol varchar(255) not null check (rol in ('USER', 'ADMIN')),
+    fecha_alta timestamp(6) not null,
+    primary key (id),
+    constraint ukkfsp0s1tflm1cwlj8idhqsad0 unique (email)
+);
+
+create table if not exists perfiles (
+    id bigint generated by default as identity,
+    usuario_id bigint not null,
+    nombre varchar(255) not null,
+    apellidos varchar(255) not null,
+    telefono varchar(255),
+    primary key (id),
+    constraint uktlt2ghp1wj8o1qco6mt6e9j14 unique (usuario_id),
+    constraint fkowo6q4m6x5tklwmure6pp4dae foreign key (usuario_id) references usuarios
+);
+
+-- =========================================================
+-- SUSCRIPCIONES
+-- =========================================================
+
+-- renovacion_nodo / renovacion_lease_hasta no están mapeadas en la entidad a propósito
+-- (así no entran en la auditoría de Envers): las usa el reparto de renovaciones entre nodos.
+create table if not exists suscripciones (
+    id bigint not null,
+    usuario_id bigint not null,
+    plan_id bigint not null,
+    estado varchar(255) not null check (estado in ('ACTIVA', 'CANCELADA', 'MOROSA')),
+    fecha_inicio timestamp(6) not null,
+    fecha_fin_ciclo timestamp(6) not null,
+    fecha_cancelacion timestamp(6),
+    renovacion_nodo varchar(100),
+    renovacion_lease_hasta timestamp,
+    primary key (id),
+    constraint ukdunjwecaq037n5har4gbsalye unique (usuario_id),
+    constraint fkrrsvcjm7l6p0pr4l8ehygsmuy foreign key (usuario_id) references usuarios,
+    constraint fki86qfsnbe3ig44wbarwgcpmyu foreign key (plan_id) references planes
+);
+
+-- =========================================================
+-- FACTURAS Y PAGOS (Pago con herencia JOINED)
+-- =========================================================
+
+create table if not exists facturas (
+    id bigint not null,
+    suscripcion_id bigint not null,
+    importe numeric(10,2) not null,
+    impuesto numeric(10,2) not null,
+    total numeric(10,2) not null,
+    fecha timestamp(6) not null,
+    concepto varchar(100),
+    primary key (id),
+    constraint fk7ucfwl8fh55kjhrpndk8galwa foreign key (suscripcion_id) references suscripciones
+);
+
+create table if not exists pagos (
+    id bigint not null,
+    factura_id bigint not null,
+    importe numeric(10,2) not null,
+    fecha timestamp(6) not null,
+    primary key (id),
+    constraint uk1la2b5n0398c7mdykl4y4pgn1 unique (factura_id),
+    constraint fkku6sutgbnirkcq3qam8i1uqb9 foreign key (factura_id) references facturas
+);
+
+create table if not exists pagos_tarjeta (
+    id bigint not null,
+    ultimos4 varchar(255) not null,
+    titular varchar(255) not null,
+    primary key (id),
+    constraint fkkkn6smols31eeh5w308f7ib50 foreign key (id) references pagos
+);
+
+create table if not exists pagos_paypal (
+    id bigint not null,
+    email_paypal varchar(255) not null,
+    primary key (id),
+    constraint fktg2vm5ia9yci51amj1hekqugx foreign key (id) references pagos
+);
+
+create table if not exists pagos_transferencia (
+    id bigint not null,
+    iban varchar(255) not null,
+    referencia varchar(255) not null,
+    primary key (id),
+    constraint fktmc0d32tykgqupyn9xowtm2i9 foreign key (id) references pagos
+);
+
+-- =========================================================
+-- DIARIO DE EJECUCIONES DE RENOVACIÓN
+-- =========================================================
+
+create table if not exists ejecuciones_renovacion (
+    id bigint generated by default as identity,
+    nodo varchar(100) not null,
+    estado varchar(20) not null check (estado in ('EN_CURSO', 'COMPLETADA')),
+    fecha_corte timestamp(6) not null,
+    inicio timestamp(6) not null,
+    fin timestamp(6),
+    ultima_actualizacion timestamp(6) not null,
+    ultimo_id_procesado bigint not null,
+    renovadas integer not null,
+    fallidas integer not null,
+    canceladas integer not null,
+    reanudaciones integer not null,
+    primary key (id)
+);
+
+-- =========================================================
+-- AUDITORÍA (Envers)
+-- =========================================================
+
+create table if not exists revinfo (
+    rev integer not null,
+    revtstmp bigint,
+    primary key (rev)
+);
+
+create table if not exists suscripciones_aud (
+    id bigint not null,
+    rev integer not null,
+    revtype smallint,
+    usuario_id bigint,
+    plan_id bigint,
+    estado varchar(255) check (estado in ('ACTIVA', 'CANCELADA', 'MOROSA')),
+    fecha_inicio timestamp(6),
+    fecha_fin_ciclo timestamp(6),
+    fecha_cancelacion timestamp(6),
+    primary key (rev, id),
+    constraint fkpv85ymmfi5nmsdx8utvoaqn72 foreign key (rev) references revinfo
+);
+
+-- =========================================================
+-- BD ANTERIOR A FLYWAY
+-- =========================================================
+
+-- Columnas que antes añadía DataInitializer al arrancar
+alter table usuarios add column if not exists pago_automatico boolean default false not null;
+alter table suscripciones add column if not exists renovacion_nodo varchar(100);
+alter table suscripciones add column if not exists renovacion_lease_hasta timestamp;
+
+-- facturas, pagos y suscripciones tenían id IDENTITY: la secuencia nueva empieza en 1 y chocaría
+-- con los ids que ya hay, así que la adelantamos hasta el máximo. Con increment 50, Hibernate
+-- toma el valor como el final del bloque y reparte desde max + 1. Nunca la hacemos retroceder
+-- (con >= también cubre una secuencia recién creada, que aún no ha dado su primer valor).
+select setval('facturas_seq', (select max(id) from facturas))
+where (select max(id) from facturas) >= (select last_value from facturas_seq);
+select setval('pagos_seq', (select max(id) from pagos))
+where (select max(id) from pagos) >= (select last_value from pagos_seq);
+select setval('suscripciones_seq', (select max(id) from suscripciones))
+where (select max(id) from suscripciones) >= (select last_value from suscripciones_seq);
+select setval('revinfo_seq', (select max(rev) from revinfo))
+where (select max(rev) from revinfo) >= (select last_value from revinfo_seq);
@@ -0,0 +1,50 @@
+-- V2: índices para las consultas calientes
+--
+-- Van con IF NOT EXISTS porque una BD que ya existía puede tener alguno creado por
+-- Hibernate (los de facturas se declaraban en la entidad antes de pasar a Flyway).
+--
+-- Ya cubiertos por restricciones UNIQUE de V1 (no hace falta otro índice):
+-- - usuarios.email          -> ukkfsp0s1tflm1cwlj8idhqsad0
+-- - pagos.factura_id        -> uk1la2b5n0398c7mdykl4y4pgn1
+-- - suscripciones.usuario_id -> ukdunjwecaq037n5har4gbsalye
+
+-- =========================================================
+-- SUSCRIPCIONES
+-- =========================================================
+
+-- Vencidas / próximas a vencer por estado (consultas JPQL con el estado como parámetro)
+create index if not exists idx_suscripciones_estado_fin_ciclo
+    on suscripciones (estado, fecha_fin_ciclo);
+
+-- Solo las activas, que son las que se renuevan. Lo usan las consultas con el estado
+-- escrito en el SQL (reparto de lotes con FOR UPDATE SKIP LOCKED); las canceladas, que
+-- no dejan de crecer, no ocupan sitio en el índice.
+create index if not exists idx_suscripciones_activas_fin_ciclo
+    on suscripciones (fecha_fin_ciclo, id)
+    where estado = 'ACTIVA';
+
+-- Leases de renovación en vuelo (liberarLeases por nodo); casi siempre está vacío
+create index if not exists idx_suscripciones_lease_nodo
+    on suscripciones (renovacion_nodo)
+    where renovacion_nodo is not null;
+
+-- =========================================================
+-- USUARIOS
+-- =========================================================
+
+-- Usuarios con pago automático (filtro de todas las consultas de renovación)
+create index if not exists idx_usuarios_pago_automatico
+    on usuarios (id)
+    where pago_automatico;
+
+-- =========================================================
+-- FACTURAS
+-- =========================================================
+
+-- Listados por cliente paginados por (fecha, id) y filtros por rango de fecha
+create index if not exists idx_facturas_suscripcion_fecha_id
+    on facturas (suscripcion_id, fecha, id);
+
+-- Filtros por rango de total dentro de un cliente
+create index if not exists idx_facturas_suscripcion_total
+    on facturas (suscripcion_id, total, fecha);
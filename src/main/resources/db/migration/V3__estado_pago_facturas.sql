@@ -0,0 +1,25 @@
+-- V3: estado de pago guardado en la factura
+--
+-- Hasta ahora "¿está pagada?" era un NOT EXISTS / COUNT sobre pagos por cada factura.
+-- Ahora lo mantiene la aplicación al guardar el Pago (misma transacción).
+--
+-- Las columnas se añaden sin valor por defecto para que las filas existentes queden a
+-- null (= estado sin calcular) sin reescribir la tabla; RellenoEstadoPagoService las
+-- recorre por lotes al arrancar. El DEFAULT se pone después y solo afecta a filas nuevas.
+
+alter table facturas add column estado_pago varchar(20)
+    check (estado_pago in ('PENDIENTE', 'PAGADA'));
+alter table facturas add column pagada_en timestamp(6);
+
+alter table facturas alter column estado_pago set default 'PENDIENTE';
+
+-- Facturas pendientes de un cliente (la más reciente primero). Parcial: las pagadas,
+-- que son casi todas, no ocupan sitio en el índice.
+create index idx_facturas_pendientes
+    on facturas (suscripcion_id, fecha, id)
+    where estado_pago = 'PENDIENTE';
+
+-- Cola del relleno: solo las que faltan por calcular. Cuando termina queda vacío.
+create index idx_facturas_estado_pago_sin_calcular
+    on facturas (id)
+    where estado_pago is null;
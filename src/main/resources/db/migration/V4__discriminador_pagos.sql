@@ -0,0 +1,17 @@
+-- V4: discriminador de pagos
+--
+-- Pago usa herencia JOINED. Sin columna discriminadora, para saber el tipo de un pago
+-- Hibernate tiene que cruzar con pagos_tarjeta, pagos_paypal y pagos_transferencia.
+-- Con la columna tipo basta con leer pagos (lo usa FacturaService.obtenerUltimoMetodoPago).
+--
+-- Se rellena aquí mismo y no en un proceso aparte: Hibernate necesita el tipo para
+-- cargar cualquier pago, así que no puede quedar ninguna fila a null al arrancar.
+
+alter table pagos add column tipo varchar(20);
+
+update pagos p set tipo = 'TARJETA' where exists (select 1 from pagos_tarjeta t where t.id = p.id);
+update pagos p set tipo = 'PAYPAL' where exists (select 1 from pagos_paypal pp where pp.id = p.id);
+update pagos p set tipo = 'TRANSFERENCIA' where exists (select 1 from pagos_transferencia pt where pt.id = p.id);
+
+alter table pagos alter column tipo set not null;
+alter table pagos add constraint ck_pagos_tipo check (tipo in ('TARJETA', 'PAYPAL', 'TRANSFERENCIA'));
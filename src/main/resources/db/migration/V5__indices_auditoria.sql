@@ -0,0 +1,21 @@
+-- V5: índices para el historial de cambios paginado (/admin/auditoria)
+--
+-- El listado va por keyset descendente sobre (rev, id), que ya es la clave primaria de
+-- suscripciones_aud: sin filtros se recorre ese índice hacia atrás y se para al llenar la página.
+-- Con filtro de cliente o de plan, estos índices dan las revisiones ya en ese orden.
+
+-- =========================================================
+-- AUDITORÍA (Envers)
+-- =========================================================
+
+-- Historial de un cliente (filtro por email, traducido a usuario_id)
+create index if not exists idx_suscripciones_aud_usuario_rev
+    on suscripciones_aud (usuario_id, rev, id);
+
+-- Historial de un plan
+create index if not exists idx_suscripciones_aud_plan_rev
+    on suscripciones_aud (plan_id, rev, id);
+
+-- Filtro por rango de fechas de la revisión
+create index if not exists idx_revinfo_revtstmp
+    on revinfo (revtstmp);
@@ -0,0 +1,33 @@
+-- V6: diario de migraciones de datos
+--
+-- Una fila por migración de datos que corre en segundo plano con la aplicación arrancada.
+-- Guarda la marca de agua (último id procesado) y los contadores, así que si se corta a
+-- medias se retoma donde iba; al terminar queda COMPLETADA y no se vuelve a lanzar.
+-- El nodo y el latido (ultima_actualizacion) evitan que dos réplicas la corran a la vez.
+
+create table migraciones_datos (
+    nombre varchar(100) not null,
+    estado varchar(20) not null check (estado in ('EN_CURSO', 'COMPLETADA')),
+    nodo varchar(100),
+    inicio timestamp(6),
+    fin timestamp(6),
+    ultima_actualizacion timestamp(6),
+    ultimo_id_procesado bigint not null,
+    actualizadas bigint not null,
+    primary key (nombre)
+);
+
+-- =========================================================
+-- FACTURAS SIN IMPUESTO
+-- =========================================================
+
+-- Facturas creadas antes de aplicar impuestos (impuesto = 0). Antes se corregían al abrir
+-- /admin/auditoria recorriendo todas las facturas; ahora lo hace MigracionImpuestosService.
+insert into migraciones_datos (nombre, estado, ultimo_id_procesado, actualizadas)
+values ('facturas-impuestos', 'EN_CURSO', 0, 0);
+
+-- Cola de la migración: solo las facturas a 0 de impuesto, por id.
+-- (Las de países sin impuesto se quedan a 0 y siguen aquí, pero son pocas.)
+create index idx_facturas_sin_impuesto
+    on facturas (id)
+    where impuesto = 0;
@@ -0,0 +1,12 @@
+-- V7: marcas de campo modificado en la auditoría de suscripciones
+--
+-- Con @Audited(withModifiedFlag = true) Envers guarda en cada revisión qué campos cambiaron,
+-- y el historial de /admin/auditoria resume solo esos (ver AuditoriaService).
+-- Las revisiones anteriores se quedan a null (no se sabe qué cambió) y se resumen como antes.
+
+alter table suscripciones_aud add column usuario_mod boolean;
+alter table suscripciones_aud add column plan_mod boolean;
+alter table suscripciones_aud add column estado_mod boolean;
+alter table suscripciones_aud add column fecha_inicio_mod boolean;
+alter table suscripciones_aud add column fecha_fin_ciclo_mod boolean;
+alter table suscripciones_aud add column fecha_cancelacion_mod boolean;
@@ -0,0 +1,165 @@
+-- V8: tablas de auditoría particionadas por mes
+--
+-- Cada renovación nocturna cambia fecha_fin_ciclo y deja una revisión por suscripción, así que
+-- suscripciones_aud y revinfo crecen cada mes en torno al número de suscriptores activos.
+-- Las partimos por rango de la fecha de la revisión, una partición por mes:
+-- - revinfo por revtstmp (milisegundos, la marca de tiempo que pone Envers).
+-- - suscripciones_aud por fecha_modificacion, que es un campo auditado de Suscripcion: así las
+--   consultas de Envers pueden filtrar por él y PostgreSQL solo abre las particiones del rango.
+-- RetencionAuditoriaService crea las particiones de los meses siguientes y exporta a disco
+-- (csv comprimido) y quita las que pasan del periodo de retención.
+--
+-- Las claves primarias llevan la columna de partición (lo exige PostgreSQL) y la FK de
+-- suscripciones_aud a revinfo desaparece: no se puede apuntar a una tabla particionada sin su
+-- columna de partición, y las dos se archivan por meses a la vez.
+-- Los límites de mes en milisegundos salen de la zona horaria de la sesión, que el driver
+-- pone igual que la de la JVM: coinciden con los que calcula la aplicación.
+
+-- =========================================================
+-- SUSCRIPCIONES: FECHA DE LA ÚLTIMA MODIFICACIÓN
+-- =========================================================
+
+alter table suscripciones add column fecha_modificacion timestamp(6);
+
+-- La de su última revisión; sin historial, la del alta
+update suscripciones s
+set fecha_modificacion = coalesce(
+        (select max(to_timestamp(r.revtstmp / 1000.0)::timestamp)
+         from suscripciones_aud a
+         join revinfo r on r.rev = a.rev
+         where a.id = s.id),
+        s.fecha_inicio);
+
+alter table suscripciones alter column fecha_modificacion set not null;
+
+-- =========================================================
+-- TABLAS ANTERIORES (se copian y se borran al final)
+-- =========================================================
+
+alter table suscripciones_aud drop constraint if exists fkpv85ymmfi5nmsdx8utvoaqn72;
+alter table suscripciones_aud rename to suscripciones_aud_antigua;
+alter table suscripciones_aud_antigua rename constraint suscripciones_aud_pkey to suscripciones_aud_antigua_pkey;
+drop index if exists idx_suscripciones_aud_usuario_rev;
+drop index if exists idx_suscripciones_aud_plan_rev;
+
+alter table revinfo rename to revinfo_antigua;
+alter table revinfo_antigua rename constraint revinfo_pkey to revinfo_antigua_pkey;
+drop index if exists idx_revinfo_revtstmp;
+
+-- =========================================================
+-- TABLAS PARTICIONADAS
+-- =========================================================
+
+create table revinfo (
+    rev integer not null,
+    revtstmp bigint not null,
+    primary key (rev, revtstmp)
+) partition by range (revtstmp);
+
+create table suscripciones_aud (
+    id bigint not null,
+    rev integer not null,
+    revtype smallint,
+    usuario_id bigint,
+    usuario_mod boolean,
+    plan_id bigint,
+    plan_mod boolean,
+    estado varchar(255) check (estado in ('ACTIVA', 'CANCELADA', 'MOROSA')),
+    estado_mod boolean,
+    fecha_inicio timestamp(6),
+    fecha_inicio_mod boolean,
+    fecha_fin_ciclo timestamp(6),
+    fecha_fin_ciclo_mod boolean,
+    fecha_cancelacion timestamp(6),
+    fecha_cancelacion_mod boolean,
+    fecha_modificacion timestamp(6) not null,
+    primary key (rev, id, fecha_modificacion)
+) partition by range (fecha_modificacion);
+
+-- Red de seguridad: si un mes se queda sin crear (el trabajo no ha corrido), las revisiones
+-- caen aquí en vez de hacer fallar la transacción. No se archivan.
+create table revinfo_defecto partition of revinfo default;
+create table suscripciones_aud_defecto partition of suscripciones_aud default;
+
+-- Mismos índices que en la V5; se crean en cada partición
+create index idx_suscripciones_aud_usuario_rev
+    on suscripciones_aud (usuario_id, rev, id);
+
+create index idx_suscripciones_aud_plan_rev
+    on suscripciones_aud (plan_id, rev, id);
+
+create index idx_revinfo_revtstmp
+    on revinfo (revtstmp);
+
+-- =========================================================
+-- GESTIÓN DE PARTICIONES (la usa RetencionAuditoriaService)
+-- =========================================================
+
+-- Crea las particiones del mes de "mes" en las dos tablas (si ya existen no hace nada).
+-- Nombres: suscripciones_aud_2026_10, revinfo_2026_10.
+create or replace function auditoria_crear_particion(mes date) returns void
+language plpgsql as $$
+declare
+    desde timestamp := date_trunc('month', mes);
+    hasta timestamp := date_trunc('month', mes) + interval '1 month';
+    sufijo text := to_char(date_trunc('month', mes), 'YYYY_MM');
+begin
+    execute format('create table if not exists %I partition of suscripciones_aud for values from (%L) to (%L)',
+            'suscripciones_aud_' || sufijo, desde, hasta);
+    execute format('create table if not exists %I partition of revinfo for values from (%s) to (%s)',
+            'revinfo_' || sufijo,
+            (extract(epoch from desde::timestamptz) * 1000)::bigint,
+            (extract(epoch from hasta::timestamptz) * 1000)::bigint);
+end;
+$$;
+
+-- Separa y borra las particiones de ese mes (ya exportadas). Si no existen no hace nada.
+create or replace function auditoria_quitar_particion(mes date) returns void
+language plpgsql as $$
+declare
+    sufijo text := to_char(date_trunc('month', mes), 'YYYY_MM');
+    tabla text;
+begin
+    foreach tabla in array array['suscripciones_aud', 'revinfo'] loop
+        if to_regclass(tabla || '_' || sufijo) is not null then
+            execute format('alter table %I detach partition %I', tabla, tabla || '_' || sufijo);
+            execute format('drop table %I', tabla || '_' || sufijo);
+        end if;
+    end loop;
+end;
+$$;
+
+-- Desde el mes de la revisión más antigua hasta dos meses por delante
+do $$
+declare
+    mes date := coalesce(
+            (select date_trunc('month', to_timestamp(min(revtstmp) / 1000.0)) from revinfo_antigua),
+            date_trunc('month', now()));
+begin
+    while mes <= date_trunc('month', now()) + interval '2 months' loop
+        perform auditoria_crear_particion(mes);
+        mes := mes + interval '1 month';
+    end loop;
+end;
+$$;
+
+-- =========================================================
+-- COPIA DE LOS DATOS
+-- =========================================================
+
+insert into revinfo (rev, revtstmp)
+select rev, coalesce(revtstmp, 0)
+from revinfo_antigua;
+
+insert into suscripciones_aud (id, rev, revtype, usuario_id, usuario_mod, plan_id, plan_mod, estado, estado_mod,
+        fecha_inicio, fecha_inicio_mod, fecha_fin_ciclo, fecha_fin_ciclo_mod, fecha_cancelacion,
+        fecha_cancelacion_mod, fecha_modificacion)
+select a.id, a.rev, a.revtype, a.usuario_id, a.usuario_mod, a.plan_id, a.plan_mod, a.estado, a.estado_mod,
+        a.fecha_inicio, a.fecha_inicio_mod, a.fecha_fin_ciclo, a.fecha_fin_ciclo_mod, a.fecha_cancelacion,
+        a.fecha_cancelacion_mod,
+        coalesce(to_timestamp(r.revtstmp / 1000.0)::timestamp, a.fecha_inicio, now()::timestamp)
+from suscripciones_aud_antigua a
+left join revinfo_antigua r on r.rev = a.rev;
+
+drop table suscripciones_aud_antigua;
+drop table revinfo_antigua;
@@ -0,0 +1,57 @@
+-- V9: crear el mes aunque la partición por defecto ya tenga filas suyas
+--
+-- Si un mes se quedó sin crear a tiempo, sus revisiones cayeron en revinfo_defecto o
+-- suscripciones_aud_defecto, y PostgreSQL no deja crear la partición de ese mes mientras la de
+-- por defecto tenga filas que le tocarían ("updated partition constraint for default partition
+-- would be violated"). Antes eso hacía fallar auditoria_crear_particion para ese mes y para
+-- siempre.
+-- Ahora, si hay filas, se separa la de por defecto, se crea la del mes, se pasan las filas y se
+-- vuelve a enganchar. Todo dentro de la transacción de quien la llama (RetencionAuditoriaService
+-- usa una por mes), así que si algo falla la tabla se queda como estaba.
+
+create or replace function auditoria_crear_particion(mes date) returns void
+language plpgsql as $$
+declare
+    desde timestamp := date_trunc('month', mes);
+    hasta timestamp := date_trunc('month', mes) + interval '1 month';
+    sufijo text := to_char(date_trunc('month', mes), 'YYYY_MM');
+begin
+    perform auditoria_crear_particion_de('suscripciones_aud', 'fecha_modificacion', 'suscripciones_aud_' || sufijo,
+            quote_literal(desde), quote_literal(hasta));
+    perform auditoria_crear_particion_de('revinfo', 'revtstmp', 'revinfo_' || sufijo,
+            ((extract(epoch from desde::timestamptz) * 1000)::bigint)::text,
+            ((extract(epoch from hasta::timestamptz) * 1000)::bigint)::text);
+end;
+$$;
+
+-- Una tabla: "desde" y "hasta" llegan ya como literales SQL del tipo de la columna
+create or replace function auditoria_crear_particion_de(tabla text, columna text, particion text,
+        desde text, hasta text) returns void
+language plpgsql as $$
+declare
+    defecto text := tabla || '_defecto';
+    rango text := format('%I >= %s and %I < %s', columna, desde, columna, hasta);
+    con_filas boolean;
+begin
+    if to_regclass(particion) is not null then
+        return;
+    end if;
+
+    execute format('select exists (select 1 from %I where %s)', defecto, rango) into con_filas;
+
+    if not con_filas then
+        execute format('create table %I partition of %I for values from (%s) to (%s)',
+                particion, tabla, desde, hasta);
+        return;
+    end if;
+
+    raise notice 'Pasando a % las filas de % que le tocan', particion, defecto;
+
+    execute format('alter table %I detach partition %I', tabla, defecto);
+    execute format('create table %I partition of %I for values from (%s) to (%s)',
+            particion, tabla, desde, hasta);
+    execute format('insert into %I select * from %I where %s', particion, defecto, rango);
+    execute format('delete from %I where %s', defecto, rango);
+    execute format('alter table %I attach partition %I default', tabla, defecto);
+end;
+$$;
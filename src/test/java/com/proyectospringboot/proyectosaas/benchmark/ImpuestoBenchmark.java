@@ -0,0 +1,88 @@
+package com.proyectospringboot.proyectosaas.benchmark;
+
+import com.proyectospringboot.proyectosaas.config.ImpuestosProperties;
+import com.proyectospringboot.proyectosaas.service.TaxRateResolver;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.concurrent.TimeUnit;
+
+/* ImpuestoBenchmark
+ *
+ * Microbenchmark (JMH) del cálculo de impuestos por factura:
+ * - antes: la cadena de equalsIgnoreCase + BigDecimal.valueOf(0.21) que tenía FacturaService.
+ * - resolver: TaxRateResolver (tabla inmutable normalizada + tipos precalculados).
+ * Se mezclan países con y sin impuesto, escritos de varias formas, como llegan del registro.
+ *
+ * Solo se ejecuta a mano:
+ *   mvn test -Dbenchmark=true -Dtest=ImpuestoBenchmark */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ImpuestoBenchmark {
+
+    private static final String[] PAISES = { "ES", "España", "Spain", "es", "USA", "Francia", "MX", "ES" };
+
+    private TaxRateResolver resolver;
+    private BigDecimal base;
+
+    @Setup
+    public void preparar() {
+        resolver = new TaxRateResolver(new ImpuestosProperties(null, null));
+        base = new BigDecimal("19.99");
+    }
+
+    @Benchmark
+    public void antes(Blackhole bh) {
+        for (String pais : PAISES) {
+            bh.consume(calcularImpuestoAntes(pais, base));
+        }
+    }
+
+    @Benchmark
+    public void resolver(Blackhole bh) {
+        for (String pais : PAISES) {
+            bh.consume(resolver.calcular(pais, base));
+        }
+    }
+
+    // Copia literal del FacturaService.calcularImpuesto anterior, como referencia
+    private static BigDecimal calcularImpuestoAntes(String pais, BigDecimal importeBase) {
+        if (pais != null && (pais.equalsIgnoreCase("ES")
+                || pais.equalsIgnoreCase("España")
+                || pais.equalsIgnoreCase("Spain"))) {
+            return importeBase.multiply(BigDecimal.valueOf(0.21))
+                    .setScale(2, RoundingMode.HALF_UP);
+        }
+
+        return BigDecimal.ZERO;
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void ejecutar() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ImpuestoBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,127 @@
+package com.proyectospringboot.proyectosaas.benchmark;
+
+import com.proyectospringboot.proyectosaas.ProyectoSaasApplication;
+import com.proyectospringboot.proyectosaas.service.PlanCatalog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.user;
+import static org.springframework.security.test.web.servlet.setup.SecurityMockMvcConfigurers.springSecurity;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+/* PlanCatalogBenchmark
+ *
+ * Microbenchmark (JMH) de las dos páginas que pintan el catálogo de planes, de punta a punta
+ * (seguridad, controlador y plantilla Thymeleaf) con MockMvc:
+ * - GET /registro y GET /dashboard (usuario demo de DataInitializer, panel ya en caché).
+ * - antes: se descarta PlanCatalog en cada petición, así que cada una lee los planes de la
+ *   BD como hacía el controlador con planRepository.findAll().
+ * - catalogo: el catálogo en memoria, sin consultas.
+ *
+ * Necesita la BD levantada (docker compose up -d) y solo se ejecuta a mano:
+ *   mvn test -Dbenchmark=true -Dtest=PlanCatalogBenchmark */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlanCatalogBenchmark {
+
+    private static final String EMAIL_DEMO = "demo@saas.local";
+
+    private ConfigurableApplicationContext contexto;
+    private PlanCatalog planCatalog;
+    private MockMvc mockMvc;
+
+    @Setup(Level.Trial)
+    public void arrancar() {
+        contexto = new SpringApplicationBuilder(ProyectoSaasApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.jpa.show-sql=false",
+                        "logging.level.root=WARN")
+                .run();
+        planCatalog = contexto.getBean(PlanCatalog.class);
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) contexto)
+                .apply(springSecurity())
+                .build();
+
+        // Que se mide la página de verdad y no una redirección al login
+        try {
+            if (!registro().contains("PREMIUM") || !dashboard().contains("Cambiar Plan")) {
+                throw new IllegalStateException("Las páginas no pintan el catálogo de planes");
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void parar() {
+        contexto.close();
+    }
+
+    @Benchmark
+    public String registroAntes() throws Exception {
+        planCatalog.invalidar();
+        return registro();
+    }
+
+    @Benchmark
+    public String registroCatalogo() throws Exception {
+        return registro();
+    }
+
+    @Benchmark
+    public String dashboardAntes() throws Exception {
+        planCatalog.invalidar();
+        return dashboard();
+    }
+
+    @Benchmark
+    public String dashboardCatalogo() throws Exception {
+        return dashboard();
+    }
+
+    private String registro() throws Exception {
+        return mockMvc.perform(get("/registro"))
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    private String dashboard() throws Exception {
+        return mockMvc.perform(get("/dashboard").with(user(EMAIL_DEMO)))
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    @Test
+    @EnabledIfSystemProperty(named = "benchmark", matches = "true")
+    void ejecutar() throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PlanCatalogBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
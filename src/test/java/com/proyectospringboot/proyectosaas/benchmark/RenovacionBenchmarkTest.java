@@ -0,0 +1,89 @@
+package com.proyectospringboot.proyectosaas.benchmark;
+
+import com.proyectospringboot.proyectosaas.domain.entity.Plan;
+import com.proyectospringboot.proyectosaas.domain.entity.Suscripcion;
+import com.proyectospringboot.proyectosaas.domain.entity.Usuario;
+import com.proyectospringboot.proyectosaas.domain.enums.RolUsuario;
+import com.proyectospringboot.proyectosaas.repository.PlanRepository;
+import com.proyectospringboot.proyectosaas.service.RenovacionService;
+import com.proyectospringboot.proyectosaas.service.RenovacionService.ResultadoRenovacion;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/* RenovacionBenchmarkTest
+ *
+ * Mide cuántas facturas por segundo genera la renovación nocturna (renovar + cobrar).
+ * Siembra N suscripciones vencidas con pago automático y cronometra solo la renovación.
+ *
+ * No es un test normal: tarda y escribe mucho, así que solo se ejecuta a mano y contra
+ * una BD vacía (la de docker-compose recién creada, por ejemplo):
+ *   mvn test -Dbenchmark=true -Dtest=RenovacionBenchmarkTest [-Dbenchmark.suscripciones=100000] */
+
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "spring.jpa.show-sql=false",
+        "renovacion.reparto-entre-nodos=false"
+})
+class RenovacionBenchmarkTest {
+
+    private static final int SUSCRIPCIONES = Integer.getInteger("benchmark.suscripciones", 100_000);
+    private static final int LOTE_SIEMBRA = 1_000;
+
+    @Autowired
+    private RenovacionService renovacionService;
+
+    @Autowired
+    private PlanRepository planRepository;
+
+    @Autowired
+    private TransactionTemplate tx;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void renovacionMasiva() {
+
+        sembrar();
+
+        long inicio = System.nanoTime();
+        ResultadoRenovacion resultado = renovacionService.renovarVencidas(LocalDateTime.now());
+        double segundos = (System.nanoTime() - inicio) / 1_000_000_000.0;
+
+        System.out.printf("Benchmark renovación: %d facturas en %.1f s -> %.0f facturas/s%n",
+                resultado.renovadas(), segundos, resultado.renovadas() / segundos);
+
+        assertEquals(SUSCRIPCIONES, resultado.renovadas());
+    }
+
+    // Sembramos por lotes para no llenar el contexto de persistencia
+    private void sembrar() {
+        Plan plan = planRepository.findAll().get(0);
+
+        for (int desde = 0; desde < SUSCRIPCIONES; desde += LOTE_SIEMBRA) {
+            int inicioLote = desde;
+
+            tx.executeWithoutResult(status -> {
+                Plan planGestionado = entityManager.getReference(Plan.class, plan.getId());
+
+                for (int i = inicioLote; i < Math.min(inicioLote + LOTE_SIEMBRA, SUSCRIPCIONES); i++) {
+                    Usuario usuario = new Usuario("bench-" + i + "@test.local", "ES", "x", RolUsuario.USER);
+                    usuario.setPagoAutomatico(true);
+                    entityManager.persist(usuario);
+
+                    Suscripcion suscripcion = new Suscripcion(usuario, planGestionado);
+                    suscripcion.setFechaFinCiclo(LocalDateTime.now().minusDays(1));
+                    entityManager.persist(suscripcion);
+                }
+            });
+        }
+    }
+}
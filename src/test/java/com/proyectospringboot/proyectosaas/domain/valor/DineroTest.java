@@ -0,0 +1,121 @@
+package com.proyectospringboot.proyectosaas.domain.valor;
+
+import com.proyectospringboot.proyectosaas.config.ImpuestosProperties;
+import com.proyectospringboot.proyectosaas.service.TaxRateResolver;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/* DineroTest
+ *
+ * Comprobamos con muchos casos aleatorios (semilla fija, así un fallo se puede repetir)
+ * que calcular en céntimos da exactamente lo mismo que las fórmulas con BigDecimal
+ * que usaba la facturación:
+ * - Impuesto: base * tipo, setScale(2, HALF_UP).
+ * - Prorrateo: diferencia * (dias / 30 a 4 decimales HALF_UP), setScale(2, HALF_UP).
+ * Incluye importes negativos (diferencias de precio) y los casos frontera del .5. */
+
+class DineroTest {
+
+    private static final long SEMILLA = 20260118L;
+    private static final int CASOS = 200_000;
+
+    @Test
+    void porTipo_igualQueBigDecimal() {
+
+        Random random = new Random(SEMILLA);
+
+        for (int i = 0; i < CASOS; i++) {
+            long centimos = importeAleatorio(random);
+            long tipoMillonesimas = random.nextInt(1_000_001);
+
+            BigDecimal base = BigDecimal.valueOf(centimos, 2);
+            BigDecimal tipo = BigDecimal.valueOf(tipoMillonesimas, 6);
+            BigDecimal esperado = base.multiply(tipo).setScale(2, RoundingMode.HALF_UP);
+
+            assertEquals(esperado, Dinero.deCentimos(centimos).porTipo(tipoMillonesimas).aBigDecimal(),
+                    base + " * " + tipo);
+        }
+    }
+
+    @Test
+    void prorrateo_igualQueBigDecimal() {
+
+        Random random = new Random(SEMILLA + 1);
+
+        for (int i = 0; i < CASOS; i++) {
+            long diferencia = importeAleatorio(random);
+            long dias = random.nextInt(400);
+
+            BigDecimal factor = BigDecimal.valueOf(dias).divide(BigDecimal.valueOf(30), 4, RoundingMode.HALF_UP);
+            BigDecimal esperado = BigDecimal.valueOf(diferencia, 2).multiply(factor).setScale(2, RoundingMode.HALF_UP);
+
+            Dinero calculado = Dinero.deCentimos(diferencia).porFactor(Dinero.factor(dias, 30));
+
+            assertEquals(esperado, calculado.aBigDecimal(), diferencia + " céntimos, " + dias + " días");
+        }
+    }
+
+    @Test
+    void facturaCompleta_igualQueConElResolverEnBigDecimal() {
+
+        TaxRateResolver impuestos = new TaxRateResolver(new ImpuestosProperties(
+                Map.of("ES", new BigDecimal("0.21"), "PT", new BigDecimal("0.23"), "DE", new BigDecimal("0.19"),
+                        "XX", new BigDecimal("0.075125")),
+                Map.of()));
+        String[] paises = { "ES", "PT", "DE", "XX", "USA" };
+        Random random = new Random(SEMILLA + 2);
+
+        for (int i = 0; i < CASOS; i++) {
+            String pais = paises[random.nextInt(paises.length)];
+            long centimos = random.nextInt(10_000_000);
+
+            BigDecimal base = BigDecimal.valueOf(centimos, 2);
+            BigDecimal impuesto = impuestos.calcular(pais, base);
+
+            Dinero baseDinero = Dinero.deCentimos(centimos);
+            Dinero impuestoDinero = impuestos.calcular(pais, baseDinero);
+
+            assertEquals(0, impuesto.compareTo(impuestoDinero.aBigDecimal()), pais + " " + base);
+            assertEquals(0, base.add(impuesto).compareTo(baseDinero.mas(impuestoDinero).aBigDecimal()),
+                    pais + " " + base);
+        }
+    }
+
+    @Test
+    void redondeo_mitadSeAlejaDelCero() {
+
+        // 0.05 * 0.5 = 0.025 -> 0.03 ; -0.05 * 0.5 = -0.025 -> -0.03
+        assertEquals(3, Dinero.deCentimos(5).porTipo(500_000).centimos());
+        assertEquals(-3, Dinero.deCentimos(-5).porTipo(500_000).centimos());
+        // 0.05 * 0.49 = 0.0245 -> 0.02
+        assertEquals(2, Dinero.deCentimos(5).porTipo(490_000).centimos());
+        // 15 / 30 = 0.5 ; 1 / 30 = 0.0333 ; 2 / 3 = 0.6667
+        assertEquals(5_000, Dinero.factor(15, 30));
+        assertEquals(333, Dinero.factor(1, 30));
+        assertEquals(6_667, Dinero.factor(2, 3));
+    }
+
+    @Test
+    void de_conviertePorCentimosYRechazaMasDecimales() {
+
+        assertEquals(1_999, Dinero.de(new BigDecimal("19.99")).centimos());
+        assertEquals(1_000, Dinero.de(new BigDecimal("10")).centimos());
+        assertEquals(1_000, Dinero.de(new BigDecimal("10.000")).centimos());
+        assertEquals(new BigDecimal("19.99"), Dinero.deCentimos(1_999).aBigDecimal());
+
+        assertThrows(IllegalArgumentException.class, () -> Dinero.de(new BigDecimal("12.345")));
+    }
+
+    // Mezcla importes pequeños (donde caen los .5) con otros grandes y negativos
+    private static long importeAleatorio(Random random) {
+        long centimos = random.nextBoolean() ? random.nextInt(1_000) : random.nextInt(100_000_000);
+        return random.nextInt(4) == 0 ? -centimos : centimos;
+    }
+}
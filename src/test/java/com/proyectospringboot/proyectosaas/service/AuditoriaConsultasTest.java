@@ -0,0 +1,197 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.ProyectoSaasApplication;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import com.proyectospringboot.proyectosaas.service.AuditoriaService.FiltroAuditoria;
+import com.proyectospringboot.proyectosaas.service.AuditoriaService.PaginaRevisiones;
+import com.proyectospringboot.proyectosaas.service.AuditoriaService.RevisionDTO;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* AuditoriaConsultasTest
+ *
+ * Comprobamos contra el PostgreSQL de docker-compose el historial de cambios del panel de admin:
+ * - Cada página sale con una sola consulta y el cursor lleva a la siguiente sin repetir ni saltar.
+ * - Viene ordenado de lo más reciente a lo más antiguo por la fecha de la revisión, aunque el
+ *   número de revisión no siga ese orden (bloques de la secuencia de otra réplica).
+ * - Cada revisión trae el email y solo lo que cambió (el alta, con plan y estado).
+ * - Los filtros (fechas, email y plan) se aplican en la consulta.
+ *
+ * Necesita la BD levantada (docker compose up -d), así que solo se ejecuta con:
+ *   mvn test -Dpostgres.it=true -Dtest=AuditoriaConsultasTest */
+
+@EnabledIfSystemProperty(named = "postgres.it", matches = "true")
+class AuditoriaConsultasTest {
+
+    private final String prefijo = "auditoria-" + UUID.randomUUID().toString().substring(0, 8);
+    private final List<String> emails = List.of(prefijo + "-1@test.local", prefijo + "-2@test.local");
+
+    // Número bajo (fuera de la secuencia) para una revisión posterior a las del test
+    private static final int REV_OTRA_REPLICA = -3000;
+
+    private ConfigurableApplicationContext contexto;
+    private Statistics estadisticas;
+    private AuditoriaService auditoriaService;
+
+    @BeforeEach
+    void setUp() {
+        contexto = new SpringApplicationBuilder(ProyectoSaasApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.jpa.show-sql=false")
+                .run();
+        estadisticas = contexto.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        auditoriaService = contexto.getBean(AuditoriaService.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        try {
+            limpiar();
+        } finally {
+            contexto.close();
+        }
+    }
+
+    @Test
+    void historial_porPaginasUnaConsultaCadaUna() {
+
+        LocalDateTime inicio = LocalDateTime.now().withSecond(0).withNano(0);
+        crearRevisiones();
+        FiltroAuditoria filtro = new FiltroAuditoria(inicio, null, null, "basic");
+
+        // Página a página (de una en una) hasta que no hay cursor
+        List<RevisionDTO> revisiones = new ArrayList<>();
+        String cursor = null;
+        int paginas = 0;
+        do {
+            estadisticas.clear();
+            PaginaRevisiones pagina = auditoriaService.buscarPagina(filtro, cursor, 1);
+            assertEquals(1, estadisticas.getPrepareStatementCount(), "página " + paginas);
+
+            revisiones.addAll(pagina.revisiones());
+            cursor = pagina.siguienteCursor();
+            paginas++;
+        } while (cursor != null && paginas < 50);
+
+        // Solo las nuestras entran en el filtro (desde el inicio del test y plan BASIC)
+        List<RevisionDTO> nuestras = revisiones.stream()
+                .filter(r -> r.emailUsuario().startsWith(prefijo))
+                .toList();
+        assertEquals(3, nuestras.size());
+        assertEquals(emails.get(0), nuestras.get(0).emailUsuario());
+        assertEquals("Estado: CANCELADA", nuestras.get(0).resumenCambio());
+        assertTrue(nuestras.stream().skip(1).allMatch(r -> r.resumenCambio().equals("Alta. Plan: BASIC, Estado: ACTIVA")));
+
+        // Más reciente primero
+        for (int i = 1; i < revisiones.size(); i++) {
+            assertFalse(revisiones.get(i).fechaRevision().isAfter(revisiones.get(i - 1).fechaRevision()),
+                    "fuera de orden en la posición " + i);
+        }
+    }
+
+    @Test
+    void historial_ordenPorFechaAunqueElNumeroDeRevisionNoLaSiga() {
+
+        crearRevisiones();
+        JdbcTemplate jdbc = contexto.getBean(JdbcTemplate.class);
+
+        // Otra réplica con su bloque de números bajos guarda después un cambio de estado
+        jdbc.update("INSERT INTO revinfo (rev, revtstmp) VALUES (?, ?)", REV_OTRA_REPLICA,
+                System.currentTimeMillis() + 60_000);
+        jdbc.update("INSERT INTO suscripciones_aud (id, rev, revtype, usuario_id, usuario_mod, plan_id, plan_mod, " +
+                        "estado, estado_mod, fecha_inicio_mod, fecha_fin_ciclo_mod, fecha_cancelacion_mod, " +
+                        "fecha_modificacion) " +
+                        "SELECT s.id, ?, 1, s.usuario_id, false, s.plan_id, false, 'MOROSA', true, false, false, " +
+                        "false, now() FROM suscripciones s JOIN usuarios u ON u.id = s.usuario_id WHERE u.email = ?",
+                REV_OTRA_REPLICA, emails.get(1));
+
+        // De una en una, para pasar por el cursor
+        FiltroAuditoria filtro = new FiltroAuditoria(null, null, emails.get(1), null);
+        List<String> resumenes = new ArrayList<>();
+        String cursor = null;
+        do {
+            PaginaRevisiones pagina = auditoriaService.buscarPagina(filtro, cursor, 1);
+            pagina.revisiones().forEach(r -> resumenes.add(r.resumenCambio()));
+            cursor = pagina.siguienteCursor();
+        } while (cursor != null && resumenes.size() < 10);
+
+        assertEquals(List.of("Estado: MOROSA", "Alta. Plan: BASIC, Estado: ACTIVA"), resumenes);
+    }
+
+    @Test
+    void historial_filtrosEnLaConsulta() {
+
+        LocalDateTime inicio = LocalDateTime.now().withSecond(0).withNano(0);
+        crearRevisiones();
+
+        // Por email: solo las dos revisiones de ese cliente, la cancelación primero
+        List<RevisionDTO> delPrimero = auditoriaService.buscarPagina(
+                new FiltroAuditoria(null, null, emails.get(0), null), null, 10).revisiones();
+        assertEquals(List.of("Estado: CANCELADA", "Alta. Plan: BASIC, Estado: ACTIVA"),
+                delPrimero.stream().map(RevisionDTO::resumenCambio).toList());
+
+        // Email sin usuario, otro plan o un rango anterior al test: nada
+        assertTrue(auditoriaService.buscarPagina(
+                new FiltroAuditoria(null, null, prefijo + "-nadie@test.local", null), null, 10).revisiones().isEmpty());
+        assertTrue(auditoriaService.buscarPagina(
+                new FiltroAuditoria(inicio, null, emails.get(0), "PREMIUM"), null, 10).revisiones().isEmpty());
+        assertTrue(auditoriaService.buscarPagina(
+                new FiltroAuditoria(null, inicio.minusMinutes(1), emails.get(0), null), null, 10).revisiones().isEmpty());
+
+        assertThrows(IllegalArgumentException.class, () -> auditoriaService.buscarPagina(
+                new FiltroAuditoria(null, null, null, "GOLD"), null, 10));
+        assertThrows(IllegalArgumentException.class, () -> auditoriaService.buscarPagina(
+                null, "no-es-un-cursor", 10));
+    }
+
+    // =========================================================
+    // UTILIDADES DE TEST
+    // =========================================================
+
+    // Dos altas y luego una cancelación: tres revisiones nuevas
+    private void crearRevisiones() {
+        Long basic = contexto.getBean(PlanCatalog.class).porNombre("BASIC").orElseThrow().id();
+        for (String email : emails) {
+            contexto.getBean(RegistroService.class).registrar(email, "ES", "Ana", "López", null, basic, "password123");
+        }
+        SuscripcionRepository suscripcionRepository = contexto.getBean(SuscripcionRepository.class);
+        contexto.getBean(TransactionTemplate.class).executeWithoutResult(status ->
+                suscripcionRepository.buscarPorEmail(emails.get(0)).orElseThrow().cancelar());
+    }
+
+    private void limpiar() {
+        JdbcTemplate jdbc = contexto.getBean(JdbcTemplate.class);
+        jdbc.update("DELETE FROM suscripciones_aud WHERE rev = ?", REV_OTRA_REPLICA);
+        jdbc.update("DELETE FROM revinfo WHERE rev = ?", REV_OTRA_REPLICA);
+        for (String email : emails) {
+            String deUsuario = "SELECT u.id FROM usuarios u WHERE u.email = ?";
+            String deSuscripcion = "SELECT s.id FROM suscripciones s WHERE s.usuario_id IN (" + deUsuario + ")";
+
+            jdbc.update("DELETE FROM facturas WHERE suscripcion_id IN (" + deSuscripcion + ")", email);
+            jdbc.update("DELETE FROM suscripciones_aud WHERE usuario_id IN (" + deUsuario + ")", email);
+            jdbc.update("DELETE FROM suscripciones WHERE usuario_id IN (" + deUsuario + ")", email);
+            jdbc.update("DELETE FROM perfiles WHERE usuario_id IN (" + deUsuario + ")", email);
+            jdbc.update("DELETE FROM usuarios WHERE email = ?", email);
+        }
+    }
+}
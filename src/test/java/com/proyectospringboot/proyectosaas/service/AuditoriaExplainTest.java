@@ -0,0 +1,260 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.ProyectoSaasApplication;
+import com.proyectospringboot.proyectosaas.domain.entity.Plan;
+import com.proyectospringboot.proyectosaas.domain.entity.Suscripcion;
+import com.proyectospringboot.proyectosaas.domain.entity.Usuario;
+import com.proyectospringboot.proyectosaas.domain.enums.RolUsuario;
+import com.proyectospringboot.proyectosaas.repository.PlanRepository;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import com.proyectospringboot.proyectosaas.repository.UsuarioRepository;
+import com.proyectospringboot.proyectosaas.service.AuditoriaService.FiltroAuditoria;
+import com.proyectospringboot.proyectosaas.service.AuditoriaService.PaginaRevisiones;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* AuditoriaExplainTest
+ *
+ * Comprobamos contra el PostgreSQL de docker-compose que el historial de cambios paginado
+ * (/admin/auditoria) sale de los índices de la V10 ya en el orden de la página, sin ordenar
+ * todas las revisiones que pasan el filtro:
+ * - Metemos a mano muchas revisiones de dos clientes (números de revisión negativos, fuera de
+ *   la secuencia) y capturamos el SQL que genera Envers (StatementInspector).
+ * - Lo preparamos con PREPARE y miramos el plan con EXPLAIN EXECUTE y los valores del test.
+ * Los índices de una tabla particionada tienen uno por partición con nombre propio: los
+ * buscamos por el índice padre en pg_inherits.
+ *
+ * Necesita la BD levantada (docker compose up -d), así que solo se ejecuta con:
+ *   mvn test -Dpostgres.it=true -Dtest=AuditoriaExplainTest */
+
+@EnabledIfSystemProperty(named = "postgres.it", matches = "true")
+class AuditoriaExplainTest {
+
+    private static final int REVISIONES_CLIENTE = 2_000;
+    private static final int REVISIONES_OTRO = 20_000;
+
+    // Fuera del rango de la secuencia de revinfo, para no chocar con revisiones reales
+    private static final int PRIMERA_REV = -1_000_000;
+
+    private static final int TAMANO_PAGINA = 50;
+
+    private final String prefijo = "aud-explain-" + UUID.randomUUID().toString().substring(0, 8);
+    private final String email = prefijo + "-0@test.local";
+
+    private ConfigurableApplicationContext contexto;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        contexto = new SpringApplicationBuilder(ProyectoSaasApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                                + CapturaSql.class.getName())
+                .run();
+        jdbc = contexto.getBean(JdbcTemplate.class);
+        crearRevisiones();
+    }
+
+    @AfterEach
+    void tearDown() {
+        try {
+            limpiar();
+        } finally {
+            contexto.close();
+        }
+    }
+
+    @Test
+    void filtroPorCliente_usaElIndiceDeClienteYFechaSinOrdenar() {
+
+        PaginaRevisiones pagina = auditoriaService().buscarPagina(
+                new FiltroAuditoria(null, null, email, null), null, TAMANO_PAGINA);
+        assertEquals(TAMANO_PAGINA, pagina.revisiones().size());
+
+        // usuario_id, límite
+        String plan = explicar(CapturaSql.ultima(), usuarioId(), String.valueOf(TAMANO_PAGINA + 1));
+
+        assertTrue(usaAlgunoDe(plan, "idx_suscripciones_aud_usuario_fecha"), plan);
+        assertFalse(ordena(plan), plan);
+        assertFalse(plan.contains("Seq Scan on suscripciones_aud"), plan);
+    }
+
+    @Test
+    void siguientePagina_acotaElRangoConElCursor() {
+
+        FiltroAuditoria filtro = new FiltroAuditoria(null, null, email, null);
+        PaginaRevisiones primera = auditoriaService().buscarPagina(filtro, null, TAMANO_PAGINA);
+        PaginaRevisiones segunda = auditoriaService().buscarPagina(filtro, primera.siguienteCursor(), TAMANO_PAGINA);
+        assertEquals(TAMANO_PAGINA, segunda.revisiones().size());
+
+        // usuario_id, fecha <= cursor, fecha < cursor, fecha = cursor, rev < cursor, rev = cursor,
+        // id < cursor, límite
+        AuditoriaService.CursorRevision cursor = AuditoriaService.CursorRevision.leer(primera.siguienteCursor());
+        String fecha = "'" + cursor.fechaModificacion() + "'";
+        String rev = String.valueOf(cursor.rev());
+        String plan = explicar(CapturaSql.ultima(), usuarioId(), fecha, fecha, fecha, rev, rev,
+                String.valueOf(cursor.id()), String.valueOf(TAMANO_PAGINA + 1));
+
+        assertTrue(usaAlgunoDe(plan, "idx_suscripciones_aud_usuario_fecha"), plan);
+        assertTrue(plan.contains("Index Cond") && plan.contains("fecha_modificacion <="), plan);
+        assertFalse(ordena(plan), plan);
+    }
+
+    @Test
+    void sinFiltros_recorreElIndiceDeFechaSinOrdenar() {
+
+        PaginaRevisiones pagina = auditoriaService().buscarPagina(null, null, TAMANO_PAGINA);
+        assertEquals(TAMANO_PAGINA, pagina.revisiones().size());
+
+        String plan = explicar(CapturaSql.ultima(), String.valueOf(TAMANO_PAGINA + 1));
+
+        assertTrue(usaAlgunoDe(plan, "idx_suscripciones_aud_fecha"), plan);
+        assertFalse(ordena(plan), plan);
+        assertFalse(plan.contains("Seq Scan on suscripciones_aud"), plan);
+    }
+
+    // =========================================================
+    // UTILIDADES DE TEST
+    // =========================================================
+
+    // Guarda el último SELECT sobre suscripciones_aud que lanza Hibernate en este hilo
+    // (los @Scheduled de la aplicación también consultan y no deben pisarlo)
+    public static class CapturaSql implements StatementInspector {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final ThreadLocal<String> ULTIMA = new ThreadLocal<>();
+
+        static String ultima() {
+            return ULTIMA.get();
+        }
+
+        @Override
+        public String inspect(String sql) {
+            if (sql.startsWith("select") && sql.contains(" from suscripciones_aud ")) {
+                ULTIMA.set(sql);
+            }
+            return sql;
+        }
+    }
+
+    private AuditoriaService auditoriaService() {
+        return contexto.getBean(AuditoriaService.class);
+    }
+
+    // Si el plan pasa por alguna de las particiones del índice padre
+    private boolean usaAlgunoDe(String plan, String indicePadre) {
+        List<String> indices = jdbc.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                        "WHERE i.inhparent = ?::regclass", String.class, indicePadre);
+        return indices.stream().anyMatch(plan::contains);
+    }
+
+    // Si hay un nodo Sort o Incremental Sort (el "Sort Key" del Merge Append que junta las
+    // particiones no cuenta: mezcla listas que ya vienen ordenadas del índice)
+    private boolean ordena(String plan) {
+        return Pattern.compile("^\\s*(->\\s+)?(Incremental )?Sort\\s+\\(", Pattern.MULTILINE).matcher(plan).find();
+    }
+
+    private String usuarioId() {
+        return String.valueOf(jdbc.queryForObject("SELECT id FROM usuarios WHERE email = ?", Long.class, email));
+    }
+
+    // PREPARE con los ? pasados a $1..$n y EXPLAIN EXECUTE con los valores (plan real, no genérico)
+    private String explicar(String sql, String... valores) {
+        StringBuilder preparada = new StringBuilder();
+        int n = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                preparada.append('$').append(++n);
+            } else {
+                preparada.append(c);
+            }
+        }
+        assertEquals(valores.length, n, sql);
+
+        return jdbc.execute((ConnectionCallback<String>) con -> {
+            try (Statement st = con.createStatement()) {
+                st.execute("PREPARE historial_auditoria AS " + preparada);
+                StringBuilder plan = new StringBuilder();
+                try (ResultSet rs = st.executeQuery("EXPLAIN EXECUTE historial_auditoria("
+                        + String.join(", ", valores) + ")")) {
+                    while (rs.next()) {
+                        plan.append(rs.getString(1)).append('\n');
+                    }
+                }
+                st.execute("DEALLOCATE historial_auditoria");
+                System.out.println(plan);
+                return plan.toString();
+            }
+        });
+    }
+
+    // Un cliente con REVISIONES_CLIENTE revisiones y otro con REVISIONES_OTRO, una por segundo
+    // hacia atrás desde ahora (caen en las particiones de esos días, o en la de por defecto)
+    private void crearRevisiones() {
+        PlanRepository planRepository = contexto.getBean(PlanRepository.class);
+        UsuarioRepository usuarioRepository = contexto.getBean(UsuarioRepository.class);
+        SuscripcionRepository suscripcionRepository = contexto.getBean(SuscripcionRepository.class);
+
+        contexto.getBean(TransactionTemplate.class).executeWithoutResult(status -> {
+            Plan plan = planRepository.findAll().get(0);
+
+            for (int i = 0; i < 2; i++) {
+                Usuario usuario = usuarioRepository.save(
+                        new Usuario(prefijo + "-" + i + "@test.local", "ES", "x", RolUsuario.USER));
+                suscripcionRepository.save(new Suscripcion(usuario, plan));
+            }
+        });
+
+        insertarRevisiones(prefijo + "-0@test.local", PRIMERA_REV, REVISIONES_CLIENTE);
+        insertarRevisiones(prefijo + "-1@test.local", PRIMERA_REV - REVISIONES_CLIENTE, REVISIONES_OTRO);
+        jdbc.execute("ANALYZE revinfo, suscripciones_aud");
+    }
+
+    private void insertarRevisiones(String emailCliente, int desdeRev, int cuantas) {
+        jdbc.update("INSERT INTO revinfo (rev, revtstmp) " +
+                "SELECT ? - g, (extract(epoch from now() - g * INTERVAL '1 second') * 1000)::bigint " +
+                "FROM generate_series(1, ?) g", desdeRev, cuantas);
+        jdbc.update("INSERT INTO suscripciones_aud (id, rev, revtype, usuario_id, usuario_mod, plan_id, plan_mod, " +
+                        "estado, estado_mod, fecha_inicio_mod, fecha_fin_ciclo_mod, fecha_cancelacion_mod, " +
+                        "fecha_modificacion) " +
+                        "SELECT s.id, ? - g, 1, s.usuario_id, false, s.plan_id, false, 'ACTIVA', false, false, " +
+                        "true, false, (now() - g * INTERVAL '1 second')::timestamp " +
+                        "FROM suscripciones s JOIN usuarios u ON u.id = s.usuario_id " +
+                        "CROSS JOIN generate_series(1, ?) g WHERE u.email = ?",
+                desdeRev, cuantas, emailCliente);
+    }
+
+    private void limpiar() {
+        String deUsuarios = "SELECT s.id FROM suscripciones s JOIN usuarios u ON u.id = s.usuario_id WHERE u.email LIKE ?";
+        String patron = prefijo + "%";
+        int ultimaRev = PRIMERA_REV - REVISIONES_CLIENTE - REVISIONES_OTRO;
+
+        jdbc.update("DELETE FROM suscripciones_aud WHERE id IN (" + deUsuarios + ")", patron);
+        jdbc.update("DELETE FROM revinfo WHERE rev BETWEEN ? AND ?", ultimaRev, PRIMERA_REV);
+        jdbc.update("DELETE FROM suscripciones WHERE id IN (" + deUsuarios + ")", patron);
+        jdbc.update("DELETE FROM usuarios WHERE email LIKE ?", patron);
+    }
+}
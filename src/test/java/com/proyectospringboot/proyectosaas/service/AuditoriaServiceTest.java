@@ -0,0 +1,76 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoSuscripcion;
+import org.hibernate.envers.RevisionType;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static com.proyectospringboot.proyectosaas.service.AuditoriaService.resumir;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/* AuditoriaServiceTest
+ *
+ * Probamos el resumen de cada revisión del historial a partir de las columnas y las marcas
+ * de modificado que trae la consulta:
+ * - El alta lleva plan y estado de partida.
+ * - Una modificación solo cuenta lo que tiene la marca de cambiado.
+ * - Sin marcas (revisiones anteriores a la V7) sale plan y estado, como antes.
+ * Y el cursor de página: (fecha, rev, id) de ida y vuelta, y los que no son válidos. */
+
+class AuditoriaServiceTest {
+
+    private static final LocalDateTime FIN_CICLO = LocalDateTime.of(2026, 3, 15, 10, 30);
+
+    @Test
+    void resumir_alta_planYEstado() {
+
+        assertEquals("Alta. Plan: BASIC, Estado: ACTIVA",
+                resumir(RevisionType.ADD, "BASIC", EstadoSuscripcion.ACTIVA, FIN_CICLO, true, true, true));
+    }
+
+    @Test
+    void resumir_modificacion_soloLoQueCambia() {
+
+        assertEquals("Estado: CANCELADA",
+                resumir(RevisionType.MOD, "BASIC", EstadoSuscripcion.CANCELADA, FIN_CICLO, false, true, false));
+        assertEquals("Plan: PREMIUM, Fin de ciclo: 15/03/2026",
+                resumir(RevisionType.MOD, "PREMIUM", EstadoSuscripcion.ACTIVA, FIN_CICLO, true, false, true));
+        assertEquals("Sin cambios de plan, estado ni ciclo",
+                resumir(RevisionType.MOD, "BASIC", EstadoSuscripcion.ACTIVA, FIN_CICLO, false, false, false));
+    }
+
+    @Test
+    void resumir_sinMarcas_comoAntes() {
+
+        assertEquals("Plan: BASIC, Estado: ACTIVA",
+                resumir(RevisionType.MOD, "BASIC", EstadoSuscripcion.ACTIVA, FIN_CICLO, null, null, null));
+        assertEquals("Plan: Plan desconocido, Estado: ACTIVA",
+                resumir(RevisionType.MOD, null, EstadoSuscripcion.ACTIVA, null, null, null, null));
+    }
+
+    @Test
+    void resumir_baja() {
+
+        assertEquals("Baja", resumir(RevisionType.DEL, null, null, null, null, null, null));
+    }
+
+    @Test
+    void cursor_idaYVuelta() {
+
+        AuditoriaService.CursorRevision cursor = new AuditoriaService.CursorRevision(
+                LocalDateTime.of(2026, 1, 1, 0, 0, 0, 123_456_000), -2000, 42L);
+
+        assertEquals("2026-01-01T00:00:00.123456_-2000_42", cursor.texto());
+        assertEquals(cursor, AuditoriaService.CursorRevision.leer(cursor.texto()));
+        assertNull(AuditoriaService.CursorRevision.leer(" "));
+
+        // Los formatos anteriores (rev_id y milisegundos de revinfo) ya no valen
+        assertThrows(IllegalArgumentException.class, () -> AuditoriaService.CursorRevision.leer("120_42"));
+        assertThrows(IllegalArgumentException.class,
+                () -> AuditoriaService.CursorRevision.leer("1767225600000_-2000_42"));
+        assertThrows(IllegalArgumentException.class, () -> AuditoriaService.CursorRevision.leer("a_b_c"));
+    }
+}
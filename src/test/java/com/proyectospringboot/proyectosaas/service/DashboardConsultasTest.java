@@ -0,0 +1,227 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.ProyectoSaasApplication;
+import com.proyectospringboot.proyectosaas.domain.entity.Factura;
+import com.proyectospringboot.proyectosaas.domain.entity.PagoPaypal;
+import com.proyectospringboot.proyectosaas.domain.entity.PagoTarjeta;
+import com.proyectospringboot.proyectosaas.domain.entity.PagoTransferencia;
+import com.proyectospringboot.proyectosaas.domain.entity.Perfil;
+import com.proyectospringboot.proyectosaas.domain.entity.Plan;
+import com.proyectospringboot.proyectosaas.domain.entity.Suscripcion;
+import com.proyectospringboot.proyectosaas.domain.entity.Usuario;
+import com.proyectospringboot.proyectosaas.domain.enums.RolUsuario;
+import com.proyectospringboot.proyectosaas.service.DashboardService.PanelCliente;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* DashboardConsultasTest
+ *
+ * Comprobamos contra el PostgreSQL de docker-compose que el panel del cliente se carga
+ * con un número fijo de consultas, tenga una factura o muchas:
+ * - Contamos las sentencias JDBC con las estadísticas de Hibernate.
+ * - Después de cargar tocamos todo lo que pinta dashboard.html (fuera de la transacción),
+ *   para que una carga perezosa olvidada también sume.
+ * - Con el panel en caché refrescar no cuesta ninguna consulta, hasta que un pago lo invalida.
+ *
+ * Necesita la BD levantada (docker compose up -d), así que solo se ejecuta con:
+ *   mvn test -Dpostgres.it=true -Dtest=DashboardConsultasTest */
+
+@EnabledIfSystemProperty(named = "postgres.it", matches = "true")
+class DashboardConsultasTest {
+
+    // Resumen, última factura y último método de pago (los planes salen de PlanCatalog)
+    private static final int CONSULTAS_POR_PANEL = 3;
+
+    private final String prefijo = "panel-" + UUID.randomUUID().toString().substring(0, 8);
+    private final String emailNuevo = prefijo + "-nuevo@test.local";
+    private final String emailVeterano = prefijo + "-veterano@test.local";
+
+    private ConfigurableApplicationContext contexto;
+    private Statistics estadisticas;
+
+    @BeforeEach
+    void setUp() {
+        contexto = new SpringApplicationBuilder(ProyectoSaasApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.generate_statistics=true")
+                .run();
+        estadisticas = contexto.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        crearClientes();
+    }
+
+    @AfterEach
+    void tearDown() {
+        try {
+            limpiar();
+        } finally {
+            contexto.close();
+        }
+    }
+
+    @Test
+    void panel_mismasConsultasConUnaFacturaQueConCien() {
+
+        PanelCliente nuevo = cargarContando(emailNuevo);
+        assertEquals(0, nuevo.ultimaFactura().total().compareTo(new BigDecimal("12.10")));
+        assertTrue(nuevo.ultimaFacturaPagada());
+        assertEquals("Tarjeta", nuevo.ultimoMetodoPago());
+        assertEquals(emailNuevo, nuevo.cliente().nombreMostrado());
+
+        PanelCliente veterano = cargarContando(emailVeterano);
+        assertFalse(veterano.ultimaFacturaPagada());
+        assertEquals("PayPal", veterano.ultimoMetodoPago());
+        assertEquals("Ana López", veterano.cliente().nombreMostrado());
+    }
+
+    @Test
+    void panel_sinFacturas_mismasConsultas() {
+
+        limpiarFacturas(emailNuevo);
+
+        PanelCliente panel = cargarContando(emailNuevo);
+
+        assertEquals(null, panel.ultimaFactura());
+        assertTrue(panel.ultimaFacturaPagada());
+    }
+
+    @Test
+    void panelEnCache_ceroConsultasHastaQueUnPagoLoInvalida() {
+
+        DashboardService dashboardService = contexto.getBean(DashboardService.class);
+        dashboardService.cargar(emailVeterano).orElseThrow();
+
+        estadisticas.clear();
+        PanelCliente enCache = dashboardService.cargar(emailVeterano).orElseThrow();
+        assertEquals("PayPal", enCache.ultimoMetodoPago());
+        assertEquals(0, estadisticas.getPrepareStatementCount());
+
+        // El pago va a la pendiente más reciente (la de 0€): al confirmar se descarta el panel
+        // y se vuelve a leer entero (el id del usuario sigue en caché)
+        contexto.getBean(FacturaService.class).registrarPagoConDatos(
+                emailVeterano, "tarjeta", "4242", "Ana López", null, null, null);
+
+        estadisticas.clear();
+        PanelCliente recargado = dashboardService.cargar(emailVeterano).orElseThrow();
+        assertEquals("Tarjeta", recargado.ultimoMetodoPago());
+        assertEquals(CONSULTAS_POR_PANEL, estadisticas.getPrepareStatementCount());
+    }
+
+    // =========================================================
+    // UTILIDADES DE TEST
+    // =========================================================
+
+    // Sin pasar por la caché
+    private PanelCliente cargarContando(String email) {
+        estadisticas.clear();
+
+        PanelCliente panel = contexto.getBean(DashboardService.class).leer(email).orElseThrow();
+
+        // Lo mismo que lee la plantilla
+        assertNotNull(panel.cliente().planNombre());
+        assertNotNull(panel.cliente().estado());
+        assertNotNull(panel.cliente().fechaFinCiclo());
+        panel.cliente().pagoAutomatico();
+        panel.cliente().metodoPagoPreferido();
+        if (panel.ultimaFactura() != null) {
+            panel.ultimaFactura().fecha();
+            panel.ultimaFactura().total();
+        }
+
+        assertEquals(CONSULTAS_POR_PANEL, estadisticas.getPrepareStatementCount(), email);
+        return panel;
+    }
+
+    // "nuevo": una factura pagada con tarjeta.
+    // "veterano": con perfil y 100 facturas pagadas (tarjeta y transferencia) más una
+    // última pagada con PayPal y otra posterior pendiente de 0€ que no cuenta como última.
+    private void crearClientes() {
+        EntityManager em = contexto.getBean(EntityManager.class);
+
+        contexto.getBean(TransactionTemplate.class).executeWithoutResult(status -> {
+            Plan plan = em.createQuery("SELECT p FROM Plan p ORDER BY p.id", Plan.class)
+                    .setMaxResults(1).getSingleResult();
+            LocalDateTime inicio = LocalDateTime.now().minusDays(200);
+
+            Suscripcion nuevo = crearSuscripcion(em, emailNuevo, plan);
+            Factura unica = factura(em, nuevo, inicio, "12.10");
+            em.persist(new PagoTarjeta(unica, unica.getTotal(), inicio, "4242", "Titular"));
+
+            Suscripcion veterano = crearSuscripcion(em, emailVeterano, plan);
+            em.persist(new Perfil(veterano.getUsuario(), "Ana", "López", null));
+            for (int i = 0; i < 100; i++) {
+                Factura f = factura(em, veterano, inicio.plusDays(i), "12.10");
+                if (i % 2 == 0) {
+                    em.persist(new PagoTarjeta(f, f.getTotal(), f.getFecha(), "4242", "Ana López"));
+                } else {
+                    em.persist(new PagoTransferencia(f, f.getTotal(), f.getFecha(), "ES00TEST", "REF-" + i));
+                }
+            }
+            Factura conPaypal = factura(em, veterano, inicio.plusDays(150), "12.10");
+            em.persist(new PagoPaypal(conPaypal, conPaypal.getTotal(), conPaypal.getFecha(), emailVeterano));
+            factura(em, veterano, inicio.plusDays(160), "12.10");
+            factura(em, veterano, inicio.plusDays(170), "0.00");
+        });
+    }
+
+    private Suscripcion crearSuscripcion(EntityManager em, String email, Plan plan) {
+        Usuario usuario = new Usuario(email, "ES", "x", RolUsuario.USER);
+        em.persist(usuario);
+        Suscripcion suscripcion = new Suscripcion(usuario, plan);
+        em.persist(suscripcion);
+        return suscripcion;
+    }
+
+    private Factura factura(EntityManager em, Suscripcion suscripcion, LocalDateTime fecha, String total) {
+        BigDecimal importe = new BigDecimal(total);
+        Factura factura = new Factura(suscripcion, fecha, importe, BigDecimal.ZERO, importe, "panel");
+        em.persist(factura);
+        return factura;
+    }
+
+    private void limpiarFacturas(String email) {
+        JdbcTemplate jdbc = contexto.getBean(JdbcTemplate.class);
+        String deFacturas = "SELECT f.id FROM facturas f JOIN suscripciones s ON s.id = f.suscripcion_id " +
+                "JOIN usuarios u ON u.id = s.usuario_id WHERE u.email LIKE ?";
+
+        for (String tabla : new String[] { "pagos_tarjeta", "pagos_paypal", "pagos_transferencia" }) {
+            jdbc.update("DELETE FROM " + tabla + " WHERE id IN (SELECT p.id FROM pagos p WHERE p.factura_id IN ("
+                    + deFacturas + "))", email);
+        }
+        jdbc.update("DELETE FROM pagos WHERE factura_id IN (" + deFacturas + ")", email);
+        jdbc.update("DELETE FROM facturas WHERE id IN (" + deFacturas + ")", email);
+    }
+
+    private void limpiar() {
+        JdbcTemplate jdbc = contexto.getBean(JdbcTemplate.class);
+        String patron = prefijo + "%";
+        String deUsuarios = "SELECT u.id FROM usuarios u WHERE u.email LIKE ?";
+
+        limpiarFacturas(patron);
+        jdbc.update("DELETE FROM perfiles WHERE usuario_id IN (" + deUsuarios + ")", patron);
+        jdbc.update("DELETE FROM suscripciones_aud WHERE usuario_id IN (" + deUsuarios + ")", patron);
+        jdbc.update("DELETE FROM suscripciones WHERE usuario_id IN (" + deUsuarios + ")", patron);
+        jdbc.update("DELETE FROM usuarios WHERE email LIKE ?", patron);
+    }
+}
@@ -0,0 +1,145 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.config.DashboardCacheProperties;
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoSuscripcion;
+import com.proyectospringboot.proyectosaas.domain.event.FacturacionModificadaEvent;
+import com.proyectospringboot.proyectosaas.domain.event.SuscripcionModificadaEvent;
+import com.proyectospringboot.proyectosaas.repository.FacturaRepository;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository.ResumenPanel;
+import com.proyectospringboot.proyectosaas.repository.UsuarioRepository;
+import com.proyectospringboot.proyectosaas.service.DashboardService.PanelCliente;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/* DashboardServiceTest
+ *
+ * Probamos la caché del panel del cliente sin base de datos:
+ * - Que refrescar el panel no vuelve a los repositorios.
+ * - Que los eventos de suscripción y facturación descartan el panel de ese usuario y de nadie más.
+ * - Que aciertos y fallos quedan en las métricas (cache.gets).
+ * - Que un email sin suscripción no deja nada en la caché. */
+
+@ExtendWith(MockitoExtension.class)
+class DashboardServiceTest {
+
+    private static final String EMAIL = "ana@test.com";
+    private static final String OTRO_EMAIL = "luis@test.com";
+
+    @Mock
+    private SuscripcionRepository suscripcionRepository;
+
+    @Mock
+    private FacturaRepository facturaRepository;
+
+    @Mock
+    private UsuarioRepository usuarioRepository;
+
+    @Mock
+    private FacturaService facturaService;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private DashboardService dashboardService;
+
+    @BeforeEach
+    void setUp() {
+        dashboardService = new DashboardService(suscripcionRepository, facturaRepository,
+                usuarioRepository, facturaService, mock(PlatformTransactionManager.class),
+                new DashboardCacheProperties(100, 300), new MetricasFacturacion(registry));
+    }
+
+    @Test
+    void cargar_segundaVez_saleDeLaCache() {
+
+        sinFacturas();
+        conPanel(EMAIL, 1L);
+
+        PanelCliente primero = dashboardService.cargar(EMAIL).orElseThrow();
+        PanelCliente segundo = dashboardService.cargar(EMAIL).orElseThrow();
+
+        assertSame(primero, segundo);
+        verify(usuarioRepository, times(1)).buscarIdPorEmail(EMAIL);
+        verify(suscripcionRepository, times(1)).buscarResumenPanel(EMAIL);
+        verify(facturaService, times(1)).obtenerUltimoMetodoPago(EMAIL);
+
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "panel.cliente").tag("result", "hit")
+                .functionCounter().count());
+        assertEquals(1.0, registry.get("cache.gets").tag("cache", "panel.cliente").tag("result", "miss")
+                .functionCounter().count());
+    }
+
+    @Test
+    void eventos_descartanSoloElPanelDeEseUsuario() {
+
+        sinFacturas();
+        conPanel(EMAIL, 1L);
+        conPanel(OTRO_EMAIL, 2L);
+
+        PanelCliente antes = dashboardService.cargar(EMAIL).orElseThrow();
+        dashboardService.cargar(OTRO_EMAIL);
+
+        dashboardService.alModificarFacturacion(new FacturacionModificadaEvent(1L));
+        PanelCliente despues = dashboardService.cargar(EMAIL).orElseThrow();
+        dashboardService.cargar(OTRO_EMAIL);
+
+        assertNotSame(antes, despues);
+        verify(suscripcionRepository, times(2)).buscarResumenPanel(EMAIL);
+        verify(suscripcionRepository, times(1)).buscarResumenPanel(OTRO_EMAIL);
+
+        dashboardService.alModificarSuscripcion(new SuscripcionModificadaEvent(2L));
+        dashboardService.cargar(OTRO_EMAIL);
+
+        verify(suscripcionRepository, times(2)).buscarResumenPanel(OTRO_EMAIL);
+    }
+
+    @Test
+    void cargar_sinSuscripcion_noSeGuarda() {
+
+        when(usuarioRepository.buscarIdPorEmail(EMAIL)).thenReturn(Optional.of(1L));
+        when(suscripcionRepository.buscarResumenPanel(EMAIL)).thenReturn(Optional.empty());
+
+        assertTrue(dashboardService.cargar(EMAIL).isEmpty());
+        assertTrue(dashboardService.cargar(EMAIL).isEmpty());
+
+        verify(suscripcionRepository, times(2)).buscarResumenPanel(EMAIL);
+        verify(facturaRepository, never()).buscarPagina(any(), eq(1));
+    }
+
+    // =========================================================
+    // UTILIDADES DE TEST
+    // =========================================================
+
+    private void sinFacturas() {
+        when(facturaRepository.buscarPagina(any(), eq(1))).thenReturn(List.of());
+    }
+
+    private void conPanel(String email, Long usuarioId) {
+        when(usuarioRepository.buscarIdPorEmail(email)).thenReturn(Optional.of(usuarioId));
+        when(suscripcionRepository.buscarResumenPanel(email)).thenReturn(Optional.of(new ResumenPanel(
+                usuarioId, EstadoSuscripcion.ACTIVA, LocalDateTime.now().plusDays(10), 1L, "BASIC",
+                email, null, null, "tarjeta", false)));
+        when(facturaService.obtenerUltimoMetodoPago(email)).thenReturn("Tarjeta");
+    }
+}
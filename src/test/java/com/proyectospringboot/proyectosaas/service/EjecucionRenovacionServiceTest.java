@@ -0,0 +1,247 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.config.RenovacionProperties;
+import com.proyectospringboot.proyectosaas.domain.entity.EjecucionRenovacion;
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoEjecucion;
+import com.proyectospringboot.proyectosaas.repository.EjecucionRenovacionRepository;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import com.proyectospringboot.proyectosaas.service.EjecucionRenovacionService.ProgresoEjecucion;
+import com.proyectospringboot.proyectosaas.service.RenovacionService.ResultadoRenovacion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/* EjecucionRenovacionServiceTest
+ *
+ * Probamos el diario de ejecuciones sin base de datos:
+ * - Que una ejecución nueva empieza en la marca de agua 0 y apunta el progreso tras cada lote,
+ *   y el latido en cada lote de la cancelación.
+ * - Que una ejecución a medias se retoma desde su marca de agua y con su fecha de corte,
+ *   sumando a los contadores que ya llevaba, y que después se abre la de esta pasada.
+ * - Que al adoptar la de otro nodo solo se sueltan sus leases caducados.
+ * - Que la reanudación (al arrancar o periódica) termina las pendientes sin abrir otra, y
+ *   que no se mete si la pasada nocturna está en marcha en este nodo.
+ *
+ * La TransactionTemplate la simulamos ejecutando el callback directamente. */
+
+@ExtendWith(MockitoExtension.class)
+class EjecucionRenovacionServiceTest {
+
+    @Mock
+    private EjecucionRenovacionRepository ejecucionRepository;
+
+    @Mock
+    private SuscripcionRepository suscripcionRepository;
+
+    @Mock
+    private RenovacionService renovacionService;
+
+    @Mock
+    private FacturaService facturaService;
+
+    @Mock
+    private TransactionTemplate tx;
+
+    private EjecucionRenovacionService ejecucionService;
+
+    @BeforeEach
+    void setUp() {
+        ejecucionService = new EjecucionRenovacionService(ejecucionRepository, suscripcionRepository,
+                renovacionService, facturaService, tx,
+                new RenovacionProperties(2, new RenovacionProperties.Paralelo(false, 1), false, 15, "nodo-a"),
+                new MetricasFacturacion(new SimpleMeterRegistry()));
+
+        when(renovacionService.getNodo()).thenReturn("nodo-a");
+        when(tx.execute(any())).thenAnswer(inv -> {
+            TransactionCallback<?> callback = inv.getArgument(0);
+            return callback.doInTransaction(mock(TransactionStatus.class));
+        });
+    }
+
+    @Test
+    void ejecutar_sinEjecucionPendiente_abreUnaNuevaYApuntaElProgreso() {
+
+        when(ejecucionRepository.buscarReanudables(eq(EstadoEjecucion.EN_CURSO), eq("nodo-a"), any(), any()))
+                .thenReturn(List.of());
+
+        EjecucionRenovacion[] guardada = new EjecucionRenovacion[1];
+        when(ejecucionRepository.save(any(EjecucionRenovacion.class))).thenAnswer(inv -> {
+            guardada[0] = conId(inv.getArgument(0), 1L);
+            return guardada[0];
+        });
+        when(ejecucionRepository.findById(1L)).thenAnswer(inv -> Optional.of(guardada[0]));
+
+        // Simulamos dos lotes confirmados
+        when(renovacionService.renovarVencidas(any(LocalDateTime.class), eq(0L), any())).thenAnswer(inv -> {
+            BiConsumer<Long, ResultadoRenovacion> alConfirmarLote = inv.getArgument(2);
+            alConfirmarLote.accept(2L, new ResultadoRenovacion(2, 0));
+            alConfirmarLote.accept(5L, new ResultadoRenovacion(3, 1));
+            return new ResultadoRenovacion(3, 1);
+        });
+        // Y dos lotes de cancelación
+        when(facturaService.cancelarExpiradas(any())).thenAnswer(inv -> {
+            Runnable alConfirmarLote = inv.getArgument(0);
+            alConfirmarLote.run();
+            alConfirmarLote.run();
+            return 4;
+        });
+
+        ProgresoEjecucion progreso = ejecucionService.ejecutar();
+
+        verify(ejecucionRepository).registrarProgreso(eq(1L), eq(2L), eq(2), eq(0), any());
+        verify(ejecucionRepository).registrarProgreso(eq(1L), eq(5L), eq(3), eq(1), any());
+        verify(ejecucionRepository, times(2)).registrarLatido(eq(1L), any());
+        assertEquals(EstadoEjecucion.COMPLETADA, progreso.estado());
+        assertEquals(4, progreso.canceladas());
+    }
+
+    @Test
+    void ejecutar_conEjecucionAMedias_laTerminaYAbreUnaNuevaConElCorteDeAhora() {
+
+        LocalDateTime corte = LocalDateTime.now().minusHours(3);
+        EjecucionRenovacion aMedias = conId(new EjecucionRenovacion("nodo-a", corte), 7L);
+        ReflectionTestUtils.setField(aMedias, "ultimoIdProcesado", 40L);
+        ReflectionTestUtils.setField(aMedias, "renovadas", 10);
+        ReflectionTestUtils.setField(aMedias, "reanudaciones", 1);
+
+        when(ejecucionRepository.buscarReanudables(eq(EstadoEjecucion.EN_CURSO), eq("nodo-a"), any(), any()))
+                .thenReturn(List.of(aMedias), List.of());
+        when(ejecucionRepository.adoptar(eq(7L), eq(EstadoEjecucion.EN_CURSO), eq(corte), eq("nodo-a"), any()))
+                .thenReturn(1);
+        when(ejecucionRepository.findById(7L)).thenReturn(Optional.of(aMedias));
+
+        when(renovacionService.renovarVencidas(eq(corte), eq(40L), any())).thenAnswer(inv -> {
+            BiConsumer<Long, ResultadoRenovacion> alConfirmarLote = inv.getArgument(2);
+            alConfirmarLote.accept(42L, new ResultadoRenovacion(2, 0));
+            return new ResultadoRenovacion(2, 0);
+        });
+
+        EjecucionRenovacion[] nueva = new EjecucionRenovacion[1];
+        when(ejecucionRepository.save(any(EjecucionRenovacion.class))).thenAnswer(inv -> {
+            nueva[0] = conId(inv.getArgument(0), 8L);
+            return nueva[0];
+        });
+        when(ejecucionRepository.findById(8L)).thenAnswer(inv -> Optional.of(nueva[0]));
+        when(renovacionService.renovarVencidas(any(LocalDateTime.class), eq(0L), any()))
+                .thenReturn(new ResultadoRenovacion(0, 0));
+
+        LocalDateTime antes = LocalDateTime.now();
+        ejecucionService.ejecutar();
+
+        // Los contadores siguen desde donde se quedó la ejecución anterior
+        verify(ejecucionRepository).registrarProgreso(eq(7L), eq(42L), eq(12), eq(0), any());
+        verify(ejecucionRepository, never()).registrarProgreso(eq(7L), anyLong(), eq(2), eq(0), any());
+
+        // Y la de hoy empieza de cero con su propio corte
+        assertFalse(nueva[0].getFechaCorte().isBefore(antes));
+        verify(renovacionService).renovarVencidas(eq(nueva[0].getFechaCorte()), eq(0L), any());
+    }
+
+    @Test
+    void ejecutar_adoptandoConRepartoEntreNodos_soloSueltaLosLeasesCaducados() {
+
+        ejecucionService = new EjecucionRenovacionService(ejecucionRepository, suscripcionRepository,
+                renovacionService, facturaService, tx,
+                new RenovacionProperties(2, new RenovacionProperties.Paralelo(false, 1), true, 15, "nodo-a"),
+                new MetricasFacturacion(new SimpleMeterRegistry()));
+
+        LocalDateTime corte = LocalDateTime.now().minusHours(3);
+        EjecucionRenovacion aMedias = conId(new EjecucionRenovacion("nodo-b", corte), 7L);
+
+        when(ejecucionRepository.buscarReanudables(eq(EstadoEjecucion.EN_CURSO), eq("nodo-a"), any(), any()))
+                .thenReturn(List.of(aMedias), List.of());
+        when(ejecucionRepository.adoptar(eq(7L), eq(EstadoEjecucion.EN_CURSO), eq(corte), eq("nodo-a"), any()))
+                .thenReturn(1);
+        when(ejecucionRepository.findById(7L)).thenReturn(Optional.of(aMedias));
+        when(ejecucionRepository.save(any(EjecucionRenovacion.class))).thenAnswer(inv -> conId(inv.getArgument(0), 8L));
+        when(ejecucionRepository.findById(8L)).thenReturn(Optional.of(conId(new EjecucionRenovacion("nodo-a", corte), 8L)));
+        when(renovacionService.renovarVencidas(any(LocalDateTime.class), anyLong(), any()))
+                .thenReturn(new ResultadoRenovacion(0, 0));
+
+        LocalDateTime antes = LocalDateTime.now();
+        ejecucionService.ejecutar();
+
+        ArgumentCaptor<LocalDateTime> instante = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(suscripcionRepository).liberarLeasesCaducados(eq("nodo-b"), instante.capture());
+        assertFalse(instante.getValue().isBefore(antes));
+        verify(suscripcionRepository, never()).liberarLeases(any(), any());
+    }
+
+    @Test
+    void reanudarAMedias_terminaLaPendienteSinAbrirOtra() {
+
+        LocalDateTime corte = LocalDateTime.now().minusHours(3);
+        EjecucionRenovacion aMedias = conId(new EjecucionRenovacion("nodo-b", corte), 7L);
+        ReflectionTestUtils.setField(aMedias, "ultimoIdProcesado", 40L);
+
+        when(ejecucionRepository.buscarReanudables(eq(EstadoEjecucion.EN_CURSO), eq("nodo-a"), any(), any()))
+                .thenReturn(List.of(aMedias), List.of());
+        when(ejecucionRepository.adoptar(eq(7L), eq(EstadoEjecucion.EN_CURSO), eq(corte), eq("nodo-a"), any()))
+                .thenReturn(1);
+        when(ejecucionRepository.findById(7L)).thenReturn(Optional.of(aMedias));
+        when(renovacionService.renovarVencidas(eq(corte), eq(40L), any())).thenReturn(new ResultadoRenovacion(0, 0));
+
+        assertEquals(1, ejecucionService.reanudarAMedias());
+
+        assertEquals(EstadoEjecucion.COMPLETADA, aMedias.getEstado());
+        verify(ejecucionRepository, never()).save(any());
+    }
+
+    @Test
+    void reanudarAMedias_conLaPasadaNocturnaEnMarcha_seAparta() throws Exception {
+
+        when(ejecucionRepository.buscarReanudables(eq(EstadoEjecucion.EN_CURSO), eq("nodo-a"), any(), any()))
+                .thenReturn(List.of());
+        when(ejecucionRepository.save(any(EjecucionRenovacion.class)))
+                .thenAnswer(inv -> conId(inv.getArgument(0), 1L));
+        when(ejecucionRepository.findById(1L))
+                .thenReturn(Optional.of(conId(new EjecucionRenovacion("nodo-a", LocalDateTime.now()), 1L)));
+
+        // Mientras la pasada renueva, la reanudación llega desde otro hilo (el del arranque)
+        int[] retomadas = {-1};
+        when(renovacionService.renovarVencidas(any(LocalDateTime.class), eq(0L), any())).thenAnswer(inv -> {
+            Thread otro = new Thread(() -> retomadas[0] = ejecucionService.reanudarAMedias());
+            otro.start();
+            otro.join();
+            return new ResultadoRenovacion(0, 0);
+        });
+
+        ejecucionService.ejecutar();
+
+        assertEquals(0, retomadas[0]);
+        verify(ejecucionRepository, times(1)).buscarReanudables(any(), any(), any(), any());
+    }
+
+    // =========================================================
+    // UTILIDADES DE TEST
+    // =========================================================
+
+    private EjecucionRenovacion conId(EjecucionRenovacion ejecucion, Long id) {
+        ReflectionTestUtils.setField(ejecucion, "id", id);
+        return ejecucion;
+    }
+}
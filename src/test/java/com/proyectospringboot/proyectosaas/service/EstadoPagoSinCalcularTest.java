@@ -0,0 +1,135 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.ProyectoSaasApplication;
+import com.proyectospringboot.proyectosaas.domain.entity.Factura;
+import com.proyectospringboot.proyectosaas.domain.entity.PagoTarjeta;
+import com.proyectospringboot.proyectosaas.domain.entity.Plan;
+import com.proyectospringboot.proyectosaas.domain.entity.Suscripcion;
+import com.proyectospringboot.proyectosaas.domain.entity.Usuario;
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoSuscripcion;
+import com.proyectospringboot.proyectosaas.domain.enums.RolUsuario;
+import com.proyectospringboot.proyectosaas.repository.FacturaRepository;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* EstadoPagoSinCalcularTest
+ *
+ * Comprobamos contra el PostgreSQL de docker-compose que las facturas anteriores a la V3 que
+ * RellenoEstadoPagoService aún no ha calculado (estado_pago a null) no se pierden:
+ * - La que no tiene pago sale como pendiente del cliente y su suscripción como impagada.
+ * - La que tiene pago cuenta como pagada.
+ *
+ * El relleno corre al arrancar, así que ponemos el estado a null después, a mano.
+ *
+ * Necesita la BD levantada (docker compose up -d), así que solo se ejecuta con:
+ *   mvn test -Dpostgres.it=true -Dtest=EstadoPagoSinCalcularTest */
+
+@EnabledIfSystemProperty(named = "postgres.it", matches = "true")
+class EstadoPagoSinCalcularTest {
+
+    private final String email = "sin-estado-" + UUID.randomUUID().toString().substring(0, 8) + "@test.local";
+
+    private ConfigurableApplicationContext contexto;
+    private JdbcTemplate jdbc;
+
+    private Long suscripcionId;
+    private Long pagadaId;
+    private Long impagadaId;
+
+    @BeforeEach
+    void setUp() {
+        contexto = new SpringApplicationBuilder(ProyectoSaasApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.jpa.show-sql=false")
+                .run();
+        jdbc = contexto.getBean(JdbcTemplate.class);
+        crearFacturasAntiguas();
+    }
+
+    @AfterEach
+    void tearDown() {
+        try {
+            limpiar();
+        } finally {
+            contexto.close();
+        }
+    }
+
+    @Test
+    void sinCalcular_laQueNoTienePagoEsDeuda() {
+
+        List<Factura> pendientes = contexto.getBean(FacturaRepository.class).buscarPendientes(email, Limit.of(10));
+        assertEquals(List.of(impagadaId), pendientes.stream().map(Factura::getId).toList());
+
+        FacturaService facturaService = contexto.getBean(FacturaService.class);
+        assertTrue(facturaService.estaPagada(pagadaId));
+        assertFalse(facturaService.estaPagada(impagadaId));
+
+        List<Suscripcion> impagadas = contexto.getBean(SuscripcionRepository.class).buscarImpagadasParaCancelar(
+                EstadoSuscripcion.ACTIVA, LocalDateTime.now().plusYears(1), suscripcionId - 1, Limit.of(1));
+        assertEquals(List.of(suscripcionId), impagadas.stream().map(Suscripcion::getId).toList());
+    }
+
+    // =========================================================
+    // UTILIDADES DE TEST
+    // =========================================================
+
+    // Dos facturas, una con pago, y las dos con el estado a null como antes de la V3
+    private void crearFacturasAntiguas() {
+        EntityManager em = contexto.getBean(EntityManager.class);
+
+        contexto.getBean(TransactionTemplate.class).executeWithoutResult(status -> {
+            Plan plan = em.createQuery("SELECT p FROM Plan p ORDER BY p.id", Plan.class)
+                    .setMaxResults(1).getSingleResult();
+            Usuario usuario = new Usuario(email, "ES", "x", RolUsuario.USER);
+            em.persist(usuario);
+            Suscripcion suscripcion = new Suscripcion(usuario, plan);
+            em.persist(suscripcion);
+
+            LocalDateTime fecha = LocalDateTime.now().minusDays(60);
+            BigDecimal importe = new BigDecimal("12.10");
+            Factura pagada = new Factura(suscripcion, fecha, importe, BigDecimal.ZERO, importe, "antigua");
+            Factura impagada = new Factura(suscripcion, fecha.plusDays(30), importe, BigDecimal.ZERO, importe, "antigua");
+            em.persist(pagada);
+            em.persist(impagada);
+            em.persist(new PagoTarjeta(pagada, importe, fecha, "4242", "Titular"));
+
+            suscripcionId = suscripcion.getId();
+            pagadaId = pagada.getId();
+            impagadaId = impagada.getId();
+        });
+
+        jdbc.update("UPDATE facturas SET estado_pago = NULL, pagada_en = NULL WHERE suscripcion_id = ?", suscripcionId);
+    }
+
+    private void limpiar() {
+        String deFacturas = "SELECT f.id FROM facturas f WHERE f.suscripcion_id = ?";
+
+        jdbc.update("DELETE FROM pagos_tarjeta WHERE id IN (SELECT p.id FROM pagos p WHERE p.factura_id IN ("
+                + deFacturas + "))", suscripcionId);
+        jdbc.update("DELETE FROM pagos WHERE factura_id IN (" + deFacturas + ")", suscripcionId);
+        jdbc.update("DELETE FROM facturas WHERE suscripcion_id = ?", suscripcionId);
+        jdbc.update("DELETE FROM suscripciones_aud WHERE id = ?", suscripcionId);
+        jdbc.update("DELETE FROM suscripciones WHERE id = ?", suscripcionId);
+        jdbc.update("DELETE FROM usuarios WHERE email = ?", email);
+    }
+}
@@ -0,0 +1,219 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.ProyectoSaasApplication;
+import com.proyectospringboot.proyectosaas.domain.entity.Plan;
+import com.proyectospringboot.proyectosaas.domain.entity.Suscripcion;
+import com.proyectospringboot.proyectosaas.domain.entity.Usuario;
+import com.proyectospringboot.proyectosaas.domain.enums.RolUsuario;
+import com.proyectospringboot.proyectosaas.repository.PlanRepository;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import com.proyectospringboot.proyectosaas.repository.UsuarioRepository;
+import com.proyectospringboot.proyectosaas.service.FacturaService.PaginaFacturas;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* FacturaFiltrosExplainTest
+ *
+ * Comprobamos contra el PostgreSQL de docker-compose que el listado filtrado de facturas
+ * usa los índices de facturas de la migración V2 (rango sobre suscripcion_id + fecha/total) y no recorre la tabla:
+ * - Capturamos el SQL que genera Hibernate para la consulta (StatementInspector).
+ * - Lo preparamos con PREPARE y miramos el plan con EXPLAIN EXECUTE y los valores del test.
+ *
+ * Necesita la BD levantada (docker compose up -d), así que solo se ejecuta con:
+ *   mvn test -Dpostgres.it=true -Dtest=FacturaFiltrosExplainTest */
+
+@EnabledIfSystemProperty(named = "postgres.it", matches = "true")
+class FacturaFiltrosExplainTest {
+
+    private static final int CLIENTES = 50;
+    private static final int FACTURAS_POR_CLIENTE = 400;
+
+    private final String prefijo = "explain-" + UUID.randomUUID().toString().substring(0, 8);
+    private final String email = prefijo + "-0@test.local";
+
+    private ConfigurableApplicationContext contexto;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        contexto = new SpringApplicationBuilder(ProyectoSaasApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.jpa.show-sql=false",
+                        "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                                + CapturaSql.class.getName())
+                .run();
+        jdbc = contexto.getBean(JdbcTemplate.class);
+        crearFacturas();
+    }
+
+    @AfterEach
+    void tearDown() {
+        try {
+            limpiar();
+        } finally {
+            contexto.close();
+        }
+    }
+
+    @Test
+    void filtroPorFechas_usaRangoDelIndiceDeFecha() {
+
+        LocalDateTime desde = LocalDateTime.of(2024, 3, 1, 0, 0);
+        LocalDateTime hasta = LocalDateTime.of(2024, 3, 31, 0, 0);
+
+        PaginaFacturas pagina = facturaService().buscarPaginaConFiltros(email, desde, hasta, null, null, null, 20);
+        assertEquals(20, pagina.facturas().size());
+
+        String plan = explicar(CapturaSql.ultima(), "'" + email + "'", "'" + desde + "'", "'" + hasta + "'", "21");
+
+        assertTrue(plan.contains("idx_facturas_suscripcion_fecha_id"), plan);
+        assertFalse(plan.contains("Seq Scan on facturas"), plan);
+    }
+
+    @Test
+    void filtroPorTotal_usaElIndiceDeTotal() {
+
+        PaginaFacturas pagina = facturaService().buscarPaginaConFiltros(email, null, null,
+                new BigDecimal("20.10"), new BigDecimal("20.10"), null, 20);
+        assertEquals(8, pagina.facturas().size());
+
+        String plan = explicar(CapturaSql.ultima(), "'" + email + "'", "20.10", "20.10", "21");
+
+        assertTrue(plan.contains("idx_facturas_suscripcion_total"), plan);
+        assertFalse(plan.contains("Seq Scan on facturas"), plan);
+    }
+
+    @Test
+    void siguientePagina_acotaElRangoConElCursor() {
+
+        PaginaFacturas primera = facturaService().buscarPaginaPorEmail(email, null, 20);
+        PaginaFacturas segunda = facturaService().buscarPaginaPorEmail(email, primera.siguienteCursor(), 20);
+        assertEquals(20, segunda.facturas().size());
+
+        var ultima = primera.facturas().get(19);
+        String fecha = "'" + ultima.getFecha() + "'";
+
+        // email, total > 0, fecha <= cursor, fecha < cursor, fecha = cursor, id < cursor, límite
+        String plan = explicar(CapturaSql.ultima(), "'" + email + "'", "0", fecha, fecha, fecha,
+                String.valueOf(ultima.getId()), "21");
+
+        // Según las estadísticas el planificador entra por cualquiera de los dos índices
+        // (el de total también lleva fecha); lo que importa es que el cursor acote el rango
+        assertTrue(plan.contains("idx_facturas_suscripcion_"), plan);
+        assertTrue(plan.contains("Index Cond") && plan.contains("fecha <="), plan);
+        assertFalse(plan.contains("Seq Scan on facturas"), plan);
+    }
+
+    // =========================================================
+    // UTILIDADES DE TEST
+    // =========================================================
+
+    // Guarda el último SELECT sobre facturas que lanza Hibernate en este hilo
+    // (los @Scheduled de la aplicación también consultan y no deben pisarlo)
+    public static class CapturaSql implements StatementInspector {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final ThreadLocal<String> ULTIMA = new ThreadLocal<>();
+
+        static String ultima() {
+            return ULTIMA.get();
+        }
+
+        @Override
+        public String inspect(String sql) {
+            if (sql.startsWith("select") && sql.contains(" from facturas ")) {
+                ULTIMA.set(sql);
+            }
+            return sql;
+        }
+    }
+
+    private FacturaService facturaService() {
+        return contexto.getBean(FacturaService.class);
+    }
+
+    // PREPARE con los ? pasados a $1..$n y EXPLAIN EXECUTE con los valores (plan real, no genérico)
+    private String explicar(String sql, String... valores) {
+        StringBuilder preparada = new StringBuilder();
+        int n = 0;
+        for (char c : sql.toCharArray()) {
+            if (c == '?') {
+                preparada.append('$').append(++n);
+            } else {
+                preparada.append(c);
+            }
+        }
+        assertEquals(valores.length, n, sql);
+
+        return jdbc.execute((ConnectionCallback<String>) con -> {
+            try (Statement st = con.createStatement()) {
+                st.execute("PREPARE listado_facturas AS " + preparada);
+                StringBuilder plan = new StringBuilder();
+                try (ResultSet rs = st.executeQuery("EXPLAIN EXECUTE listado_facturas(" + String.join(", ", valores) + ")")) {
+                    while (rs.next()) {
+                        plan.append(rs.getString(1)).append('\n');
+                    }
+                }
+                st.execute("DEALLOCATE listado_facturas");
+                System.out.println(plan);
+                return plan.toString();
+            }
+        });
+    }
+
+    // 50 clientes con 400 facturas diarias cada uno; el total va de 12.10 a 61.10 en ciclos de 50
+    private void crearFacturas() {
+        PlanRepository planRepository = contexto.getBean(PlanRepository.class);
+        UsuarioRepository usuarioRepository = contexto.getBean(UsuarioRepository.class);
+        SuscripcionRepository suscripcionRepository = contexto.getBean(SuscripcionRepository.class);
+
+        contexto.getBean(TransactionTemplate.class).executeWithoutResult(status -> {
+            Plan plan = planRepository.findAll().get(0);
+
+            for (int i = 0; i < CLIENTES; i++) {
+                Usuario usuario = usuarioRepository.save(
+                        new Usuario(prefijo + "-" + i + "@test.local", "ES", "x", RolUsuario.USER));
+                suscripcionRepository.save(new Suscripcion(usuario, plan));
+            }
+        });
+
+        jdbc.update("INSERT INTO facturas (id, suscripcion_id, fecha, importe, impuesto, total, concepto) " +
+                "SELECT nextval('facturas_seq'), s.id, TIMESTAMP '2024-01-01' + g * INTERVAL '1 day', " +
+                "10.00, 2.10, 12.10 + (g % 50), 'explain' " +
+                "FROM suscripciones s JOIN usuarios u ON u.id = s.usuario_id " +
+                "CROSS JOIN generate_series(1, ?) g WHERE u.email LIKE ?",
+                FACTURAS_POR_CLIENTE, prefijo + "%");
+        jdbc.execute("ANALYZE usuarios, suscripciones, facturas");
+    }
+
+    private void limpiar() {
+        String deUsuarios = "SELECT s.id FROM suscripciones s JOIN usuarios u ON u.id = s.usuario_id WHERE u.email LIKE ?";
+        String patron = prefijo + "%";
+
+        jdbc.update("DELETE FROM facturas WHERE suscripcion_id IN (" + deUsuarios + ")", patron);
+        jdbc.update("DELETE FROM suscripciones_aud WHERE id IN (" + deUsuarios + ")", patron);
+        jdbc.update("DELETE FROM suscripciones WHERE id IN (" + deUsuarios + ")", patron);
+        jdbc.update("DELETE FROM usuarios WHERE email LIKE ?", patron);
+    }
+}
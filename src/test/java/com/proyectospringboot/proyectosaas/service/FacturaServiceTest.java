@@ -1,21 +1,34 @@
 package com.proyectospringboot.proyectosaas.service;
 
+import com.proyectospringboot.proyectosaas.config.ImpuestosProperties;
 import com.proyectospringboot.proyectosaas.domain.entity.Factura;
+import com.proyectospringboot.proyectosaas.domain.entity.Pago;
+import com.proyectospringboot.proyectosaas.domain.entity.PagoTarjeta;
 import com.proyectospringboot.proyectosaas.domain.entity.Plan;
 import com.proyectospringboot.proyectosaas.domain.entity.Suscripcion;
 import com.proyectospringboot.proyectosaas.domain.entity.Usuario;
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoPagoFactura;
 import com.proyectospringboot.proyectosaas.domain.enums.EstadoSuscripcion;
 import com.proyectospringboot.proyectosaas.domain.enums.RolUsuario;
+import com.proyectospringboot.proyectosaas.domain.event.FacturacionModificadaEvent;
 import com.proyectospringboot.proyectosaas.repository.FacturaRepository;
 import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import com.proyectospringboot.proyectosaas.service.FacturaService.PaginaFacturas;
 import com.proyectospringboot.proyectosaas.service.FacturaService.RenovacionResultado;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -24,6 +37,7 @@ import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
@@ -36,7 +50,11 @@ import static org.mockito.Mockito.*;
  * La idea es comprobar:
  * - Qué ocurre cuando toca renovar y cuando no.
  * - Que se crean facturas correctamente.
- * - Que el cálculo de impuestos funciona según país. */
+ * - Que el cálculo de impuestos funciona según país.
+ * - Que la cancelación por impago va por lotes y marca fecha de cancelación.
+ * - Que las métricas de facturación se registran (con un SimpleMeterRegistry).
+ * - Que los listados paginan por cursor (fecha, id) con un tamaño de página acotado.
+ * - Que el pago va a la factura pendiente sin consultar la tabla de pagos. */
 
 @ExtendWith(MockitoExtension.class)
 class FacturaServiceTest {
@@ -50,6 +68,20 @@ class FacturaServiceTest {
     @Mock
     private jakarta.persistence.EntityManager entityManager;
 
+    @Mock
+    private TransactionTemplate tx;
+
+    @Mock
+    private ApplicationEventPublisher eventos;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    @Spy
+    private MetricasFacturacion metricas = new MetricasFacturacion(registry);
+
+    @Spy
+    private TaxRateResolver impuestos = new TaxRateResolver(new ImpuestosProperties(null, null));
+
     @InjectMocks
     private FacturaService facturaService;
 
@@ -152,6 +184,125 @@ class FacturaServiceTest {
         verify(suscripcionRepository, times(2)).save(any(Suscripcion.class));
     }
 
+    @Test
+    void cancelarExpiradas_cancelaLasImpagadasPorLotes() {
+
+        when(tx.execute(any())).thenAnswer(inv -> {
+            TransactionCallback<?> callback = inv.getArgument(0);
+            return callback.doInTransaction(mock(TransactionStatus.class));
+        });
+
+        Suscripcion impagada = new Suscripcion(usuario, plan);
+        ponerId(impagada, 5L);
+
+        when(suscripcionRepository.buscarImpagadasParaCancelar(eq(EstadoSuscripcion.ACTIVA),
+                any(LocalDateTime.class), eq(0L), any()))
+                .thenReturn(List.of(impagada));
+        when(suscripcionRepository.buscarImpagadasParaCancelar(eq(EstadoSuscripcion.ACTIVA),
+                any(LocalDateTime.class), eq(5L), any()))
+                .thenReturn(List.of());
+
+        int[] latidos = new int[1];
+        int canceladas = facturaService.cancelarExpiradas(() -> latidos[0]++);
+
+        assertEquals(1, canceladas);
+        assertEquals(2, latidos[0], "un aviso por transacción, también la última (vacía)");
+        assertEquals(EstadoSuscripcion.CANCELADA, impagada.getEstado());
+        assertNotNull(impagada.getFechaCancelacion());
+
+        // Ya no se consulta la deuda suscripción a suscripción
+        verify(entityManager, never()).createQuery(any(String.class), eq(Long.class));
+
+        // Y queda medido sin tener que mirar los logs
+        assertEquals(1.0, registry.get("facturacion.cancelaciones").counter().count());
+        assertEquals(1, registry.get("facturacion.cancelacion").timer().count());
+    }
+
+    @Test
+    void registrarPagoConDatos_datosInvalidos_seMideComoError() {
+
+        assertThrows(IllegalArgumentException.class, () -> facturaService.registrarPagoConDatos(
+                "test@test.com", "tarjeta", "12", "Ana", null, null, null));
+
+        assertEquals(1, registry.get("facturacion.pago.registrar")
+                .tag("metodo", "tarjeta").tag("resultado", "error").timer().count());
+    }
+
+    @Test
+    void registrarPagoConDatos_vaALaPendienteSinConsultarPagos() {
+
+        ponerId(usuario, 3L);
+        Factura pendiente = facturaConId(7L, LocalDateTime.now());
+        when(facturaRepository.buscarPendientes("test@test.com", Limit.of(1))).thenReturn(List.of(pendiente));
+        when(suscripcionRepository.buscarPorEmail("test@test.com")).thenReturn(Optional.of(suscripcion));
+
+        facturaService.registrarPagoConDatos("test@test.com", "tarjeta", "4242", "Ana López", null, null, null);
+
+        ArgumentCaptor<Pago> pago = ArgumentCaptor.forClass(Pago.class);
+        verify(entityManager).persist(pago.capture());
+        assertInstanceOf(PagoTarjeta.class, pago.getValue());
+        assertSame(pendiente, pago.getValue().getFactura());
+
+        // Ni NOT EXISTS sobre pagos ni facturas de apoyo
+        verify(entityManager, never()).createQuery(any(String.class), any());
+        verify(facturaRepository, never()).save(any());
+
+        // El panel del cliente se invalida al confirmar
+        verify(eventos).publishEvent(new FacturacionModificadaEvent(3L));
+    }
+
+    @Test
+    void registrarPagoConDatos_sinPendientes_creaFacturaDeApoyoDe0() {
+
+        when(facturaRepository.buscarPendientes("test@test.com", Limit.of(1))).thenReturn(List.of());
+        when(facturaRepository.tieneFacturas("test@test.com")).thenReturn(true);
+        when(suscripcionRepository.buscarPorEmail("test@test.com")).thenReturn(Optional.of(suscripcion));
+
+        facturaService.registrarPagoConDatos("test@test.com", "paypal", null, null, "ana@paypal.com", null, null);
+
+        ArgumentCaptor<Factura> factura = ArgumentCaptor.forClass(Factura.class);
+        verify(facturaRepository).save(factura.capture());
+        assertEquals(0, factura.getValue().getTotal().compareTo(BigDecimal.ZERO));
+    }
+
+    @Test
+    void tieneFacturaPendiente_yEstaPagada_leenElEstadoDeLaFactura() {
+
+        when(facturaRepository.buscarPendientes("test@test.com", Limit.of(1)))
+                .thenReturn(List.of(facturaConId(1L, LocalDateTime.now())));
+        when(facturaRepository.buscarEstadoPago(1L)).thenReturn(EstadoPagoFactura.PAGADA);
+        when(facturaRepository.buscarEstadoPago(2L)).thenReturn(EstadoPagoFactura.PENDIENTE);
+
+        assertTrue(facturaService.tieneFacturaPendiente("test@test.com"));
+        assertTrue(facturaService.estaPagada(1L));
+        assertFalse(facturaService.estaPagada(2L));
+        verifyNoInteractions(entityManager);
+    }
+
+    @Test
+    void marcarPagada_guardaLaPrimeraFechaDePago() {
+
+        Factura factura = facturaConId(1L, LocalDateTime.now());
+        LocalDateTime pago = LocalDateTime.of(2026, 2, 1, 10, 0);
+
+        assertFalse(factura.estaPagada());
+        factura.marcarPagada(pago);
+        factura.marcarPagada(pago.plusDays(1));
+
+        assertEquals(EstadoPagoFactura.PAGADA, factura.getEstadoPago());
+        assertEquals(pago, factura.getPagadaEn());
+    }
+
+    @Test
+    void nombreMetodoPago_porTipoDePago() {
+
+        assertEquals("Tarjeta", FacturaService.nombreMetodoPago(PagoTarjeta.class));
+        assertEquals("PayPal", FacturaService.nombreMetodoPago(
+                com.proyectospringboot.proyectosaas.domain.entity.PagoPaypal.class));
+        assertEquals("Transferencia", FacturaService.nombreMetodoPago(
+                com.proyectospringboot.proyectosaas.domain.entity.PagoTransferencia.class));
+    }
+
     @Test
     void calcularImpuesto_es_aplicaIva21() {
 
@@ -169,4 +320,64 @@ class FacturaServiceTest {
 
         assertEquals(0, impuesto.compareTo(BigDecimal.ZERO));
     }
+
+    @Test
+    void buscarPaginaPorEmail_conMasFilas_devuelveCursorDeLaUltimaMostrada() {
+
+        LocalDateTime ahora = LocalDateTime.of(2026, 1, 10, 12, 0);
+        Factura f1 = facturaConId(3L, ahora);
+        Factura f2 = facturaConId(2L, ahora.minusDays(1));
+        Factura f3 = facturaConId(1L, ahora.minusDays(2));
+
+        // Pide una fila de más para saber si hay otra página sin hacer un COUNT
+        when(facturaRepository.buscarPagina(any(), eq(3)))
+                .thenReturn(List.of(f1, f2, f3))
+                .thenReturn(List.of(f3));
+
+        PaginaFacturas pagina = facturaService.buscarPaginaPorEmail("test@test.com", null, 2);
+
+        assertEquals(List.of(f1, f2), pagina.facturas());
+        assertTrue(pagina.hayMas());
+        assertEquals(ahora.minusDays(1) + "_2", pagina.siguienteCursor());
+
+        PaginaFacturas siguiente = facturaService.buscarPaginaPorEmail("test@test.com", pagina.siguienteCursor(), 2);
+
+        assertEquals(List.of(f3), siguiente.facturas());
+        assertFalse(siguiente.hayMas());
+    }
+
+    @Test
+    void buscarPaginaConFiltros_tamanoAcotadoYCursorInvalido() {
+
+        when(facturaRepository.buscarPagina(any(), anyInt())).thenReturn(List.of());
+
+        facturaService.buscarPaginaConFiltros("test@test.com", null, null, BigDecimal.TEN, null, null, 10_000);
+        facturaService.buscarPaginaConFiltros("test@test.com", null, null, null, null, null, 0);
+
+        verify(facturaRepository).buscarPagina(any(), eq(FacturaService.MAX_TAMANO_PAGINA + 1));
+        verify(facturaRepository).buscarPagina(any(), eq(FacturaService.TAMANO_PAGINA_DEFECTO + 1));
+
+        assertThrows(IllegalArgumentException.class, () -> facturaService.buscarPaginaConFiltros(
+                "test@test.com", null, null, null, null, "no-es-un-cursor", 20));
+    }
+
+    // =========================================================
+    // UTILIDADES DE TEST
+    // =========================================================
+
+    private Factura facturaConId(Long id, LocalDateTime fecha) {
+        Factura factura = new Factura(suscripcion, fecha, BigDecimal.TEN, BigDecimal.ZERO, BigDecimal.TEN, "Test");
+        ponerId(factura, id);
+        return factura;
+    }
+
+    private void ponerId(Object entidad, Long id) {
+        try {
+            java.lang.reflect.Field field = entidad.getClass().getDeclaredField("id");
+            field.setAccessible(true);
+            field.set(entidad, id);
+        } catch (Exception e) {
+            throw new RuntimeException("No se pudo asignar el id en el test (reflexión).", e);
+        }
+    }
 }
@@ -0,0 +1,162 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.config.ImpuestosProperties;
+import com.proyectospringboot.proyectosaas.domain.entity.MigracionDatos;
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoEjecucion;
+import com.proyectospringboot.proyectosaas.domain.event.FacturacionModificadaEvent;
+import com.proyectospringboot.proyectosaas.repository.FacturaRepository;
+import com.proyectospringboot.proyectosaas.repository.FacturaRepository.ClienteSinImpuesto;
+import com.proyectospringboot.proyectosaas.repository.MigracionDatosRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Optional;
+
+import static com.proyectospringboot.proyectosaas.service.MigracionImpuestosService.NOMBRE;
+import static com.proyectospringboot.proyectosaas.service.MigracionImpuestosService.TAMANO_LOTE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/* MigracionImpuestosServiceTest
+ *
+ * Probamos la migración de impuestos de facturas antiguas sin base de datos:
+ * - Que va por lotes desde la marca de agua, con un UPDATE por país con impuesto.
+ * - Que apunta el progreso de cada lote y la da por completada al final.
+ * - Que no hace nada si no consigue reclamarla (completada o de otro nodo).
+ * - Que si otro nodo la adopta a mitad, deshace el lote y se para.
+ *
+ * La TransactionTemplate la simulamos ejecutando el callback directamente. */
+
+@ExtendWith(MockitoExtension.class)
+class MigracionImpuestosServiceTest {
+
+    private static final String NODO = "nodo-a";
+
+    @Mock
+    private FacturaRepository facturaRepository;
+
+    @Mock
+    private MigracionDatosRepository migracionRepository;
+
+    @Mock
+    private RenovacionService renovacionService;
+
+    @Mock
+    private TransactionTemplate tx;
+
+    @Mock
+    private ApplicationEventPublisher eventos;
+
+    @Mock
+    private MigracionDatos migracion;
+
+    private final TransactionStatus status = mock(TransactionStatus.class);
+
+    private MigracionImpuestosService migracionService;
+
+    @BeforeEach
+    void setUp() {
+        // Tabla por defecto: solo España, al 21%
+        TaxRateResolver impuestos = new TaxRateResolver(new ImpuestosProperties(null, null));
+        migracionService = new MigracionImpuestosService(facturaRepository, migracionRepository, impuestos,
+                renovacionService, tx, eventos);
+
+        when(renovacionService.getNodo()).thenReturn(NODO);
+        when(tx.execute(any())).thenAnswer(inv -> {
+            TransactionCallback<?> callback = inv.getArgument(0);
+            return callback.doInTransaction(status);
+        });
+        when(migracionRepository.findById(NOMBRE)).thenReturn(Optional.of(migracion));
+    }
+
+    @Test
+    void migrar_recorreLotesDesdeLaMarcaDeAgua() {
+
+        reclamada(1);
+        when(migracion.getUltimoIdProcesado()).thenReturn(100L);
+        when(migracion.getEstado()).thenReturn(EstadoEjecucion.COMPLETADA);
+
+        when(facturaRepository.buscarFinLoteSinImpuesto(100L, TAMANO_LOTE)).thenReturn(1100L);
+        when(facturaRepository.buscarFinLoteSinImpuesto(1100L, TAMANO_LOTE)).thenReturn(1500L);
+        when(facturaRepository.buscarFinLoteSinImpuesto(1500L, TAMANO_LOTE)).thenReturn(null);
+
+        // Primer lote: España (con dos formas de escribirlo) y Francia (sin impuesto)
+        when(facturaRepository.buscarClientesSinImpuesto(100L, 1100L)).thenReturn(List.of(
+                new ClienteSinImpuesto(1L, "ES"),
+                new ClienteSinImpuesto(2L, "España"),
+                new ClienteSinImpuesto(3L, "FR")));
+        when(facturaRepository.buscarClientesSinImpuesto(1100L, 1500L)).thenReturn(List.of(
+                new ClienteSinImpuesto(4L, "ES")));
+        when(facturaRepository.aplicarImpuesto(eq("ES"), any(BigDecimal.class), eq(100L), eq(1100L))).thenReturn(7);
+        when(facturaRepository.aplicarImpuesto(eq("España"), any(BigDecimal.class), eq(100L), eq(1100L))).thenReturn(3);
+        when(facturaRepository.aplicarImpuesto(eq("ES"), any(BigDecimal.class), eq(1100L), eq(1500L))).thenReturn(5);
+        when(migracionRepository.registrarProgreso(eq(NOMBRE), eq(NODO), anyLong(), anyLong(), any())).thenReturn(1);
+
+        migracionService.migrar();
+
+        verify(facturaRepository).aplicarImpuesto(eq("ES"), eq(new BigDecimal("0.21")), eq(100L), eq(1100L));
+        verify(facturaRepository, never()).aplicarImpuesto(eq("FR"), any(), anyLong(), anyLong());
+        verify(migracionRepository).registrarProgreso(eq(NOMBRE), eq(NODO), eq(1100L), eq(10L), any());
+        verify(migracionRepository).registrarProgreso(eq(NOMBRE), eq(NODO), eq(1500L), eq(5L), any());
+        verify(migracionRepository).completar(eq(NOMBRE), eq(NODO), eq(EstadoEjecucion.COMPLETADA), any());
+
+        // Caché del panel: solo los clientes a los que se les ha aplicado impuesto
+        verify(eventos, times(3)).publishEvent(any(FacturacionModificadaEvent.class));
+        verify(eventos, never()).publishEvent(new FacturacionModificadaEvent(3L));
+    }
+
+    @Test
+    void migrar_sinReclamarla_noHaceNada() {
+
+        reclamada(0);
+        when(migracion.getEstado()).thenReturn(EstadoEjecucion.COMPLETADA);
+
+        migracionService.migrar();
+
+        verify(facturaRepository, never()).buscarFinLoteSinImpuesto(anyLong(), any(Integer.class));
+        verify(migracionRepository, never()).completar(anyString(), anyString(), any(), any());
+    }
+
+    @Test
+    void migrar_adoptadaPorOtroNodo_deshaceElLoteYSePara() {
+
+        reclamada(1);
+        when(migracion.getUltimoIdProcesado()).thenReturn(0L);
+        when(migracion.getEstado()).thenReturn(EstadoEjecucion.EN_CURSO);
+        when(facturaRepository.buscarFinLoteSinImpuesto(0L, TAMANO_LOTE)).thenReturn(1000L);
+        when(facturaRepository.buscarClientesSinImpuesto(0L, 1000L)).thenReturn(List.of(
+                new ClienteSinImpuesto(1L, "ES")));
+        when(migracionRepository.registrarProgreso(eq(NOMBRE), eq(NODO), eq(1000L), anyLong(), any())).thenReturn(0);
+
+        migracionService.migrar();
+
+        verify(status).setRollbackOnly();
+        verify(facturaRepository, times(1)).buscarFinLoteSinImpuesto(anyLong(), any(Integer.class));
+        verify(migracionRepository, never()).completar(anyString(), anyString(), any(), any());
+    }
+
+    // =========================================================
+    // UTILIDADES DE TEST
+    // =========================================================
+
+    private void reclamada(int filas) {
+        when(migracionRepository.reclamar(eq(NOMBRE), eq(EstadoEjecucion.EN_CURSO), eq(NODO), any(), any()))
+                .thenReturn(filas);
+    }
+}
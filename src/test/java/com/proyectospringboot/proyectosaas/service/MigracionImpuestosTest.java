@@ -0,0 +1,173 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.ProyectoSaasApplication;
+import com.proyectospringboot.proyectosaas.domain.entity.Factura;
+import com.proyectospringboot.proyectosaas.domain.entity.Plan;
+import com.proyectospringboot.proyectosaas.domain.entity.Suscripcion;
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoEjecucion;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import com.proyectospringboot.proyectosaas.service.MigracionImpuestosService.ProgresoMigracion;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/* MigracionImpuestosTest
+ *
+ * Comprobamos contra el PostgreSQL de docker-compose la migración de impuestos de facturas
+ * antiguas (la que antes se lanzaba al abrir /admin/auditoria):
+ * - Las facturas a 0 de un cliente de España quedan con su 21% y el total recalculado;
+ *   las de un país sin impuesto no se tocan.
+ * - Queda COMPLETADA en migraciones_datos y una segunda llamada ya no hace nada.
+ * - Los UPDATE nativos no vacían la caché de segundo nivel (los planes siguen en ella).
+ *
+ * Para no depender de lo que haya en la BD, esperamos a que acabe la pasada del arranque y
+ * reabrimos la migración con la marca de agua justo antes de nuestras facturas.
+ *
+ * Necesita la BD levantada (docker compose up -d), así que solo se ejecuta con:
+ *   mvn test -Dpostgres.it=true -Dtest=MigracionImpuestosTest */
+
+@EnabledIfSystemProperty(named = "postgres.it", matches = "true")
+class MigracionImpuestosTest {
+
+    private final String prefijo = "migra-" + UUID.randomUUID().toString().substring(0, 8);
+    private final String emailEspana = prefijo + "-es@test.local";
+    private final String emailFrancia = prefijo + "-fr@test.local";
+
+    private ConfigurableApplicationContext contexto;
+    private JdbcTemplate jdbc;
+    private MigracionImpuestosService migracionService;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        contexto = new SpringApplicationBuilder(ProyectoSaasApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.jpa.show-sql=false")
+                .run();
+        jdbc = contexto.getBean(JdbcTemplate.class);
+        migracionService = contexto.getBean(MigracionImpuestosService.class);
+
+        // La del arranque va en su hilo: esperamos a que termine
+        for (int i = 0; i < 600 && migracionService.consultarEstado().orElseThrow().estado() != EstadoEjecucion.COMPLETADA; i++) {
+            Thread.sleep(100);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        try {
+            limpiar();
+        } finally {
+            contexto.close();
+        }
+    }
+
+    @Test
+    void migrar_aplicaElImpuestoPorPaisYSoloUnaVez() {
+
+        List<Long> deEspana = crearFacturasSinImpuesto(emailEspana, "ES", "10.00", "9.99", "0.01");
+        List<Long> deFrancia = crearFacturasSinImpuesto(emailFrancia, "FR", "10.00");
+        long antes = migracionService.consultarEstado().orElseThrow().actualizadas();
+
+        // Reabrimos la migración justo antes de nuestras facturas
+        long primera = deEspana.stream().mapToLong(Long::longValue).min().orElseThrow();
+        jdbc.update("UPDATE migraciones_datos SET estado = 'EN_CURSO', nodo = NULL, fin = NULL, " +
+                "ultimo_id_procesado = ? WHERE nombre = ?", primera - 1, MigracionImpuestosService.NOMBRE);
+
+        // Un plan en la caché de segundo nivel antes de migrar
+        cargarPlan();
+
+        ProgresoMigracion progreso = migracionService.migrar();
+
+        assertEquals(EstadoEjecucion.COMPLETADA, progreso.estado());
+        assertNotNull(progreso.fin());
+        assertEquals(0L, progreso.pendientes());
+        assertEquals(antes + 2, progreso.actualizadas(), "la de 0.01 da 0 de impuesto y se queda igual");
+
+        assertFactura(deEspana.get(0), "2.10", "12.10");
+        assertFactura(deEspana.get(1), "2.10", "12.09");
+        assertFactura(deEspana.get(2), "0.00", "0.01");
+        assertFactura(deFrancia.get(0), "0.00", "10.00");
+
+        // Ya completada: no vuelve a correr
+        jdbc.update("UPDATE facturas SET impuesto = 0, total = importe WHERE id = ?", deEspana.get(0));
+        migracionService.migrar();
+        assertFactura(deEspana.get(0), "0.00", "10.00");
+
+        // Los planes siguen en la caché: leerlos no cuesta ninguna consulta
+        Statistics estadisticas = contexto.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class)
+                .getStatistics();
+        estadisticas.clear();
+        cargarPlan();
+        assertEquals(0, estadisticas.getPrepareStatementCount());
+    }
+
+    // =========================================================
+    // UTILIDADES DE TEST
+    // =========================================================
+
+    // Un cliente con facturas "de antes de los impuestos": impuesto 0 y total = importe
+    private List<Long> crearFacturasSinImpuesto(String email, String pais, String... importes) {
+        Long basic = contexto.getBean(PlanCatalog.class).porNombre("BASIC").orElseThrow().id();
+        contexto.getBean(RegistroService.class).registrar(email, pais, "Ana", "López", null, basic, "password123");
+
+        return contexto.getBean(TransactionTemplate.class).execute(status -> {
+            EntityManager em = contexto.getBean(EntityManager.class);
+            Suscripcion suscripcion = contexto.getBean(SuscripcionRepository.class).buscarPorEmail(email).orElseThrow();
+
+            List<Long> ids = new ArrayList<>();
+            for (String importe : importes) {
+                Factura factura = new Factura(suscripcion, LocalDateTime.now().minusYears(1),
+                        new BigDecimal(importe), BigDecimal.ZERO, new BigDecimal(importe), "Antigua");
+                em.persist(factura);
+                em.flush();
+                ids.add(factura.getId());
+            }
+            return ids;
+        });
+    }
+
+    private void cargarPlan() {
+        Long basic = contexto.getBean(PlanCatalog.class).porNombre("BASIC").orElseThrow().id();
+        contexto.getBean(TransactionTemplate.class).executeWithoutResult(status ->
+                contexto.getBean(EntityManager.class).find(Plan.class, basic).getNombre());
+    }
+
+    private void assertFactura(Long id, String impuesto, String total) {
+        assertEquals(new BigDecimal(impuesto), jdbc.queryForObject(
+                "SELECT impuesto FROM facturas WHERE id = ?", BigDecimal.class, id));
+        assertEquals(new BigDecimal(total), jdbc.queryForObject(
+                "SELECT total FROM facturas WHERE id = ?", BigDecimal.class, id));
+    }
+
+    private void limpiar() {
+        for (String email : List.of(emailEspana, emailFrancia)) {
+            String deUsuario = "SELECT u.id FROM usuarios u WHERE u.email = ?";
+            String deSuscripcion = "SELECT s.id FROM suscripciones s WHERE s.usuario_id IN (" + deUsuario + ")";
+
+            jdbc.update("DELETE FROM facturas WHERE suscripcion_id IN (" + deSuscripcion + ")", email);
+            jdbc.update("DELETE FROM suscripciones_aud WHERE usuario_id IN (" + deUsuario + ")", email);
+            jdbc.update("DELETE FROM suscripciones WHERE usuario_id IN (" + deUsuario + ")", email);
+            jdbc.update("DELETE FROM perfiles WHERE usuario_id IN (" + deUsuario + ")", email);
+            jdbc.update("DELETE FROM usuarios WHERE email = ?", email);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.config.EscuchaPlanes;
+import com.proyectospringboot.proyectosaas.config.PlanCatalogProperties;
+import com.proyectospringboot.proyectosaas.domain.entity.Plan;
+import com.proyectospringboot.proyectosaas.domain.valor.Dinero;
+import com.proyectospringboot.proyectosaas.repository.PlanRepository;
+import com.proyectospringboot.proyectosaas.service.PlanCatalog.PlanDisponible;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/* PlanCatalogTest
+ *
+ * Probamos el catálogo de planes en memoria sin base de datos:
+ * - Que se carga una sola vez y sirve lista, id y nombre desde la misma instantánea.
+ * - Que al escribir un plan se descarta y la siguiente lectura trae lo nuevo.
+ * - Que caduca aunque nadie avise (cambios hechos fuera de la aplicación).
+ * - Que una carga que se cruza con una invalidación no se queda como actual.
+ * - Que lo que entrega no se puede modificar. */
+
+@ExtendWith(MockitoExtension.class)
+class PlanCatalogTest {
+
+    @Mock
+    private PlanRepository planRepository;
+
+    private PlanCatalog planCatalog;
+
+    private Plan basic;
+    private Plan premium;
+
+    @BeforeEach
+    void setUp() {
+        planCatalog = new PlanCatalog(planRepository, new PlanCatalogProperties(300));
+        basic = plan(1L, "BASIC", "9.99");
+        premium = plan(2L, "PREMIUM", "19.99");
+    }
+
+    @Test
+    void consultas_unaSolaCarga() {
+
+        // Desordenados a propósito: el catálogo los entrega por id
+        when(planRepository.findAll()).thenReturn(List.of(premium, basic));
+
+        List<PlanDisponible> planes = planCatalog.planes();
+
+        assertEquals(List.of(1L, 2L), planes.stream().map(PlanDisponible::id).toList());
+        assertEquals("PREMIUM", planCatalog.porId(2L).orElseThrow().nombre());
+        assertEquals(2L, planCatalog.porNombre(" premium ").orElseThrow().id());
+        assertEquals(Dinero.deCentimos(999), planCatalog.porNombre("BASIC").orElseThrow().precioMensualDinero());
+        assertTrue(planCatalog.porId(99L).isEmpty());
+        assertTrue(planCatalog.porNombre("GOLD").isEmpty());
+        assertSame(planes, planCatalog.planes());
+
+        verify(planRepository, times(1)).findAll();
+    }
+
+    @Test
+    void alEscribirPlan_laSiguienteLecturaRecarga() {
+
+        when(planRepository.findAll()).thenReturn(List.of(basic));
+        assertEquals(1, planCatalog.planes().size());
+
+        Plan enterprise = plan(3L, "ENTERPRISE", "49.99");
+        when(planRepository.findAll()).thenReturn(List.of(basic, enterprise));
+        new EscuchaPlanes(planCatalog).alEscribir(enterprise);
+
+        assertEquals(3L, planCatalog.porNombre("ENTERPRISE").orElseThrow().id());
+        verify(planRepository, times(2)).findAll();
+    }
+
+    @Test
+    void instantaneaCaducada_seVuelveALeerSinAviso() {
+
+        // TTL 0: caduca nada más cargarse
+        PlanCatalog sinVida = new PlanCatalog(planRepository, new PlanCatalogProperties(0));
+        when(planRepository.findAll()).thenReturn(List.of(basic))
+                .thenReturn(List.of(plan(1L, "BASIC", "12.99")));
+
+        assertEquals(0, sinVida.porId(1L).orElseThrow().precioMensual().compareTo(new BigDecimal("9.99")));
+        assertEquals(0, sinVida.porId(1L).orElseThrow().precioMensual().compareTo(new BigDecimal("12.99")));
+
+        verify(planRepository, times(2)).findAll();
+    }
+
+    @Test
+    void cargaCruzadaConInvalidacion_noSeQuedaComoActual() {
+
+        // Mientras se leía la BD alguien guardó un plan
+        when(planRepository.findAll()).thenAnswer(inv -> {
+            planCatalog.invalidar();
+            return List.of(basic);
+        }).thenReturn(List.of(basic, premium));
+
+        assertEquals(1, planCatalog.planes().size());
+        assertEquals(2, planCatalog.planes().size());
+        assertEquals(2, planCatalog.planes().size());
+
+        verify(planRepository, times(2)).findAll();
+    }
+
+    @Test
+    void planes_noSeModifican() {
+
+        when(planRepository.findAll()).thenReturn(List.of(basic));
+
+        assertThrows(UnsupportedOperationException.class, () -> planCatalog.planes().clear());
+    }
+
+    // =========================================================
+    // UTILIDADES DE TEST
+    // =========================================================
+
+    private Plan plan(Long id, String nombre, String precio) {
+        Plan plan = new Plan(nombre, new BigDecimal(precio));
+        try {
+            java.lang.reflect.Field field = Plan.class.getDeclaredField("id");
+            field.setAccessible(true);
+            field.set(plan, id);
+        } catch (Exception e) {
+            throw new RuntimeException("No se pudo asignar el id en el test (reflexión).", e);
+        }
+        return plan;
+    }
+}
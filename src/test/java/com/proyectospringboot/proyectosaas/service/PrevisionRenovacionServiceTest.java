@@ -0,0 +1,150 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.config.ImpuestosProperties;
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoEjecucion;
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoSuscripcion;
+import com.proyectospringboot.proyectosaas.repository.EjecucionRenovacionRepository;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository.VencimientosAgrupados;
+import com.proyectospringboot.proyectosaas.service.PrevisionRenovacionService.PrevisionDTO;
+import com.proyectospringboot.proyectosaas.service.PrevisionRenovacionService.PrevisionDia;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+
+/* PrevisionRenovacionServiceTest
+ *
+ * Probamos el simulacro de renovación con los agregados ya calculados:
+ * - Que agrupa por día y aplica el impuesto por factura según el país.
+ * - Que lo ya vencido se cobra hoy y, si lleva varios ciclos vencido, un ciclo en cada pasada
+ *   nocturna hasta ponerse al día, como hace la renovación.
+ * - Que con más de 30 días una suscripción se cuenta en cada vencimiento.
+ *
+ * calcularImpuesto es el real (FacturaService sin dependencias) para no desalinearnos. */
+
+@ExtendWith(MockitoExtension.class)
+class PrevisionRenovacionServiceTest {
+
+    @Mock
+    private SuscripcionRepository suscripcionRepository;
+
+    @Mock
+    private EjecucionRenovacionRepository ejecucionRepository;
+
+    private PrevisionRenovacionService previsionService;
+
+    private final LocalDate hoy = LocalDate.of(2026, 1, 10);
+
+    @BeforeEach
+    void setUp() {
+        FacturaService facturaService = new FacturaService(null, null, null, null, null,
+                new TaxRateResolver(new ImpuestosProperties(null, null)), null);
+        previsionService = new PrevisionRenovacionService(suscripcionRepository, ejecucionRepository, facturaService);
+    }
+
+    @Test
+    void prever_agrupaPorDiaYAplicaElImpuestoPorPais() {
+
+        sinEjecucionesPrevias();
+        when(suscripcionRepository.agruparVencimientos(eq(EstadoSuscripcion.ACTIVA), any())).thenReturn(List.of(
+                new VencimientosAgrupados(hoy.plusDays(2), new BigDecimal("10.00"), "ES", 3L),
+                new VencimientosAgrupados(hoy.plusDays(2), new BigDecimal("10.00"), "USA", 1L),
+                new VencimientosAgrupados(hoy.minusDays(1), new BigDecimal("20.00"), "ES", 2L)));
+
+        PrevisionDTO prevision = previsionService.prever(7, hoy);
+
+        assertEquals(2, prevision.porDia().size());
+
+        // Lo vencido ayer se renueva en la próxima pasada: cuenta hoy
+        assertEquals(hoy, prevision.porDia().get(0).dia());
+        assertEquals(2, prevision.porDia().get(0).facturas());
+        assertEquals(0, prevision.porDia().get(0).impuesto().compareTo(new BigDecimal("8.40")));
+
+        // 3 de España con IVA (2.10 cada una) y 1 de fuera sin impuesto
+        assertEquals(4, prevision.porDia().get(1).facturas());
+        assertEquals(0, prevision.porDia().get(1).base().compareTo(new BigDecimal("40.00")));
+        assertEquals(0, prevision.porDia().get(1).impuesto().compareTo(new BigDecimal("6.30")));
+
+        assertEquals(6, prevision.facturas());
+        assertEquals(0, prevision.total().compareTo(new BigDecimal("94.70")));
+        assertNull(prevision.segundosEstimados());
+    }
+
+    @Test
+    void prever_masDeUnCiclo_cuentaCadaVencimiento() {
+
+        sinEjecucionesPrevias();
+        when(suscripcionRepository.agruparVencimientos(eq(EstadoSuscripcion.ACTIVA), any())).thenReturn(List.of(
+                new VencimientosAgrupados(hoy.plusDays(1), new BigDecimal("10.00"), "USA", 1L)));
+
+        PrevisionDTO prevision = previsionService.prever(65, hoy);
+
+        // Día 1, 31 y 61
+        assertEquals(3, prevision.facturas());
+        assertEquals(hoy.plusDays(61), prevision.porDia().get(2).dia());
+    }
+
+    @Test
+    void prever_vencidaHaceMasDeUnCiclo_cobraUnCicloPorPasadaHastaPonerseAlDia() {
+
+        sinEjecucionesPrevias();
+        when(suscripcionRepository.agruparVencimientos(eq(EstadoSuscripcion.ACTIVA), any())).thenReturn(List.of(
+                new VencimientosAgrupados(hoy.minusDays(100), new BigDecimal("10.00"), "USA", 2L)));
+
+        PrevisionDTO prevision = previsionService.prever(30, hoy);
+
+        // Vencimientos hace 100, 70, 40 y 10 días: uno por pasada (hoy y los tres días siguientes).
+        // Ya al día, el siguiente es el de siempre: 100 días atrás + 120 = dentro de 20
+        assertEquals(List.of(hoy, hoy.plusDays(1), hoy.plusDays(2), hoy.plusDays(3), hoy.plusDays(20)),
+                prevision.porDia().stream().map(PrevisionDia::dia).toList());
+        assertTrue(prevision.porDia().stream().allMatch(d -> d.facturas() == 2));
+        assertEquals(10, prevision.facturas());
+        assertEquals(new BigDecimal("100.00"), prevision.base());
+    }
+
+    @Test
+    void prever_vencidaHaceMenosDeUnCiclo_cuentaHoyYLuegoSuDia() {
+
+        sinEjecucionesPrevias();
+        when(suscripcionRepository.agruparVencimientos(eq(EstadoSuscripcion.ACTIVA), any())).thenReturn(List.of(
+                new VencimientosAgrupados(hoy.minusDays(10), new BigDecimal("10.00"), "USA", 1L)));
+
+        PrevisionDTO prevision = previsionService.prever(40, hoy);
+
+        // Hoy y en su siguiente vencimiento (hace 10 días + 30), no 30 días después de hoy
+        assertEquals(List.of(hoy, hoy.plusDays(20)),
+                prevision.porDia().stream().map(PrevisionDia::dia).toList());
+    }
+
+    @Test
+    void prever_diasFueraDeRango_lanzaExcepcion() {
+
+        assertThrows(IllegalArgumentException.class, () -> previsionService.prever(0, hoy));
+        assertThrows(IllegalArgumentException.class,
+                () -> previsionService.prever(PrevisionRenovacionService.MAX_DIAS + 1, hoy));
+    }
+
+    // =========================================================
+    // UTILIDADES DE TEST
+    // =========================================================
+
+    private void sinEjecucionesPrevias() {
+        when(ejecucionRepository.findFirstByEstadoOrderByIdDesc(EstadoEjecucion.COMPLETADA))
+                .thenReturn(Optional.empty());
+    }
+}
@@ -5,6 +5,7 @@ import com.proyectospringboot.proyectosaas.domain.entity.Perfil;
 import com.proyectospringboot.proyectosaas.domain.entity.Plan;
 import com.proyectospringboot.proyectosaas.domain.entity.Suscripcion;
 import com.proyectospringboot.proyectosaas.domain.entity.Usuario;
+import com.proyectospringboot.proyectosaas.domain.valor.Dinero;
 import com.proyectospringboot.proyectosaas.repository.FacturaRepository;
 import com.proyectospringboot.proyectosaas.repository.PerfilRepository;
 import com.proyectospringboot.proyectosaas.repository.PlanRepository;
@@ -16,6 +17,7 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 
 import java.math.BigDecimal;
@@ -57,6 +59,9 @@ class RegistroServiceTest {
     @Mock
     private PlanRepository planRepository;
 
+    @Mock
+    private PlanCatalog planCatalog;
+
     @Mock
     private FacturaRepository facturaRepository;
 
@@ -66,6 +71,9 @@ class RegistroServiceTest {
     @Mock
     private PasswordEncoder passwordEncoder;
 
+    @Mock
+    private ApplicationEventPublisher eventos;
+
     @InjectMocks
     private RegistroService registroService;
 
@@ -79,9 +87,11 @@ class RegistroServiceTest {
         Plan plan = new Plan("BASIC", new BigDecimal("10.00"));
 
         when(usuarioRepository.buscarPorEmail(email)).thenReturn(Optional.empty());
-        when(planRepository.findById(planId)).thenReturn(Optional.of(plan));
-        when(facturaService.calcularImpuesto(eq(pais), any(BigDecimal.class)))
-                .thenReturn(new BigDecimal("2.10"));
+        when(planCatalog.porId(planId)).thenReturn(Optional.of(
+                new PlanCatalog.PlanDisponible(planId, "BASIC", plan.getPrecioMensual(), plan.getPrecioMensualDinero())));
+        when(planRepository.getReferenceById(planId)).thenReturn(plan);
+        when(facturaService.calcularImpuesto(eq(pais), any(Dinero.class)))
+                .thenReturn(Dinero.deCentimos(210));
 
         when(usuarioRepository.save(any(Usuario.class))).thenAnswer(i -> i.getArguments()[0]);
         when(perfilRepository.save(any(Perfil.class))).thenAnswer(i -> i.getArguments()[0]);
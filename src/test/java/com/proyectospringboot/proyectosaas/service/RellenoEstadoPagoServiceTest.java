@@ -0,0 +1,70 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.repository.FacturaRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/* RellenoEstadoPagoServiceTest
+ *
+ * Probamos el relleno del estado de pago sin base de datos:
+ * - Que sigue pidiendo lotes mientras vengan llenos y para con el primero incompleto.
+ * - Que cada lote va en su propia transacción.
+ *
+ * La TransactionTemplate la simulamos ejecutando el callback directamente. */
+
+@ExtendWith(MockitoExtension.class)
+class RellenoEstadoPagoServiceTest {
+
+    @Mock
+    private FacturaRepository facturaRepository;
+
+    @Mock
+    private TransactionTemplate tx;
+
+    @InjectMocks
+    private RellenoEstadoPagoService rellenoService;
+
+    @BeforeEach
+    void setUp() {
+        when(tx.execute(any())).thenAnswer(inv -> {
+            TransactionCallback<?> callback = inv.getArgument(0);
+            return callback.doInTransaction(mock(TransactionStatus.class));
+        });
+    }
+
+    @Test
+    void rellenar_recorreLotesHastaElIncompleto() {
+
+        int lote = RellenoEstadoPagoService.TAMANO_LOTE;
+        when(facturaRepository.rellenarEstadoPago(lote)).thenReturn(lote, lote, 37);
+
+        assertEquals(2 * lote + 37, rellenoService.rellenar());
+
+        verify(facturaRepository, times(3)).rellenarEstadoPago(lote);
+        verify(tx, times(3)).execute(any());
+    }
+
+    @Test
+    void rellenar_sinNadaPendiente_unaSolaConsulta() {
+
+        when(facturaRepository.rellenarEstadoPago(RellenoEstadoPagoService.TAMANO_LOTE)).thenReturn(0);
+
+        assertEquals(0, rellenoService.rellenar());
+
+        verify(facturaRepository, times(1)).rellenarEstadoPago(RellenoEstadoPagoService.TAMANO_LOTE);
+    }
+}
@@ -0,0 +1,110 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.config.RenovacionContinuaProperties;
+import com.proyectospringboot.proyectosaas.config.RenovacionProperties;
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoSuscripcion;
+import com.proyectospringboot.proyectosaas.domain.event.SuscripcionModificadaEvent;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository.Vencimiento;
+import com.proyectospringboot.proyectosaas.service.RenovacionService.ResultadoRenovacion;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/* RenovacionContinuaServiceTest
+ *
+ * Probamos la cola de la renovación continua sin base de datos:
+ * - Que solo renueva lo que ya ha vencido y deja en cola lo que vence más tarde.
+ * - Que un evento de cambio mueve la suscripción dentro de la cola.
+ * - Que si deja de ser renovable (p.ej. sin pago automático) sale de la cola. */
+
+@ExtendWith(MockitoExtension.class)
+class RenovacionContinuaServiceTest {
+
+    @Mock
+    private SuscripcionRepository suscripcionRepository;
+
+    @Mock
+    private RenovacionService renovacionService;
+
+    private RenovacionContinuaService continua;
+
+    private LocalDateTime ahora;
+
+    @BeforeEach
+    void setUp() {
+        continua = new RenovacionContinuaService(suscripcionRepository, renovacionService,
+                new RenovacionContinuaProperties(true, 60, 100, 30),
+                new RenovacionProperties(10, new RenovacionProperties.Paralelo(false, 1), false, 15, "test"));
+        ahora = LocalDateTime.now();
+    }
+
+    @Test
+    void procesarVencidas_soloRenuevaLasQueYaHanVencido() {
+
+        cargarCola(new Vencimiento(1L, ahora.minusMinutes(5)), new Vencimiento(2L, ahora.plusMinutes(20)));
+        when(renovacionService.renovarIds(List.of(1L), ahora)).thenReturn(new ResultadoRenovacion(1, 0));
+
+        ResultadoRenovacion resultado = continua.procesarVencidas(ahora);
+
+        assertEquals(1, resultado.renovadas());
+        // La que vence dentro de 20 minutos sigue esperando en la cola
+        assertEquals(1, continua.consultarEstado().enCola());
+        assertEquals(ahora.plusMinutes(20), continua.consultarEstado().proximoVencimiento());
+    }
+
+    @Test
+    void alModificarSuscripcion_adelantaElVencimientoEnLaCola() {
+
+        cargarCola(new Vencimiento(2L, ahora.plusMinutes(20)));
+        continua.procesarVencidas(ahora);
+
+        // Ahora vence ya: el evento la mueve y el siguiente tick la renueva
+        when(suscripcionRepository.buscarVencimientoRenovable(7L, EstadoSuscripcion.ACTIVA))
+                .thenReturn(Optional.of(new Vencimiento(2L, ahora.minusMinutes(1))));
+        continua.alModificarSuscripcion(new SuscripcionModificadaEvent(7L));
+
+        when(renovacionService.renovarIds(List.of(2L), ahora)).thenReturn(new ResultadoRenovacion(1, 0));
+        assertEquals(1, continua.procesarVencidas(ahora).renovadas());
+    }
+
+    @Test
+    void alModificarSuscripcion_sinPagoAutomatico_saleDeLaCola() {
+
+        cargarCola(new Vencimiento(3L, ahora.plusMinutes(10)));
+        continua.procesarVencidas(ahora);
+
+        when(suscripcionRepository.buscarVencimientoRenovable(9L, EstadoSuscripcion.ACTIVA))
+                .thenReturn(Optional.empty());
+        when(suscripcionRepository.buscarIdPorUsuarioId(9L)).thenReturn(Optional.of(3L));
+        continua.alModificarSuscripcion(new SuscripcionModificadaEvent(9L));
+
+        assertEquals(0, continua.consultarEstado().enCola());
+        continua.procesarVencidas(ahora.plusMinutes(15));
+        verify(renovacionService, never()).renovarIds(eq(List.of(3L)), any());
+    }
+
+    // =========================================================
+    // UTILIDADES DE TEST
+    // =========================================================
+
+    // Primera página de la carga (desde el principio) y ninguna más
+    private void cargarCola(Vencimiento... vencimientos) {
+        when(suscripcionRepository.buscarProximosVencimientos(eq(EstadoSuscripcion.ACTIVA), any(), any(), any(), any()))
+                .thenReturn(List.of(vencimientos))
+                .thenReturn(List.of());
+    }
+}
@@ -0,0 +1,220 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.ProyectoSaasApplication;
+import com.proyectospringboot.proyectosaas.domain.entity.Plan;
+import com.proyectospringboot.proyectosaas.domain.entity.Suscripcion;
+import com.proyectospringboot.proyectosaas.domain.entity.Usuario;
+import com.proyectospringboot.proyectosaas.domain.enums.RolUsuario;
+import com.proyectospringboot.proyectosaas.repository.PlanRepository;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import com.proyectospringboot.proyectosaas.repository.UsuarioRepository;
+import com.proyectospringboot.proyectosaas.service.RenovacionService.ResultadoRenovacion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/* RenovacionMultiNodoTest
+ *
+ * Arrancamos DOS contextos de la aplicación contra el PostgreSQL de docker-compose
+ * (como si fueran dos réplicas) y lanzamos la renovación en los dos a la vez.
+ * Comprobamos que cada suscripción vencida se renueva exactamente una vez:
+ * los lotes se reparten con FOR UPDATE SKIP LOCKED + lease, sin facturas duplicadas.
+ * - Pasada nocturna (renovarVencidas, reclama con bloquearVencidasLibres).
+ * - Renovación continua (renovarIds, reclama con bloquearVencidasLibresPorIds).
+ *
+ * Para no tocar ninguna otra suscripción vencida de la BD compartida, las del test vencen en
+ * 1990: las dos renovaciones van con ese corte, la nocturna empieza en el primer id del test y
+ * la continua recibe solo sus ids. Al renovarlas pasan a vencer 30 días después, ya fuera del corte.
+ *
+ * Necesita la BD levantada (docker compose up -d), así que solo se ejecuta con:
+ *   mvn test -Dpostgres.it=true -Dtest=RenovacionMultiNodoTest */
+
+@EnabledIfSystemProperty(named = "postgres.it", matches = "true")
+class RenovacionMultiNodoTest {
+
+    private static final int SUSCRIPCIONES = 200;
+    private static final int TAMANO_LOTE = 20;
+
+    // Nada más de la BD vence antes de este corte
+    private static final LocalDateTime VENCIMIENTO = LocalDateTime.of(1990, 1, 1, 0, 0);
+    private static final LocalDateTime CORTE = VENCIMIENTO.plusDays(1);
+
+    private final String prefijo = "multinodo-" + UUID.randomUUID().toString().substring(0, 8);
+
+    private ConfigurableApplicationContext nodoA;
+    private ConfigurableApplicationContext nodoB;
+
+    private final List<Long> ids = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        nodoA = arrancarNodo("nodo-a");
+        nodoB = arrancarNodo("nodo-b");
+        crearSuscripcionesVencidas();
+    }
+
+    @AfterEach
+    void tearDown() {
+        try {
+            limpiar();
+        } finally {
+            nodoA.close();
+            nodoB.close();
+        }
+    }
+
+    @Test
+    void dosNodos_pasadaNocturna_seRepartenLasRenovacionesSinDuplicar() throws Exception {
+
+        long desdeId = ids.get(0) - 1;
+
+        int renovadas = aLaVez(nodo -> nodo.getBean(RenovacionService.class).renovarVencidas(CORTE, desdeId, null));
+
+        assertEquals(SUSCRIPCIONES, renovadas);
+        comprobarUnaFacturaPorSuscripcion();
+
+        // Cada nodo suelta al acabar los leases que reclamó
+        assertEquals(0, nodoA.getBean(JdbcTemplate.class).queryForObject(
+                "SELECT COUNT(*) FROM suscripciones s JOIN usuarios u ON u.id = s.usuario_id " +
+                        "WHERE u.email LIKE ? AND s.renovacion_nodo IS NOT NULL",
+                Integer.class, prefijo + "%"));
+    }
+
+    @Test
+    void dosNodos_renovacionContinua_seRepartenLasRenovacionesSinDuplicar() throws Exception {
+
+        // También con el corte de 1990: con el de ahora, una ya renovada (vence el 31 de enero
+        // de 1990) seguiría vencida y el otro nodo le cobraría con razón el ciclo siguiente
+        int renovadas = aLaVez(nodo -> renovarLasDelTest(nodo, CORTE));
+
+        assertEquals(SUSCRIPCIONES, renovadas);
+        comprobarUnaFacturaPorSuscripcion();
+    }
+
+    // =========================================================
+    // UTILIDADES DE TEST
+    // =========================================================
+
+    // Lanza la misma renovación en los dos nodos a la vez y devuelve cuántas renovaron entre los dos
+    private int aLaVez(Function<ConfigurableApplicationContext, ResultadoRenovacion> renovacion) throws Exception {
+        CountDownLatch salida = new CountDownLatch(1);
+        ExecutorService hilos = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<ResultadoRenovacion> a = hilos.submit(() -> {
+                salida.await();
+                return renovacion.apply(nodoA);
+            });
+            Future<ResultadoRenovacion> b = hilos.submit(() -> {
+                salida.await();
+                return renovacion.apply(nodoB);
+            });
+
+            salida.countDown();
+            System.out.println("nodo-a: " + a.get() + " / nodo-b: " + b.get());
+            return a.get().renovadas() + b.get().renovadas();
+        } finally {
+            hilos.shutdown();
+        }
+    }
+
+    private void comprobarUnaFacturaPorSuscripcion() {
+        JdbcTemplate jdbc = nodoA.getBean(JdbcTemplate.class);
+
+        // Todas las suscripciones del test tienen factura...
+        Integer facturas = jdbc.queryForObject(
+                "SELECT COUNT(*) FROM facturas f JOIN suscripciones s ON s.id = f.suscripcion_id " +
+                        "JOIN usuarios u ON u.id = s.usuario_id WHERE u.email LIKE ?",
+                Integer.class, prefijo + "%");
+        assertEquals(SUSCRIPCIONES, facturas);
+
+        // ...y ninguna tiene más de una
+        Integer maximoPorSuscripcion = jdbc.queryForObject(
+                "SELECT MAX(c) FROM (SELECT COUNT(*) AS c FROM facturas f " +
+                        "JOIN suscripciones s ON s.id = f.suscripcion_id " +
+                        "JOIN usuarios u ON u.id = s.usuario_id WHERE u.email LIKE ? " +
+                        "GROUP BY f.suscripcion_id) t",
+                Integer.class, prefijo + "%");
+        assertEquals(1, maximoPorSuscripcion);
+    }
+
+    // Lo que haría la renovación continua al vaciar su cola, por lotes
+    private ResultadoRenovacion renovarLasDelTest(ConfigurableApplicationContext nodo, LocalDateTime ahora) {
+        RenovacionService renovacionService = nodo.getBean(RenovacionService.class);
+        int renovadas = 0;
+        int fallidas = 0;
+
+        for (int i = 0; i < ids.size(); i += TAMANO_LOTE) {
+            ResultadoRenovacion lote = renovacionService.renovarIds(
+                    ids.subList(i, Math.min(i + TAMANO_LOTE, ids.size())), ahora);
+            renovadas += lote.renovadas();
+            fallidas += lote.fallidas();
+        }
+        return new ResultadoRenovacion(renovadas, fallidas);
+    }
+
+    private ConfigurableApplicationContext arrancarNodo(String nombre) {
+        // Como argumentos y no con properties(): esas son valores por defecto y
+        // application.properties las pisa
+        return new SpringApplicationBuilder(ProyectoSaasApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--renovacion.nodo=" + nombre,
+                        "--renovacion.reparto-entre-nodos=true",
+                        "--renovacion.tamano-lote=" + TAMANO_LOTE,
+                        "--spring.jpa.show-sql=false");
+    }
+
+    private void crearSuscripcionesVencidas() {
+        PlanRepository planRepository = nodoA.getBean(PlanRepository.class);
+        UsuarioRepository usuarioRepository = nodoA.getBean(UsuarioRepository.class);
+        SuscripcionRepository suscripcionRepository = nodoA.getBean(SuscripcionRepository.class);
+
+        nodoA.getBean(TransactionTemplate.class).executeWithoutResult(status -> {
+            Plan plan = planRepository.findAll().get(0);
+
+            for (int i = 0; i < SUSCRIPCIONES; i++) {
+                Usuario usuario = new Usuario(prefijo + "-" + i + "@test.local", "ES", "x", RolUsuario.USER);
+                usuario.setPagoAutomatico(true);
+                usuarioRepository.save(usuario);
+
+                Suscripcion suscripcion = new Suscripcion(usuario, plan);
+                suscripcion.setFechaFinCiclo(VENCIMIENTO);
+                suscripcionRepository.save(suscripcion);
+                ids.add(suscripcion.getId());
+            }
+        });
+    }
+
+    private void limpiar() {
+        JdbcTemplate jdbc = nodoA.getBean(JdbcTemplate.class);
+        String deUsuarios = "SELECT s.id FROM suscripciones s JOIN usuarios u ON u.id = s.usuario_id WHERE u.email LIKE ?";
+        String deFacturas = "SELECT f.id FROM facturas f WHERE f.suscripcion_id IN (" + deUsuarios + ")";
+        String patron = prefijo + "%";
+
+        jdbc.update("DELETE FROM pagos_tarjeta WHERE id IN (SELECT p.id FROM pagos p WHERE p.factura_id IN ("
+                + deFacturas + "))", patron);
+        jdbc.update("DELETE FROM pagos WHERE factura_id IN (" + deFacturas + ")", patron);
+        jdbc.update("DELETE FROM facturas WHERE suscripcion_id IN (" + deUsuarios + ")", patron);
+        jdbc.update("DELETE FROM suscripciones_aud WHERE id IN (" + deUsuarios + ")", patron);
+        jdbc.update("DELETE FROM suscripciones WHERE id IN (" + deUsuarios + ")", patron);
+        jdbc.update("DELETE FROM usuarios WHERE email LIKE ?", patron);
+    }
+}
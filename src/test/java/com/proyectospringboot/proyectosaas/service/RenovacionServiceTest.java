@@ -0,0 +1,286 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.config.RenovacionProperties;
+import com.proyectospringboot.proyectosaas.domain.entity.Plan;
+import com.proyectospringboot.proyectosaas.domain.entity.Suscripcion;
+import com.proyectospringboot.proyectosaas.domain.entity.Usuario;
+import com.proyectospringboot.proyectosaas.domain.enums.EstadoSuscripcion;
+import com.proyectospringboot.proyectosaas.domain.enums.RolUsuario;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import com.proyectospringboot.proyectosaas.service.RenovacionService.ResultadoRenovacion;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/* RenovacionServiceTest
+ *
+ * Probamos el motor de renovación por lotes sin base de datos:
+ * - Que recorre las vencidas por keyset (id > último id del lote anterior).
+ * - Que vacía el contexto de persistencia al acabar cada lote.
+ * - Que el aviso de cada lote (la marca de agua) va en la misma transacción que el lote.
+ * - Que si un lote falla se reintenta una a una y el error queda aislado.
+ * - Que el modo paralelo renueva todo el lote con transacciones por suscripción y no vuelve
+ *   a cobrar la que ya tiene su factura desde el corte (lote repetido tras una caída).
+ * - Que con reparto entre nodos se reclama cada lote con lease y al final se suelta solo
+ *   lo reclamado por esa pasada.
+ *
+ * La TransactionTemplate la simulamos ejecutando el callback directamente. */
+
+@ExtendWith(MockitoExtension.class)
+class RenovacionServiceTest {
+
+    @Mock
+    private SuscripcionRepository suscripcionRepository;
+
+    @Mock
+    private FacturaService facturaService;
+
+    @Mock
+    private TransactionTemplate tx;
+
+    @Mock
+    private EntityManager entityManager;
+
+    private RenovacionService renovacionService;
+
+    private Plan plan;
+
+    @BeforeEach
+    void setUp() {
+        renovacionService = new RenovacionService(suscripcionRepository, facturaService, tx, entityManager,
+                new RenovacionProperties(2, new RenovacionProperties.Paralelo(false, 1), false, 15, "test"),
+                new MetricasFacturacion(new SimpleMeterRegistry()));
+        plan = new Plan("BASIC", new BigDecimal("10.00"));
+
+        when(tx.execute(any())).thenAnswer(inv -> {
+            TransactionCallback<?> callback = inv.getArgument(0);
+            return callback.doInTransaction(mock(TransactionStatus.class));
+        });
+    }
+
+    @Test
+    void renovarVencidas_recorreLotesPorKeyset() {
+
+        LocalDateTime ahora = LocalDateTime.now();
+        Suscripcion s1 = vencida("u1@test.com");
+        Suscripcion s2 = vencida("u2@test.com");
+        Suscripcion s3 = vencida("u3@test.com");
+
+        when(suscripcionRepository.buscarIdsVencidasConPagoAuto(EstadoSuscripcion.ACTIVA, ahora, 0L, Limit.of(2)))
+                .thenReturn(List.of(1L, 2L));
+        when(suscripcionRepository.buscarIdsVencidasConPagoAuto(EstadoSuscripcion.ACTIVA, ahora, 2L, Limit.of(2)))
+                .thenReturn(List.of(3L));
+        when(suscripcionRepository.buscarIdsVencidasConPagoAuto(EstadoSuscripcion.ACTIVA, ahora, 3L, Limit.of(2)))
+                .thenReturn(List.of());
+        when(suscripcionRepository.buscarPorIdsConUsuarioYPlan(List.of(1L, 2L))).thenReturn(List.of(s1, s2));
+        when(suscripcionRepository.buscarPorIdsConUsuarioYPlan(List.of(3L))).thenReturn(List.of(s3));
+
+        ResultadoRenovacion resultado = renovacionService.renovarVencidas(ahora);
+
+        assertEquals(3, resultado.renovadas());
+        assertEquals(0, resultado.fallidas());
+        verify(facturaService, times(3)).renovarYPagarAuto(any(Suscripcion.class));
+
+        // Un clear por lote: el contexto de persistencia no crece entre lotes
+        verify(entityManager, times(2)).clear();
+    }
+
+    @Test
+    void renovarVencidas_conAviso_apuntaDentroDeLaTransaccionDelLote() {
+
+        LocalDateTime ahora = LocalDateTime.now();
+        Suscripcion s1 = vencida("u1@test.com");
+        Suscripcion s2 = vencida("u2@test.com");
+
+        when(suscripcionRepository.buscarIdsVencidasConPagoAuto(eq(EstadoSuscripcion.ACTIVA), eq(ahora), eq(5L), any()))
+                .thenReturn(List.of(6L, 9L));
+        when(suscripcionRepository.buscarIdsVencidasConPagoAuto(eq(EstadoSuscripcion.ACTIVA), eq(ahora), eq(9L), any()))
+                .thenReturn(List.of());
+        when(suscripcionRepository.buscarPorIdsConUsuarioYPlan(List.of(6L, 9L))).thenReturn(List.of(s1, s2));
+
+        // Contamos las transacciones abiertas en el momento del aviso
+        int[] abiertas = new int[1];
+        reset(tx);
+        doAnswer(inv -> {
+            abiertas[0]++;
+            try {
+                TransactionCallback<?> callback = inv.getArgument(0);
+                return callback.doInTransaction(mock(TransactionStatus.class));
+            } finally {
+                abiertas[0]--;
+            }
+        }).when(tx).execute(any());
+
+        List<String> avisos = new ArrayList<>();
+        renovacionService.renovarVencidas(ahora, 5L, (ultimoId, acumulado) -> {
+            verify(entityManager).flush();
+            avisos.add(ultimoId + ":" + acumulado.renovadas() + ":" + abiertas[0]);
+        });
+
+        assertEquals(List.of("9:2:1"), avisos);
+        verify(tx, times(1)).execute(any());
+    }
+
+    @Test
+    void renovarVencidas_loteFallido_seReintentaUnaAUnaYAislaElError() {
+
+        LocalDateTime ahora = LocalDateTime.now();
+        Suscripcion buena = vencida("ok@test.com");
+        Suscripcion mala = vencida("ko@test.com");
+
+        when(suscripcionRepository.buscarIdsVencidasConPagoAuto(eq(EstadoSuscripcion.ACTIVA), eq(ahora), eq(0L), any()))
+                .thenReturn(List.of(1L, 2L));
+        when(suscripcionRepository.buscarIdsVencidasConPagoAuto(eq(EstadoSuscripcion.ACTIVA), eq(ahora), eq(2L), any()))
+                .thenReturn(List.of());
+        when(suscripcionRepository.buscarPorIdsConUsuarioYPlan(List.of(1L, 2L))).thenReturn(List.of(buena, mala));
+        when(suscripcionRepository.findById(1L)).thenReturn(Optional.of(buena));
+        when(suscripcionRepository.findById(2L)).thenReturn(Optional.of(mala));
+
+        // Solo falla "mala"; el resto se renueva sin problema
+        doAnswer(inv -> {
+            if (inv.getArgument(0) == mala) {
+                throw new IllegalStateException("fallo simulado");
+            }
+            return null;
+        }).when(facturaService).renovarYPagarAuto(any(Suscripcion.class));
+
+        ResultadoRenovacion resultado = renovacionService.renovarVencidas(ahora);
+
+        assertEquals(1, resultado.renovadas());
+        assertEquals(1, resultado.fallidas());
+    }
+
+    @Test
+    void renovarVencidas_modoParalelo_renuevaCadaSuscripcionPorSeparado() {
+
+        RenovacionService paralelo = new RenovacionService(suscripcionRepository, facturaService, tx,
+                entityManager, new RenovacionProperties(4, new RenovacionProperties.Paralelo(true, 2), false, 15, "test"),
+                new MetricasFacturacion(new SimpleMeterRegistry()));
+
+        LocalDateTime ahora = LocalDateTime.now();
+        for (long id = 1; id <= 4; id++) {
+            when(suscripcionRepository.findById(id)).thenReturn(Optional.of(vencida("u" + id + "@test.com")));
+        }
+
+        when(suscripcionRepository.buscarIdsVencidasConPagoAuto(eq(EstadoSuscripcion.ACTIVA), eq(ahora), eq(0L), any()))
+                .thenReturn(List.of(1L, 2L, 3L, 4L));
+        when(suscripcionRepository.buscarIdsVencidasConPagoAuto(eq(EstadoSuscripcion.ACTIVA), eq(ahora), eq(4L), any()))
+                .thenReturn(List.of());
+
+        ResultadoRenovacion resultado = paralelo.renovarVencidas(ahora);
+
+        assertEquals(4, resultado.renovadas());
+        assertEquals(0, resultado.fallidas());
+
+        // En paralelo no hay transacción por lote: una por suscripción
+        verify(tx, times(4)).execute(any());
+        verify(facturaService, times(4)).renovarYPagarAuto(any(Suscripcion.class));
+    }
+
+    @Test
+    void renovarVencidas_modoParalelo_noVuelveACobrarLaYaRenovadaDesdeElCorte() {
+
+        RenovacionService paralelo = new RenovacionService(suscripcionRepository, facturaService, tx,
+                entityManager, new RenovacionProperties(4, new RenovacionProperties.Paralelo(true, 2), false, 15, "test"),
+                new MetricasFacturacion(new SimpleMeterRegistry()));
+
+        // Lleva más de 30 días vencida: tras renovarla sigue vencida y el lote repetido la devuelve
+        LocalDateTime ahora = LocalDateTime.now();
+        Suscripcion atrasada = vencida("atrasada@test.com");
+        atrasada.setFechaFinCiclo(ahora.minusDays(45));
+        when(suscripcionRepository.findById(1L)).thenReturn(Optional.of(atrasada));
+        when(facturaService.renovadaDesde(1L, ahora)).thenReturn(true);
+
+        when(suscripcionRepository.buscarIdsVencidasConPagoAuto(eq(EstadoSuscripcion.ACTIVA), eq(ahora), eq(0L), any()))
+                .thenReturn(List.of(1L));
+        when(suscripcionRepository.buscarIdsVencidasConPagoAuto(eq(EstadoSuscripcion.ACTIVA), eq(ahora), eq(1L), any()))
+                .thenReturn(List.of());
+
+        ResultadoRenovacion resultado = paralelo.renovarVencidas(ahora);
+
+        assertEquals(0, resultado.renovadas());
+        verify(facturaService, never()).renovarYPagarAuto(any(Suscripcion.class));
+    }
+
+    @Test
+    void renovarVencidas_repartoEntreNodos_reclamaLotesConLease() {
+
+        RenovacionService conLease = new RenovacionService(suscripcionRepository, facturaService, tx,
+                entityManager, new RenovacionProperties(2, new RenovacionProperties.Paralelo(false, 1), true, 15, "nodo-a"),
+                new MetricasFacturacion(new SimpleMeterRegistry()));
+
+        LocalDateTime ahora = LocalDateTime.now();
+        Suscripcion s1 = vencida("u1@test.com");
+
+        when(suscripcionRepository.bloquearVencidasLibres(eq(ahora), eq(0L), any(LocalDateTime.class), eq(2)))
+                .thenReturn(List.of(7L));
+        when(suscripcionRepository.bloquearVencidasLibres(eq(ahora), eq(7L), any(LocalDateTime.class), eq(2)))
+                .thenReturn(List.of());
+        when(suscripcionRepository.buscarPorIdsConUsuarioYPlan(List.of(7L))).thenReturn(List.of(s1));
+
+        ResultadoRenovacion resultado = conLease.renovarVencidas(ahora);
+
+        assertEquals(1, resultado.renovadas());
+        verify(suscripcionRepository).asignarLease(eq(List.of(7L)), eq("nodo-a"), any(LocalDateTime.class));
+        verify(suscripcionRepository).liberarLeases("nodo-a", List.of(7L));
+        verify(suscripcionRepository, never()).liberarLeasesCaducados(any(), any());
+        verify(suscripcionRepository, never()).buscarIdsVencidasConPagoAuto(any(), any(), any(), any());
+    }
+
+    @Test
+    void renovarIds_repartoEntreNodos_sueltaSoloLoQueHaReclamado() {
+
+        RenovacionService conLease = new RenovacionService(suscripcionRepository, facturaService, tx,
+                entityManager, new RenovacionProperties(2, new RenovacionProperties.Paralelo(false, 1), true, 15, "nodo-a"),
+                new MetricasFacturacion(new SimpleMeterRegistry()));
+
+        // La 4 la tiene reclamada otra pasada (p.ej. la nocturna de este mismo nodo)
+        LocalDateTime ahora = LocalDateTime.now();
+        when(suscripcionRepository.bloquearVencidasLibresPorIds(eq(List.of(3L, 4L)), eq(ahora), any(LocalDateTime.class)))
+                .thenReturn(List.of(3L));
+        when(suscripcionRepository.buscarPorIdsConUsuarioYPlan(List.of(3L))).thenReturn(List.of(vencida("u3@test.com")));
+
+        ResultadoRenovacion resultado = conLease.renovarIds(List.of(3L, 4L), ahora);
+
+        assertEquals(1, resultado.renovadas());
+        verify(suscripcionRepository).liberarLeases("nodo-a", List.of(3L));
+        verify(suscripcionRepository, never()).liberarLeasesCaducados(any(), any());
+    }
+
+    // =========================================================
+    // UTILIDADES DE TEST
+    // =========================================================
+
+    private Suscripcion vencida(String email) {
+        Usuario usuario = new Usuario(email, "ES", "hashedPassword", RolUsuario.USER);
+        usuario.setPagoAutomatico(true);
+        Suscripcion s = new Suscripcion(usuario, plan);
+        s.setFechaFinCiclo(LocalDateTime.now().minusDays(1));
+        return s;
+    }
+}
@@ -0,0 +1,199 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.ProyectoSaasApplication;
+import com.proyectospringboot.proyectosaas.config.RetencionAuditoriaProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* RetencionAuditoriaTest
+ *
+ * Comprobamos contra el PostgreSQL de docker-compose la auditoría particionada por meses (V8):
+ * - Las revisiones nuevas caen en las particiones del mes en curso de suscripciones_aud y revinfo.
+ * - Un filtro por fecha de modificación no abre las particiones de otros meses.
+ * - Archivar un mes deja un csv.gz por tabla con sus filas y quita las dos particiones.
+ * - Crear un mes cuyas revisiones ya cayeron en la partición por defecto se las pasa, sin
+ *   impedir que se creen los demás.
+ *
+ * Para no tocar meses con datos reales, archivamos un mes inventado (enero de 2000) con una
+ * revisión metida a mano.
+ *
+ * Necesita la BD levantada (docker compose up -d), así que solo se ejecuta con:
+ *   mvn test -Dpostgres.it=true -Dtest=RetencionAuditoriaTest */
+
+@EnabledIfSystemProperty(named = "postgres.it", matches = "true")
+class RetencionAuditoriaTest {
+
+    private static final YearMonth MES_ANTIGUO = YearMonth.of(2000, 1);
+    private static final YearMonth MES_SIN_CREAR = YearMonth.of(2001, 1);
+
+    // Fuera del rango de la secuencia de revinfo, para no chocar con revisiones reales
+    private static final int REV_ANTIGUA = -2000;
+    private static final int REV_SIN_CREAR = -2001;
+
+    private final String email = "retencion-" + UUID.randomUUID().toString().substring(0, 8) + "@test.local";
+
+    @TempDir
+    Path directorio;
+
+    private ConfigurableApplicationContext contexto;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        contexto = new SpringApplicationBuilder(ProyectoSaasApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.jpa.show-sql=false")
+                .run();
+        jdbc = contexto.getBean(JdbcTemplate.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        try {
+            limpiar();
+        } finally {
+            contexto.close();
+        }
+    }
+
+    @Test
+    void revisionesNuevas_vanALaParticionDelMes() {
+
+        Long basic = contexto.getBean(PlanCatalog.class).porNombre("BASIC").orElseThrow().id();
+        contexto.getBean(RegistroService.class).registrar(email, "ES", "Ana", "López", null, basic, "password123");
+
+        String mes = RetencionAuditoriaService.nombreParticion("suscripciones_aud", YearMonth.now());
+        assertEquals(mes, jdbc.queryForObject(
+                "SELECT a.tableoid::regclass::text FROM suscripciones_aud a " +
+                        "JOIN suscripciones s ON s.id = a.id JOIN usuarios u ON u.id = s.usuario_id " +
+                        "WHERE u.email = ?", String.class, email));
+
+        assertEquals(RetencionAuditoriaService.nombreParticion("revinfo", YearMonth.now()), jdbc.queryForObject(
+                "SELECT r.tableoid::regclass::text FROM revinfo r JOIN suscripciones_aud a ON a.rev = r.rev " +
+                        "JOIN suscripciones s ON s.id = a.id JOIN usuarios u ON u.id = s.usuario_id " +
+                        "WHERE u.email = ?", String.class, email));
+
+        // Las de los meses siguientes ya están creadas
+        assertTrue(contexto.getBean(RetencionAuditoriaService.class).mesesEnLinea()
+                .contains(YearMonth.now().plusMonths(2)));
+    }
+
+    @Test
+    void archivar_exportaYQuitaElMes() throws IOException {
+
+        crearRevisionAntigua();
+        RetencionAuditoriaService retencion = new RetencionAuditoriaService(jdbc,
+                contexto.getBean(TransactionTemplate.class),
+                new RetencionAuditoriaProperties(12, 2, directorio.toString()));
+
+        assertTrue(retencion.mesesEnLinea().contains(MES_ANTIGUO));
+
+        // Filtrando por fecha de modificación, el mes antiguo ni aparece en el plan
+        String plan = String.join("\n", jdbc.queryForList(
+                "EXPLAIN SELECT count(*) FROM suscripciones_aud WHERE fecha_modificacion >= date_trunc('month', now())",
+                String.class));
+        assertFalse(plan.contains("suscripciones_aud_2000_01"), plan);
+
+        assertTrue(retencion.archivar(MES_ANTIGUO));
+
+        assertFalse(retencion.mesesEnLinea().contains(MES_ANTIGUO));
+        assertEquals(0, jdbc.queryForObject("SELECT count(*) FROM revinfo WHERE rev = ?", Integer.class, REV_ANTIGUA));
+
+        List<String> auditoria = leer(directorio.resolve("suscripciones_aud_2000_01.csv.gz"));
+        assertEquals(2, auditoria.size());
+        assertTrue(auditoria.get(0).startsWith("id,rev,revtype"), auditoria.get(0));
+        assertTrue(auditoria.get(1).contains("," + REV_ANTIGUA + ","), auditoria.get(1));
+
+        List<String> revisiones = leer(directorio.resolve("revinfo_2000_01.csv.gz"));
+        assertEquals(List.of("rev,revtstmp", REV_ANTIGUA + ",946728000000"), revisiones);
+
+        try (var ficheros = Files.list(directorio)) {
+            assertEquals(2, ficheros.count(), "sin .tmp a medias");
+        }
+    }
+
+    @Test
+    void crearParticiones_mesConFilasEnLaPorDefecto_selasPasa() {
+
+        // Sin partición para enero de 2001, estas filas caen en las de por defecto
+        jdbc.update("INSERT INTO revinfo (rev, revtstmp) VALUES (?, 978350400000)", REV_SIN_CREAR);
+        jdbc.update("INSERT INTO suscripciones_aud (id, rev, revtype, estado, fecha_modificacion) " +
+                "VALUES (-1, ?, 0, 'ACTIVA', TIMESTAMP '2001-01-01 12:00')", REV_SIN_CREAR);
+        assertEquals("revinfo_defecto", jdbc.queryForObject(
+                "SELECT tableoid::regclass::text FROM revinfo WHERE rev = ?", String.class, REV_SIN_CREAR));
+
+        RetencionAuditoriaService retencion = new RetencionAuditoriaService(jdbc,
+                contexto.getBean(TransactionTemplate.class),
+                new RetencionAuditoriaProperties(12, 1, directorio.toString()));
+
+        assertEquals(List.of(), retencion.crearParticiones(MES_SIN_CREAR));
+
+        assertEquals("revinfo_2001_01", jdbc.queryForObject(
+                "SELECT tableoid::regclass::text FROM revinfo WHERE rev = ?", String.class, REV_SIN_CREAR));
+        assertEquals("suscripciones_aud_2001_01", jdbc.queryForObject(
+                "SELECT tableoid::regclass::text FROM suscripciones_aud WHERE rev = ?", String.class, REV_SIN_CREAR));
+        assertTrue(retencion.mesesEnLinea().containsAll(List.of(MES_SIN_CREAR, MES_SIN_CREAR.plusMonths(1))));
+
+        // La de por defecto sigue enganchada
+        assertEquals(2, jdbc.queryForObject("SELECT count(*) FROM pg_partitioned_table p " +
+                "JOIN pg_class d ON d.oid = p.partdefid " +
+                "WHERE d.relname IN ('revinfo_defecto', 'suscripciones_aud_defecto')", Integer.class));
+    }
+
+    // =========================================================
+    // UTILIDADES DE TEST
+    // =========================================================
+
+    // Una revisión del 1 de enero de 2000 (12:00 UTC) en unas particiones creadas para el test
+    private void crearRevisionAntigua() {
+        jdbc.queryForList("SELECT auditoria_crear_particion(?)", MES_ANTIGUO.atDay(1));
+        jdbc.update("INSERT INTO revinfo (rev, revtstmp) VALUES (?, 946728000000)", REV_ANTIGUA);
+        jdbc.update("INSERT INTO suscripciones_aud (id, rev, revtype, estado, fecha_modificacion) " +
+                "VALUES (-1, ?, 0, 'ACTIVA', TIMESTAMP '2000-01-15 12:00')", REV_ANTIGUA);
+    }
+
+    private static List<String> leer(Path fichero) throws IOException {
+        try (InputStream entrada = new GZIPInputStream(Files.newInputStream(fichero))) {
+            return new String(entrada.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+        }
+    }
+
+    private void limpiar() {
+        jdbc.queryForList("SELECT auditoria_quitar_particion(?)", MES_ANTIGUO.atDay(1));
+        jdbc.queryForList("SELECT auditoria_quitar_particion(?)", MES_SIN_CREAR.atDay(1));
+        jdbc.queryForList("SELECT auditoria_quitar_particion(?)", MES_SIN_CREAR.plusMonths(1).atDay(1));
+        jdbc.update("DELETE FROM suscripciones_aud WHERE rev = ?", REV_SIN_CREAR);
+        jdbc.update("DELETE FROM revinfo WHERE rev = ?", REV_SIN_CREAR);
+
+        String deUsuario = "SELECT u.id FROM usuarios u WHERE u.email = ?";
+        String deSuscripcion = "SELECT s.id FROM suscripciones s WHERE s.usuario_id IN (" + deUsuario + ")";
+
+        jdbc.update("DELETE FROM facturas WHERE suscripcion_id IN (" + deSuscripcion + ")", email);
+        jdbc.update("DELETE FROM suscripciones_aud WHERE usuario_id IN (" + deUsuario + ")", email);
+        jdbc.update("DELETE FROM suscripciones WHERE usuario_id IN (" + deUsuario + ")", email);
+        jdbc.update("DELETE FROM perfiles WHERE usuario_id IN (" + deUsuario + ")", email);
+        jdbc.update("DELETE FROM usuarios WHERE email = ?", email);
+    }
+}
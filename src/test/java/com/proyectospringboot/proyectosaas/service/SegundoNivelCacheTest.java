@@ -0,0 +1,193 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.ProyectoSaasApplication;
+import com.proyectospringboot.proyectosaas.config.SegundoNivelCacheConfig;
+import com.proyectospringboot.proyectosaas.domain.entity.Plan;
+import com.proyectospringboot.proyectosaas.domain.entity.Suscripcion;
+import com.proyectospringboot.proyectosaas.domain.entity.Usuario;
+import com.proyectospringboot.proyectosaas.repository.PlanRepository;
+import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import com.proyectospringboot.proyectosaas.repository.UsuarioRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/* SegundoNivelCacheTest
+ *
+ * Comprobamos contra el PostgreSQL de docker-compose la caché de segundo nivel de Hibernate:
+ * - Repetir la búsqueda de un usuario por email no va a la BD (consulta + entidad en caché).
+ * - Los planes que carga Hibernate con las suscripciones salen de la región "planes", y un
+ *   plan se puede editar por JPA: la región y el catálogo en memoria ven el precio nuevo.
+ * - Coherencia: un registro nuevo aparece aunque antes se buscara su email (y saliera vacío),
+ *   y el cambio del pago automático se ve en la siguiente lectura, como en el controlador.
+ * - Aciertos y fallos por región llegan a las métricas.
+ *
+ * Necesita la BD levantada (docker compose up -d), así que solo se ejecuta con:
+ *   mvn test -Dpostgres.it=true -Dtest=SegundoNivelCacheTest */
+
+@EnabledIfSystemProperty(named = "postgres.it", matches = "true")
+class SegundoNivelCacheTest {
+
+    private final String prefijo = "cache2-" + UUID.randomUUID().toString().substring(0, 8);
+    private final String email = prefijo + "@test.local";
+
+    private ConfigurableApplicationContext contexto;
+    private Statistics estadisticas;
+    private UsuarioRepository usuarioRepository;
+
+    @BeforeEach
+    void setUp() {
+        contexto = new SpringApplicationBuilder(ProyectoSaasApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties("spring.jpa.show-sql=false")
+                .run();
+        estadisticas = contexto.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        usuarioRepository = contexto.getBean(UsuarioRepository.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        try {
+            limpiar();
+        } finally {
+            contexto.close();
+        }
+    }
+
+    @Test
+    void registro_apareceAunqueSeBuscaraAntesYLuegoSaleDeLaCache() {
+
+        // Se cachea el resultado vacío
+        assertTrue(usuarioRepository.buscarPorEmail(email).isEmpty());
+        assertTrue(usuarioRepository.buscarPorEmail(email).isEmpty());
+
+        registrar();
+
+        // El INSERT en usuarios invalida la consulta al confirmar
+        Usuario registrado = usuarioRepository.buscarPorEmail(email).orElseThrow();
+        assertEquals("ES", registrado.getPais());
+
+        estadisticas.clear();
+        assertEquals(registrado.getId(), usuarioRepository.buscarPorEmail(email).orElseThrow().getId());
+        assertEquals(registrado.getId(), usuarioRepository.buscarIdPorEmail(email).orElseThrow());
+        usuarioRepository.buscarIdPorEmail(email);
+
+        assertEquals(1, estadisticas.getPrepareStatementCount(), "solo la primera búsqueda del id");
+        assertTrue(estadisticas.getQueryCacheHitCount() >= 2);
+    }
+
+    @Test
+    void pagoAutomatico_seVeEnLaSiguienteLectura() {
+
+        registrar();
+        assertFalse(usuarioRepository.buscarPorEmail(email).orElseThrow().isPagoAutomatico());
+
+        // Lo mismo que DashboardController al activar el pago automático
+        Usuario usuario = usuarioRepository.buscarPorEmail(email).orElseThrow();
+        usuario.setPagoAutomatico(true);
+        usuarioRepository.save(usuario);
+
+        assertTrue(usuarioRepository.buscarPorEmail(email).orElseThrow().isPagoAutomatico());
+        assertTrue(contexto.getBean(JdbcTemplate.class).queryForObject(
+                "SELECT pago_automatico FROM usuarios WHERE email = ?", Boolean.class, email));
+
+        // Y la región de usuarios queda con el valor nuevo, no solo invalidada
+        estadisticas.clear();
+        Boolean enCache = contexto.getBean(TransactionTemplate.class).execute(status ->
+                contexto.getBean(jakarta.persistence.EntityManager.class)
+                        .find(Usuario.class, usuario.getId()).isPagoAutomatico());
+        assertTrue(enCache);
+        assertEquals(0, estadisticas.getPrepareStatementCount());
+    }
+
+    @Test
+    void planDeLaSuscripcion_saleDeLaCache() {
+
+        registrar();
+        SuscripcionRepository suscripcionRepository = contexto.getBean(SuscripcionRepository.class);
+        suscripcionRepository.buscarPorEmail(email).orElseThrow();
+
+        estadisticas.clear();
+        Suscripcion suscripcion = suscripcionRepository.buscarPorEmail(email).orElseThrow();
+
+        assertEquals("BASIC", suscripcion.getPlan().getNombre());
+        assertTrue(estadisticas.getDomainDataRegionStatistics(SegundoNivelCacheConfig.REGION_PLANES)
+                .getHitCount() >= 1);
+
+        // Las mismas cuentas que ve Prometheus
+        double aciertos = contexto.getBean(MeterRegistry.class).get("hibernate.second.level.cache.requests")
+                .tag("region", SegundoNivelCacheConfig.REGION_PLANES).tag("result", "hit")
+                .functionCounter().count();
+        assertTrue(aciertos >= 1, "aciertos en métricas: " + aciertos);
+    }
+
+    @Test
+    void editarPlan_porJpa_seVeEnLaCacheYEnElCatalogo() {
+
+        PlanCatalog planCatalog = contexto.getBean(PlanCatalog.class);
+        PlanRepository planRepository = contexto.getBean(PlanRepository.class);
+        TransactionTemplate tx = contexto.getBean(TransactionTemplate.class);
+
+        Long basic = planCatalog.porNombre("BASIC").orElseThrow().id();
+        BigDecimal original = planCatalog.porId(basic).orElseThrow().precioMensual();
+        BigDecimal nuevo = original.add(BigDecimal.ONE);
+
+        // Primero a la región, para que el UPDATE tenga algo que invalidar
+        tx.execute(status -> planRepository.findById(basic).orElseThrow().getNombre());
+
+        try {
+            tx.execute(status -> {
+                planRepository.findById(basic).orElseThrow().setPrecioMensual(nuevo);
+                return null;
+            });
+
+            BigDecimal enCache = tx.execute(status -> contexto.getBean(jakarta.persistence.EntityManager.class)
+                    .find(Plan.class, basic).getPrecioMensual());
+            assertEquals(0, nuevo.compareTo(enCache));
+            assertEquals(0, nuevo.compareTo(planCatalog.porId(basic).orElseThrow().precioMensual()));
+        } finally {
+            tx.execute(status -> {
+                planRepository.findById(basic).orElseThrow().setPrecioMensual(original);
+                return null;
+            });
+        }
+    }
+
+    // =========================================================
+    // UTILIDADES DE TEST
+    // =========================================================
+
+    private void registrar() {
+        Long basic = contexto.getBean(PlanCatalog.class).porNombre("BASIC").orElseThrow().id();
+        contexto.getBean(RegistroService.class).registrar(email, "ES", "Ana", "López", null, basic, "password123");
+    }
+
+    private void limpiar() {
+        JdbcTemplate jdbc = contexto.getBean(JdbcTemplate.class);
+        String deUsuario = "SELECT u.id FROM usuarios u WHERE u.email = ?";
+        String deSuscripcion = "SELECT s.id FROM suscripciones s WHERE s.usuario_id IN (" + deUsuario + ")";
+
+        jdbc.update("DELETE FROM facturas WHERE suscripcion_id IN (" + deSuscripcion + ")", email);
+        jdbc.update("DELETE FROM suscripciones_aud WHERE usuario_id IN (" + deUsuario + ")", email);
+        jdbc.update("DELETE FROM suscripciones WHERE usuario_id IN (" + deUsuario + ")", email);
+        jdbc.update("DELETE FROM perfiles WHERE usuario_id IN (" + deUsuario + ")", email);
+        jdbc.update("DELETE FROM usuarios WHERE email = ?", email);
+    }
+}
@@ -6,16 +6,20 @@ import com.proyectospringboot.proyectosaas.domain.entity.Suscripcion;
 import com.proyectospringboot.proyectosaas.domain.entity.Usuario;
 import com.proyectospringboot.proyectosaas.domain.enums.EstadoSuscripcion;
 import com.proyectospringboot.proyectosaas.domain.enums.RolUsuario;
+import com.proyectospringboot.proyectosaas.domain.valor.Dinero;
 import com.proyectospringboot.proyectosaas.repository.FacturaRepository;
 import com.proyectospringboot.proyectosaas.repository.PlanRepository;
 import com.proyectospringboot.proyectosaas.repository.SuscripcionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.lang.reflect.Field;
 import java.math.BigDecimal;
@@ -50,12 +54,21 @@ class SuscripcionServiceTest {
     @Mock
     private PlanRepository planRepository;
 
+    @Mock
+    private PlanCatalog planCatalog;
+
     @Mock
     private FacturaRepository facturaRepository;
 
     @Mock
     private FacturaService facturaService;
 
+    @Mock
+    private ApplicationEventPublisher eventos;
+
+    @Spy
+    private MetricasFacturacion metricas = new MetricasFacturacion(new SimpleMeterRegistry());
+
     @InjectMocks
     private SuscripcionService suscripcionService;
 
@@ -89,11 +102,11 @@ class SuscripcionServiceTest {
 
         // BASIC (1) -> PREMIUM (2)
         when(suscripcionRepository.buscarPorUsuarioId(1L)).thenReturn(Optional.of(suscripcion));
-        when(planRepository.findById(2L)).thenReturn(Optional.of(planPremium));
+        enCatalogo(planPremium);
 
         // El impuesto lo mockeamos porque es lógica de otro servicio
-        when(facturaService.calcularImpuesto(eq("ES"), any(BigDecimal.class)))
-                .thenReturn(new BigDecimal("4.20"));
+        when(facturaService.calcularImpuesto(eq("ES"), any(Dinero.class)))
+                .thenReturn(Dinero.deCentimos(420));
 
         // Ejecutamos el cambio
         suscripcionService.cambiarPlan(1L, 2L);
@@ -126,14 +139,14 @@ class SuscripcionServiceTest {
         suscripcion.setPlan(planPremium);
 
         when(suscripcionRepository.buscarPorUsuarioId(1L)).thenReturn(Optional.of(suscripcion));
-        when(planRepository.findById(1L)).thenReturn(Optional.of(planBasic));
+        enCatalogo(planBasic);
 
         // Ejecutamos el cambio a BASIC (MVP: no se cobra downgrade)
         suscripcionService.cambiarPlan(1L, 1L);
 
         assertEquals(planBasic, suscripcion.getPlan());
         verify(facturaRepository, never()).save(any(Factura.class));
-        verify(facturaService, never()).calcularImpuesto(anyString(), any(BigDecimal.class));
+        verify(facturaService, never()).calcularImpuesto(anyString(), any(Dinero.class));
         verify(suscripcionRepository).save(suscripcion);
     }
 
@@ -157,6 +170,12 @@ class SuscripcionServiceTest {
     // UTILIDADES DE TEST
     // =========================================================
 
+    // El plan destino sale del catálogo y se enlaza por referencia (sin consulta)
+    private void enCatalogo(Plan plan) {
+        when(planCatalog.porId(plan.getId())).thenReturn(Optional.of(PlanCatalog.PlanDisponible.de(plan)));
+        when(planRepository.getReferenceById(plan.getId())).thenReturn(plan);
+    }
+
     private void ponerId(Object entidad, Long id) {
         try {
             Field field = entidad.getClass().getDeclaredField("id");
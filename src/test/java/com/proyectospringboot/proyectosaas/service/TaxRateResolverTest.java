@@ -0,0 +1,67 @@
+package com.proyectospringboot.proyectosaas.service;
+
+import com.proyectospringboot.proyectosaas.config.ImpuestosProperties;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/* TaxRateResolverTest
+ *
+ * Probamos la tabla de impuestos por país:
+ * - Que códigos ISO y alias (con o sin tildes, en cualquier caso) dan el mismo tipo.
+ * - Que sin configuración se comporta como el cálculo de antes (solo España al 21%).
+ * - Que se pueden añadir más países por configuración.
+ * - Que un alias que apunta a un país sin tipo se detecta al arrancar. */
+
+class TaxRateResolverTest {
+
+    private final TaxRateResolver porDefecto = new TaxRateResolver(new ImpuestosProperties(null, null));
+
+    @Test
+    void calcular_codigoYAlias_danElMismoImpuesto() {
+
+        BigDecimal base = new BigDecimal("100.00");
+
+        for (String pais : new String[] { "ES", "es", " Es ", "España", "ESPAÑA", "espana", "Spain" }) {
+            assertEquals(0, porDefecto.calcular(pais, base).compareTo(new BigDecimal("21.00")), pais);
+        }
+    }
+
+    @Test
+    void calcular_igualQueElCalculoAnterior() {
+
+        // Mismo redondeo que base * BigDecimal.valueOf(0.21) a 2 decimales HALF_UP
+        for (String importe : new String[] { "9.99", "19.99", "0.05", "12.345", "1000" }) {
+            BigDecimal base = new BigDecimal(importe);
+            BigDecimal antes = base.multiply(BigDecimal.valueOf(0.21)).setScale(2, java.math.RoundingMode.HALF_UP);
+
+            assertEquals(antes, porDefecto.calcular("ES", base), importe);
+        }
+
+        assertEquals(BigDecimal.ZERO, porDefecto.calcular("USA", new BigDecimal("10.00")));
+        assertEquals(BigDecimal.ZERO, porDefecto.calcular(null, new BigDecimal("10.00")));
+    }
+
+    @Test
+    void calcular_paisesConfigurados() {
+
+        TaxRateResolver resolver = new TaxRateResolver(new ImpuestosProperties(
+                Map.of("ES", new BigDecimal("0.21"), "PT", new BigDecimal("0.23")),
+                Map.of("PORTUGAL", "PT")));
+
+        assertEquals(new BigDecimal("2.30"), resolver.calcular("Portugal", new BigDecimal("10.00")));
+        // Si se configura la tabla a mano, solo valen los alias que se pongan
+        assertEquals(BigDecimal.ZERO, resolver.calcular("Spain", new BigDecimal("10.00")));
+    }
+
+    @Test
+    void constructor_aliasSinTipo_fallaAlArrancar() {
+
+        assertThrows(IllegalStateException.class, () -> new TaxRateResolver(new ImpuestosProperties(
+                Map.of("ES", new BigDecimal("0.21")), Map.of("FRANCIA", "FR"))));
+    }
+}